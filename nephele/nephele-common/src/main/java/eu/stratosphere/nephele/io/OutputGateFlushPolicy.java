@@ -0,0 +1,204 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.io;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+
+/**
+ * A flush policy determines when the output channels of an output gate ship a buffer which has not been filled
+ * completely. By default, a buffer is only shipped when it is full or the channel is closed, which maximizes throughput
+ * but may delay records of low-volume streams for a long time. A flush policy trades some of this throughput for
+ * latency:
+ * <ul>
+ * <li>the <i>buffer timeout</i> is the maximum time in milliseconds a record may wait in a partially filled buffer,</li>
+ * <li>the <i>flush threshold</i> is the number of bytes after which a buffer is shipped even if it is not full,</li>
+ * <li><i>adaptive batching</i> lets each channel double its flush threshold (up to the buffer size) while its buffers
+ * fill up in less than half the buffer timeout and halve it again (down to the configured flush threshold) whenever a
+ * buffer has to be shipped because of the timeout.</li>
+ * </ul>
+ * A flush policy can be set for an entire job through {@link eu.stratosphere.nephele.jobgraph.JobGraph} or for the
+ * individual output gates of a vertex through {@link eu.stratosphere.nephele.jobgraph.AbstractJobVertex}.
+ * <p>
+ * This class is immutable.
+ */
+public final class OutputGateFlushPolicy {
+
+	/**
+	 * The flush policy which ships buffers only when they are full or the channel is closed.
+	 */
+	public static final OutputGateFlushPolicy DEFAULT = new OutputGateFlushPolicy(0L, 0, false);
+
+	private static final String KEY_PREFIX = "nephele.outputgate.";
+
+	private static final String DEFAULT_GATE_INFIX = "default.";
+
+	private static final String BUFFER_TIMEOUT_KEY = "buffertimeout";
+
+	private static final String FLUSH_THRESHOLD_KEY = "flushthreshold";
+
+	private static final String ADAPTIVE_BATCHING_KEY = "adaptive";
+
+	/**
+	 * The maximum time in milliseconds a record may wait in a partially filled buffer, <code>0</code> to wait
+	 * until the buffer is full.
+	 */
+	private final long bufferTimeout;
+
+	/**
+	 * The number of bytes after which a buffer is shipped, <code>0</code> to ship only full buffers.
+	 */
+	private final int flushThreshold;
+
+	/**
+	 * Stores whether the flush threshold adapts to the load of the channel.
+	 */
+	private final boolean adaptiveBatching;
+
+	/**
+	 * Constructs a new flush policy.
+	 *
+	 * @param bufferTimeout
+	 *        the maximum time in milliseconds a record may wait in a partially filled buffer, <code>0</code> to wait
+	 *        until the buffer is full
+	 * @param flushThreshold
+	 *        the number of bytes after which a buffer is shipped, <code>0</code> to ship only full buffers
+	 * @param adaptiveBatching
+	 *        <code>true</code> to let the flush threshold adapt to the load of the channel, <code>false</code> to
+	 *        keep it fixed; adaptive batching requires a buffer timeout and uses the flush threshold as its lower bound
+	 */
+	public OutputGateFlushPolicy(final long bufferTimeout, final int flushThreshold, final boolean adaptiveBatching) {
+
+		if (bufferTimeout < 0L) {
+			throw new IllegalArgumentException("Argument bufferTimeout must not be negative");
+		}
+
+		if (flushThreshold < 0) {
+			throw new IllegalArgumentException("Argument flushThreshold must not be negative");
+		}
+
+		if (adaptiveBatching && (bufferTimeout == 0L || flushThreshold == 0)) {
+			throw new IllegalArgumentException("Adaptive batching requires a buffer timeout and a flush threshold");
+		}
+
+		this.bufferTimeout = bufferTimeout;
+		this.flushThreshold = flushThreshold;
+		this.adaptiveBatching = adaptiveBatching;
+	}
+
+	/**
+	 * Returns the maximum time in milliseconds a record may wait in a partially filled buffer.
+	 *
+	 * @return the maximum time in milliseconds a record may wait in a partially filled buffer, <code>0</code> to wait
+	 *         until the buffer is full
+	 */
+	public long getBufferTimeout() {
+		return this.bufferTimeout;
+	}
+
+	/**
+	 * Returns the number of bytes after which a buffer is shipped.
+	 *
+	 * @return the number of bytes after which a buffer is shipped, <code>0</code> to ship only full buffers
+	 */
+	public int getFlushThreshold() {
+		return this.flushThreshold;
+	}
+
+	/**
+	 * Checks whether the flush threshold adapts to the load of the channel.
+	 *
+	 * @return <code>true</code> if the flush threshold adapts to the load of the channel, <code>false</code> otherwise
+	 */
+	public boolean isAdaptiveBatching() {
+		return this.adaptiveBatching;
+	}
+
+	/**
+	 * Stores this flush policy in the given configuration as the policy for the output gate with the given index.
+	 *
+	 * @param configuration
+	 *        the configuration to store the policy in
+	 * @param indexOfOutputGate
+	 *        the index of the output gate, <code>-1</code> to store the policy as the default for all output gates
+	 */
+	public void write(final Configuration configuration, final int indexOfOutputGate) {
+
+		final String prefix = getKeyPrefix(indexOfOutputGate);
+
+		configuration.setLong(prefix + BUFFER_TIMEOUT_KEY, this.bufferTimeout);
+		configuration.setInteger(prefix + FLUSH_THRESHOLD_KEY, this.flushThreshold);
+		configuration.setBoolean(prefix + ADAPTIVE_BATCHING_KEY, this.adaptiveBatching);
+	}
+
+	/**
+	 * Reads the flush policy for the output gate with the given index. A policy set for the individual gate in the task
+	 * configuration takes precedence over the default policy of the task configuration, which in turn takes precedence
+	 * over the default policy of the job configuration.
+	 *
+	 * @param jobConfiguration
+	 *        the configuration of the job, may be <code>null</code>
+	 * @param taskConfiguration
+	 *        the configuration of the task, may be <code>null</code>
+	 * @param indexOfOutputGate
+	 *        the index of the output gate to read the policy for
+	 * @return the flush policy for the output gate
+	 */
+	public static OutputGateFlushPolicy read(final Configuration jobConfiguration,
+			final Configuration taskConfiguration, final int indexOfOutputGate) {
+
+		OutputGateFlushPolicy policy = DEFAULT;
+		policy = read(jobConfiguration, getKeyPrefix(-1), policy);
+		policy = read(taskConfiguration, getKeyPrefix(-1), policy);
+		policy = read(taskConfiguration, getKeyPrefix(indexOfOutputGate), policy);
+
+		return policy;
+	}
+
+	private static OutputGateFlushPolicy read(final Configuration configuration, final String prefix,
+			final OutputGateFlushPolicy defaultPolicy) {
+
+		if (configuration == null) {
+			return defaultPolicy;
+		}
+
+		final long bufferTimeout = configuration.getLong(prefix + BUFFER_TIMEOUT_KEY, -1L);
+		if (bufferTimeout < 0L) {
+			return defaultPolicy;
+		}
+
+		return new OutputGateFlushPolicy(bufferTimeout, configuration.getInteger(prefix + FLUSH_THRESHOLD_KEY, 0),
+			configuration.getBoolean(prefix + ADAPTIVE_BATCHING_KEY, false));
+	}
+
+	private static String getKeyPrefix(final int indexOfOutputGate) {
+
+		if (indexOfOutputGate < 0) {
+			return KEY_PREFIX + DEFAULT_GATE_INFIX;
+		}
+
+		return KEY_PREFIX + indexOfOutputGate + ".";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+
+		return "timeout " + this.bufferTimeout + " ms, threshold " + this.flushThreshold + " bytes, adaptive "
+			+ this.adaptiveBatching;
+	}
+}
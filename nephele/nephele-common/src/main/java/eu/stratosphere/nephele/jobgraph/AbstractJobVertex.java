@@ -26,6 +26,7 @@ import com.esotericsoftware.kryo.io.Output;
 import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
 import eu.stratosphere.nephele.io.DistributionPattern;
+import eu.stratosphere.nephele.io.OutputGateFlushPolicy;
 import eu.stratosphere.nephele.io.channels.ChannelType;
 import eu.stratosphere.nephele.io.compression.CompressionLevel;
 import eu.stratosphere.nephele.template.AbstractInvokable;
@@ -683,6 +684,43 @@ public abstract class AbstractJobVertex implements KryoSerializable {
 		return this.configuration;
 	}
 
+	/**
+	 * Sets the flush policy for the output gate with the given index. The policy overrides the default flush policy of
+	 * the job graph for this gate.
+	 * 
+	 * @param indexOfOutputGate
+	 *        the index of the output gate the policy applies to
+	 * @param flushPolicy
+	 *        the flush policy for the output gate
+	 */
+	public void setOutputGateFlushPolicy(final int indexOfOutputGate, final OutputGateFlushPolicy flushPolicy) {
+
+		if (indexOfOutputGate < 0) {
+			throw new IllegalArgumentException("Argument indexOfOutputGate must not be negative");
+		}
+
+		if (flushPolicy == null) {
+			throw new IllegalArgumentException("Argument flushPolicy must not be null");
+		}
+
+		flushPolicy.write(this.configuration, indexOfOutputGate);
+	}
+
+	/**
+	 * Sets the flush policy for all output gates of this vertex which do not have an individual flush policy.
+	 * 
+	 * @param flushPolicy
+	 *        the flush policy for the output gates of this vertex
+	 */
+	public void setOutputGateFlushPolicy(final OutputGateFlushPolicy flushPolicy) {
+
+		if (flushPolicy == null) {
+			throw new IllegalArgumentException("Argument flushPolicy must not be null");
+		}
+
+		flushPolicy.write(this.configuration, -1);
+	}
+
 	/**
 	 * Performs task specific checks if the
 	 * respective task has been configured properly.
@@ -39,6 +39,7 @@ import eu.stratosphere.nephele.fs.FSDataInputStream;
 import eu.stratosphere.nephele.fs.FileStatus;
 import eu.stratosphere.nephele.fs.FileSystem;
 import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.nephele.io.OutputGateFlushPolicy;
 import eu.stratosphere.nephele.types.Record;
 import eu.stratosphere.nephele.util.ClassUtils;
 import eu.stratosphere.nephele.util.StringUtils;
@@ -144,6 +145,22 @@ public class JobGraph implements KryoSerializable {
 		return this.taskManagerConfiguration;
 	}
 
+	/**
+	 * Sets the default flush policy for all output gates of this job. Flush policies set for individual vertices or
+	 * gates take precedence over this default.
+	 *
+	 * @param flushPolicy
+	 *        the default flush policy for the output gates of this job
+	 */
+	public void setOutputGateFlushPolicy(final OutputGateFlushPolicy flushPolicy) {
+
+		if (flushPolicy == null) {
+			throw new IllegalArgumentException("Argument flushPolicy must not be null");
+		}
+
+		flushPolicy.write(this.jobConfiguration, -1);
+	}
+
 	/**
 	 * Adds a new input vertex to the job graph if it is not already included.
 	 * 
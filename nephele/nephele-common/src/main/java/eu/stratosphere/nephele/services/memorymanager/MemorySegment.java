@@ -20,12 +20,18 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 
 /**
  * This class represents a piece of memory allocated from the memory manager. The segment is backed
- * by a byte array and features random put and get methods for the basic types that are stored in a byte-wise
- * fashion in the memory.
+ * either by a byte array (heap memory) or by a direct byte buffer (off-heap memory) and features random
+ * put and get methods for the basic types that are stored in a byte-wise fashion in the memory.
+ * <p>
+ * All accesses go through <code>sun.misc.Unsafe</code>, with the byte array as the base object for heap
+ * segments and a <code>null</code> base object for off-heap segments. That way, both kinds of segments
+ * share the exact same code path and the accessor methods remain monomorphic. Multi-byte values are
+ * always stored in big endian byte order, independent of the kind of memory.
  *
  * @author Alexander Alexandrov
  * @author Stephan Ewen
@@ -33,10 +39,52 @@ import java.nio.ByteBuffer;
 public class MemorySegment
 {
 	/**
-	 * The array in which the data is stored.
+	 * The unsafe handle for fast memory access.
+	 */
+	@SuppressWarnings("restriction")
+	protected static final sun.misc.Unsafe UNSAFE = MemoryUtils.UNSAFE;
+	
+	/**
+	 * The beginning of the byte array contents, relative to the byte array object.
+	 */
+	@SuppressWarnings("restriction")
+	protected static final long BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+	
+	/**
+	 * Flag indicating whether the native byte order is little endian, in which case multi-byte
+	 * values need to have their bytes reversed.
+	 */
+	private static final boolean LITTLE_ENDIAN = (MemoryUtils.NATIVE_BYTE_ORDER == ByteOrder.LITTLE_ENDIAN);
+	
+	/**
+	 * The size of the chunks in which data is copied between off-heap memory and data inputs or outputs.
+	 */
+	private static final int COPY_CHUNK_SIZE = 4096;
+	
+	// -------------------------------------------------------------------------
+	
+	/**
+	 * The array in which the data is stored. Null, if the segment is backed by off-heap memory.
 	 */
 	protected byte[] memory;
 	
+	/**
+	 * The direct byte buffer that holds the off-heap memory. Null, if the segment is backed by heap memory.
+	 * The reference also prevents the off-heap memory from being reclaimed while the segment is in use.
+	 */
+	protected ByteBuffer offHeapBuffer;
+	
+	/**
+	 * The address of the segment's first byte. For heap segments, the address is relative to
+	 * the backing array, for off-heap segments, it is absolute.
+	 */
+	protected long address;
+	
+	/**
+	 * The address one byte past the segment's last byte.
+	 */
+	protected final long addressLimit;
+	
 	/**
 	 * The offset in the memory array where this segment starts.
 	 */
@@ -57,17 +105,51 @@ public class MemorySegment
 	// -------------------------------------------------------------------------
 
 	/**
-	 * Creates a new memory segment of given size with the provided views.
+	 * Creates a new memory segment that represents the given portion of the byte array.
 	 * 
+	 * @param memory The byte array holding the segment's memory.
+	 * @param offset The offset in the array where the segment starts.
 	 * @param size The size of the memory segment.
-	 * @param inputView The input view to use.
-	 * @param outputView The output view to use.
 	 */
 	public MemorySegment(byte[] memory, int offset, int size)
-	{		
+	{
+		if (offset < 0 || size < 0 || offset > memory.length - size) {
+			throw new IndexOutOfBoundsException();
+		}
+		
 		this.memory = memory;
 		this.offset = offset;
 		this.size = size;
+		this.address = BYTE_ARRAY_BASE_OFFSET + offset;
+		this.addressLimit = this.address + size;
+	}
+	
+	/**
+	 * Creates a new memory segment that represents the memory of the given byte buffer, from the buffer's
+	 * beginning up to its capacity. If the buffer is a direct buffer, the segment is backed by off-heap memory,
+	 * otherwise it is backed by the buffer's array.
+	 * 
+	 * @param buffer The byte buffer holding the segment's memory.
+	 * @throws IllegalArgumentException Thrown, if the buffer is neither direct nor backed by an accessible array.
+	 */
+	public MemorySegment(ByteBuffer buffer)
+	{
+		if (buffer.isDirect()) {
+			this.offHeapBuffer = buffer;
+			this.offset = 0;
+			this.size = buffer.capacity();
+			this.address = MemoryUtils.getAddress(buffer);
+		}
+		else if (buffer.hasArray()) {
+			this.memory = buffer.array();
+			this.offset = buffer.arrayOffset();
+			this.size = buffer.capacity();
+			this.address = BYTE_ARRAY_BASE_OFFSET + this.offset;
+		}
+		else {
+			throw new IllegalArgumentException("The byte buffer is neither direct nor backed by an accessible array.");
+		}
+		this.addressLimit = this.address + this.size;
 	}
 
 	// -------------------------------------------------------------------------
@@ -81,12 +163,21 @@ public class MemorySegment
 	 * @return True, if the segment has been freed, false otherwise.
 	 */
 	public boolean isFreed() {
-		return this.memory == null;
+		return this.address > this.addressLimit;
+	}
+	
+	/**
+	 * Checks whether this memory segment is backed by off-heap memory.
+	 * 
+	 * @return True, if the segment is backed by off-heap memory, false if it is backed by a byte array.
+	 */
+	public final boolean isOffHeap() {
+		return this.offHeapBuffer != null;
 	}
 	
 	/**
 	 * Gets the size of the memory segment, in bytes. Because segments
-	 * are backed by arrays, they cannot be larger than two GiBytes.
+	 * are backed by arrays or buffers, they cannot be larger than two GiBytes.
 	 * 
 	 * @return The size in bytes.
 	 */
@@ -99,8 +190,11 @@ public class MemorySegment
 	 * Since different regions of the backing array are used by different segments, the logical
 	 * positions in this view do not correspond to the indexes in the backing array and need
 	 * to be translated via the {@link #translateOffset(int)} method.
+	 * <p>
+	 * Segments that are backed by off-heap memory have no backing array, in which case this method
+	 * returns <code>null</code>. See {@link #isOffHeap()}.
 	 * 
-	 * @return The backing byte array.
+	 * @return The backing byte array, or null, if the segment is backed by off-heap memory.
 	 */
 	public final byte[] getBackingArray() {
 		return this.memory;
@@ -120,10 +214,22 @@ public class MemorySegment
 	//                       Helper methods
 	// -------------------------------------------------------------------------
 	
+	/**
+	 * Frees this memory segment. After this method has been called, all accesses to the segment fail
+	 * and the memory that backed it can be handed out to a different segment.
+	 */
+	protected void free()
+	{
+		this.memory = null;
+		this.offHeapBuffer = null;
+		this.wrapper = null;
+		this.address = this.addressLimit + 1;
+	}
 
 	/**
 	 * Wraps the chunk of the underlying memory located between <tt>offset<tt> and 
-	 * <tt>length</tt> in a NIO ByteBuffer.
+	 * <tt>length</tt> in a NIO ByteBuffer. For off-heap segments, the returned buffer is a
+	 * direct buffer, such that I/O operations on it do not need to copy the data.
 	 * 
 	 * @param offset The offset in the memory segment.
 	 * @param length The number of bytes to be wrapped as a buffer.
@@ -137,17 +243,18 @@ public class MemorySegment
 		}
 		
 		if (this.wrapper == null) {
-			this.wrapper = ByteBuffer.wrap(this.memory, this.offset + offset, length);
-		}
-		else {
-			this.wrapper.position(this.offset + offset);
-			this.wrapper.limit(this.offset + offset + length);
+			this.wrapper = this.memory != null ? 
+				ByteBuffer.wrap(this.memory, this.offset + offset, length) :
+				this.offHeapBuffer.duplicate();
 		}
 		
+		// set the limit first, such that the position is always within the limit
+		this.wrapper.limit(this.offset + offset + length);
+		this.wrapper.position(this.offset + offset);
+		
 		return this.wrapper;
 	}
 
-
 	// --------------------------------------------------------------------
 	//                            Random Access
 	// --------------------------------------------------------------------
@@ -172,8 +279,11 @@ public class MemorySegment
 	 *                                   the memory segment.
 	 */
 	public final byte get(int index) {
-		if (index >= 0 && index < this.size) {
-			return this.memory[this.offset + index];
+		final long pos = this.address + index;
+		if (index >= 0 && pos < this.addressLimit) {
+			return UNSAFE.getByte(this.memory, pos);
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -190,9 +300,12 @@ public class MemorySegment
 	 *                                   the memory segment.
 	 */
 	public final MemorySegment put(int index, byte b) {
-		if (index >= 0 && index < this.size) {
-			this.memory[this.offset + index] = b;
+		final long pos = this.address + index;
+		if (index >= 0 && pos < this.addressLimit) {
+			UNSAFE.putByte(this.memory, pos, b);
 			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -248,9 +361,14 @@ public class MemorySegment
 	 *                                   segment's end.
 	 */
 	public final MemorySegment get(int index, byte[] dst, int offset, int length) {
-		if (index >= 0 && index < this.size && index <= this.size - length && offset <= dst.length - length) {
-			System.arraycopy(this.memory, this.offset + index, dst, offset, length);
+		final long pos = this.address + index;
+		if (index >= 0 && pos < this.addressLimit && pos <= this.addressLimit - length &&
+				offset >= 0 && length >= 0 && offset <= dst.length - length)
+		{
+			copyMemory(this.memory, pos, dst, BYTE_ARRAY_BASE_OFFSET + offset, length);
 			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -272,9 +390,14 @@ public class MemorySegment
 	 *                                   segment's end.
 	 */
 	public final MemorySegment put(int index, byte[] src, int offset, int length) {
-		if (index >= 0 && index < this.size && index <= this.size - length && offset <= src.length - length) {
-			System.arraycopy(src, offset, this.memory, this.offset + index, length);
+		final long pos = this.address + index;
+		if (index >= 0 && pos < this.addressLimit && pos <= this.addressLimit - length &&
+				offset >= 0 && length >= 0 && offset <= src.length - length)
+		{
+			copyMemory(src, BYTE_ARRAY_BASE_OFFSET + offset, this.memory, pos, length);
 			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -292,9 +415,24 @@ public class MemorySegment
 	 * @throws IOException Thrown, if the DataOutput encountered a problem upon writing.
 	 */
 	public final MemorySegment get(DataOutput out, int offset, int length) throws IOException {
-		if (offset >= 0 && offset < this.size && length >= 0 && offset <= this.size - length) {
-			out.write(this.memory, this.offset + offset, length);
+		final long pos = this.address + offset;
+		if (offset >= 0 && pos < this.addressLimit && length >= 0 && pos <= this.addressLimit - length) {
+			if (this.memory != null) {
+				out.write(this.memory, this.offset + offset, length);
+			} else {
+				// off-heap memory needs to be copied through a temporary array in chunks
+				final byte[] chunk = new byte[Math.min(length, COPY_CHUNK_SIZE)];
+				while (length > 0) {
+					final int toCopy = Math.min(length, chunk.length);
+					get(offset, chunk, 0, toCopy);
+					out.write(chunk, 0, toCopy);
+					offset += toCopy;
+					length -= toCopy;
+				}
+			}
 			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -313,9 +451,24 @@ public class MemorySegment
 	 *                     such as an End-Of-File.
 	 */
 	public final MemorySegment put(DataInput in, int offset, int length) throws IOException {
-		if (offset >= 0 && offset < this.size && length >= 0 && offset <= this.size - length) {
-			in.readFully(this.memory, this.offset + offset, length);
+		final long pos = this.address + offset;
+		if (offset >= 0 && pos < this.addressLimit && length >= 0 && pos <= this.addressLimit - length) {
+			if (this.memory != null) {
+				in.readFully(this.memory, this.offset + offset, length);
+			} else {
+				// off-heap memory needs to be copied through a temporary array in chunks
+				final byte[] chunk = new byte[Math.min(length, COPY_CHUNK_SIZE)];
+				while (length > 0) {
+					final int toCopy = Math.min(length, chunk.length);
+					in.readFully(chunk, 0, toCopy);
+					put(offset, chunk, 0, toCopy);
+					offset += toCopy;
+					length -= toCopy;
+				}
+			}
 			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -332,8 +485,11 @@ public class MemorySegment
 	 *                                   size minus 1.
 	 */
 	public final boolean getBoolean(int index) {
-		if (index >= 0 && index < this.size) {
-			return this.memory[this.offset + index] != 0;
+		final long pos = this.address + index;
+		if (index >= 0 && pos < this.addressLimit) {
+			return UNSAFE.getByte(this.memory, pos) != 0;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -351,9 +507,12 @@ public class MemorySegment
 	 *                                   size minus 1.
 	 */
 	public final MemorySegment putBoolean(int index, boolean value) {
-		if (index >= 0 && index < this.size) {
-			this.memory[this.offset + index] = (byte) (value ? 1 : 0);
+		final long pos = this.address + index;
+		if (index >= 0 && pos < this.addressLimit) {
+			UNSAFE.putByte(this.memory, pos, (byte) (value ? 1 : 0));
 			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -370,9 +529,12 @@ public class MemorySegment
 	 *                                   size minus 2.
 	 */
 	public final char getChar(int index) {
-		if (index >= 0 && index < this.size - 1) {
-			return (char) ( ((this.memory[this.offset + index + 0] & 0xff) << 8) | 
-					         (this.memory[this.offset + index + 1] & 0xff) );
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			final char value = UNSAFE.getChar(this.memory, pos);
+			return LITTLE_ENDIAN ? Character.reverseBytes(value) : value;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -390,10 +552,12 @@ public class MemorySegment
 	 *                                   size minus 2.
 	 */
 	public final MemorySegment putChar(int index, char value) {
-		if (index >= 0 && index < this.size - 1) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 8);
-			this.memory[this.offset + index + 1] = (byte) value;
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			UNSAFE.putChar(this.memory, pos, LITTLE_ENDIAN ? Character.reverseBytes(value) : value);
 			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -410,10 +574,12 @@ public class MemorySegment
 	 *                                   size minus 2.
 	 */
 	public final short getShort(int index) {
-		if (index >= 0 && index < this.size - 1) {
-			return (short) (
-					((this.memory[this.offset + index + 0] & 0xff) << 8) |
-					((this.memory[this.offset + index + 1] & 0xff)) );
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			final short value = UNSAFE.getShort(this.memory, pos);
+			return LITTLE_ENDIAN ? Short.reverseBytes(value) : value;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -431,10 +597,12 @@ public class MemorySegment
 	 *                                   size minus 2.
 	 */
 	public final MemorySegment putShort(int index, short value) {
-		if (index >= 0 && index < this.size - 1) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 8);
-			this.memory[this.offset + index + 1] = (byte) value;
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			UNSAFE.putShort(this.memory, pos, LITTLE_ENDIAN ? Short.reverseBytes(value) : value);
 			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -451,11 +619,12 @@ public class MemorySegment
 	 *                                   size minus 4.
 	 */
 	public final int getInt(int index) {
-		if (index >= 0 && index < this.size - 3) {
-			return ((this.memory[this.offset + index + 0] & 0xff) << 24)
-				| ((this.memory[this.offset + index + 1] & 0xff) << 16)
-				| ((this.memory[this.offset + index + 2] & 0xff) << 8)
-				| ((this.memory[this.offset + index + 3] & 0xff) << 0);
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 4) {
+			final int value = UNSAFE.getInt(this.memory, pos);
+			return LITTLE_ENDIAN ? Integer.reverseBytes(value) : value;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -473,12 +642,12 @@ public class MemorySegment
 	 *                                   size minus 4.
 	 */
 	public final MemorySegment putInt(int index, int value) {
-		if (index >= 0 && index < this.size - 3) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 24);
-			this.memory[this.offset + index + 1] = (byte) (value >> 16);
-			this.memory[this.offset + index + 2] = (byte) (value >> 8);
-			this.memory[this.offset + index + 3] = (byte) value;
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 4) {
+			UNSAFE.putInt(this.memory, pos, LITTLE_ENDIAN ? Integer.reverseBytes(value) : value);
 			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -495,15 +664,12 @@ public class MemorySegment
 	 *                                   size minus 8.
 	 */
 	public final long getLong(int index) {
-		if (index >= 0 && index < this.size - 7) {
-			return (((long) this.memory[this.offset + index + 0] & 0xff) << 56)
-				| (((long) this.memory[this.offset + index + 1] & 0xff) << 48)
-				| (((long) this.memory[this.offset + index + 2] & 0xff) << 40)
-				| (((long) this.memory[this.offset + index + 3] & 0xff) << 32)
-				| (((long) this.memory[this.offset + index + 4] & 0xff) << 24)
-				| (((long) this.memory[this.offset + index + 5] & 0xff) << 16)
-				| (((long) this.memory[this.offset + index + 6] & 0xff) << 8)
-				| (((long) this.memory[this.offset + index + 7] & 0xff) << 0);
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 8) {
+			final long value = UNSAFE.getLong(this.memory, pos);
+			return LITTLE_ENDIAN ? Long.reverseBytes(value) : value;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -521,16 +687,12 @@ public class MemorySegment
 	 *                                   size minus 8.
 	 */
 	public final MemorySegment putLong(int index, long value) {
-		if (index >= 0 && index < this.size - 7) {
-			this.memory[this.offset + index + 0] = (byte) (value >> 56);
-			this.memory[this.offset + index + 1] = (byte) (value >> 48);
-			this.memory[this.offset + index + 2] = (byte) (value >> 40);
-			this.memory[this.offset + index + 3] = (byte) (value >> 32);
-			this.memory[this.offset + index + 4] = (byte) (value >> 24);
-			this.memory[this.offset + index + 5] = (byte) (value >> 16);
-			this.memory[this.offset + index + 6] = (byte) (value >> 8);
-			this.memory[this.offset + index + 7] = (byte) value;
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 8) {
+			UNSAFE.putLong(this.memory, pos, LITTLE_ENDIAN ? Long.reverseBytes(value) : value);
 			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
 		} else {
 			throw new IndexOutOfBoundsException();
 		}
@@ -562,7 +724,7 @@ public class MemorySegment
 	 *                                   size minus 4.
 	 */
 	public final MemorySegment putFloat(int index, float value) {
-		putLong(index, Float.floatToIntBits(value));
+		putInt(index, Float.floatToIntBits(value));
 		return this;
 	}
 	
@@ -595,4 +757,432 @@ public class MemorySegment
 		putLong(index, Double.doubleToLongBits(value));
 		return this;
 	}
+
+	// --------------------------------------------------------------------
+	//                  Native and Little Endian Access
+	// --------------------------------------------------------------------
+	
+	/**
+	 * Reads two bytes at the given position, composing them into a short value in the native byte order of
+	 * the platform. This is the fastest way to access the value, because it never needs to reorder the bytes.
+	 * It is meant for data that is written and read by the same process and is never exchanged.
+	 * 
+	 * @param index The position from which the memory will be read.
+	 * @return The short value at the given position.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 2.
+	 */
+	public final short getShortNative(int index) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			return UNSAFE.getShort(this.memory, pos);
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Writes two bytes containing the given short value, in the native byte order of the platform, into
+	 * this buffer at the given position.
+	 * 
+	 * @param index The position at which the memory will be written.
+	 * @param value The short value to be written.
+	 * @return This view itself.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 2.
+	 */
+	public final MemorySegment putShortNative(int index, short value) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			UNSAFE.putShort(this.memory, pos, value);
+			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Reads four bytes at the given position, composing them into a int value in the native byte order of
+	 * the platform. This is the fastest way to access the value, because it never needs to reorder the bytes.
+	 * It is meant for data that is written and read by the same process and is never exchanged.
+	 * 
+	 * @param index The position from which the memory will be read.
+	 * @return The int value at the given position.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 4.
+	 */
+	public final int getIntNative(int index) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 4) {
+			return UNSAFE.getInt(this.memory, pos);
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Writes four bytes containing the given int value, in the native byte order of the platform, into
+	 * this buffer at the given position.
+	 * 
+	 * @param index The position at which the memory will be written.
+	 * @param value The int value to be written.
+	 * @return This view itself.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 4.
+	 */
+	public final MemorySegment putIntNative(int index, int value) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 4) {
+			UNSAFE.putInt(this.memory, pos, value);
+			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Reads eight bytes at the given position, composing them into a long value in the native byte order of
+	 * the platform. This is the fastest way to access the value, because it never needs to reorder the bytes.
+	 * It is meant for data that is written and read by the same process and is never exchanged.
+	 * 
+	 * @param index The position from which the memory will be read.
+	 * @return The long value at the given position.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 8.
+	 */
+	public final long getLongNative(int index) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 8) {
+			return UNSAFE.getLong(this.memory, pos);
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Writes eight bytes containing the given long value, in the native byte order of the platform, into
+	 * this buffer at the given position.
+	 * 
+	 * @param index The position at which the memory will be written.
+	 * @param value The long value to be written.
+	 * @return This view itself.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 8.
+	 */
+	public final MemorySegment putLongNative(int index, long value) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 8) {
+			UNSAFE.putLong(this.memory, pos, value);
+			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Reads two bytes at the given position, composing them into a short value in little endian byte order.
+	 * 
+	 * @param index The position from which the memory will be read.
+	 * @return The short value at the given position.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 2.
+	 */
+	public final short getShortLittleEndian(int index) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			final short value = UNSAFE.getShort(this.memory, pos);
+			return LITTLE_ENDIAN ? value : Short.reverseBytes(value);
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Writes two bytes containing the given short value, in little endian byte order, into this buffer at
+	 * the given position.
+	 * 
+	 * @param index The position at which the memory will be written.
+	 * @param value The short value to be written.
+	 * @return This view itself.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 2.
+	 */
+	public final MemorySegment putShortLittleEndian(int index, short value) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 2) {
+			UNSAFE.putShort(this.memory, pos, LITTLE_ENDIAN ? value : Short.reverseBytes(value));
+			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Reads four bytes at the given position, composing them into a int value in little endian byte order.
+	 * 
+	 * @param index The position from which the memory will be read.
+	 * @return The int value at the given position.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 4.
+	 */
+	public final int getIntLittleEndian(int index) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 4) {
+			final int value = UNSAFE.getInt(this.memory, pos);
+			return LITTLE_ENDIAN ? value : Integer.reverseBytes(value);
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Writes four bytes containing the given int value, in little endian byte order, into this buffer at
+	 * the given position.
+	 * 
+	 * @param index The position at which the memory will be written.
+	 * @param value The int value to be written.
+	 * @return This view itself.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 4.
+	 */
+	public final MemorySegment putIntLittleEndian(int index, int value) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 4) {
+			UNSAFE.putInt(this.memory, pos, LITTLE_ENDIAN ? value : Integer.reverseBytes(value));
+			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Reads eight bytes at the given position, composing them into a long value in little endian byte order.
+	 * 
+	 * @param index The position from which the memory will be read.
+	 * @return The long value at the given position.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 8.
+	 */
+	public final long getLongLittleEndian(int index) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 8) {
+			final long value = UNSAFE.getLong(this.memory, pos);
+			return LITTLE_ENDIAN ? value : Long.reverseBytes(value);
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Writes eight bytes containing the given long value, in little endian byte order, into this buffer at
+	 * the given position.
+	 * 
+	 * @param index The position at which the memory will be written.
+	 * @param value The long value to be written.
+	 * @return This view itself.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if the index is negative, or larger then the segment
+	 *                                   size minus 8.
+	 */
+	public final MemorySegment putLongLittleEndian(int index, long value) {
+		final long pos = this.address + index;
+		if (index >= 0 && pos <= this.addressLimit - 8) {
+			UNSAFE.putLong(this.memory, pos, LITTLE_ENDIAN ? value : Long.reverseBytes(value));
+			return this;
+		} else if (this.address > this.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	// --------------------------------------------------------------------
+	//                    Bulk Operations between Segments
+	// --------------------------------------------------------------------
+	
+	/**
+	 * Bulk copy method. Copies <code>numBytes</code> bytes from this memory segment, starting at position
+	 * <code>offset</code>, to the target memory segment, starting at position <code>targetOffset</code>.
+	 * The two regions may be in the same segment, but must not overlap.
+	 * 
+	 * @param offset The position where the bytes are started to be read from in this memory segment.
+	 * @param target The memory segment to copy the bytes to.
+	 * @param targetOffset The position in the target memory segment to copy the chunk to.
+	 * @param numBytes The number of bytes to copy.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if either of the offsets is negative, or if the source or the
+	 *                                   target region exceeds the bounds of its segment.
+	 */
+	public final void copyTo(int offset, MemorySegment target, int targetOffset, int numBytes)
+	{
+		final long thisPos = this.address + offset;
+		final long otherPos = target.address + targetOffset;
+		
+		if ((numBytes | offset | targetOffset) >= 0 &&
+				thisPos <= this.addressLimit - numBytes && otherPos <= target.addressLimit - numBytes)
+		{
+			copyMemory(this.memory, thisPos, target.memory, otherPos, numBytes);
+		}
+		else if (this.address > this.addressLimit || target.address > target.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		}
+		else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+	
+	/**
+	 * Compares two memory regions byte-wise, treating the bytes as unsigned values. The regions are compared
+	 * eight bytes at a time, as big endian longs, so the comparison yields the same result as a lexicographic
+	 * comparison of the individual bytes, but requires far fewer operations.
+	 * 
+	 * @param seg2 The memory segment holding the second region.
+	 * @param offset1 The position of the first region in this memory segment.
+	 * @param offset2 The position of the second region in the other memory segment.
+	 * @param len The number of bytes to compare.
+	 * @return A negative value, zero, or a positive value, if the first region is less than, equal to, or
+	 *         greater than the second region.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if either of the regions exceeds the bounds of its segment.
+	 */
+	public final int compare(MemorySegment seg2, int offset1, int offset2, int len)
+	{
+		while (len >= 8) {
+			final long l1 = getLong(offset1);
+			final long l2 = seg2.getLong(offset2);
+			
+			if (l1 != l2) {
+				// unsigned comparison: flip the sign bits
+				return (l1 ^ Long.MIN_VALUE) < (l2 ^ Long.MIN_VALUE) ? -1 : 1;
+			}
+			
+			offset1 += 8;
+			offset2 += 8;
+			len -= 8;
+		}
+		while (len > 0) {
+			final int b1 = get(offset1) & 0xff;
+			final int b2 = seg2.get(offset2) & 0xff;
+			final int cmp = b1 - b2;
+			if (cmp != 0) {
+				return cmp;
+			}
+			offset1++;
+			offset2++;
+			len--;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Swaps bytes between two memory regions, using the given auxiliary buffer.
+	 * 
+	 * @param tempBuffer The auxiliary buffer in which to put the bytes of the first region temporarily. Must be
+	 *                   at least <code>len</code> bytes long.
+	 * @param seg2 The memory segment holding the second region.
+	 * @param offset1 The position of the first region in this memory segment.
+	 * @param offset2 The position of the second region in the other memory segment.
+	 * @param len The number of bytes to swap.
+	 * 
+	 * @throws IndexOutOfBoundsException Thrown, if either of the regions exceeds the bounds of its segment, or
+	 *                                   if the auxiliary buffer is too small.
+	 */
+	public final void swapBytes(byte[] tempBuffer, MemorySegment seg2, int offset1, int offset2, int len)
+	{
+		final long thisPos = this.address + offset1;
+		final long otherPos = seg2.address + offset2;
+		
+		if ((offset1 | offset2 | len | (tempBuffer.length - len)) >= 0 &&
+				thisPos <= this.addressLimit - len && otherPos <= seg2.addressLimit - len)
+		{
+			// this -> temp buffer
+			copyMemory(this.memory, thisPos, tempBuffer, BYTE_ARRAY_BASE_OFFSET, len);
+			// other -> this
+			copyMemory(seg2.memory, otherPos, this.memory, thisPos, len);
+			// temp buffer -> other
+			copyMemory(tempBuffer, BYTE_ARRAY_BASE_OFFSET, seg2.memory, otherPos, len);
+		}
+		else if (this.address > this.addressLimit || seg2.address > seg2.addressLimit) {
+			throw new IllegalStateException("The memory segment has been freed.");
+		}
+		else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+	
+	// --------------------------------------------------------------------
+	//                            Utilities
+	// --------------------------------------------------------------------
+	
+	/**
+	 * Copies bytes between two memory regions, each of which is either part of a byte array or off-heap
+	 * memory. The positions follow the addressing of the segments: relative to the array for heap memory
+	 * (including the array base offset) and absolute for off-heap memory, where the array is <code>null</code>.
+	 * <p>
+	 * Java 6 can copy in bulk only between two arrays or between two absolute addresses. Copies between
+	 * heap and off-heap memory therefore move eight bytes at a time.
+	 * 
+	 * @param src The array holding the source region, or <code>null</code>, if it is off-heap memory.
+	 * @param srcPos The address of the source region.
+	 * @param dst The array holding the target region, or <code>null</code>, if it is off-heap memory.
+	 * @param dstPos The address of the target region.
+	 * @param numBytes The number of bytes to copy.
+	 */
+	private static final void copyMemory(byte[] src, long srcPos, byte[] dst, long dstPos, int numBytes)
+	{
+		if (src != null && dst != null) {
+			System.arraycopy(src, (int) (srcPos - BYTE_ARRAY_BASE_OFFSET),
+				dst, (int) (dstPos - BYTE_ARRAY_BASE_OFFSET), numBytes);
+		}
+		else if (src == null && dst == null) {
+			UNSAFE.copyMemory(srcPos, dstPos, numBytes);
+		}
+		else {
+			while (numBytes >= 8) {
+				UNSAFE.putLong(dst, dstPos, UNSAFE.getLong(src, srcPos));
+				srcPos += 8;
+				dstPos += 8;
+				numBytes -= 8;
+			}
+			while (numBytes > 0) {
+				UNSAFE.putByte(dst, dstPos, UNSAFE.getByte(src, srcPos));
+				srcPos++;
+				dstPos++;
+				numBytes--;
+			}
+		}
+	}
 }
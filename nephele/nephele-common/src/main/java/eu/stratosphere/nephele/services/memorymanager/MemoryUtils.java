@@ -0,0 +1,94 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.services.memorymanager;
+
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Utility class for low-level memory access. It gives access to the <code>sun.misc.Unsafe</code> instance that is
+ * used by the {@link MemorySegment} to access heap and off-heap memory through the same code path.
+ */
+public final class MemoryUtils
+{
+	/**
+	 * The unsafe handle for low-level memory access.
+	 */
+	@SuppressWarnings("restriction")
+	public static final sun.misc.Unsafe UNSAFE = getUnsafe();
+
+	/**
+	 * The native byte order of the platform on which the system currently runs.
+	 */
+	public static final ByteOrder NATIVE_BYTE_ORDER = ByteOrder.nativeOrder();
+
+	/**
+	 * The offset of the address field in the {@link java.nio.Buffer} class.
+	 */
+	private static final long BUFFER_ADDRESS_FIELD_OFFSET = getBufferAddressFieldOffset();
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the absolute memory address of the first byte of the given direct byte buffer.
+	 *
+	 * @param buffer The direct byte buffer.
+	 * @return The address of the buffer's memory.
+	 * @throws IllegalArgumentException Thrown, if the buffer is not a direct buffer.
+	 */
+	@SuppressWarnings("restriction")
+	public static long getAddress(ByteBuffer buffer)
+	{
+		if (buffer == null || !buffer.isDirect()) {
+			throw new IllegalArgumentException("The given buffer is not a direct byte buffer.");
+		}
+		return UNSAFE.getLong(buffer, BUFFER_ADDRESS_FIELD_OFFSET);
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	@SuppressWarnings("restriction")
+	private static sun.misc.Unsafe getUnsafe()
+	{
+		try {
+			final Field unsafeField = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+			unsafeField.setAccessible(true);
+			return (sun.misc.Unsafe) unsafeField.get(null);
+		}
+		catch (Exception e) {
+			throw new RuntimeException("The memory utilities could not access the unsafe handle: " + e.getMessage(), e);
+		}
+	}
+
+	@SuppressWarnings("restriction")
+	private static long getBufferAddressFieldOffset()
+	{
+		try {
+			return UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+		}
+		catch (Exception e) {
+			throw new RuntimeException("The memory utilities could not locate the address of direct byte buffers: " +
+				e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private MemoryUtils() {}
+}
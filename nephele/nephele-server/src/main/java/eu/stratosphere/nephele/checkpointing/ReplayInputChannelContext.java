@@ -160,6 +160,17 @@ final class ReplayInputChannelContext implements InputChannelContext {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void reportCorruptedEnvelope(final int sequenceNumber) {
+
+		if (this.encapsulatedContext != null) {
+			this.encapsulatedContext.reportCorruptedEnvelope(sequenceNumber);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
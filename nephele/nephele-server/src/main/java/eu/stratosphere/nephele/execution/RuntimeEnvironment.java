@@ -36,6 +36,8 @@ import eu.stratosphere.nephele.io.ChannelSelector;
 import eu.stratosphere.nephele.io.GateID;
 import eu.stratosphere.nephele.io.InputGate;
 import eu.stratosphere.nephele.io.OutputGate;
+import eu.stratosphere.nephele.io.OutputGateFlushPolicy;
+import eu.stratosphere.nephele.io.OutputGateFlushRequests;
 import eu.stratosphere.nephele.io.RecordFactory;
 import eu.stratosphere.nephele.io.RuntimeInputGate;
 import eu.stratosphere.nephele.io.RuntimeOutputGate;
@@ -88,6 +90,11 @@ public class RuntimeEnvironment implements Environment, Runnable {
 	 */
 	private final List<RuntimeInputGate<? extends Record>> inputGates = new CopyOnWriteArrayList<RuntimeInputGate<? extends Record>>();
 
+	/**
+	 * The requests of the flush timer to ship the expired buffers of the task's output gates.
+	 */
+	private final OutputGateFlushRequests flushRequests = new OutputGateFlushRequests();
+
 	/**
 	 * Queue of gate deployment descriptors for yet to be bound output gates.
 	 */
@@ -470,7 +477,8 @@ public class RuntimeEnvironment implements Environment, Runnable {
 
 		if (this.unboundOutputGates == null) {
 			final RuntimeOutputGate<T> rog = new RuntimeOutputGate<T>(getJobID(), null, getNumberOfOutputGates(),
-				ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, selector, isBroadcast, null);
+				ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, selector, isBroadcast, null,
+				OutputGateFlushPolicy.DEFAULT, this.flushRequests);
 
 			this.outputGates.add(rog);
 			return rog;
@@ -490,7 +498,8 @@ public class RuntimeEnvironment implements Environment, Runnable {
 
 		final RuntimeOutputGate<T> rog = new RuntimeOutputGate<T>(getJobID(), gdd.getGateID(),
 			getNumberOfOutputGates(), gdd.getChannelType(), gdd.getCompressionLevel(), selector, isBroadcast,
-			serializerFactory);
+			serializerFactory, OutputGateFlushPolicy.read(this.jobConfiguration, this.taskConfiguration,
+				getNumberOfOutputGates()), this.flushRequests);
 
 		this.outputGates.add(rog);
 		return rog;
@@ -504,7 +513,7 @@ public class RuntimeEnvironment implements Environment, Runnable {
 
 		if (this.unboundInputGates == null) {
 			final RuntimeInputGate<T> rig = new RuntimeInputGate<T>(getJobID(), null, getNumberOfInputGates(),
-				ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, null);
+				ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, null, this.flushRequests);
 
 			this.inputGates.add(rig);
 			return rig;
@@ -523,7 +532,7 @@ public class RuntimeEnvironment implements Environment, Runnable {
 		}
 
 		final RuntimeInputGate<T> rig = new RuntimeInputGate<T>(getJobID(), gdd.getGateID(), getNumberOfInputGates(),
-			gdd.getChannelType(), gdd.getCompressionLevel(), deserializerFactory);
+			gdd.getChannelType(), gdd.getCompressionLevel(), deserializerFactory, this.flushRequests);
 
 		this.inputGates.add(rig);
 		return rig;
@@ -0,0 +1,98 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.io;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Collects the requests of the flush timer to ship the expired buffers of a task's output gates. The timer only
+ * registers a request and wakes up the task thread, the buffers are shipped by the task thread itself the next time it
+ * emits a record or while it waits for input. This way, a slow receiver can neither block the timer shared by all
+ * output gates nor forward envelopes on a thread other than the task thread.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class OutputGateFlushRequests {
+
+	/**
+	 * The output gates whose expired buffers shall be shipped.
+	 */
+	private final Queue<RuntimeOutputGate<?>> pendingRequests = new ConcurrentLinkedQueue<RuntimeOutputGate<?>>();
+
+	/**
+	 * The thread executing the task, <code>null</code> if no output gate has scheduled a flush task yet.
+	 */
+	private volatile Thread taskThread = null;
+
+	/**
+	 * Sets the thread executing the task which is woken up when a flush is requested.
+	 * 
+	 * @param taskThread
+	 *        the thread executing the task
+	 */
+	void setTaskThread(final Thread taskThread) {
+
+		this.taskThread = taskThread;
+	}
+
+	/**
+	 * Requests the expired buffers of the given output gate to be shipped and wakes up the task thread in case it is
+	 * waiting for input.
+	 * 
+	 * @param outputGate
+	 *        the output gate whose expired buffers shall be shipped
+	 */
+	void requestFlush(final RuntimeOutputGate<?> outputGate) {
+
+		this.pendingRequests.add(outputGate);
+
+		final Thread thread = this.taskThread;
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	/**
+	 * Checks whether a flush has been requested which has not been processed yet.
+	 * 
+	 * @return <code>true</code> if at least one flush request is pending, <code>false</code> otherwise
+	 */
+	public boolean hasPendingRequests() {
+
+		return !this.pendingRequests.isEmpty();
+	}
+
+	/**
+	 * Ships the expired buffers of all output gates for which a flush has been requested. This method must only be
+	 * called by the task thread.
+	 * 
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while shipping the buffers
+	 * @throws InterruptedException
+	 *         thrown if the task thread is interrupted while shipping the buffers
+	 */
+	public void processRequests() throws IOException, InterruptedException {
+
+		RuntimeOutputGate<?> outputGate = this.pendingRequests.poll();
+		while (outputGate != null) {
+			outputGate.flushExpiredWriteBuffers();
+			outputGate = this.pendingRequests.poll();
+		}
+	}
+}
@@ -20,9 +20,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -72,7 +73,13 @@ public class RuntimeInputGate<T extends Record> extends AbstractGate<T> implemen
 	/**
 	 * Queue with indices of channels that store at least one available record.
 	 */
-	private final BlockingQueue<Integer> availableChannels = new LinkedBlockingQueue<Integer>();
+	private final Queue<Integer> availableChannels = new ConcurrentLinkedQueue<Integer>();
+
+	/**
+	 * The thread which is currently parked waiting for a channel to become available, <code>null</code> if no thread
+	 * is waiting.
+	 */
+	private volatile Thread waitingThread = null;
 
 	/**
 	 * The listener object to be notified when a channel has at least one record available.
@@ -95,6 +102,12 @@ public class RuntimeInputGate<T extends Record> extends AbstractGate<T> implemen
 	 */
 	private Thread executingThread = null;
 
+	/**
+	 * The flush requests of the task this gate belongs to, <code>null</code> if the task's output gates do not
+	 * request flushes.
+	 */
+	private final OutputGateFlushRequests flushRequests;
+
 	/**
 	 * Constructs a new runtime input gate.
 	 * 
@@ -110,11 +123,16 @@ public class RuntimeInputGate<T extends Record> extends AbstractGate<T> implemen
 	 *        the compression level of the channels which are connected to this input gate
 	 * @param deserializerFactory
 	 *        the factory for the record deserializer
+	 * @param flushRequests
+	 *        the flush requests of the task this gate belongs to which are processed while waiting for input, may be
+	 *        <code>null</code>
 	 */
 	public RuntimeInputGate(final JobID jobID, final GateID gateID, final int index, final ChannelType channelType,
-			final CompressionLevel compressionLevel, final RecordDeserializerFactory<T> deserializerFactory) {
+			final CompressionLevel compressionLevel, final RecordDeserializerFactory<T> deserializerFactory,
+			final OutputGateFlushRequests flushRequests) {
 		super(jobID, gateID, index, channelType, compressionLevel);
 		this.deserializerFactory = deserializerFactory;
+		this.flushRequests = flushRequests;
 	}
 
 	/**
@@ -258,6 +276,11 @@ public class RuntimeInputGate<T extends Record> extends AbstractGate<T> implemen
 
 		this.availableChannels.add(Integer.valueOf(channelIndex));
 
+		final Thread waiter = this.waitingThread;
+		if (waiter != null) {
+			LockSupport.unpark(waiter);
+		}
+
 		final RecordAvailabilityListener<T> listener = this.recordAvailabilityListener.get();
 		if (listener != null) {
 			listener.reportRecordAvailability(this);
@@ -267,13 +290,48 @@ public class RuntimeInputGate<T extends Record> extends AbstractGate<T> implemen
 	/**
 	 * This method returns the index of a channel which has at least
 	 * one record available. The method may block until at least one
-	 * channel has become ready.
+	 * channel has become ready. While waiting, the method ships the expired buffers of the task's output gates whenever
+	 * the flush timer requests it.
 	 * 
 	 * @return the index of the channel which has at least one record available
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while shipping expired buffers
+	 * @throws InterruptedException
+	 *         thrown if the thread is interrupted while waiting
 	 */
-	public int waitForAnyChannelToBecomeAvailable() throws InterruptedException {
+	public int waitForAnyChannelToBecomeAvailable() throws IOException, InterruptedException {
+
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		Integer channelIndex = this.availableChannels.poll();
+		while (channelIndex == null) {
+
+			if (this.flushRequests != null) {
+				this.flushRequests.processRequests();
+			}
+
+			this.waitingThread = Thread.currentThread();
+
+			// Check again after announcing the wait, so a concurrent notification cannot get lost
+			channelIndex = this.availableChannels.poll();
+			if (channelIndex == null && (this.flushRequests == null || !this.flushRequests.hasPendingRequests())) {
+
+				LockSupport.park(this);
+
+				if (Thread.interrupted()) {
+					this.waitingThread = null;
+					throw new InterruptedException();
+				}
+
+				channelIndex = this.availableChannels.poll();
+			}
+
+			this.waitingThread = null;
+		}
 
-		return this.availableChannels.take().intValue();
+		return channelIndex.intValue();
 	}
 
 	/**
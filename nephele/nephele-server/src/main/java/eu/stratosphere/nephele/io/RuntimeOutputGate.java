@@ -18,6 +18,13 @@ package eu.stratosphere.nephele.io;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -41,7 +48,13 @@ import eu.stratosphere.nephele.types.Record;
  * record writers and output channels. As channels, output gates are always
  * parameterized to a specific type of record which they can transport.
  * <p>
- * This class is in general not thread-safe.
+ * This class is in general not thread-safe. If the gate's {@link OutputGateFlushPolicy} defines a buffer timeout, a
+ * timer periodically requests the expired buffers to be shipped. The timer only registers the request with the task's
+ * {@link OutputGateFlushRequests}, which the task thread processes when it emits a record or waits for input. If the
+ * task thread has not processed the request by the next period, for example because it is busy in user code, the
+ * buffers are shipped by a flush thread. The gate then guards all operations on its channels with a lock, so the
+ * flush thread and the task thread never access a channel concurrently. The timer itself never accesses the channels,
+ * so a flush blocked by a slow receiver does not delay the flushes of other gates.
  * 
  * @author warneke
  * @param <T>
@@ -79,6 +92,49 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 	 */
 	private Thread executingThread = null;
 
+	/**
+	 * The flush policy of this output gate.
+	 */
+	private final OutputGateFlushPolicy flushPolicy;
+
+	/**
+	 * The flush requests of the task this gate belongs to.
+	 */
+	private final OutputGateFlushRequests flushRequests;
+
+	/**
+	 * Stores whether the flush timer has requested to ship the expired buffers of this gate and the request has not
+	 * been processed yet.
+	 */
+	private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+	/**
+	 * Stores whether the expired buffers of this gate have been handed to a flush thread and the flush has not started
+	 * yet.
+	 */
+	private final AtomicBoolean asynchronousFlushScheduled = new AtomicBoolean(false);
+
+	/**
+	 * The lock guarding the output channels against concurrent access by a flush thread, <code>null</code> if the flush
+	 * policy does not define a buffer timeout.
+	 */
+	private final ReentrantLock channelLock;
+
+	/**
+	 * An exception which occurred while a flush thread shipped expired buffers. It is rethrown to the task thread.
+	 */
+	private volatile IOException flushException = null;
+
+	/**
+	 * The maximum age of a buffer in milliseconds before it is shipped on a flush request.
+	 */
+	private final long maximumBufferAge;
+
+	/**
+	 * The task which periodically requests to ship expired buffers, <code>null</code> if it has not been scheduled yet.
+	 */
+	private FlushTask flushTask = null;
+
 	/**
 	 * Constructs a new runtime output gate.
 	 * 
@@ -99,15 +155,32 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 	 *        output channels, <code>false</code> otherwise
 	 * @param serializerFactory
 	 *        the factory for the record serializer
+	 * @param flushPolicy
+	 *        the policy determining when the output channels ship buffers which are not yet full
+	 * @param flushRequests
+	 *        the flush requests of the task this gate belongs to, may be <code>null</code> if the flush policy does not
+	 *        define a buffer timeout
 	 */
 	public RuntimeOutputGate(final JobID jobID, final GateID gateID, final int index, final ChannelType channelType,
 			final CompressionLevel compressionLevel, final ChannelSelector<T> channelSelector,
-			final boolean isBroadcast, final RecordSerializerFactory<T> serializerFactory) {
+			final boolean isBroadcast, final RecordSerializerFactory<T> serializerFactory,
+			final OutputGateFlushPolicy flushPolicy, final OutputGateFlushRequests flushRequests) {
 
 		super(jobID, gateID, index, channelType, compressionLevel);
 
 		this.isBroadcast = isBroadcast;
 		this.serializerFactory = serializerFactory;
+		this.flushPolicy = flushPolicy;
+		this.flushRequests = flushRequests;
+
+		if (this.flushPolicy.getBufferTimeout() > 0L && this.flushRequests == null) {
+			throw new IllegalArgumentException("A flush policy with a buffer timeout requires flush requests");
+		}
+
+		// Buffers expire after half the timeout. The timer runs four times per timeout, so an expired buffer is shipped
+		// by the task thread or, one period later, by a flush thread before the timeout has passed.
+		this.maximumBufferAge = this.flushPolicy.getBufferTimeout() / 2L;
+		this.channelLock = (this.flushPolicy.getBufferTimeout() > 0L) ? new ReentrantLock() : null;
 
 		if (this.isBroadcast) {
 			this.channelSelector = null;
@@ -128,6 +201,7 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 	 */
 	private void addOutputChannel(AbstractOutputChannel<T> outputChannel) {
 		if (!this.outputChannels.contains(outputChannel)) {
+			outputChannel.setFlushPolicy(this.flushPolicy);
 			this.outputChannels.add(outputChannel);
 		}
 	}
@@ -211,10 +285,18 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 	 */
 	@Override
 	public void requestClose() throws IOException, InterruptedException {
-		// Close all output channels
-		for (int i = 0; i < this.outputChannels.size(); i++) {
-			final AbstractOutputChannel<T> outputChannel = this.outputChannels.get(i);
-			outputChannel.requestClose();
+
+		cancelFlushTask();
+
+		lockChannels();
+		try {
+			// Close all output channels
+			for (int i = 0; i < this.outputChannels.size(); i++) {
+				final AbstractOutputChannel<T> outputChannel = this.outputChannels.get(i);
+				outputChannel.requestClose();
+			}
+		} finally {
+			unlockChannels();
 		}
 	}
 
@@ -226,11 +308,16 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 
 		boolean allClosed = true;
 
-		for (int i = 0; i < this.outputChannels.size(); i++) {
-			final AbstractOutputChannel<T> outputChannel = this.outputChannels.get(i);
-			if (!outputChannel.isClosed()) {
-				allClosed = false;
+		lockChannels();
+		try {
+			for (int i = 0; i < this.outputChannels.size(); i++) {
+				final AbstractOutputChannel<T> outputChannel = this.outputChannels.get(i);
+				if (!outputChannel.isClosed()) {
+					allClosed = false;
+				}
 			}
+		} finally {
+			unlockChannels();
 		}
 
 		return allClosed;
@@ -250,6 +337,40 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 			throw new InterruptedException();
 		}
 
+		if (this.channelLock == null) {
+			writeRecordToChannels(record);
+			return;
+		}
+
+		checkFlushException();
+
+		if (this.flushTask == null) {
+			scheduleFlushTask();
+		}
+
+		this.channelLock.lock();
+		try {
+			writeRecordToChannels(record);
+		} finally {
+			this.channelLock.unlock();
+		}
+
+		// Ship the buffers of the task's output gates whose timeout has expired in the meantime
+		this.flushRequests.processRequests();
+	}
+
+	/**
+	 * Writes the given record to the output channels selected for it.
+	 * 
+	 * @param record
+	 *        the record to be written
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while writing the record
+	 * @throws InterruptedException
+	 *         thrown if the thread is interrupted while writing the record
+	 */
+	private void writeRecordToChannels(final T record) throws IOException, InterruptedException {
+
 		if (this.isBroadcast) {
 
 			if (getChannelType() == ChannelType.INMEMORY) {
@@ -299,10 +420,15 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 	@Override
 	public void publishEvent(AbstractTaskEvent event) throws IOException, InterruptedException {
 
-		// Copy event to all connected channels
-		final Iterator<AbstractOutputChannel<T>> it = this.outputChannels.iterator();
-		while (it.hasNext()) {
-			it.next().transferEvent(event);
+		lockChannels();
+		try {
+			// Copy event to all connected channels
+			final Iterator<AbstractOutputChannel<T>> it = this.outputChannels.iterator();
+			while (it.hasNext()) {
+				it.next().transferEvent(event);
+			}
+		} finally {
+			unlockChannels();
 		}
 	}
 
@@ -311,10 +437,18 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 	 */
 	@Override
 	public void flush() throws IOException, InterruptedException {
-		// Flush all connected channels
-		final Iterator<AbstractOutputChannel<T>> it = this.outputChannels.iterator();
-		while (it.hasNext()) {
-			it.next().flush();
+
+		checkFlushException();
+
+		lockChannels();
+		try {
+			// Flush all connected channels
+			final Iterator<AbstractOutputChannel<T>> it = this.outputChannels.iterator();
+			while (it.hasNext()) {
+				it.next().flush();
+			}
+		} finally {
+			unlockChannels();
 		}
 	}
 
@@ -342,10 +476,17 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 	@Override
 	public void releaseAllChannelResources() {
 
-		final Iterator<AbstractOutputChannel<T>> it = this.outputChannels.iterator();
+		cancelFlushTask();
 
-		while (it.hasNext()) {
-			it.next().releaseAllResources();
+		lockChannels();
+		try {
+			final Iterator<AbstractOutputChannel<T>> it = this.outputChannels.iterator();
+
+			while (it.hasNext()) {
+				it.next().releaseAllResources();
+			}
+		} finally {
+			unlockChannels();
 		}
 	}
 
@@ -395,4 +536,186 @@ public class RuntimeOutputGate<T extends Record> extends AbstractGate<T> impleme
 
 		return null;
 	}
+
+	/**
+	 * Acquires the lock guarding the output channels if the flush policy requires one.
+	 */
+	private void lockChannels() {
+
+		if (this.channelLock != null) {
+			this.channelLock.lock();
+		}
+	}
+
+	/**
+	 * Releases the lock guarding the output channels if the flush policy requires one.
+	 */
+	private void unlockChannels() {
+
+		if (this.channelLock != null) {
+			this.channelLock.unlock();
+		}
+	}
+
+	/**
+	 * Rethrows an exception which occurred while a flush thread shipped expired buffers.
+	 * 
+	 * @throws IOException
+	 *         the exception which occurred while shipping expired buffers
+	 */
+	private void checkFlushException() throws IOException {
+
+		final IOException ioe = this.flushException;
+		if (ioe != null) {
+			throw ioe;
+		}
+	}
+
+	/**
+	 * Schedules the task which periodically requests to ship the expired buffers of this gate.
+	 */
+	private synchronized void scheduleFlushTask() {
+
+		if (this.flushTask != null) {
+			return;
+		}
+
+		this.flushRequests.setTaskThread(this.executingThread);
+
+		final long period = Math.max(1L, this.flushPolicy.getBufferTimeout() / 4L);
+		this.flushTask = new FlushTask();
+		FlushTimerHolder.FLUSH_TIMER.schedule(this.flushTask, period, period);
+	}
+
+	/**
+	 * Cancels the task which periodically requests to ship the expired buffers of this gate.
+	 */
+	private synchronized void cancelFlushTask() {
+
+		if (this.flushTask != null) {
+			this.flushTask.cancel();
+		}
+	}
+
+	/**
+	 * Called by the flush timer to request the expired buffers of this gate to be shipped. The request is registered
+	 * at most once until the task thread has processed it. If the task thread has not processed the previous request
+	 * by now, the buffers are handed to a flush thread.
+	 */
+	void requestFlush() {
+
+		if (this.flushRequested.compareAndSet(false, true)) {
+			this.flushRequests.requestFlush(this);
+			return;
+		}
+
+		if (this.asynchronousFlushScheduled.compareAndSet(false, true)) {
+			FlushThreadHolder.FLUSH_THREADS.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					flushExpiredWriteBuffersAsynchronously();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Ships the buffers of all output channels which have been requested before the maximum buffer age. This method
+	 * is called by the task thread to process a flush request.
+	 * 
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while shipping the buffers
+	 * @throws InterruptedException
+	 *         thrown if the task thread is interrupted while shipping the buffers
+	 */
+	void flushExpiredWriteBuffers() throws IOException, InterruptedException {
+
+		this.channelLock.lock();
+		try {
+			this.flushRequested.set(false);
+
+			final long expiryTime = System.currentTimeMillis() - this.maximumBufferAge;
+			for (int i = 0; i < this.outputChannels.size(); ++i) {
+				this.outputChannels.get(i).flushExpiredWriteBuffer(expiryTime);
+			}
+		} finally {
+			this.channelLock.unlock();
+		}
+	}
+
+	/**
+	 * Ships the expired buffers on behalf of a task thread which has not processed the flush request in time. The
+	 * method gives up immediately if the task thread is currently accessing the channels, since the task thread then
+	 * processes the request itself once it has written the record.
+	 */
+	private void flushExpiredWriteBuffersAsynchronously() {
+
+		this.asynchronousFlushScheduled.set(false);
+
+		if (!this.channelLock.tryLock()) {
+			return;
+		}
+
+		try {
+			flushExpiredWriteBuffers();
+		} catch (IOException ioe) {
+			this.flushException = ioe;
+			cancelFlushTask();
+		} catch (InterruptedException ie) {
+			this.flushException = new IOException("Flush thread has been interrupted while shipping expired buffers");
+			cancelFlushTask();
+		} finally {
+			this.channelLock.unlock();
+		}
+	}
+
+	/**
+	 * The flush task periodically requests the task thread to ship the expired buffers of the output gate's channels.
+	 * It never accesses the channels itself, so it cannot block the timer shared by all output gates.
+	 */
+	private final class FlushTask extends TimerTask {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run() {
+
+			requestFlush();
+		}
+	}
+
+	/**
+	 * Lazily creates the timer shared by the flush tasks of all output gates within the JVM.
+	 */
+	private static final class FlushTimerHolder {
+
+		/**
+		 * The timer executing the flush tasks, running as a daemon thread.
+		 */
+		private static final Timer FLUSH_TIMER = new Timer("Output Gate Flush Timer", true);
+	}
+
+	/**
+	 * Lazily creates the flush threads shared by all output gates within the JVM. A flush thread ships the expired
+	 * buffers of a gate whose task thread has not processed the flush request in time. Each gate hands at most one
+	 * flush to the threads at a time, so a gate blocked by a slow receiver occupies at most one thread.
+	 */
+	private static final class FlushThreadHolder {
+
+		/**
+		 * The daemon threads executing the flushes.
+		 */
+		private static final ExecutorService FLUSH_THREADS = Executors.newCachedThreadPool(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+
+				final Thread thread = new Thread(runnable, "Output Gate Flush Thread");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
 }
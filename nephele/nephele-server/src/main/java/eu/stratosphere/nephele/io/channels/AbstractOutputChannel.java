@@ -23,6 +23,7 @@ import org.apache.commons.logging.LogFactory;
 import eu.stratosphere.nephele.event.task.AbstractEvent;
 import eu.stratosphere.nephele.event.task.AbstractTaskEvent;
 import eu.stratosphere.nephele.io.OutputGate;
+import eu.stratosphere.nephele.io.OutputGateFlushPolicy;
 import eu.stratosphere.nephele.io.compression.CompressionEvent;
 import eu.stratosphere.nephele.io.compression.CompressionException;
 import eu.stratosphere.nephele.io.compression.CompressionLevel;
@@ -81,6 +82,32 @@ public abstract class AbstractOutputChannel<T extends Record> extends AbstractCh
 	 */
 	private long amountOfDataTransmitted = 0L;
 
+	/**
+	 * The maximum time in milliseconds a record may wait in a partially filled buffer, <code>0</code> to wait until the
+	 * buffer is full.
+	 */
+	private long bufferTimeout = 0L;
+
+	/**
+	 * The lower bound for the flush threshold, <code>0</code> to ship only full buffers.
+	 */
+	private int minimumFlushThreshold = 0;
+
+	/**
+	 * The number of bytes after which the current buffer is shipped, <code>0</code> to ship only full buffers.
+	 */
+	private int flushThreshold = 0;
+
+	/**
+	 * Stores whether the flush threshold adapts to the rate at which the buffers fill up.
+	 */
+	private boolean adaptiveBatching = false;
+
+	/**
+	 * The time at which the current write buffer has been requested.
+	 */
+	private long bufferRequestTime = 0L;
+
 	/**
 	 * Creates a new abstract output channel.
 	 * 
@@ -178,6 +205,85 @@ public abstract class AbstractOutputChannel<T extends Record> extends AbstractCh
 			}
 		}
 
+		// Ship the buffer early if the flush policy asks for it
+		if (this.flushThreshold > 0 && this.dataBuffer != null) {
+
+			if (this.dataBuffer.size() - this.dataBuffer.remaining() >= this.flushThreshold) {
+
+				if (this.adaptiveBatching
+					&& System.currentTimeMillis() - this.bufferRequestTime < this.bufferTimeout / 2L) {
+					// The buffers fill up quickly, so trade some latency for larger batches
+					this.flushThreshold = Math.min(this.flushThreshold * 2, this.dataBuffer.size());
+				}
+
+				releasePartiallyFilledWriteBuffer();
+			}
+		}
+	}
+
+	/**
+	 * Ships the current write buffer if it has been requested at or before the given time and records are waiting in
+	 * it. The method never requests a new write buffer, so it does not block while waiting for buffers.
+	 * 
+	 * @param expiryTime
+	 *        the time at or before which the write buffer must have been requested to be shipped
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while shipping the buffer
+	 * @throws InterruptedException
+	 *         thrown if the thread is interrupted while shipping the buffer
+	 */
+	public void flushExpiredWriteBuffer(final long expiryTime) throws IOException, InterruptedException {
+
+		if (this.closeRequested || this.dataBuffer == null || this.bufferRequestTime > expiryTime) {
+			return;
+		}
+
+		// Parts of a record which have not yet been copied to the buffer must not be separated from it
+		if (this.recordSerializer.dataLeftFromPreviousSerialization()) {
+			return;
+		}
+
+		if (this.dataBuffer.size() == this.dataBuffer.remaining()) {
+			return;
+		}
+
+		if (this.adaptiveBatching) {
+			// The buffers fill up slowly, so reduce the latency again
+			this.flushThreshold = Math.max(this.flushThreshold / 2, this.minimumFlushThreshold);
+		}
+
+		releasePartiallyFilledWriteBuffer();
+	}
+
+	/**
+	 * Sets the flush policy which determines when this channel ships write buffers which are not yet full.
+	 * 
+	 * @param flushPolicy
+	 *        the flush policy for this channel
+	 */
+	public void setFlushPolicy(final OutputGateFlushPolicy flushPolicy) {
+
+		this.bufferTimeout = flushPolicy.getBufferTimeout();
+		this.minimumFlushThreshold = flushPolicy.getFlushThreshold();
+		this.flushThreshold = flushPolicy.getFlushThreshold();
+		this.adaptiveBatching = flushPolicy.isAdaptiveBatching();
+	}
+
+	/**
+	 * Compresses the current write buffer if necessary and returns it to the framework, although it may not be full.
+	 * 
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while releasing the buffer
+	 * @throws InterruptedException
+	 *         thrown if the thread is interrupted while releasing the buffer
+	 */
+	private void releasePartiallyFilledWriteBuffer() throws IOException, InterruptedException {
+
+		if (this.compressor != null) {
+			this.dataBuffer = this.compressor.compress(this.dataBuffer);
+		}
+
+		releaseWriteBuffer();
 	}
 
 	/**
@@ -191,6 +297,10 @@ public abstract class AbstractOutputChannel<T extends Record> extends AbstractCh
 	private void requestWriteBufferFromBroker() throws InterruptedException, IOException {
 
 		this.dataBuffer = this.outputChannelBroker.requestEmptyWriteBuffer();
+
+		if (this.bufferTimeout > 0L) {
+			this.bufferRequestTime = System.currentTimeMillis();
+		}
 	}
 
 	/**
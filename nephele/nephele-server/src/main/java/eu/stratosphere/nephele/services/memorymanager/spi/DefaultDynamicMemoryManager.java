@@ -492,8 +492,7 @@ public class DefaultDynamicMemoryManager implements DynamicMemoryManager, Daemon
 		byte[] destroy() {
 
 			final byte[] buffer = this.memory;
-			this.memory = null;
-			this.wrapper = null;
+			free();
 			return buffer;
 		}
 	}
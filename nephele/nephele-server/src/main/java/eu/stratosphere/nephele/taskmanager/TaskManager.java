@@ -79,6 +79,7 @@ import eu.stratosphere.nephele.rpc.ServerTypeUtils;
 import eu.stratosphere.nephele.services.iomanager.IOManager;
 import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
 import eu.stratosphere.nephele.services.memorymanager.spi.DefaultDynamicMemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
 import eu.stratosphere.nephele.taskmanager.routing.DefaultRoutingService;
 import eu.stratosphere.nephele.taskmanager.routing.InsufficientResourcesException;
 import eu.stratosphere.nephele.taskmanager.runtime.EnvelopeConsumptionLog;
@@ -291,12 +292,24 @@ public class TaskManager implements TaskOperationProtocol {
 		this.hardwareDescription = hardware;
 
 		// Initialize the memory manager
-		LOG.info("Initializing dynamic memory manager");
-		try {
-			this.memoryManager = new DefaultDynamicMemoryManager();
-		} catch (IOException ioe) {
-			LOG.fatal("Unable to initialize dynamic memory manager", ioe);
-			throw ioe;
+		if (GlobalConfiguration.getBoolean(ConfigConstants.MEMORY_MANAGER_OFF_HEAP_KEY,
+			ConfigConstants.DEFAULT_MEMORY_MANAGER_OFF_HEAP)) {
+
+			// the free memory of the hardware description refers to the heap, so the off-heap memory is sized
+			// from the configured value only
+			final long offHeapSize = memorySize > 0 ? memorySize
+				: ConfigConstants.DEFAULT_MEMORY_MANAGER_AVAILABLE_MEMORY;
+			LOG.info("Initializing off-heap memory manager with " + offHeapSize + " megabytes of memory");
+			this.memoryManager = new DefaultMemoryManager(offHeapSize * 1024L * 1024L,
+				DefaultMemoryManager.DEFAULT_PAGE_SIZE, true);
+		} else {
+			LOG.info("Initializing dynamic memory manager");
+			try {
+				this.memoryManager = new DefaultDynamicMemoryManager();
+			} catch (IOException ioe) {
+				LOG.fatal("Unable to initialize dynamic memory manager", ioe);
+				throw ioe;
+			}
 		}
 
 		this.ioManager = new IOManager(tmpDirPaths);
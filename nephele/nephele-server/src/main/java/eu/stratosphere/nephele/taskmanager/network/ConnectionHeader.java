@@ -0,0 +1,93 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The connection header is the first data an {@link OutgoingConnection} sends through a new TCP connection. It
+ * announces the settings of the connection, so the receiving {@link IncomingConnection} can read the following data
+ * without relying on the configuration of the sending task manager. Currently, the header only announces whether the
+ * connection transmits compressed frames.
+ * <p>
+ * The header consists of a magic number, which protects against connections from other programs or incompatible
+ * versions, followed by a byte of flags.
+ */
+final class ConnectionHeader {
+
+	/**
+	 * The size of the connection header in bytes.
+	 */
+	static final int HEADER_SIZE = 5;
+
+	/**
+	 * The magic number every connection header starts with.
+	 */
+	private static final int MAGIC_NUMBER = 0x4E45504C;
+
+	/**
+	 * Flag which indicates that the connection transmits compressed frames.
+	 */
+	private static final byte COMPRESSED_FLAG = 0x01;
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private ConnectionHeader() {
+	}
+
+	/**
+	 * Creates a connection header.
+	 * 
+	 * @param compressed
+	 *        <code>true</code> if the connection transmits compressed frames, <code>false</code> otherwise
+	 * @return the byte buffer containing the connection header, ready to be written
+	 */
+	static ByteBuffer create(final boolean compressed) {
+
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC_NUMBER);
+		header.put(compressed ? COMPRESSED_FLAG : 0);
+		header.flip();
+
+		return header;
+	}
+
+	/**
+	 * Checks a completely received connection header and returns whether the connection transmits compressed frames.
+	 * 
+	 * @param header
+	 *        the byte buffer containing the received connection header
+	 * @return <code>true</code> if the connection transmits compressed frames, <code>false</code> otherwise
+	 * @throws IOException
+	 *         thrown if the header is not a valid connection header
+	 */
+	static boolean isCompressed(final ByteBuffer header) throws IOException {
+
+		final int magicNumber = header.getInt(0);
+		if (magicNumber != MAGIC_NUMBER) {
+			throw new IOException("Received invalid connection header " + Integer.toHexString(magicNumber));
+		}
+
+		final byte flags = header.get(4);
+		if ((flags & ~COMPRESSED_FLAG) != 0) {
+			throw new IOException("Received connection header with unknown flags " + flags);
+		}
+
+		return (flags & COMPRESSED_FLAG) != 0;
+	}
+}
@@ -0,0 +1,395 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.Deflater;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The frame compressor turns blocks of serialized transfer envelopes into frames which are transmitted through a
+ * compressed TCP connection. Each frame starts with a header consisting of the frame type, the length of the
+ * uncompressed block and the length of the payload which follows the header. Blocks are compressed by a thread pool
+ * shared by all outgoing connections, so the outgoing connection thread can transmit one frame while the next one is
+ * compressed. The outgoing connection thread never waits for a compression to complete, it is notified once the frame
+ * is ready instead.
+ * <p>
+ * Compressing a block only pays off if the connection's link is the bottleneck. The compressor therefore measures how
+ * long the link takes to drain a frame and how long compressing a block takes, and sends the blocks uncompressed as
+ * long as the link time saved by compression does not exceed the time spent compressing. While compression is
+ * switched off, every {@value #PROBE_INTERVAL}th block is still compressed to keep the estimates up to date.
+ * <p>
+ * This class is not thread-safe, it must only be used by the outgoing connection thread of a single connection.
+ */
+final class FrameCompressor {
+
+	/**
+	 * The size of a frame header in bytes.
+	 */
+	static final int HEADER_SIZE = 9;
+
+	/**
+	 * Frame type of a frame whose payload is the uncompressed block.
+	 */
+	static final byte UNCOMPRESSED_FRAME = 0;
+
+	/**
+	 * Frame type of a frame whose payload is the deflated block.
+	 */
+	static final byte DEFLATED_FRAME = 1;
+
+	/**
+	 * The log object used to report debug information.
+	 */
+	private static final Log LOG = LogFactory.getLog(FrameCompressor.class);
+
+	/**
+	 * The number of uncompressed frames after which a block is compressed to refresh the estimates.
+	 */
+	private static final int PROBE_INTERVAL = 64;
+
+	/**
+	 * The weight of a new measurement in the estimates.
+	 */
+	private static final double SMOOTHING_FACTOR = 0.25;
+
+	/**
+	 * A compressed block is only transmitted if it is at most this fraction of the uncompressed block's size.
+	 */
+	private static final double MAXIMUM_COMPRESSION_RATIO = 0.9;
+
+	/**
+	 * The deflater used by each compression thread.
+	 */
+	private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+
+		@Override
+		protected Deflater initialValue() {
+			return new Deflater(Deflater.BEST_SPEED);
+		}
+	};
+
+	/**
+	 * A frame ready for transmission.
+	 */
+	static final class Frame {
+
+		/**
+		 * The header and the payload of the frame.
+		 */
+		private final ByteBuffer[] data;
+
+		/**
+		 * The length of the uncompressed block in bytes.
+		 */
+		private final int blockLength;
+
+		/**
+		 * The length of the frame's payload in bytes.
+		 */
+		private final int payloadLength;
+
+		/**
+		 * The time in nanoseconds it took to compress the block or <code>-1</code> if no compression was attempted.
+		 */
+		private final long compressionTime;
+
+		private Frame(final ByteBuffer header, final ByteBuffer payload, final int blockLength,
+				final long compressionTime) {
+
+			this.data = new ByteBuffer[] { header, payload };
+			this.blockLength = blockLength;
+			this.payloadLength = payload.remaining();
+			this.compressionTime = compressionTime;
+		}
+
+		/**
+		 * Returns the header and the payload of the frame.
+		 * 
+		 * @return the header and the payload of the frame
+		 */
+		ByteBuffer[] getData() {
+			return this.data;
+		}
+
+		/**
+		 * Checks whether the frame has been transmitted completely.
+		 * 
+		 * @return <code>true</code> if the frame has been transmitted completely, <code>false</code> otherwise
+		 */
+		boolean isTransmitted() {
+			return !this.data[1].hasRemaining();
+		}
+	}
+
+	/**
+	 * The thread pool which compresses the blocks.
+	 */
+	private final ExecutorService compressionThreads;
+
+	/**
+	 * Stores whether blocks are currently compressed before transmission.
+	 */
+	private boolean compressionActive = true;
+
+	/**
+	 * The number of blocks which have been transmitted uncompressed since the last compressed block.
+	 */
+	private int blocksSinceLastCompression = 0;
+
+	/**
+	 * The estimated time in nanoseconds the link takes to transmit a byte.
+	 */
+	private double linkTimePerByte = Double.NaN;
+
+	/**
+	 * The estimated time in nanoseconds it takes to compress a byte.
+	 */
+	private double compressionTimePerByte = Double.NaN;
+
+	/**
+	 * The estimated ratio between the compressed and the uncompressed size of a block.
+	 */
+	private double compressionRatio = Double.NaN;
+
+	/**
+	 * Constructs a new frame compressor.
+	 * 
+	 * @param compressionThreads
+	 *        the thread pool to compress the blocks with
+	 */
+	FrameCompressor(final ExecutorService compressionThreads) {
+		this.compressionThreads = compressionThreads;
+	}
+
+	/**
+	 * Creates a frame from the given block of serialized transfer envelopes. Depending on the current estimates, the
+	 * block is compressed asynchronously or the frame is created immediately.
+	 * 
+	 * @param block
+	 *        the block to create the frame from, must be backed by an array
+	 * @param completionListener
+	 *        the listener to run by the compression thread once an asynchronously created frame is ready, may be
+	 *        <code>null</code>
+	 * @return the future result of the frame creation
+	 * @throws IOException
+	 *         thrown if the block cannot be handed over to the compression threads
+	 */
+	Future<Frame> createFrame(final ByteBuffer block, final Runnable completionListener) throws IOException {
+
+		final boolean compress = this.compressionActive || ++this.blocksSinceLastCompression >= PROBE_INTERVAL;
+		if (!compress) {
+			final FutureTask<Frame> task = new FutureTask<Frame>(new Callable<Frame>() {
+
+				@Override
+				public Frame call() {
+					return createUncompressedFrame(block, -1L);
+				}
+			});
+			task.run();
+			return task;
+		}
+
+		this.blocksSinceLastCompression = 0;
+
+		final FutureTask<Frame> task = new FutureTask<Frame>(new Callable<Frame>() {
+
+			@Override
+			public Frame call() {
+				return compress(block);
+			}
+		}) {
+
+			@Override
+			protected void done() {
+				if (completionListener != null) {
+					completionListener.run();
+				}
+			}
+		};
+
+		try {
+			this.compressionThreads.execute(task);
+		} catch (RejectedExecutionException e) {
+			throw new IOException("Compression threads have been shut down");
+		}
+
+		return task;
+	}
+
+	/**
+	 * Returns the result of a completed frame creation.
+	 * 
+	 * @param frame
+	 *        the future result of the frame creation, must be done
+	 * @return the created frame
+	 * @throws IOException
+	 *         thrown if the frame creation failed or has been cancelled
+	 */
+	static Frame getFrame(final Future<Frame> frame) throws IOException {
+
+		if (!frame.isDone()) {
+			throw new IllegalStateException("Frame has not yet been created");
+		}
+
+		try {
+			return frame.get();
+		} catch (ExecutionException e) {
+			throw new IOException("Cannot create frame: " + e.getCause());
+		} catch (CancellationException e) {
+			throw new IOException("Frame creation has been cancelled");
+		} catch (InterruptedException e) {
+			// Cannot happen as the frame creation is complete
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while retrieving frame");
+		}
+	}
+
+	/**
+	 * Updates the estimates with the measurements of a completely transmitted frame and decides whether the next
+	 * blocks shall be compressed.
+	 * 
+	 * @param frame
+	 *        the transmitted frame
+	 * @param transmissionTime
+	 *        the time in nanoseconds between the first attempt to write the frame and its complete transmission
+	 */
+	void reportTransmission(final Frame frame, final long transmissionTime) {
+
+		final int frameLength = HEADER_SIZE + frame.payloadLength;
+		this.linkTimePerByte = smooth(this.linkTimePerByte, (double) transmissionTime / (double) frameLength);
+
+		if (frame.compressionTime >= 0L) {
+			this.compressionTimePerByte = smooth(this.compressionTimePerByte, (double) frame.compressionTime
+				/ (double) frame.blockLength);
+			this.compressionRatio = smooth(this.compressionRatio, (double) frame.payloadLength
+				/ (double) frame.blockLength);
+		}
+
+		// Compression pays off if the link time it saves exceeds the time it costs
+		final boolean compressionWorthwhile = this.linkTimePerByte * (1.0 - this.compressionRatio) > this.compressionTimePerByte;
+		if (compressionWorthwhile != this.compressionActive) {
+			this.compressionActive = compressionWorthwhile;
+			if (LOG.isDebugEnabled()) {
+				LOG.debug((compressionWorthwhile ? "Enabling" : "Disabling") + " connection compression (link "
+					+ this.linkTimePerByte + " ns/byte, compression " + this.compressionTimePerByte
+					+ " ns/byte, ratio " + this.compressionRatio + ")");
+			}
+		}
+	}
+
+	/**
+	 * Compresses the given block into a new frame. If the block does not compress well, it is transmitted
+	 * uncompressed.
+	 * 
+	 * @param block
+	 *        the block to compress
+	 * @return the frame created from the block
+	 */
+	private static Frame compress(final ByteBuffer block) {
+
+		final long start = System.nanoTime();
+		final int blockLength = block.remaining();
+		final int maximumPayloadLength = (int) (blockLength * MAXIMUM_COMPRESSION_RATIO);
+
+		final Deflater deflater = DEFLATER.get();
+		deflater.reset();
+		deflater.setInput(block.array(), block.arrayOffset() + block.position(), blockLength);
+		deflater.finish();
+
+		final byte[] output = new byte[maximumPayloadLength];
+		int payloadLength = 0;
+		while (!deflater.finished() && payloadLength < maximumPayloadLength) {
+			payloadLength += deflater.deflate(output, payloadLength, maximumPayloadLength - payloadLength);
+		}
+
+		if (!deflater.finished()) {
+			return createUncompressedFrame(block, System.nanoTime() - start);
+		}
+
+		final ByteBuffer payload = ByteBuffer.wrap(output, 0, payloadLength);
+
+		return new Frame(createHeader(DEFLATED_FRAME, blockLength, payloadLength), payload, blockLength,
+			System.nanoTime() - start);
+	}
+
+	/**
+	 * Creates a frame which transmits the given block uncompressed.
+	 * 
+	 * @param block
+	 *        the block to transmit
+	 * @param compressionTime
+	 *        the time in nanoseconds spent on an unsuccessful compression attempt or <code>-1</code>
+	 * @return the created frame
+	 */
+	private static Frame createUncompressedFrame(final ByteBuffer block, final long compressionTime) {
+
+		final int blockLength = block.remaining();
+
+		return new Frame(createHeader(UNCOMPRESSED_FRAME, blockLength, blockLength), block, blockLength,
+			compressionTime);
+	}
+
+	/**
+	 * Creates a frame header.
+	 * 
+	 * @param frameType
+	 *        the type of the frame
+	 * @param blockLength
+	 *        the length of the uncompressed block in bytes
+	 * @param payloadLength
+	 *        the length of the frame's payload in bytes
+	 * @return the byte buffer containing the frame header, ready to be written
+	 */
+	private static ByteBuffer createHeader(final byte frameType, final int blockLength, final int payloadLength) {
+
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.put(frameType);
+		header.putInt(blockLength);
+		header.putInt(payloadLength);
+		header.flip();
+
+		return header;
+	}
+
+	/**
+	 * Adds a new measurement to an estimate.
+	 * 
+	 * @param estimate
+	 *        the current estimate, <code>NaN</code> if there is no measurement yet
+	 * @param measurement
+	 *        the new measurement
+	 * @return the updated estimate
+	 */
+	private static double smooth(final double estimate, final double measurement) {
+
+		if (Double.isNaN(estimate)) {
+			return measurement;
+		}
+
+		return (1.0 - SMOOTHING_FACTOR) * estimate + SMOOTHING_FACTOR * measurement;
+	}
+}
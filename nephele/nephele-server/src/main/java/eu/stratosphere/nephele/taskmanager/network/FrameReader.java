@@ -0,0 +1,224 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * The frame reader reads the frames created by a {@link FrameCompressor} from a compressed TCP connection. It
+ * decompresses each frame and provides the contained block of serialized transfer envelopes through its
+ * {@link ReadableByteChannel} interface, so the block can be passed on to a deserializer.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class FrameReader implements ReadableByteChannel {
+
+	/**
+	 * The maximum length of a frame's block or payload in bytes.
+	 */
+	private static final int MAXIMUM_FRAME_LENGTH = 64 * 1024 * 1024;
+
+	/**
+	 * The buffer to read the header of the current frame into.
+	 */
+	private final ByteBuffer header = ByteBuffer.allocate(FrameCompressor.HEADER_SIZE);
+
+	/**
+	 * The inflater to decompress deflated frames with.
+	 */
+	private final Inflater inflater = new Inflater();
+
+	/**
+	 * The buffer to read the payload of the current frame into, <code>null</code> if the header has not yet been
+	 * read completely.
+	 */
+	private ByteBuffer payload = null;
+
+	/**
+	 * The block of the last frame which has not yet been consumed.
+	 */
+	private ByteBuffer block = ByteBuffer.allocate(0);
+
+	/**
+	 * Reads data of the next frame from the given channel. Once the frame has been read completely, its block is
+	 * provided through this reader.
+	 * 
+	 * @param readableByteChannel
+	 *        the channel to read the frame from
+	 * @return <code>true</code> if a frame has been read completely, <code>false</code> if more data is required
+	 * @throws IOException
+	 *         thrown if an I/O error occurs, the connection is closed at a frame boundary or the frame is corrupt
+	 */
+	boolean readFrame(final ReadableByteChannel readableByteChannel) throws IOException {
+
+		if (this.block.hasRemaining()) {
+			throw new IllegalStateException("Block of previous frame has not been consumed completely");
+		}
+
+		if (this.payload == null) {
+
+			if (readableByteChannel.read(this.header) == -1) {
+				if (this.header.position() == 0) {
+					// Regular end of stream
+					throw new EOFException();
+				}
+				throw new IOException("Unexpected end of stream while reading frame header");
+			}
+
+			if (this.header.hasRemaining()) {
+				return false;
+			}
+
+			this.header.flip();
+			final int payloadLength = this.header.getInt(FrameCompressor.HEADER_SIZE - 4);
+			if (payloadLength <= 0 || payloadLength > MAXIMUM_FRAME_LENGTH) {
+				throw new IOException("Received frame with invalid payload length " + payloadLength);
+			}
+
+			this.payload = ByteBuffer.allocate(payloadLength);
+		}
+
+		if (readableByteChannel.read(this.payload) == -1) {
+			throw new IOException("Unexpected end of stream while reading frame payload");
+		}
+
+		if (this.payload.hasRemaining()) {
+			return false;
+		}
+
+		this.payload.flip();
+		decodeFrame();
+
+		this.header.clear();
+		this.payload = null;
+
+		return true;
+	}
+
+	/**
+	 * Turns the payload of the current frame into the block provided by this reader.
+	 * 
+	 * @throws IOException
+	 *         thrown if the frame is corrupt
+	 */
+	private void decodeFrame() throws IOException {
+
+		final byte frameType = this.header.get(0);
+		final int blockLength = this.header.getInt(1);
+		if (blockLength <= 0 || blockLength > MAXIMUM_FRAME_LENGTH) {
+			throw new IOException("Received frame with invalid block length " + blockLength);
+		}
+
+		if (frameType == FrameCompressor.UNCOMPRESSED_FRAME) {
+			if (blockLength != this.payload.remaining()) {
+				throw new IOException("Length of uncompressed frame does not match its header");
+			}
+			this.block = this.payload;
+			return;
+		}
+
+		if (frameType != FrameCompressor.DEFLATED_FRAME) {
+			throw new IOException("Received frame of unknown type " + frameType);
+		}
+
+		final byte[] output = new byte[blockLength];
+		this.inflater.reset();
+		this.inflater.setInput(this.payload.array(), this.payload.arrayOffset(), this.payload.remaining());
+
+		try {
+			int length = 0;
+			while (length < blockLength && !this.inflater.finished()) {
+				final int inflated = this.inflater.inflate(output, length, blockLength - length);
+				if (inflated == 0 && (this.inflater.needsInput() || this.inflater.needsDictionary())) {
+					break;
+				}
+				length += inflated;
+			}
+
+			if (length != blockLength || !this.inflater.finished()) {
+				throw new IOException("Length of decompressed frame does not match its header");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Received corrupt frame: " + e.getMessage());
+		}
+
+		this.block = ByteBuffer.wrap(output);
+	}
+
+	/**
+	 * Checks whether the block of the last frame contains data which has not yet been consumed.
+	 * 
+	 * @return <code>true</code> if the block contains unconsumed data, <code>false</code> otherwise
+	 */
+	boolean hasRemaining() {
+
+		return this.block.hasRemaining();
+	}
+
+	/**
+	 * Checks whether the reader has read a partial frame or holds unconsumed data.
+	 * 
+	 * @return <code>true</code> if the reader has read a partial frame or holds unconsumed data, <code>false</code>
+	 *         otherwise
+	 */
+	boolean hasUnfinishedData() {
+
+		return (this.header.position() > 0 || this.payload != null || this.block.hasRemaining());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read(final ByteBuffer dst) {
+
+		final int length = Math.min(dst.remaining(), this.block.remaining());
+		if (length == 0) {
+			return 0;
+		}
+
+		final int limit = this.block.limit();
+		this.block.limit(this.block.position() + length);
+		dst.put(this.block);
+		this.block.limit(limit);
+
+		return length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isOpen() {
+
+		return true;
+	}
+
+	/**
+	 * Releases the resources held by the reader.
+	 */
+	@Override
+	public void close() {
+
+		this.inflater.end();
+		this.block = ByteBuffer.allocate(0);
+	}
+}
@@ -0,0 +1,474 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProviderBroker;
+import eu.stratosphere.nephele.taskmanager.routing.DefaultRoutingService;
+import eu.stratosphere.nephele.taskmanager.routing.RemoteReceiver;
+import eu.stratosphere.nephele.taskmanager.routing.RoutingService;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.util.StringUtils;
+
+/**
+ * The in-JVM transport moves transfer envelopes between task managers which run inside the same Java virtual machine,
+ * for example in local or test setups with several task managers. Instead of serializing the envelopes and sending
+ * them through a loopback socket, the transport puts them into a bounded queue of the receiving task manager's
+ * transport. If the queue is full, the sender blocks until the receiver has caught up.
+ * <p>
+ * A delivery thread takes the envelopes from the queue and copies their buffers into buffers of the receiving channels,
+ * just like an incoming network connection. It never waits for a buffer: if a receiving channel has no buffer
+ * available, the envelopes of the corresponding source channel are held back until the channel reports a free buffer,
+ * while the envelopes for all other channels are delivered in the meantime.
+ * <p>
+ * The transports find each other through the address and data port of their task managers, so every task manager in
+ * the virtual machine must use a distinct data port. The transport does not open any sockets.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class InJVMTransport implements NetworkTransport {
+
+	/**
+	 * The log object used to report problems and errors.
+	 */
+	private static final Log LOG = LogFactory.getLog(InJVMTransport.class);
+
+	/**
+	 * The default number of envelopes a transport's incoming queue can hold.
+	 */
+	private static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+	/**
+	 * The interval in milliseconds in which a sender blocked on a full queue checks whether the receiving transport
+	 * has been shut down.
+	 */
+	private static final long OFFER_INTERVAL = 100L;
+
+	/**
+	 * The transports currently running in this virtual machine, indexed by the address they are bound to.
+	 */
+	private static final ConcurrentMap<InetSocketAddress, InJVMTransport> TRANSPORTS = new ConcurrentHashMap<InetSocketAddress, InJVMTransport>();
+
+	/**
+	 * The address this transport is bound to.
+	 */
+	private final InetSocketAddress address;
+
+	/**
+	 * The routing service incoming envelopes are passed on to.
+	 */
+	private final RoutingService routingService;
+
+	/**
+	 * The broker providing the buffers of the receiving channels.
+	 */
+	private final BufferProviderBroker bufferProviderBroker;
+
+	/**
+	 * The maximum number of envelopes in the incoming queue. The delivery thread also stops taking envelopes from the
+	 * queue while it holds back this many envelopes.
+	 */
+	private final int queueCapacity;
+
+	/**
+	 * The queue of envelopes sent to this transport which have not yet been taken by the delivery thread. The queue
+	 * also serves as monitor for the {@link #retryRequests}.
+	 */
+	private final Queue<TransferEnvelope> incomingQueue = new ArrayDeque<TransferEnvelope>();
+
+	/**
+	 * The source channels whose held back envelopes shall be delivered again, because their receiving channel has
+	 * reported a free buffer. Protected by the monitor of {@link #incomingQueue}.
+	 */
+	private final Queue<ChannelID> retryRequests = new ArrayDeque<ChannelID>();
+
+	/**
+	 * The envelopes held back because their receiving channel had no buffer available, indexed by their source
+	 * channel. Only accessed by the delivery thread.
+	 */
+	private final Map<ChannelID, Queue<TransferEnvelope>> heldEnvelopes = new HashMap<ChannelID, Queue<TransferEnvelope>>();
+
+	/**
+	 * The total number of held back envelopes. Only accessed by the delivery thread.
+	 */
+	private int numberOfHeldEnvelopes = 0;
+
+	/**
+	 * The thread passing on the incoming envelopes to the routing service.
+	 */
+	private final Thread deliveryThread;
+
+	/**
+	 * Stores whether the transport has been shut down.
+	 */
+	private volatile boolean isShutDown = false;
+
+	/**
+	 * Constructs and starts a new in-JVM transport.
+	 * 
+	 * @param routingService
+	 *        the routing service to pass incoming envelopes to
+	 * @param bindAddress
+	 *        the address of the task manager this transport belongs to
+	 * @param dataPort
+	 *        the data port of the task manager this transport belongs to
+	 * @throws IOException
+	 *         thrown if another transport in this virtual machine is already bound to the same address
+	 */
+	public InJVMTransport(final DefaultRoutingService routingService, final InetAddress bindAddress,
+			final int dataPort) throws IOException {
+		this(routingService, routingService, bindAddress, dataPort);
+	}
+
+	/**
+	 * Constructs and starts a new in-JVM transport.
+	 * 
+	 * @param routingService
+	 *        the routing service to pass incoming envelopes to
+	 * @param bufferProviderBroker
+	 *        the broker providing the buffers of the receiving channels
+	 * @param bindAddress
+	 *        the address of the task manager this transport belongs to
+	 * @param dataPort
+	 *        the data port of the task manager this transport belongs to
+	 * @throws IOException
+	 *         thrown if another transport in this virtual machine is already bound to the same address
+	 */
+	InJVMTransport(final RoutingService routingService, final BufferProviderBroker bufferProviderBroker,
+			final InetAddress bindAddress, final int dataPort) throws IOException {
+
+		this.address = new InetSocketAddress(bindAddress, dataPort);
+		this.routingService = routingService;
+		this.bufferProviderBroker = bufferProviderBroker;
+		this.queueCapacity = Math.max(1, GlobalConfiguration.getInteger(
+			"channel.network.inJVMTransport.queueCapacity", DEFAULT_QUEUE_CAPACITY));
+
+		if (TRANSPORTS.putIfAbsent(this.address, this) != null) {
+			throw new IOException("Another in-JVM transport is already bound to " + this.address);
+		}
+
+		this.deliveryThread = new Thread("In-JVM transport " + this.address) {
+
+			@Override
+			public void run() {
+				deliverIncomingEnvelopes();
+			}
+		};
+		this.deliveryThread.setDaemon(true);
+		this.deliveryThread.start();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void queueEnvelopeForTransfer(final RemoteReceiver remoteReceiver, final TransferEnvelope transferEnvelope) {
+
+		final InJVMTransport target = TRANSPORTS.get(remoteReceiver.getConnectionAddress());
+		if (target == null) {
+			LOG.error("Cannot find in-JVM transport for " + remoteReceiver + ", discarding envelope "
+				+ transferEnvelope.getSequenceNumber() + " for " + transferEnvelope.getSource());
+			recycleBuffer(transferEnvelope);
+			return;
+		}
+
+		try {
+			synchronized (target.incomingQueue) {
+
+				while (target.incomingQueue.size() >= target.queueCapacity) {
+					if (target.isShutDown) {
+						LOG.error("In-JVM transport for " + remoteReceiver + " has been shut down, discarding envelope");
+						recycleBuffer(transferEnvelope);
+						return;
+					}
+					target.incomingQueue.wait(OFFER_INTERVAL);
+				}
+
+				target.incomingQueue.add(transferEnvelope);
+				target.incomingQueue.notifyAll();
+			}
+		} catch (InterruptedException e) {
+			LOG.error("Interrupted while queueing envelope for " + remoteReceiver);
+			recycleBuffer(transferEnvelope);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Passes the incoming envelopes on to the routing service until the transport is shut down.
+	 */
+	private void deliverIncomingEnvelopes() {
+
+		try {
+			while (true) {
+
+				TransferEnvelope transferEnvelope = null;
+				ChannelID retryRequest = null;
+
+				synchronized (this.incomingQueue) {
+
+					while (true) {
+
+						retryRequest = this.retryRequests.poll();
+						if (retryRequest != null) {
+							break;
+						}
+
+						// Stop taking new envelopes while too many are held back, so the senders block
+						if (this.numberOfHeldEnvelopes < this.queueCapacity) {
+							transferEnvelope = this.incomingQueue.poll();
+							if (transferEnvelope != null) {
+								this.incomingQueue.notifyAll();
+								break;
+							}
+						}
+
+						this.incomingQueue.wait();
+					}
+				}
+
+				if (retryRequest != null) {
+					deliverHeldEnvelopes(retryRequest);
+				} else {
+					deliverOrHoldEnvelope(transferEnvelope);
+				}
+			}
+		} catch (InterruptedException e) {
+			// The transport has been shut down
+		}
+
+		// Release the buffers of all envelopes which have not been delivered
+		synchronized (this.incomingQueue) {
+			TransferEnvelope transferEnvelope;
+			while ((transferEnvelope = this.incomingQueue.poll()) != null) {
+				recycleBuffer(transferEnvelope);
+			}
+			this.incomingQueue.notifyAll();
+		}
+
+		final Iterator<Queue<TransferEnvelope>> it = this.heldEnvelopes.values().iterator();
+		while (it.hasNext()) {
+			for (final TransferEnvelope transferEnvelope : it.next()) {
+				recycleBuffer(transferEnvelope);
+			}
+		}
+		this.heldEnvelopes.clear();
+	}
+
+	/**
+	 * Delivers the given envelope unless envelopes of the same source channel are already held back or the receiving
+	 * channel has no buffer available. In these cases the envelope is held back.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope to deliver
+	 * @throws InterruptedException
+	 *         thrown if the delivery thread is interrupted
+	 */
+	private void deliverOrHoldEnvelope(final TransferEnvelope transferEnvelope) throws InterruptedException {
+
+		final ChannelID source = transferEnvelope.getSource();
+
+		Queue<TransferEnvelope> held = this.heldEnvelopes.get(source);
+		if (held == null) {
+
+			if (deliverEnvelope(transferEnvelope)) {
+				return;
+			}
+
+			held = new ArrayDeque<TransferEnvelope>();
+			this.heldEnvelopes.put(source, held);
+		}
+
+		held.add(transferEnvelope);
+		++this.numberOfHeldEnvelopes;
+	}
+
+	/**
+	 * Delivers the envelopes held back for the given source channel in their original order until the receiving
+	 * channel runs out of buffers again.
+	 * 
+	 * @param source
+	 *        the source channel whose held back envelopes shall be delivered
+	 * @throws InterruptedException
+	 *         thrown if the delivery thread is interrupted
+	 */
+	private void deliverHeldEnvelopes(final ChannelID source) throws InterruptedException {
+
+		final Queue<TransferEnvelope> held = this.heldEnvelopes.get(source);
+		if (held == null) {
+			return;
+		}
+
+		while (!held.isEmpty()) {
+
+			if (!deliverEnvelope(held.peek())) {
+				return;
+			}
+
+			held.poll();
+			--this.numberOfHeldEnvelopes;
+		}
+
+		this.heldEnvelopes.remove(source);
+	}
+
+	/**
+	 * Copies the buffer of the given envelope into a buffer of the receiving channel and passes the envelope on to the
+	 * routing service. If the receiving channel has no buffer available, the method registers to be notified when a
+	 * buffer becomes available and returns without delivering the envelope.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope to deliver
+	 * @return <code>true</code> if the envelope has been delivered or discarded, <code>false</code> if it must be
+	 *         delivered again once the receiving channel has a buffer available
+	 * @throws InterruptedException
+	 *         thrown if the delivery thread is interrupted
+	 */
+	private boolean deliverEnvelope(final TransferEnvelope transferEnvelope) throws InterruptedException {
+
+		final Buffer srcBuffer = transferEnvelope.getBuffer();
+
+		try {
+
+			if (srcBuffer == null) {
+				this.routingService.routeEnvelopeFromNetwork(transferEnvelope, false);
+				return true;
+			}
+
+			final BufferProvider bufferProvider = this.bufferProviderBroker.getBufferProvider(
+				transferEnvelope.getJobID(), transferEnvelope.getSource());
+
+			Buffer destBuffer = bufferProvider.requestEmptyBuffer(srcBuffer.size());
+			while (destBuffer == null) {
+
+				final BufferAvailabilityListener listener = new RetryListener(transferEnvelope.getSource());
+				if (bufferProvider.registerBufferAvailabilityListener(listener)) {
+					return false;
+				}
+
+				// A buffer has become available in the meantime
+				destBuffer = bufferProvider.requestEmptyBuffer(srcBuffer.size());
+			}
+
+			try {
+				srcBuffer.copyToBuffer(destBuffer);
+			} catch (IOException ioe) {
+				destBuffer.recycleBuffer();
+				throw ioe;
+			}
+
+			// The buffer belongs to the sender, so it is released as soon as its content has been copied
+			srcBuffer.recycleBuffer();
+
+			final TransferEnvelope dup = transferEnvelope.duplicateWithoutBuffer();
+			dup.setBuffer(destBuffer);
+			this.routingService.routeEnvelopeFromNetwork(dup, bufferProvider.isShared());
+
+		} catch (IOException ioe) {
+			LOG.error(StringUtils.stringifyException(ioe));
+			recycleBuffer(transferEnvelope);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Recycles the buffer attached to the given envelope, if any.
+	 * 
+	 * @param transferEnvelope
+	 *        the envelope whose buffer shall be recycled
+	 */
+	private static void recycleBuffer(final TransferEnvelope transferEnvelope) {
+
+		final Buffer buffer = transferEnvelope.getBuffer();
+		if (buffer != null) {
+			buffer.recycleBuffer();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void shutDown() {
+
+		this.isShutDown = true;
+		TRANSPORTS.remove(this.address, this);
+		this.deliveryThread.interrupt();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void logBufferUtilization() {
+
+		final int numberOfQueuedEnvelopes;
+		synchronized (this.incomingQueue) {
+			numberOfQueuedEnvelopes = this.incomingQueue.size();
+		}
+
+		System.out.println("\tIn-JVM transport " + this.address + ": " + numberOfQueuedEnvelopes
+			+ " queued incoming envelopes");
+	}
+
+	/**
+	 * Requests the delivery thread to deliver the held back envelopes of a source channel again once the receiving
+	 * channel has a buffer available. The listener is called by the thread which recycles the buffer, so it must not
+	 * block.
+	 */
+	private final class RetryListener implements BufferAvailabilityListener {
+
+		/**
+		 * The source channel whose held back envelopes shall be delivered again.
+		 */
+		private final ChannelID source;
+
+		private RetryListener(final ChannelID source) {
+			this.source = source;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void bufferAvailable() {
+
+			synchronized (incomingQueue) {
+				retryRequests.add(this.source);
+				incomingQueue.notifyAll();
+			}
+		}
+	}
+}
@@ -15,7 +15,9 @@
 
 package eu.stratosphere.nephele.taskmanager.network;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SelectionKey;
 
@@ -24,6 +26,7 @@ import org.apache.commons.logging.LogFactory;
 
 import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
 import eu.stratosphere.nephele.taskmanager.routing.DefaultRoutingService;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.CorruptedEnvelopeException;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultDeserializer;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.NoBufferAvailableException;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
@@ -32,6 +35,9 @@ import eu.stratosphere.nephele.util.StringUtils;
 /**
  * This class represents an incoming data connection through which data streams are read and transformed into
  * {@link TransferEnvelope} objects.
+ * <p>
+ * Every connection starts with a {@link ConnectionHeader} which announces whether the connection transmits compressed
+ * frames.
  * 
  * @author warneke
  */
@@ -58,6 +64,17 @@ final class IncomingConnection {
 	 */
 	private final DefaultRoutingService routingService;
 
+	/**
+	 * The buffer to read the connection header into, <code>null</code> once the header has been read completely.
+	 */
+	private ByteBuffer connectionHeader = ByteBuffer.allocate(ConnectionHeader.HEADER_SIZE);
+
+	/**
+	 * The reader which decompresses the frames received through a compressed connection, <code>null</code> if the
+	 * connection is not compressed or the connection header has not yet been read.
+	 */
+	private FrameReader frameReader = null;
+
 	IncomingConnection(final DefaultRoutingService routingService, final ReadableByteChannel readableByteChannel) {
 		this.routingService = routingService;
 		this.deserializer = new DefaultDeserializer(routingService);
@@ -85,29 +102,158 @@ final class IncomingConnection {
 		}
 
 		this.deserializer.reset();
+
+		releaseFrameReader();
 	}
 
 	void read() throws IOException, InterruptedException, NoBufferAvailableException {
 
-		this.deserializer.read(this.readableByteChannel);
+		if (this.connectionHeader != null) {
+			if (!readConnectionHeader()) {
+				return;
+			}
+		}
+
+		if (this.frameReader != null) {
+			readFrames();
+			return;
+		}
+
+		try {
+			this.deserializer.read(this.readableByteChannel);
+		} catch (CorruptedEnvelopeException e) {
+			reportCorruptedEnvelope(e);
+			return;
+		}
 
 		final TransferEnvelope transferEnvelope = this.deserializer.getFullyDeserializedTransferEnvelope();
 		if (transferEnvelope != null) {
+			routeEnvelope(transferEnvelope);
+		}
+	}
 
-			final BufferProvider bufferProvider = this.deserializer.getBufferProvider();
-			if (bufferProvider == null) {
-				this.routingService.routeEnvelopeFromNetwork(transferEnvelope, false);
-			} else {
-				this.routingService.routeEnvelopeFromNetwork(transferEnvelope, bufferProvider.isShared());
+	/**
+	 * Reads the connection header and sets up the connection according to the announced settings.
+	 * 
+	 * @return <code>true</code> if the connection header has been read completely, <code>false</code> if more data is
+	 *         required
+	 * @throws IOException
+	 *         thrown if an I/O error occurs, the connection is closed or the header is invalid
+	 */
+	private boolean readConnectionHeader() throws IOException {
+
+		if (this.readableByteChannel.read(this.connectionHeader) == -1) {
+			if (this.connectionHeader.position() == 0) {
+				// The connection has been closed before any data has been sent
+				throw new EOFException();
 			}
+			throw new IOException("Unexpected end of stream while reading connection header");
+		}
+
+		if (this.connectionHeader.hasRemaining()) {
+			return false;
+		}
+
+		if (ConnectionHeader.isCompressed(this.connectionHeader)) {
+			this.frameReader = new FrameReader();
 		}
+		this.connectionHeader = null;
+
+		return true;
+	}
+
+	/**
+	 * Reads frames from the compressed connection and passes all envelopes contained in them on to the routing
+	 * service. Since the frames have already been taken from the connection, the method only returns once all their
+	 * envelopes have been processed or no buffer is available to store the next one.
+	 */
+	private void readFrames() throws IOException, InterruptedException, NoBufferAvailableException {
+
+		while (true) {
+
+			if (!this.frameReader.hasRemaining()) {
+				if (!this.frameReader.readFrame(this.readableByteChannel)) {
+					return;
+				}
+			}
+
+			// A frame always contains complete envelopes
+			try {
+				this.deserializer.read(this.frameReader);
+			} catch (CorruptedEnvelopeException e) {
+				reportCorruptedEnvelope(e);
+				continue;
+			}
+
+			final TransferEnvelope transferEnvelope = this.deserializer.getFullyDeserializedTransferEnvelope();
+			if (transferEnvelope == null) {
+				return;
+			}
+
+			routeEnvelope(transferEnvelope);
+		}
+	}
+
+	/**
+	 * Reports an envelope whose buffer has failed the checksum verification. The corrupted buffer has already been
+	 * released by the deserializer, so the connection remains usable for the following envelopes.
+	 * 
+	 * @param e
+	 *        the exception describing the corrupted envelope
+	 */
+	private void reportCorruptedEnvelope(final CorruptedEnvelopeException e) throws IOException, InterruptedException {
+
+		LOG.error("Received corrupted data from " + this.readableByteChannel + ": " + e.getMessage());
+
+		this.routingService.reportCorruptedEnvelope(e.getJobID(), e.getSourceID(), e.getSequenceNumber());
+	}
+
+	private void routeEnvelope(final TransferEnvelope transferEnvelope) throws IOException, InterruptedException {
+
+		final BufferProvider bufferProvider = this.deserializer.getBufferProvider();
+		if (bufferProvider == null) {
+			this.routingService.routeEnvelopeFromNetwork(transferEnvelope, false);
+		} else {
+			this.routingService.routeEnvelopeFromNetwork(transferEnvelope, bufferProvider.isShared());
+		}
+	}
+
+	/**
+	 * Checks whether the connection holds data which has already been received, but not yet been processed. The
+	 * connection must then be read again even if no new data arrives.
+	 * 
+	 * @return <code>true</code> if the connection holds data which has not yet been processed, <code>false</code>
+	 *         otherwise
+	 */
+	boolean hasBufferedData() {
+
+		if (this.frameReader == null) {
+			return false;
+		}
+
+		return this.frameReader.hasRemaining();
 	}
 
 	boolean isCloseUnexpected() {
 
+		if (this.connectionHeader != null) {
+			return (this.connectionHeader.position() > 0);
+		}
+
+		if (this.frameReader != null && this.frameReader.hasUnfinishedData()) {
+			return true;
+		}
+
 		return this.deserializer.hasUnfinishedData();
 	}
 
+	private void releaseFrameReader() {
+
+		if (this.frameReader != null) {
+			this.frameReader.close();
+		}
+	}
+
 	ReadableByteChannel getReadableByteChannel() {
 		return this.readableByteChannel;
 	}
@@ -120,6 +266,8 @@ final class IncomingConnection {
 			LOG.error("On IOException occured while closing the socket: + " + StringUtils.stringifyException(ioe));
 		}
 
+		releaseFrameReader();
+
 		// Cancel key
 		if (key != null) {
 			key.cancel();
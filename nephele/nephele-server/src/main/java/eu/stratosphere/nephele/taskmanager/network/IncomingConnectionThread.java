@@ -25,6 +25,7 @@ import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayDeque;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Queue;
 
 import org.apache.commons.logging.Log;
@@ -45,19 +46,34 @@ final class IncomingConnectionThread extends Thread {
 
 	private final Queue<SelectionKey> pendingReadEventSubscribeRequests = new ArrayDeque<SelectionKey>();
 
+	private final Queue<SocketChannel> pendingConnectionRegistrations = new ArrayDeque<SocketChannel>();
+
 	private final ServerSocketChannel listeningSocket;
 
+	/**
+	 * The threads among which the accepted connections are distributed. Only set for the listening thread.
+	 */
+	private final IncomingConnectionThread[] connectionThreads;
+
+	/**
+	 * The index of the thread in {@link #connectionThreads} that the next accepted connection is assigned to.
+	 */
+	private int nextConnectionThread = 0;
+
 	private static final class IncomingConnectionBufferAvailListener implements BufferAvailabilityListener {
 
 		private final Queue<SelectionKey> pendingReadEventSubscribeRequests;
 
 		private final SelectionKey key;
 
+		private final Selector selector;
+
 		private IncomingConnectionBufferAvailListener(final Queue<SelectionKey> pendingReadEventSubscribeRequests,
-				final SelectionKey key) {
+				final SelectionKey key, final Selector selector) {
 
 			this.pendingReadEventSubscribeRequests = pendingReadEventSubscribeRequests;
 			this.key = key;
+			this.selector = selector;
 		}
 
 		/**
@@ -69,17 +85,58 @@ final class IncomingConnectionThread extends Thread {
 			synchronized (this.pendingReadEventSubscribeRequests) {
 				this.pendingReadEventSubscribeRequests.add(this.key);
 			}
+
+			// do not wait for the select timeout of the thread owning the connection
+			this.selector.wakeup();
 		}
 	}
 
-	IncomingConnectionThread(final DefaultRoutingService routingService, final boolean isListeningThread,
-			final InetSocketAddress listeningAddress) throws IOException {
-		super("Incoming Connection Thread");
+	/**
+	 * Creates a thread that reads from the connections assigned to it.
+	 * 
+	 * @param routingService
+	 *        the routing service to pass the received envelopes to
+	 * @param index
+	 *        the index of the thread, used for its name
+	 * @throws IOException
+	 *         thrown if the selector of the thread could not be opened
+	 */
+	IncomingConnectionThread(final DefaultRoutingService routingService, final int index) throws IOException {
+		this(routingService, false, null, null, index);
+	}
+
+	/**
+	 * Creates a thread that listens for incoming connections and reads from them. If a list of further connection
+	 * threads is given, the accepted connections are distributed round-robin among this thread and the given ones.
+	 * 
+	 * @param routingService
+	 *        the routing service to pass the received envelopes to
+	 * @param listeningAddress
+	 *        the address to listen on for incoming connections
+	 * @param connectionThreads
+	 *        further threads to assign accepted connections to, may be empty
+	 * @throws IOException
+	 *         thrown if the listening socket could not be bound or the selector could not be opened
+	 */
+	IncomingConnectionThread(final DefaultRoutingService routingService, final InetSocketAddress listeningAddress,
+			final List<IncomingConnectionThread> connectionThreads) throws IOException {
+		this(routingService, true, listeningAddress, connectionThreads, 0);
+	}
+
+	private IncomingConnectionThread(final DefaultRoutingService routingService, final boolean isListeningThread,
+			final InetSocketAddress listeningAddress, final List<IncomingConnectionThread> connectionThreads, final int index) throws IOException {
+		super("Incoming Connection Thread " + index);
 
 		this.selector = Selector.open();
 		this.routingService = routingService;
 
 		if (isListeningThread) {
+			this.connectionThreads = new IncomingConnectionThread[connectionThreads.size() + 1];
+			this.connectionThreads[0] = this;
+			for (int i = 0; i < connectionThreads.size(); i++) {
+				this.connectionThreads[i + 1] = connectionThreads.get(i);
+			}
+
 			this.listeningSocket = ServerSocketChannel.open();
 			this.listeningSocket.configureBlocking(false);
 			listeningSocket.register(this.selector, SelectionKey.OP_ACCEPT);
@@ -87,12 +144,30 @@ final class IncomingConnectionThread extends Thread {
 			LOG.debug("Listening on " + this.listeningSocket.socket().getLocalSocketAddress());
 		} else {
 			this.listeningSocket = null;
+			this.connectionThreads = null;
 		}
 	}
 
+	/**
+	 * Hands an accepted connection to this thread, which registers it with its selector and reads from it.
+	 * 
+	 * @param clientSocket
+	 *        the socket channel of the accepted connection
+	 */
+	private void assignConnection(final SocketChannel clientSocket) {
+
+		synchronized (this.pendingConnectionRegistrations) {
+			this.pendingConnectionRegistrations.add(clientSocket);
+		}
+
+		this.selector.wakeup();
+	}
+
 	@Override
 	public void run() {
 
+		final Queue<SelectionKey> keysWithBufferedData = new ArrayDeque<SelectionKey>();
+
 		while (!this.isInterrupted()) {
 
 			synchronized (this.pendingReadEventSubscribeRequests) {
@@ -104,12 +179,26 @@ final class IncomingConnectionThread extends Thread {
 					try {
 						final SelectionKey newKey = socketChannel.register(this.selector, SelectionKey.OP_READ);
 						newKey.attach(incomingConnection);
+						if (incomingConnection.hasBufferedData()) {
+							keysWithBufferedData.add(newKey);
+						}
 					} catch (ClosedChannelException e) {
 						incomingConnection.reportTransmissionProblem(key, e);
 					}
 				}
 			}
 
+			// Data which has already been taken from the socket does not trigger a read event, so process it directly
+			while (!keysWithBufferedData.isEmpty()) {
+				doRead(keysWithBufferedData.poll());
+			}
+
+			synchronized (this.pendingConnectionRegistrations) {
+				while (!this.pendingConnectionRegistrations.isEmpty()) {
+					registerConnection(this.pendingConnectionRegistrations.poll());
+				}
+			}
+
 			try {
 				this.selector.select(500);
 			} catch (IOException e) {
@@ -146,6 +235,17 @@ final class IncomingConnectionThread extends Thread {
 			}
 		}
 
+		// Close the connections that have been assigned to this thread, but were never registered
+		synchronized (this.pendingConnectionRegistrations) {
+			while (!this.pendingConnectionRegistrations.isEmpty()) {
+				try {
+					this.pendingConnectionRegistrations.poll().close();
+				} catch (IOException ioe) {
+					LOG.debug(ioe);
+				}
+			}
+		}
+
 		// Finally, close the selector
 		try {
 			this.selector.close();
@@ -169,6 +269,18 @@ final class IncomingConnectionThread extends Thread {
 			return;
 		}
 
+		final IncomingConnectionThread connectionThread = this.connectionThreads[this.nextConnectionThread];
+		this.nextConnectionThread = (this.nextConnectionThread + 1) % this.connectionThreads.length;
+
+		if (connectionThread == this) {
+			registerConnection(clientSocket);
+		} else {
+			connectionThread.assignConnection(clientSocket);
+		}
+	}
+
+	private void registerConnection(final SocketChannel clientSocket) {
+
 		final IncomingConnection incomingConnection = new IncomingConnection(this.routingService, clientSocket);
 		SelectionKey clientKey = null;
 		try {
@@ -209,10 +321,18 @@ final class IncomingConnectionThread extends Thread {
 			}
 
 			final BufferAvailabilityListener bal = new IncomingConnectionBufferAvailListener(
-				this.pendingReadEventSubscribeRequests, key);
+				this.pendingReadEventSubscribeRequests, key, this.selector);
 			if (!e.getBufferProvider().registerBufferAvailabilityListener(bal)) {
 				// In the meantime, a buffer has become available again, subscribe to read event again
 
+				if (incomingConnection.hasBufferedData()) {
+					// The next iteration of the event loop also processes the buffered data
+					synchronized (this.pendingReadEventSubscribeRequests) {
+						this.pendingReadEventSubscribeRequests.add(key);
+					}
+					return;
+				}
+
 				try {
 					final SelectionKey newKey = socketChannel.register(this.selector, SelectionKey.OP_READ);
 					newKey.attach(incomingConnection);
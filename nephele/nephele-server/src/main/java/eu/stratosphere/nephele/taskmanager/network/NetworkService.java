@@ -18,12 +18,16 @@ package eu.stratosphere.nephele.taskmanager.network;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.nephele.configuration.GlobalConfiguration;
@@ -32,33 +36,59 @@ import eu.stratosphere.nephele.taskmanager.routing.RemoteReceiver;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
 
 /**
- * The network service manages incoming and outgoing network connection from and to other hosts.
+ * The network service is the default {@link NetworkTransport}. It manages incoming and outgoing TCP connections from
+ * and to other hosts.
  * <p>
  * This class is thread-safe.
  * 
  * @author warneke
  */
-public final class NetworkService {
+public final class NetworkService implements NetworkTransport {
 
 	/**
 	 * The default number of threads dealing with outgoing connections.
 	 */
 	private static final int DEFAULT_NUMBER_OF_OUTGOING_CONNECTION_THREADS = 1;
 
+	/**
+	 * The default number of threads dealing with incoming connections.
+	 */
+	private static final int DEFAULT_NUMBER_OF_INCOMING_CONNECTION_THREADS = 1;
+
 	/**
 	 * The default number of connection retries before giving up.
 	 */
 	private static final int DEFAULT_NUMBER_OF_CONNECTION_RETRIES = 10;
 
+	/**
+	 * The default setting whether TCP connections shall be compressed.
+	 */
+	private static final boolean DEFAULT_COMPRESS_CONNECTIONS = false;
+
+	/**
+	 * The default number of threads compressing the data of outgoing connections.
+	 */
+	private static final int DEFAULT_NUMBER_OF_COMPRESSION_THREADS = 2;
+
+	/**
+	 * The default minimum size of a block of envelopes which is compressed as a whole in bytes.
+	 */
+	private static final int DEFAULT_COMPRESSION_BLOCK_SIZE = 128 * 1024;
+
+	/**
+	 * The default setting whether the buffers of outgoing envelopes shall be protected with checksums.
+	 */
+	private static final boolean DEFAULT_COMPUTE_CHECKSUMS = false;
+
 	/**
 	 * List of active threads dealing with outgoing connections.
 	 */
 	private final List<OutgoingConnectionThread> outgoingConnectionThreads = new CopyOnWriteArrayList<OutgoingConnectionThread>();
 
 	/**
-	 * Thread dealing with incoming connections.
+	 * Threads dealing with incoming connections. The first one also accepts new connections.
 	 */
-	private final IncomingConnectionThread incomingConnectionThread;
+	private final List<IncomingConnectionThread> incomingConnectionThreads = new CopyOnWriteArrayList<IncomingConnectionThread>();
 
 	/**
 	 * Map containing currently active outgoing connections.
@@ -75,6 +105,21 @@ public final class NetworkService {
 	 */
 	private final DefaultRoutingService routingService;
 
+	/**
+	 * The threads compressing the data of outgoing connections, <code>null</code> if connections are not compressed.
+	 */
+	private final ExecutorService compressionThreads;
+
+	/**
+	 * The minimum size of a block of envelopes which is compressed as a whole in bytes.
+	 */
+	private final int compressionBlockSize;
+
+	/**
+	 * Stores whether the buffers of outgoing envelopes are protected with checksums.
+	 */
+	private final boolean computeChecksums;
+
 	public NetworkService(final DefaultRoutingService routingService, final InetAddress bindAddress, final int dataPort)
 			throws IOException {
 
@@ -82,6 +127,31 @@ public final class NetworkService {
 
 		this.routingService = routingService;
 
+		// The receivers learn from the connection header whether a connection is compressed
+		final boolean compressConnections = configuration.getBoolean("channel.network.compression.enable",
+			DEFAULT_COMPRESS_CONNECTIONS);
+		if (compressConnections) {
+			final int numberOfCompressionThreads = Math.max(1, configuration.getInteger(
+				"channel.network.compression.numberOfThreads", DEFAULT_NUMBER_OF_COMPRESSION_THREADS));
+			this.compressionThreads = Executors.newFixedThreadPool(numberOfCompressionThreads, new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Connection Compression Thread");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		} else {
+			this.compressionThreads = null;
+		}
+		this.compressionBlockSize = configuration.getInteger("channel.network.compression.blockSize",
+			DEFAULT_COMPRESSION_BLOCK_SIZE);
+
+		// Checksums are announced in the envelope header, so receivers verify them regardless of their own setting
+		this.computeChecksums = configuration.getBoolean("channel.network.checksums.enable",
+			DEFAULT_COMPUTE_CHECKSUMS);
+
 		// Start the connection threads
 		final int numberOfOutgoingConnectionThreads = configuration.getInteger(
 			"channel.network.numberOfOutgoingConnectionThreads", DEFAULT_NUMBER_OF_OUTGOING_CONNECTION_THREADS);
@@ -92,9 +162,22 @@ public final class NetworkService {
 			this.outgoingConnectionThreads.add(outgoingConnectionThread);
 		}
 
-		this.incomingConnectionThread = new IncomingConnectionThread(
-			this.routingService, true, new InetSocketAddress(bindAddress, dataPort));
-		this.incomingConnectionThread.start();
+		// the listening thread distributes the accepted connections among itself and the other incoming threads
+		final int numberOfIncomingConnectionThreads = Math.max(1, configuration.getInteger(
+			"channel.network.numberOfIncomingConnectionThreads", DEFAULT_NUMBER_OF_INCOMING_CONNECTION_THREADS));
+
+		final List<IncomingConnectionThread> readingThreads = new ArrayList<IncomingConnectionThread>();
+		for (int i = 1; i < numberOfIncomingConnectionThreads; i++) {
+			readingThreads.add(new IncomingConnectionThread(this.routingService, i));
+		}
+
+		this.incomingConnectionThreads.add(new IncomingConnectionThread(this.routingService, new InetSocketAddress(
+			bindAddress, dataPort), readingThreads));
+		this.incomingConnectionThreads.addAll(readingThreads);
+
+		for (final IncomingConnectionThread incomingConnectionThread : this.incomingConnectionThreads) {
+			incomingConnectionThread.start();
+		}
 
 		this.numberOfConnectionRetries = configuration.getInteger("channel.network.numberOfConnectionRetries",
 			DEFAULT_NUMBER_OF_CONNECTION_RETRIES);
@@ -111,13 +194,9 @@ public final class NetworkService {
 	}
 
 	/**
-	 * Queues an envelope for transfer to a particular target host.
-	 * 
-	 * @param remoteReceiver
-	 *        the address of the remote receiver
-	 * @param transferEnvelope
-	 *        the envelope to be transfered
+	 * {@inheritDoc}
 	 */
+	@Override
 	public void queueEnvelopeForTransfer(final RemoteReceiver remoteReceiver, final TransferEnvelope transferEnvelope) {
 
 		getOutgoingConnection(remoteReceiver).queueEnvelope(transferEnvelope);
@@ -136,8 +215,11 @@ public final class NetworkService {
 
 		if (outgoingConnection == null) {
 
+			final FrameCompressor frameCompressor = (this.compressionThreads == null) ? null : new FrameCompressor(
+				this.compressionThreads);
+
 			outgoingConnection = new OutgoingConnection(remoteReceiver, getOutgoingConnectionThread(),
-				this.numberOfConnectionRetries);
+				this.numberOfConnectionRetries, frameCompressor, this.compressionBlockSize, this.computeChecksums);
 
 			final OutgoingConnection oldEntry = this.outgoingConnections
 				.putIfAbsent(remoteReceiver, outgoingConnection);
@@ -151,17 +233,32 @@ public final class NetworkService {
 		return outgoingConnection;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
 	public void shutDown() {
 
 		// Interrupt the threads we started
-		this.incomingConnectionThread.interrupt();
+		final Iterator<IncomingConnectionThread> incomingIt = this.incomingConnectionThreads.iterator();
+		while (incomingIt.hasNext()) {
+			incomingIt.next().interrupt();
+		}
 
 		final Iterator<OutgoingConnectionThread> it = this.outgoingConnectionThreads.iterator();
 		while (it.hasNext()) {
 			it.next().interrupt();
 		}
+
+		if (this.compressionThreads != null) {
+			this.compressionThreads.shutdownNow();
+		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
 	public void logBufferUtilization() {
 
 		System.out.println("\tOutgoing connections:");
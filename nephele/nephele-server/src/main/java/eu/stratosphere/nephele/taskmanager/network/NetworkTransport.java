@@ -0,0 +1,53 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import eu.stratosphere.nephele.taskmanager.routing.RemoteReceiver;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+
+/**
+ * A network transport moves {@link TransferEnvelope} objects from the routing service of one task manager to the
+ * routing service of another task manager. Envelopes which reach the receiving task manager are passed on to its
+ * routing service via {@link eu.stratosphere.nephele.taskmanager.routing.DefaultRoutingService#routeEnvelopeFromNetwork}.
+ * <p>
+ * Implementations are loaded through {@link NetworkTransportUtils#loadNetworkTransport} and must provide a public
+ * constructor which accepts the task manager's routing service, the address to bind to and the data port. All
+ * implementations must be thread-safe.
+ */
+public interface NetworkTransport {
+
+	/**
+	 * Queues an envelope for transfer to a particular remote receiver. After the envelope has been queued, the
+	 * transport is responsible for recycling its buffer.
+	 * 
+	 * @param remoteReceiver
+	 *        the remote receiver the envelope shall be transfered to
+	 * @param transferEnvelope
+	 *        the envelope to be transfered
+	 */
+	void queueEnvelopeForTransfer(RemoteReceiver remoteReceiver, TransferEnvelope transferEnvelope);
+
+	/**
+	 * Shuts down the transport and stops all of its internal threads.
+	 */
+	void shutDown();
+
+	/**
+	 * Writes the current utilization of the transport's internal queues to the console. This method is primarily for
+	 * debugging purposes.
+	 */
+	void logBufferUtilization();
+}
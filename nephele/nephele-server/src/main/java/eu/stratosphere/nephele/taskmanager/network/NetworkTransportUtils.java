@@ -0,0 +1,95 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+
+import eu.stratosphere.nephele.taskmanager.routing.DefaultRoutingService;
+import eu.stratosphere.nephele.util.StringUtils;
+
+/**
+ * This class contains utility functions to load and configure the {@link NetworkTransport} used by a task manager.
+ */
+public final class NetworkTransportUtils {
+
+	/**
+	 * The key to retrieve the class name of the network transport to load.
+	 */
+	public static final String TRANSPORT_CLASSNAME_KEY = "channel.network.transport.classname";
+
+	/**
+	 * The class name of the network transport which is loaded if no other transport is configured.
+	 */
+	public static final String DEFAULT_TRANSPORT_CLASSNAME = NetworkService.class.getName();
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private NetworkTransportUtils() {
+	}
+
+	/**
+	 * Creates an instance of the network transport with the given class name.
+	 * 
+	 * @param transportClassName
+	 *        the class name of the network transport to load
+	 * @param routingService
+	 *        the routing service to pass incoming envelopes to
+	 * @param bindAddress
+	 *        the address the transport shall bind to
+	 * @param dataPort
+	 *        the port the transport shall accept incoming data on
+	 * @return the loaded network transport
+	 * @throws IOException
+	 *         thrown if the network transport cannot be loaded or fails to start
+	 */
+	public static NetworkTransport loadNetworkTransport(final String transportClassName,
+			final DefaultRoutingService routingService, final InetAddress bindAddress, final int dataPort)
+			throws IOException {
+
+		final Class<? extends NetworkTransport> transportClass;
+		try {
+			transportClass = Class.forName(transportClassName).asSubclass(NetworkTransport.class);
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Cannot find network transport class " + transportClassName);
+		} catch (ClassCastException e) {
+			throw new IOException(transportClassName + " does not implement " + NetworkTransport.class.getName());
+		}
+
+		try {
+
+			final Constructor<? extends NetworkTransport> constructor = transportClass.getConstructor(
+				DefaultRoutingService.class, InetAddress.class, int.class);
+
+			return constructor.newInstance(routingService, bindAddress, Integer.valueOf(dataPort));
+
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Cannot create network transport: " + StringUtils.stringifyException(e.getCause()));
+		} catch (NoSuchMethodException e) {
+			throw new IOException("Cannot create network transport: " + StringUtils.stringifyException(e));
+		} catch (InstantiationException e) {
+			throw new IOException("Cannot create network transport: " + StringUtils.stringifyException(e));
+		} catch (IllegalAccessException e) {
+			throw new IOException("Cannot create network transport: " + StringUtils.stringifyException(e));
+		}
+	}
+}
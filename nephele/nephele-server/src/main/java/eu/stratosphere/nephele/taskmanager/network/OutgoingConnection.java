@@ -17,17 +17,23 @@ package eu.stratosphere.nephele.taskmanager.network;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayDeque;
 import java.util.Iterator;
 import java.util.Queue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
 import eu.stratosphere.nephele.taskmanager.routing.DefaultRoutingService;
 import eu.stratosphere.nephele.taskmanager.routing.RemoteReceiver;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
@@ -38,6 +44,17 @@ import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultSerializer;
  * {@link TransferEnvelope} objects are received from the {@link DefaultRoutingService} and added to a queue. An
  * additional network thread then takes the envelopes from the queue and transmits them to the respective destination
  * host.
+ * <p>
+ * Envelopes whose data is kept in memory are transmitted in batches: the headers and buffers of several queued
+ * envelopes are handed to the TCP connection in a single gathering write. Envelopes with a file buffer are transmitted
+ * individually, so their data can be transferred from the file to the connection without being copied into memory.
+ * <p>
+ * If the connection is compressed, the queued envelopes are instead serialized into blocks of roughly equal size. Each
+ * block is turned into a frame by a {@link FrameCompressor} while the previous frame is transmitted. If the next frame
+ * is not ready when the previous one has been transmitted, the connection unsubscribes from the NIO write event until
+ * the compression is complete, so the outgoing connection thread can serve its other connections in the meantime.
+ * <p>
+ * Every TCP connection starts with a {@link ConnectionHeader} which tells the receiver whether it is compressed.
  * 
  * @author warneke
  */
@@ -66,13 +83,113 @@ final class OutgoingConnection {
 	/**
 	 * The {@link DefaultSerializer} object used to transform the envelopes into a byte stream.
 	 */
-	private final DefaultSerializer serializer = new DefaultSerializer();
+	private final DefaultSerializer serializer;
 
 	/**
 	 * The {@link TransferEnvelope} that is currently processed.
 	 */
 	private TransferEnvelope currentEnvelope = null;
 
+	/**
+	 * The maximum number of envelopes which are transmitted by a single gathering write.
+	 */
+	private static final int MAXIMUM_NUMBER_OF_BATCHED_ENVELOPES = 16;
+
+	/**
+	 * The initial size of the byte buffers holding the serialized envelope headers in bytes.
+	 */
+	private static final int INITIAL_HEADER_BUFFER_SIZE = 256;
+
+	/**
+	 * An empty byte buffer used in place of the data of envelopes without a buffer.
+	 */
+	private static final ByteBuffer EMPTY_BYTE_BUFFER = ByteBuffer.allocate(0);
+
+	/**
+	 * The envelopes which are currently transmitted by gathering writes. The envelopes remain in the queue of
+	 * envelopes until their transmission is complete.
+	 */
+	private final TransferEnvelope[] batchedEnvelopes = new TransferEnvelope[MAXIMUM_NUMBER_OF_BATCHED_ENVELOPES];
+
+	/**
+	 * The byte buffers holding the serialized headers of the batched envelopes.
+	 */
+	private final ByteBuffer[] headerBuffers = new ByteBuffer[MAXIMUM_NUMBER_OF_BATCHED_ENVELOPES];
+
+	/**
+	 * The byte buffers handed to the gathering write, alternating between an envelope's header and its data.
+	 */
+	private final ByteBuffer[] gatheringBuffers = new ByteBuffer[2 * MAXIMUM_NUMBER_OF_BATCHED_ENVELOPES];
+
+	/**
+	 * The number of envelopes in the current batch.
+	 */
+	private int numberOfBatchedEnvelopes = 0;
+
+	/**
+	 * The number of envelopes of the current batch which have been completely transmitted.
+	 */
+	private int numberOfTransmittedEnvelopes = 0;
+
+	/**
+	 * The compressor which creates the frames of a compressed connection, <code>null</code> if the connection is not
+	 * compressed.
+	 */
+	private final FrameCompressor frameCompressor;
+
+	/**
+	 * The minimum size of a block of serialized envelopes in bytes before it is turned into a frame.
+	 */
+	private final int blockSize;
+
+	/**
+	 * The channel the envelopes of the next block are serialized into.
+	 */
+	private BlockChannel blockChannel = null;
+
+	/**
+	 * The frame which is currently transmitted.
+	 */
+	private FrameCompressor.Frame currentFrame = null;
+
+	/**
+	 * The point in time in nanoseconds at which the transmission of the current frame started.
+	 */
+	private long currentFrameStartTime = 0L;
+
+	/**
+	 * The frame which is transmitted after the current one.
+	 */
+	private Future<FrameCompressor.Frame> nextFrame = null;
+
+	/**
+	 * The selection key of the connection while it waits for the next frame to be created, <code>null</code> if it does
+	 * not wait. While waiting, the connection is not subscribed to the NIO write event.
+	 */
+	private final AtomicReference<SelectionKey> keyWaitingForFrame = new AtomicReference<SelectionKey>();
+
+	/**
+	 * Resubscribes the connection to the NIO write event once the frame it waits for has been created. The listener is
+	 * run by the compression thread.
+	 */
+	private final Runnable frameCompletionListener = new Runnable() {
+
+		@Override
+		public void run() {
+
+			final SelectionKey key = keyWaitingForFrame.getAndSet(null);
+			if (key != null && key.isValid()) {
+				connectionThread.subscribeToWriteEvent(key);
+			}
+		}
+	};
+
+	/**
+	 * The connection header which remains to be sent through the current TCP connection, <code>null</code> if it has
+	 * already been sent.
+	 */
+	private ByteBuffer connectionHeader = null;
+
 	/**
 	 * Stores whether the underlying TCP connection is established. As this variable is accessed by the byte buffered
 	 * channel manager and the outgoing connection thread, it must be protected by a monitor.
@@ -115,13 +232,24 @@ final class OutgoingConnection {
 	 *        the connection thread which actually handles the network transfer
 	 * @param numberOfConnectionRetries
 	 *        the number of connection retries allowed before an I/O error is reported
+	 * @param frameCompressor
+	 *        the compressor to create the frames of a compressed connection with or <code>null</code> if the
+	 *        connection shall not be compressed
+	 * @param blockSize
+	 *        the minimum size of a block of serialized envelopes in bytes before it is turned into a frame
+	 * @param computeChecksums
+	 *        <code>true</code> to protect the buffers of the transmitted envelopes with checksums, <code>false</code>
+	 *        otherwise
 	 */
 	OutgoingConnection(RemoteReceiver remoteReceiver, OutgoingConnectionThread connectionThread,
-			int numberOfConnectionRetries) {
+			int numberOfConnectionRetries, FrameCompressor frameCompressor, int blockSize, boolean computeChecksums) {
 
 		this.remoteReceiver = remoteReceiver;
 		this.connectionThread = connectionThread;
 		this.numberOfConnectionRetries = numberOfConnectionRetries;
+		this.frameCompressor = frameCompressor;
+		this.blockSize = blockSize;
+		this.serializer = new DefaultSerializer(computeChecksums);
 	}
 
 	/**
@@ -229,6 +357,8 @@ final class OutgoingConnection {
 					this.currentEnvelope = null;
 				}
 			}
+			recycleBatchedEnvelopes();
+			dropFrames();
 
 			// Notify all other tasks which are waiting for data to be transmitted
 			final Iterator<TransferEnvelope> iter = this.queuedEnvelopes.iterator();
@@ -302,9 +432,60 @@ final class OutgoingConnection {
 					this.currentEnvelope = null;
 				}
 			}
+			recycleBatchedEnvelopes();
+			dropFrames();
 		}
 	}
 
+	/**
+	 * Drops the frame which is currently transmitted and the one which is created for transmission afterwards. The
+	 * buffers of the envelopes contained in the frames have already been recycled.
+	 */
+	private void dropFrames() {
+
+		this.keyWaitingForFrame.set(null);
+		this.blockChannel = null;
+		this.currentFrame = null;
+		if (this.nextFrame != null) {
+			this.nextFrame.cancel(false);
+			this.nextFrame = null;
+		}
+	}
+
+	/**
+	 * Drops the envelopes of the current batch which have not yet been completely transmitted and recycles their
+	 * buffers. The dropped envelopes are removed from the queue of envelopes. This method must be called while holding
+	 * the lock on the queue of envelopes.
+	 */
+	private void recycleBatchedEnvelopes() {
+
+		for (int i = this.numberOfTransmittedEnvelopes; i < this.numberOfBatchedEnvelopes; ++i) {
+
+			final Buffer buffer = this.batchedEnvelopes[i].getBuffer();
+			if (buffer != null) {
+				buffer.recycleBuffer();
+			}
+			this.queuedEnvelopes.remove(this.batchedEnvelopes[i]);
+		}
+
+		clearBatch();
+	}
+
+	/**
+	 * Resets the current batch of envelopes.
+	 */
+	private void clearBatch() {
+
+		for (int i = 0; i < this.numberOfBatchedEnvelopes; ++i) {
+			this.batchedEnvelopes[i] = null;
+			this.gatheringBuffers[2 * i] = null;
+			this.gatheringBuffers[2 * i + 1] = null;
+		}
+
+		this.numberOfBatchedEnvelopes = 0;
+		this.numberOfTransmittedEnvelopes = 0;
+	}
+
 	/**
 	 * Checks whether further retries are left for establishing the underlying TCP connection.
 	 * 
@@ -321,7 +502,9 @@ final class OutgoingConnection {
 	}
 
 	/**
-	 * Writes the content of the current {@link TransferEnvelope} object to the underlying TCP connection.
+	 * Writes the content of the queued {@link TransferEnvelope} objects to the underlying TCP connection. Envelopes
+	 * without a file buffer are written in batches by means of a gathering write, an envelope with a file buffer is
+	 * written on its own.
 	 * <p>
 	 * This method should only be called by the {@link OutgoingConnectionThread} object.
 	 * 
@@ -333,15 +516,48 @@ final class OutgoingConnection {
 
 		final WritableByteChannel writableByteChannel = (WritableByteChannel) this.selectionKey.channel();
 
-		if (this.currentEnvelope == null) {
+		if (this.connectionHeader != null) {
+			writableByteChannel.write(this.connectionHeader);
+			if (this.connectionHeader.hasRemaining()) {
+				return true;
+			}
+			this.connectionHeader = null;
+		}
+
+		if (this.frameCompressor != null) {
+			return writeFrames((GatheringByteChannel) writableByteChannel);
+		}
+
+		if (this.currentEnvelope == null && this.numberOfBatchedEnvelopes == 0) {
 			synchronized (this.queuedEnvelopes) {
 				if (this.queuedEnvelopes.isEmpty()) {
 					return false;
+				}
+
+				final TransferEnvelope head = this.queuedEnvelopes.peek();
+				if (isBatchable(head) && writableByteChannel instanceof GatheringByteChannel) {
+					final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
+					while (it.hasNext() && this.numberOfBatchedEnvelopes < MAXIMUM_NUMBER_OF_BATCHED_ENVELOPES) {
+						final TransferEnvelope transferEnvelope = it.next();
+						if (!isBatchable(transferEnvelope)) {
+							break;
+						}
+						this.batchedEnvelopes[this.numberOfBatchedEnvelopes++] = transferEnvelope;
+					}
 				} else {
-					this.currentEnvelope = this.queuedEnvelopes.peek();
+					this.currentEnvelope = head;
 					this.serializer.setTransferEnvelope(this.currentEnvelope);
 				}
 			}
+
+			if (this.numberOfBatchedEnvelopes > 0) {
+				prepareBatch();
+			}
+		}
+
+		if (this.numberOfBatchedEnvelopes > 0) {
+			writeBatch((GatheringByteChannel) writableByteChannel);
+			return true;
 		}
 
 		if (!this.serializer.write(writableByteChannel)) {
@@ -360,6 +576,194 @@ final class OutgoingConnection {
 		return true;
 	}
 
+	/**
+	 * Writes the frames of a compressed connection to the given channel. While a frame is transmitted, the next block
+	 * of envelopes is already compressed by the compression threads. If the next frame is not ready yet, the method
+	 * returns without waiting for it.
+	 * 
+	 * @param gatheringByteChannel
+	 *        the channel to write the frames to
+	 * @return <code>true</code> if there is more data from this/other queued envelopes to be written to this channel
+	 * @throws IOException
+	 *         thrown if an error occurs while creating a frame or writing the data to the channel
+	 */
+	private boolean writeFrames(final GatheringByteChannel gatheringByteChannel) throws IOException {
+
+		if (this.currentFrame == null) {
+
+			if (this.nextFrame == null) {
+				this.nextFrame = createFrame();
+				if (this.nextFrame == null) {
+					return false;
+				}
+			}
+
+			if (!this.nextFrame.isDone() && !waitForNextFrame()) {
+				return true;
+			}
+
+			this.currentFrame = FrameCompressor.getFrame(this.nextFrame);
+			this.currentFrameStartTime = System.nanoTime();
+			this.nextFrame = createFrame();
+		}
+
+		gatheringByteChannel.write(this.currentFrame.getData());
+
+		if (this.currentFrame.isTransmitted()) {
+			this.frameCompressor.reportTransmission(this.currentFrame, System.nanoTime() - this.currentFrameStartTime);
+			this.currentFrame = null;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Unsubscribes the connection from the NIO write event until the next frame has been created.
+	 * 
+	 * @return <code>true</code> if the next frame has been created in the meantime and the connection remains
+	 *         subscribed to the write event, <code>false</code> if the connection waits for the frame
+	 */
+	private boolean waitForNextFrame() {
+
+		this.selectionKey.interestOps(this.selectionKey.interestOps() & ~SelectionKey.OP_WRITE);
+		this.keyWaitingForFrame.set(this.selectionKey);
+
+		// The listener may have missed the key if the frame has been created in the meantime
+		if (this.nextFrame.isDone() && this.keyWaitingForFrame.getAndSet(null) != null) {
+			this.selectionKey.interestOps(this.selectionKey.interestOps() | SelectionKey.OP_WRITE);
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Serializes queued envelopes into a block until the block has reached its minimum size or the queue is empty and
+	 * hands the block over to the frame compressor. The buffers of the serialized envelopes are recycled immediately.
+	 * 
+	 * @return the future result of the frame creation or <code>null</code> if no envelope is queued
+	 * @throws IOException
+	 *         thrown if an error occurs while serializing the envelopes
+	 */
+	private Future<FrameCompressor.Frame> createFrame() throws IOException {
+
+		if (this.blockChannel == null) {
+			this.blockChannel = new BlockChannel(this.blockSize);
+		}
+
+		while (this.blockChannel.size() < this.blockSize) {
+
+			synchronized (this.queuedEnvelopes) {
+				this.currentEnvelope = this.queuedEnvelopes.peek();
+				if (this.currentEnvelope == null) {
+					break;
+				}
+			}
+
+			this.serializer.setTransferEnvelope(this.currentEnvelope);
+			while (this.serializer.write(this.blockChannel)) {
+			}
+
+			if (this.currentEnvelope.getBuffer() != null) {
+				this.currentEnvelope.getBuffer().recycleBuffer();
+			}
+
+			synchronized (this.queuedEnvelopes) {
+				this.queuedEnvelopes.poll();
+				this.currentEnvelope = null;
+			}
+		}
+
+		if (this.blockChannel.size() == 0) {
+			return null;
+		}
+
+		final ByteBuffer block = this.blockChannel.getBlock();
+		this.blockChannel = null;
+
+		return this.frameCompressor.createFrame(block, this.frameCompletionListener);
+	}
+
+	/**
+	 * Checks whether the given {@link TransferEnvelope} can be transmitted as part of a gathering write, i.e. whether
+	 * its data is kept in memory.
+	 * 
+	 * @param transferEnvelope
+	 *        the transfer envelope to check
+	 * @return <code>true</code> if the envelope can be transmitted as part of a gathering write, <code>false</code>
+	 *         otherwise
+	 */
+	private static boolean isBatchable(final TransferEnvelope transferEnvelope) {
+
+		final Buffer buffer = transferEnvelope.getBuffer();
+
+		return (buffer == null || buffer instanceof MemoryBuffer);
+	}
+
+	/**
+	 * Serializes the headers of the batched envelopes and sets up the byte buffers for the gathering write.
+	 * 
+	 * @throws IOException
+	 *         thrown if an error occurs while serializing the envelope headers
+	 */
+	private void prepareBatch() throws IOException {
+
+		for (int i = 0; i < this.numberOfBatchedEnvelopes; ++i) {
+
+			ByteBuffer headerBuffer = this.headerBuffers[i];
+			if (headerBuffer == null) {
+				headerBuffer = ByteBuffer.allocate(INITIAL_HEADER_BUFFER_SIZE);
+			}
+			headerBuffer = this.serializer.serializeHeader(this.batchedEnvelopes[i], headerBuffer);
+			this.headerBuffers[i] = headerBuffer;
+
+			final Buffer buffer = this.batchedEnvelopes[i].getBuffer();
+			this.gatheringBuffers[2 * i] = headerBuffer;
+			this.gatheringBuffers[2 * i + 1] = (buffer == null) ? EMPTY_BYTE_BUFFER
+				: ((MemoryBuffer) buffer).getByteBuffer();
+		}
+	}
+
+	/**
+	 * Writes the remaining data of the current batch to the given channel with a single gathering write. Afterwards,
+	 * the envelopes which have been completely transmitted are removed from the queue and their buffers are recycled.
+	 * 
+	 * @param gatheringByteChannel
+	 *        the channel to write the batch to
+	 * @throws IOException
+	 *         thrown if an error occurs while writing the data to the channel
+	 */
+	private void writeBatch(final GatheringByteChannel gatheringByteChannel) throws IOException {
+
+		final int offset = 2 * this.numberOfTransmittedEnvelopes;
+		gatheringByteChannel.write(this.gatheringBuffers, offset, 2 * this.numberOfBatchedEnvelopes - offset);
+
+		while (this.numberOfTransmittedEnvelopes < this.numberOfBatchedEnvelopes) {
+
+			final int index = 2 * this.numberOfTransmittedEnvelopes;
+			if (this.gatheringBuffers[index].hasRemaining() || this.gatheringBuffers[index + 1].hasRemaining()) {
+				break;
+			}
+
+			final TransferEnvelope transferEnvelope = this.batchedEnvelopes[this.numberOfTransmittedEnvelopes++];
+
+			// Make sure we recycle the attached memory buffers correctly
+			if (transferEnvelope.getBuffer() != null) {
+				transferEnvelope.getBuffer().recycleBuffer();
+			}
+
+			synchronized (this.queuedEnvelopes) {
+				this.queuedEnvelopes.remove(transferEnvelope);
+			}
+		}
+
+		if (this.numberOfTransmittedEnvelopes == this.numberOfBatchedEnvelopes) {
+			synchronized (this.queuedEnvelopes) {
+				clearBatch();
+			}
+		}
+	}
+
 	/**
 	 * Requests to close the underlying TCP connection. The request is ignored if at least one {@link TransferEnvelope}
 	 * is queued.
@@ -478,7 +882,11 @@ final class OutgoingConnection {
 				return false;
 			}
 
-			if (this.currentEnvelope != null) {
+			if (this.currentEnvelope != null || this.numberOfBatchedEnvelopes > 0) {
+				return false;
+			}
+
+			if (this.currentFrame != null || this.nextFrame != null) {
 				return false;
 			}
 
@@ -486,6 +894,16 @@ final class OutgoingConnection {
 		}
 	}
 
+	/**
+	 * Reports that a new TCP connection has been established. The connection header is sent before any other data.
+	 * <p>
+	 * This method should only be called by the {@link OutgoingConnectionThread} object.
+	 */
+	void reportConnectionEstablished() {
+
+		this.connectionHeader = ConnectionHeader.create(this.frameCompressor != null);
+	}
+
 	/**
 	 * Sets the selection key representing the interest set of the underlying TCP NIO connection.
 	 * 
@@ -519,4 +937,73 @@ final class OutgoingConnection {
 
 		return retVal;
 	}
+
+	/**
+	 * A writable byte channel which collects the written data in a growing block of memory.
+	 */
+	private static final class BlockChannel implements WritableByteChannel {
+
+		/**
+		 * The block of memory holding the written data.
+		 */
+		private ByteBuffer block;
+
+		private BlockChannel(final int initialCapacity) {
+			this.block = ByteBuffer.allocate(initialCapacity);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int write(final ByteBuffer src) {
+
+			final int length = src.remaining();
+			if (this.block.remaining() < length) {
+				final ByteBuffer newBlock = ByteBuffer.allocate(Math.max(2 * this.block.capacity(),
+					this.block.position() + length));
+				this.block.flip();
+				newBlock.put(this.block);
+				this.block = newBlock;
+			}
+
+			this.block.put(src);
+
+			return length;
+		}
+
+		/**
+		 * Returns the number of bytes written to the channel.
+		 * 
+		 * @return the number of bytes written to the channel
+		 */
+		private int size() {
+			return this.block.position();
+		}
+
+		/**
+		 * Returns the block of written data, ready to be read.
+		 * 
+		 * @return the block of written data
+		 */
+		private ByteBuffer getBlock() {
+			this.block.flip();
+			return this.block;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() {
+		}
+	}
 }
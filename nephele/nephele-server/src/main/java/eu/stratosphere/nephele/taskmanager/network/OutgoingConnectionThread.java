@@ -230,6 +230,7 @@ final class OutgoingConnectionThread extends Thread {
 			final SelectionKey channelKey = socketChannel.register(selector, SelectionKey.OP_WRITE
 				| SelectionKey.OP_READ);
 			outgoingConnection.setSelectionKey(channelKey);
+			outgoingConnection.reportConnectionEstablished();
 			channelKey.attach(outgoingConnection);
 
 		} catch (IOException ioe) {
@@ -47,7 +47,7 @@ public abstract class AbstractOutputChannelContext implements OutputChannelConte
 		while (it.hasNext()) {
 
 			final AbstractEvent event = it.next();
-			if (event instanceof AbstractTaskEvent) {
+			if (event instanceof AbstractTaskEvent || event instanceof ChannelCreditEvent) {
 				processEventAsynchronously(event);
 			} else {
 				processEventSynchronously(event);
@@ -0,0 +1,64 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.routing;
+
+import eu.stratosphere.nephele.event.task.AbstractEvent;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+
+/**
+ * This event is sent by an {@link InputChannelContext} of a network channel. It announces to the sender that the
+ * given number of {@link TransferEnvelope} objects with a buffer attached have been consumed (or discarded) by the
+ * receiver, so the sender may ship the same number of further envelopes for this channel.
+ */
+public final class ChannelCreditEvent extends AbstractEvent {
+
+	/**
+	 * The number of credits granted to the sender.
+	 */
+	private final int credits;
+
+	/**
+	 * Constructs a new channel credit event.
+	 *
+	 * @param credits
+	 *        the number of credits granted to the sender
+	 */
+	public ChannelCreditEvent(final int credits) {
+
+		if (credits <= 0) {
+			throw new IllegalArgumentException("Argument credits must be positive.");
+		}
+
+		this.credits = credits;
+	}
+
+	/**
+	 * Default constructor required by kryo.
+	 */
+	@SuppressWarnings("unused")
+	private ChannelCreditEvent() {
+		this.credits = 0;
+	}
+
+	/**
+	 * Returns the number of credits granted to the sender.
+	 *
+	 * @return the number of credits granted to the sender
+	 */
+	public int getCredits() {
+		return this.credits;
+	}
+}
@@ -43,7 +43,8 @@ import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProviderBroker;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.GlobalBufferPool;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.LocalBufferPool;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.LocalBufferPoolOwner;
-import eu.stratosphere.nephele.taskmanager.network.NetworkService;
+import eu.stratosphere.nephele.taskmanager.network.NetworkTransport;
+import eu.stratosphere.nephele.taskmanager.network.NetworkTransportUtils;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
 
 public final class DefaultRoutingService implements RoutingService, BufferProviderBroker {
@@ -57,6 +58,8 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 
 	private static final boolean DEFAULT_MERGE_SPILLED_BUFFERS = true;
 
+	private static final boolean DEFAULT_SHORT_CIRCUIT_LOCAL_CHANNELS = true;
+
 	// TODO: Make this configurable
 	private static final int NUMBER_OF_CHANNELS_FOR_MULTICAST = 10;
 
@@ -64,7 +67,7 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 
 	private final Map<AbstractID, LocalBufferPoolOwner> localBufferPoolOwner = new ConcurrentHashMap<AbstractID, LocalBufferPoolOwner>();
 
-	private final NetworkService networkService;
+	private final NetworkTransport networkTransport;
 
 	private final ChannelLookupProtocol channelLookupService;
 
@@ -76,6 +79,12 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 
 	private final boolean mergeSpilledBuffers;
 
+	/**
+	 * Stores whether network channels whose ends run on this instance bypass the channel lookup and hand their memory
+	 * buffers over to the receiver without copying them.
+	 */
+	private final boolean shortCircuitLocalChannels;
+
 	private final boolean multicastEnabled = true;
 
 	/**
@@ -99,8 +108,10 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 		// Initialize the transit buffer pool
 		this.transitBufferPool = new LocalBufferPool(128, true);
 
-		this.networkService = new NetworkService(this, localInstanceConnectionInfo.getAddress(),
-			localInstanceConnectionInfo.getDataPort());
+		final String transportClassName = GlobalConfiguration.getString(NetworkTransportUtils.TRANSPORT_CLASSNAME_KEY,
+			NetworkTransportUtils.DEFAULT_TRANSPORT_CLASSNAME);
+		this.networkTransport = NetworkTransportUtils.loadNetworkTransport(transportClassName, this,
+			localInstanceConnectionInfo.getAddress(), localInstanceConnectionInfo.getDataPort());
 
 		this.allowSenderSideSpilling = GlobalConfiguration.getBoolean("channel.network.allowSenderSideSpilling",
 			DEFAULT_ALLOW_SENDER_SIDE_SPILLING);
@@ -108,9 +119,13 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 		this.mergeSpilledBuffers = GlobalConfiguration.getBoolean("channel.network.mergeSpilledBuffers",
 			DEFAULT_MERGE_SPILLED_BUFFERS);
 
-		LOG.info("Initialized default routing service with sender-side spilling "
+		this.shortCircuitLocalChannels = GlobalConfiguration.getBoolean("channel.network.shortCircuitLocalChannels",
+			DEFAULT_SHORT_CIRCUIT_LOCAL_CHANNELS);
+
+		LOG.info("Initialized default routing service with transport " + transportClassName + ", sender-side spilling "
 			+ (this.allowSenderSideSpilling ? "enabled" : "disabled")
-			+ (this.mergeSpilledBuffers ? " and spilled buffer merging enabled" : ""));
+			+ (this.mergeSpilledBuffers ? " and spilled buffer merging enabled" : "")
+			+ (this.shortCircuitLocalChannels ? ", local network channels are short-circuited" : ""));
 	}
 
 	/**
@@ -163,7 +178,7 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 						+ (isActive ? "active" : "inactive") + ")");
 				}
 
-				this.registeredChannels.put(outputChannelContext.getChannelID(), outputChannelContext);
+				registerChannelContext(outputChannelContext);
 			}
 		}
 
@@ -187,7 +202,7 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 					addReceiverListHint(inputChannelContext);
 				}
 
-				this.registeredChannels.put(inputChannelContext.getChannelID(), inputChannelContext);
+				registerChannelContext(inputChannelContext);
 			}
 
 			// Add input gate context to set of local buffer pool owner
@@ -218,25 +233,13 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 		Iterator<ChannelID> channelIterator = environment.getOutputChannelIDs().iterator();
 
 		while (channelIterator.hasNext()) {
-
-			final ChannelID outputChannelID = channelIterator.next();
-			final ChannelContext context = this.registeredChannels.remove(outputChannelID);
-			if (context != null) {
-				context.destroy();
-			}
-			this.receiverCache.remove(outputChannelID);
+			unregisterChannelContext(channelIterator.next());
 		}
 
 		channelIterator = environment.getInputChannelIDs().iterator();
 
 		while (channelIterator.hasNext()) {
-
-			final ChannelID outputChannelID = channelIterator.next();
-			final ChannelContext context = this.registeredChannels.remove(outputChannelID);
-			if (context != null) {
-				context.destroy();
-			}
-			this.receiverCache.remove(outputChannelID);
+			unregisterChannelContext(channelIterator.next());
 		}
 
 		final Iterator<GateID> inputGateIterator = environment.getInputGateIDs().iterator();
@@ -259,12 +262,56 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 		redistributeGlobalBuffers();
 	}
 
+	/**
+	 * Registers the given channel context. If the context belongs to a network channel whose other end is already
+	 * registered with this routing service, the channel is short-circuited.
+	 * 
+	 * @param channelContext
+	 *        the channel context to be registered
+	 */
+	void registerChannelContext(final ChannelContext channelContext) {
+
+		if (channelContext.getType() == ChannelType.NETWORK && this.shortCircuitLocalChannels) {
+
+			final ChannelContext connectedContext = this.registeredChannels.get(channelContext
+				.getConnectedChannelID());
+			if (connectedContext != null && connectedContext.isInputChannel() != channelContext.isInputChannel()) {
+				if (channelContext.isInputChannel()) {
+					addColocationHint(connectedContext, channelContext);
+				} else {
+					addColocationHint(channelContext, connectedContext);
+				}
+			}
+		}
+
+		this.registeredChannels.put(channelContext.getChannelID(), channelContext);
+	}
+
+	/**
+	 * Unregisters and destroys the channel context with the given ID and drops the routing entries of the channel.
+	 * 
+	 * @param channelID
+	 *        the ID of the channel whose context shall be unregistered
+	 */
+	void unregisterChannelContext(final ChannelID channelID) {
+
+		final ChannelContext context = this.registeredChannels.remove(channelID);
+		if (context != null) {
+			context.destroy();
+			// The sender of a short-circuited channel must look up the receiver again
+			if (context.isInputChannel() && context.getType() == ChannelType.NETWORK) {
+				this.receiverCache.remove(context.getConnectedChannelID());
+			}
+		}
+		this.receiverCache.remove(channelID);
+	}
+
 	/**
 	 * Shuts down the routing service and stops all its internal services.
 	 */
 	public void shutdown() {
 
-		this.networkService.shutDown();
+		this.networkTransport.shutDown();
 	}
 
 	private void recycleBuffer(final TransferEnvelope envelope) {
@@ -329,8 +376,9 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 			final ReceiverList receiverList, final boolean freeSourceBuffer)
 			throws IOException, InterruptedException {
 
-		// Handle the most common (unicast) case first
-		if (!freeSourceBuffer) {
+		// Handle the most common (unicast) case first, memory buffers of short-circuited channels are handed over
+		if (!freeSourceBuffer
+			|| (receiverList.allowsDirectHandover() && transferEnvelope.getBuffer().isBackedByMemory())) {
 
 			final List<ChannelID> localReceivers = receiverList.getLocalReceivers();
 			if (localReceivers.size() != 1) {
@@ -407,7 +455,7 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 				for (final RemoteReceiver remoteReceiver : remoteReceivers) {
 
 					final TransferEnvelope dup = transferEnvelope.duplicate();
-					this.networkService.queueEnvelopeForTransfer(remoteReceiver, dup);
+					this.networkTransport.queueEnvelopeForTransfer(remoteReceiver, dup);
 				}
 			}
 		} finally {
@@ -445,7 +493,7 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 		while (remoteIt.hasNext()) {
 
 			final RemoteReceiver remoteReceiver = remoteIt.next();
-			this.networkService.queueEnvelopeForTransfer(remoteReceiver, transferEnvelope);
+			this.networkTransport.queueEnvelopeForTransfer(remoteReceiver, transferEnvelope);
 		}
 	}
 
@@ -458,6 +506,28 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 		}
 	}
 
+	/**
+	 * Adds routing entries for a network channel whose output and input channel are both registered with this routing
+	 * service. The entries replace possible entries from earlier channel lookups, so envelopes travel between the two
+	 * channel contexts without any lookup and memory buffers are handed over to the receiver without copying them.
+	 * 
+	 * @param outputChannelContext
+	 *        the context of the channel's output side
+	 * @param inputChannelContext
+	 *        the context of the channel's input side
+	 */
+	private void addColocationHint(final ChannelContext outputChannelContext,
+			final ChannelContext inputChannelContext) {
+
+		this.receiverCache.put(outputChannelContext.getChannelID(), new ReceiverList(outputChannelContext));
+		this.receiverCache.put(inputChannelContext.getChannelID(), new ReceiverList(inputChannelContext));
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Short-circuiting network channel " + outputChannelContext.getChannelID() + " to "
+				+ inputChannelContext.getChannelID());
+		}
+	}
+
 	/**
 	 * Returns the list of receivers for transfer envelopes produced by the channel with the given source channel ID.
 	 * 
@@ -571,6 +641,42 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 		processEnvelope(transferEnvelope, freeSourceBuffer);
 	}
 
+	/**
+	 * Reports that the envelope with the given sequence number from the given source channel has been received in a
+	 * corrupted state and has been discarded. The local receivers of the envelope are notified, so the affected tasks
+	 * can fail and the lost data can be recovered from the checkpoints. Remote receivers will notice the missing
+	 * envelope through the gap in the sequence numbers.
+	 * 
+	 * @param jobID
+	 *        the ID of the job the corrupted envelope belongs to
+	 * @param sourceChannelID
+	 *        the ID of the channel the corrupted envelope originates from
+	 * @param sequenceNumber
+	 *        the sequence number of the corrupted envelope
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while determining the receivers of the envelope
+	 * @throws InterruptedException
+	 *         thrown if the caller is interrupted while determining the receivers of the envelope
+	 */
+	public void reportCorruptedEnvelope(final JobID jobID, final ChannelID sourceChannelID, final int sequenceNumber)
+			throws IOException, InterruptedException {
+
+		final ReceiverList receiverList = getReceiverList(jobID, sourceChannelID);
+		if (receiverList == null || !receiverList.hasLocalReceivers()) {
+			return;
+		}
+
+		for (final ChannelID localReceiver : receiverList.getLocalReceivers()) {
+
+			final ChannelContext cc = this.registeredChannels.get(localReceiver);
+			if (cc == null || !cc.isInputChannel()) {
+				continue;
+			}
+
+			((InputChannelContext) cc).reportCorruptedEnvelope(sequenceNumber);
+		}
+	}
+
 	/**
 	 * Triggers the routing service write the current utilization of its read and write buffers to the logs.
 	 * This method is primarily for debugging purposes.
@@ -588,7 +694,7 @@ public final class DefaultRoutingService implements RoutingService, BufferProvid
 			it.next().logBufferUtilization();
 		}
 
-		this.networkService.logBufferUtilization();
+		this.networkTransport.logBufferUtilization();
 
 		System.out.println("\tIncoming connections:");
 
@@ -20,4 +20,13 @@ import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
 public interface InputChannelContext extends ChannelContext, BufferProvider {
 
 	void logQueuedEnvelopes();
+
+	/**
+	 * Reports that the envelope with the given sequence number has been received in a corrupted state and has
+	 * therefore been discarded.
+	 * 
+	 * @param sequenceNumber
+	 *        the sequence number of the corrupted envelope
+	 */
+	void reportCorruptedEnvelope(int sequenceNumber);
 }
@@ -37,17 +37,31 @@ final class ReceiverList {
 
 	private final List<RemoteReceiver> remoteReceivers;
 
+	/**
+	 * Stores whether memory buffers may be handed over to the receiver without copying them.
+	 */
+	private final boolean directHandover;
+
 	ReceiverList(final ConnectionInfoLookupResponse cilr) {
 
 		this.localReceivers = cilr.getLocalTargets();
 		this.remoteReceivers = cilr.getRemoteTargets();
+		this.directHandover = false;
 	}
 
+	/**
+	 * Constructs a receiver list whose only receiver is the local channel the given channel is connected to. The
+	 * receiver list can be constructed for in-memory channels and for network channels whose connected channel is
+	 * known to run on the same instance. In the latter case, memory buffers are handed over to the receiver directly.
+	 * 
+	 * @param channelContext
+	 *        the context of the channel to construct the receiver list for
+	 */
 	ReceiverList(final ChannelContext channelContext) {
 
-		if (channelContext.getType() != ChannelType.INMEMORY) {
+		if (channelContext.getType() == ChannelType.FILE) {
 			throw new IllegalArgumentException(
-				"Transfer envelope receiver lists can only be constructed from in-memory channels.");
+				"Transfer envelope receiver lists can only be constructed from in-memory or network channels.");
 		}
 
 		final List<ChannelID> lr = new ArrayList<ChannelID>(1);
@@ -55,6 +69,7 @@ final class ReceiverList {
 
 		this.localReceivers = Collections.unmodifiableList(lr);
 		this.remoteReceivers = Collections.emptyList();
+		this.directHandover = (channelContext.getType() == ChannelType.NETWORK);
 	}
 
 	boolean hasLocalReceivers() {
@@ -81,4 +96,16 @@ final class ReceiverList {
 
 		return this.localReceivers;
 	}
+
+	/**
+	 * Checks whether memory buffers may be handed over to the single local receiver of this list without copying them
+	 * into the receiver's buffers first. The buffers are then recycled to the sender's buffer pool once the receiver
+	 * has consumed them.
+	 * 
+	 * @return <code>true</code> if memory buffers may be handed over directly, <code>false</code> otherwise
+	 */
+	boolean allowsDirectHandover() {
+
+		return this.directHandover;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,361 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.runtime;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.event.task.AbstractEvent;
+import eu.stratosphere.nephele.taskmanager.routing.AbstractOutputChannelForwarder;
+import eu.stratosphere.nephele.taskmanager.routing.ChannelCreditEvent;
+import eu.stratosphere.nephele.taskmanager.routing.ReceiverNotFoundEvent;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.util.StringUtils;
+
+/**
+ * The credit based forwarder implements per-channel flow control for network channels. Each channel starts with a
+ * fixed number of credits. Forwarding a {@link TransferEnvelope} with a buffer attached consumes one credit; the
+ * receiver returns credits by means of {@link ChannelCreditEvent}s as it consumes the envelopes. Envelopes for which
+ * no credit is available are held back by this forwarder, so a slow receiver can no longer occupy the buffers of a
+ * network connection which is shared with other channels.
+ * <p>
+ * Credits are granted by the thread which receives the {@link ChannelCreditEvent}, usually a network thread. This
+ * thread only records the credits, since forwarding an envelope may block. The held back envelopes are forwarded by
+ * the task's threads the next time they push an envelope, process the events queued for the output channel, or check
+ * for data left to transmit. A task thread which waits for a buffer is woken up by means of an asynchronous event to
+ * do so. At most one thread forwards envelopes at a time, so the order of the envelopes is preserved. The number of
+ * held back envelopes is bounded, a thread pushing further envelopes is blocked until credits arrive.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class CreditBasedForwarder extends AbstractOutputChannelForwarder {
+
+	/**
+	 * The log object used to report problems.
+	 */
+	private static final Log LOG = LogFactory.getLog(CreditBasedForwarder.class);
+
+	/**
+	 * The configuration key for the number of credits a network channel initially owns.
+	 */
+	private static final String INITIAL_CREDITS_KEY = "channel.network.initialCredits";
+
+	/**
+	 * The default number of credits a network channel initially owns.
+	 */
+	private static final int DEFAULT_INITIAL_CREDITS = 16;
+
+	/**
+	 * The number of credits a network channel initially owns. A value of zero or less disables credit based flow
+	 * control.
+	 */
+	static final int INITIAL_CREDITS = GlobalConfiguration.getInteger(INITIAL_CREDITS_KEY, DEFAULT_INITIAL_CREDITS);
+
+	/**
+	 * The number of consumed envelopes after which a receiver returns the corresponding credits to the sender. The
+	 * value must divide the number of initial credits, otherwise a sender could wait for credits the receiver keeps
+	 * back.
+	 */
+	static final int CREDIT_ANNOUNCEMENT_THRESHOLD = (INITIAL_CREDITS % 2 == 0) ? INITIAL_CREDITS / 2 : 1;
+
+	/**
+	 * The maximum number of envelopes which are held back while waiting for credits. The envelopes which have been
+	 * held back own buffers of the task's buffer pool, so the same number as the initial credits is sufficient to keep
+	 * the channel busy.
+	 */
+	static final int MAX_QUEUED_ENVELOPES = Math.max(1, INITIAL_CREDITS);
+
+	/**
+	 * The envelopes which are waiting for credits. The queue also serves as the lock protecting the state of this
+	 * forwarder.
+	 */
+	private final Queue<TransferEnvelope> queuedEnvelopes = new ArrayDeque<TransferEnvelope>();
+
+	/**
+	 * The number of currently available credits, protected by the lock on the queued envelopes.
+	 */
+	private int availableCredits;
+
+	/**
+	 * Stores whether a thread is currently forwarding envelopes, protected by the lock on the queued envelopes.
+	 */
+	private boolean forwarding = false;
+
+	/**
+	 * Stores whether this forwarder has been destroyed, protected by the lock on the queued envelopes.
+	 */
+	private boolean destroyed = false;
+
+	/**
+	 * An exception which occurred while forwarding envelopes during the processing of an event. It is rethrown the
+	 * next time an envelope is pushed or the data left to transmit is checked.
+	 */
+	private volatile IOException deferredException = null;
+
+	public CreditBasedForwarder(final AbstractOutputChannelForwarder next) {
+		this(next, INITIAL_CREDITS);
+	}
+
+	CreditBasedForwarder(final AbstractOutputChannelForwarder next, final int initialCredits) {
+		super(next);
+
+		if (next == null) {
+			throw new IllegalArgumentException("Argument next must not be null");
+		}
+
+		this.availableCredits = initialCredits;
+	}
+
+	/**
+	 * Checks whether credit based flow control is enabled in the current configuration.
+	 *
+	 * @return <code>true</code> if credit based flow control is enabled, <code>false</code> otherwise
+	 */
+	static boolean isEnabled() {
+
+		return (INITIAL_CREDITS > 0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void push(final TransferEnvelope transferEnvelope) throws IOException, InterruptedException {
+
+		checkDeferredException();
+
+		while (true) {
+
+			forwardQueuedEnvelopes();
+
+			synchronized (this.queuedEnvelopes) {
+
+				if (this.destroyed) {
+					recycleTransferEnvelope(transferEnvelope);
+					return;
+				}
+
+				if (this.queuedEnvelopes.size() < MAX_QUEUED_ENVELOPES) {
+					this.queuedEnvelopes.add(transferEnvelope);
+					break;
+				}
+
+				// Wait for credits which allow this thread to make room in the queue or for another thread to make it
+				if (this.forwarding || !canForwardHead()) {
+					this.queuedEnvelopes.wait();
+				}
+			}
+		}
+
+		forwardQueuedEnvelopes();
+	}
+
+	/**
+	 * Forwards the queued envelopes in order as long as credits are available. Envelopes without a buffer do not
+	 * require a credit, but are never allowed to overtake envelopes waiting for credits. If another thread is already
+	 * forwarding envelopes, or the method is re-entered while an envelope is forwarded, for example because the task
+	 * thread is woken up by an asynchronous event while waiting for a buffer, it returns immediately and the envelopes
+	 * are forwarded by the first call.
+	 *
+	 * @throws IOException
+	 *         thrown if an I/O error occurs while forwarding an envelope
+	 * @throws InterruptedException
+	 *         thrown if the calling thread is interrupted while forwarding an envelope
+	 */
+	void forwardQueuedEnvelopes() throws IOException, InterruptedException {
+
+		synchronized (this.queuedEnvelopes) {
+			if (this.forwarding) {
+				return;
+			}
+			this.forwarding = true;
+		}
+
+		try {
+
+			while (true) {
+
+				final TransferEnvelope transferEnvelope;
+				synchronized (this.queuedEnvelopes) {
+
+					if (!canForwardHead()) {
+						return;
+					}
+
+					transferEnvelope = this.queuedEnvelopes.poll();
+					if (transferEnvelope.getBuffer() != null) {
+						--this.availableCredits;
+					}
+
+					// Wake up a thread waiting for room in the queue
+					this.queuedEnvelopes.notifyAll();
+				}
+
+				// Forward the envelope without holding the lock, so granting credits never blocks
+				getNext().push(transferEnvelope);
+			}
+
+		} finally {
+			synchronized (this.queuedEnvelopes) {
+				// Give up the role of the forwarding thread while holding the lock, so a waiting thread can take it
+				this.forwarding = false;
+				this.queuedEnvelopes.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the envelope at the head of the queue can be forwarded. The caller must hold the lock on the
+	 * queued envelopes.
+	 *
+	 * @return <code>true</code> if the queue contains an envelope which can be forwarded, <code>false</code> otherwise
+	 */
+	private boolean canForwardHead() {
+
+		final TransferEnvelope head = this.queuedEnvelopes.peek();
+		if (head == null) {
+			return false;
+		}
+
+		return (head.getBuffer() == null || this.availableCredits > 0);
+	}
+
+	/**
+	 * Grants the given number of credits to this forwarder. It only records the credits and wakes up a thread waiting
+	 * for room in the queue, the envelopes waiting for the credits are forwarded by the task's threads.
+	 *
+	 * @param credits
+	 *        the number of credits to grant
+	 */
+	void grantCredits(final int credits) {
+
+		synchronized (this.queuedEnvelopes) {
+			this.availableCredits += credits;
+			this.queuedEnvelopes.notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the number of credits which are currently available.
+	 *
+	 * @return the number of credits which are currently available
+	 */
+	int getAvailableCredits() {
+
+		synchronized (this.queuedEnvelopes) {
+			return this.availableCredits;
+		}
+	}
+
+	/**
+	 * Returns the number of envelopes which are currently waiting for credits.
+	 *
+	 * @return the number of envelopes which are currently waiting for credits
+	 */
+	int getNumberOfQueuedEnvelopes() {
+
+		synchronized (this.queuedEnvelopes) {
+			return this.queuedEnvelopes.size();
+		}
+	}
+
+	/**
+	 * Rethrows an exception which occurred while forwarding envelopes during the processing of an event.
+	 *
+	 * @throws IOException
+	 *         the exception which occurred while forwarding envelopes
+	 */
+	private void checkDeferredException() throws IOException {
+
+		final IOException ioe = this.deferredException;
+		if (ioe != null) {
+			throw new IOException("Forwarding envelopes waiting for credits failed: " + ioe.getMessage(), ioe);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void processEvent(final AbstractEvent event) {
+
+		// The envelope has been dropped by the routing service, so the receiver will never return its credit
+		if (event instanceof ReceiverNotFoundEvent) {
+			grantCredits(1);
+		}
+
+		// The credits of a credit event have already been granted when it was received, forward the envelopes now
+		if (event instanceof ReceiverNotFoundEvent || event instanceof ChannelCreditEvent) {
+			try {
+				forwardQueuedEnvelopes();
+			} catch (IOException ioe) {
+				LOG.error(StringUtils.stringifyException(ioe));
+				this.deferredException = ioe;
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		getNext().processEvent(event);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasDataLeft() throws IOException, InterruptedException {
+
+		checkDeferredException();
+
+		forwardQueuedEnvelopes();
+
+		synchronized (this.queuedEnvelopes) {
+			if (!this.queuedEnvelopes.isEmpty()) {
+				return true;
+			}
+		}
+
+		return getNext().hasDataLeft();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void destroy() {
+
+		final Queue<TransferEnvelope> envelopesToRecycle;
+		synchronized (this.queuedEnvelopes) {
+			this.destroyed = true;
+			envelopesToRecycle = new ArrayDeque<TransferEnvelope>(this.queuedEnvelopes);
+			this.queuedEnvelopes.clear();
+			this.queuedEnvelopes.notifyAll();
+		}
+
+		TransferEnvelope transferEnvelope = envelopesToRecycle.poll();
+		while (transferEnvelope != null) {
+			recycleTransferEnvelope(transferEnvelope);
+			transferEnvelope = envelopesToRecycle.poll();
+		}
+
+		getNext().destroy();
+	}
+}
@@ -20,6 +20,7 @@ import java.util.ArrayDeque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,6 +37,7 @@ import eu.stratosphere.nephele.io.compression.Decompressor;
 import eu.stratosphere.nephele.jobgraph.JobID;
 import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
 import eu.stratosphere.nephele.taskmanager.routing.InputChannelContext;
+import eu.stratosphere.nephele.taskmanager.routing.ChannelCreditEvent;
 import eu.stratosphere.nephele.taskmanager.routing.ReceiverNotFoundEvent;
 import eu.stratosphere.nephele.taskmanager.routing.RoutingService;
 import eu.stratosphere.nephele.taskmanager.routing.UnexpectedEnvelopeEvent;
@@ -52,7 +54,17 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 
 	private final RoutingService routingService;
 
-	private final Queue<TransferEnvelope> queuedEnvelopes = new ArrayDeque<TransferEnvelope>();
+	/**
+	 * The envelopes waiting to be consumed by the task thread. The queue is lock-free, so the thread queuing the
+	 * envelopes and the task thread consuming them never contend for a monitor.
+	 */
+	private final SingleProducerSingleConsumerQueue<TransferEnvelope> queuedEnvelopes = new SingleProducerSingleConsumerQueue<TransferEnvelope>();
+
+	/**
+	 * The lock which serializes the threads queuing envelopes. It guards the producer side of the queued envelopes as
+	 * well as {@link #lastReceivedEnvelope} and {@link #destroyCalled} and is never acquired by the task thread.
+	 */
+	private final Object producerLock = new Object();
 
 	private final EnvelopeConsumptionLog envelopeConsumptionLog;
 
@@ -62,6 +74,16 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 
 	private boolean destroyCalled = false;
 
+	/**
+	 * Stores whether this channel returns credits for the envelopes it has consumed to the sender.
+	 */
+	private final boolean returnsCredits;
+
+	/**
+	 * The number of consumed envelopes whose credits have not yet been returned to the sender.
+	 */
+	private final AtomicInteger unannouncedCredits = new AtomicInteger(0);
+
 	RuntimeInputChannelContext(final RuntimeInputGateContext inputGateContext, final RoutingService routingService,
 			final AbstractInputChannel<?> inputChannel, final EnvelopeConsumptionLog envelopeConsumptionLog) {
 
@@ -71,6 +93,7 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 		this.inputChannel.setInputChannelBroker(this);
 		this.envelopeConsumptionLog = envelopeConsumptionLog;
 		this.isReexecuted = (envelopeConsumptionLog.getNumberOfInitialLogEntries() > 0L);
+		this.returnsCredits = (inputChannel.getType() == ChannelType.NETWORK && CreditBasedForwarder.isEnabled());
 	}
 
 	/**
@@ -79,20 +102,14 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 	@Override
 	public Buffer getReadBufferToConsume() {
 
-		TransferEnvelope transferEnvelope = null;
-
-		synchronized (this.queuedEnvelopes) {
-
-			if (this.queuedEnvelopes.isEmpty()) {
-				return null;
-			}
-
-			transferEnvelope = this.queuedEnvelopes.peek();
+		final TransferEnvelope transferEnvelope = this.queuedEnvelopes.peek();
+		if (transferEnvelope == null) {
+			return null;
+		}
 
-			// If envelope does not have a buffer, remove it immediately
-			if (transferEnvelope.getBuffer() == null) {
-				this.queuedEnvelopes.poll();
-			}
+		// If envelope does not have a buffer, remove it immediately
+		if (transferEnvelope.getBuffer() == null) {
+			this.queuedEnvelopes.poll();
 		}
 
 		// Make sure we have all necessary buffers before we go on
@@ -126,17 +143,14 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 	@Override
 	public void releaseConsumedReadBuffer(final Buffer buffer) {
 
-		TransferEnvelope transferEnvelope = null;
-		synchronized (this.queuedEnvelopes) {
-
-			if (this.queuedEnvelopes.isEmpty()) {
-				LOG.error("Inconsistency: releaseConsumedReadBuffer called on empty queue!");
-				return;
-			}
-
-			transferEnvelope = this.queuedEnvelopes.poll();
+		final TransferEnvelope transferEnvelope = this.queuedEnvelopes.poll();
+		if (transferEnvelope == null) {
+			LOG.error("Inconsistency: releaseConsumedReadBuffer called on empty queue!");
+			return;
 		}
 
+		final int creditsToReturn = countCredit();
+
 		// Process events
 		final List<AbstractEvent> eventList = transferEnvelope.getEventList();
 		if (eventList != null) {
@@ -157,6 +171,47 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 
 		// Recycle consumed read buffer
 		buffer.recycleBuffer();
+
+		// Return the credits after the buffer has been recycled, so the sender's next envelopes find a buffer
+		if (creditsToReturn > 0) {
+			returnCredits(creditsToReturn);
+		}
+	}
+
+	/**
+	 * Counts the credit of a consumed or discarded envelope with a buffer attached. This method may be called by the
+	 * task thread and the threads queuing envelopes concurrently.
+	 * 
+	 * @return the number of credits to be returned to the sender now or <code>0</code> if the credits shall be
+	 *         announced later
+	 */
+	private int countCredit() {
+
+		if (!this.returnsCredits) {
+			return 0;
+		}
+
+		if (this.unannouncedCredits.incrementAndGet() < CreditBasedForwarder.CREDIT_ANNOUNCEMENT_THRESHOLD) {
+			return 0;
+		}
+
+		// A concurrent caller may have taken the credits already, it then returns ours as well
+		return this.unannouncedCredits.getAndSet(0);
+	}
+
+	/**
+	 * Returns the given number of credits to the sender of this channel.
+	 * 
+	 * @param credits
+	 *        the number of credits to return
+	 */
+	private void returnCredits(final int credits) {
+
+		try {
+			transferEventToOutputChannel(new ChannelCreditEvent(credits));
+		} catch (Exception e) {
+			LOG.error(StringUtils.stringifyException(e));
+		}
 	}
 
 	/**
@@ -182,11 +237,13 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 
 		AbstractEvent eventToSend = null;
 
+		int creditsToReturn = 0;
+
 		if (ReceiverNotFoundEvent.isReceiverNotFoundEvent(transferEnvelope)) {
 			return;
 		}
 
-		synchronized (this.queuedEnvelopes) {
+		synchronized (this.producerLock) {
 
 			if (this.destroyCalled) {
 				final Buffer buffer = transferEnvelope.getBuffer();
@@ -236,6 +293,7 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 				final Buffer buffer = transferEnvelope.getBuffer();
 				if (buffer != null) {
 					buffer.recycleBuffer();
+					creditsToReturn = countCredit();
 				}
 			} else {
 
@@ -254,6 +312,10 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 				LOG.error(StringUtils.stringifyException(e));
 			}
 		}
+
+		if (creditsToReturn > 0) {
+			returnCredits(creditsToReturn);
+		}
 	}
 
 	/**
@@ -310,61 +372,71 @@ final class RuntimeInputChannelContext implements InputChannelContext, ByteBuffe
 
 	/**
 	 * {@inheritDoc}
+	 * <p>
+	 * This method consumes the remaining envelopes itself, so it must only be called after the task thread has stopped
+	 * consuming envelopes from this channel.
 	 */
 	@Override
 	public void destroy() {
 
 		final Queue<Buffer> buffersToRecycle = new ArrayDeque<Buffer>();
+		int creditsToReturn = 0;
 
-		synchronized (this.queuedEnvelopes) {
+		synchronized (this.producerLock) {
 
 			this.destroyCalled = true;
 
-			while (!this.queuedEnvelopes.isEmpty()) {
-				final TransferEnvelope envelope = this.queuedEnvelopes.poll();
+			TransferEnvelope envelope = this.queuedEnvelopes.poll();
+			while (envelope != null) {
 				if (envelope.getBuffer() != null) {
 					buffersToRecycle.add(envelope.getBuffer());
 				}
+				envelope = this.queuedEnvelopes.poll();
 			}
 		}
 
+		// Hand back the credits of discarded envelopes in case the sender outlives this channel
+		if (this.returnsCredits && !buffersToRecycle.isEmpty()) {
+			creditsToReturn = this.unannouncedCredits.getAndSet(0) + buffersToRecycle.size();
+		}
+
 		while (!buffersToRecycle.isEmpty()) {
 			buffersToRecycle.poll().recycleBuffer();
 		}
+
+		if (creditsToReturn > 0) {
+			returnCredits(creditsToReturn);
+		}
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void logQueuedEnvelopes() {
-
-		int numberOfQueuedEnvelopes = 0;
-		int numberOfQueuedEnvelopesWithMemoryBuffers = 0;
-		int numberOfQueuedEnvelopesWithFileBuffers = 0;
-
-		synchronized (this.queuedEnvelopes) {
-
-			final Iterator<TransferEnvelope> it = this.queuedEnvelopes.iterator();
-			while (it.hasNext()) {
+	public void reportCorruptedEnvelope(final int sequenceNumber) {
 
-				final TransferEnvelope envelope = it.next();
-				++numberOfQueuedEnvelopes;
-				final Buffer buffer = envelope.getBuffer();
-				if (buffer == null) {
-					continue;
-				}
+		synchronized (this.producerLock) {
 
-				if (buffer.isBackedByMemory()) {
-					++numberOfQueuedEnvelopesWithMemoryBuffers;
-				} else {
-					++numberOfQueuedEnvelopesWithFileBuffers;
-				}
+			// Envelopes which have already been received are stale duplicates, e.g. from the original run
+			if (this.destroyCalled || sequenceNumber <= this.lastReceivedEnvelope) {
+				return;
 			}
 		}
 
-		System.out.println("\t\t" + getChannelName() + ": " + numberOfQueuedEnvelopes + " ("
-			+ numberOfQueuedEnvelopesWithMemoryBuffers + ", " + numberOfQueuedEnvelopesWithFileBuffers + ")");
+		// The data is lost, so fail the task and let the recovery logic replay it from the checkpoints
+		this.inputChannel.reportIOException(new IOException("Envelope " + sequenceNumber + " for input channel "
+			+ getChannelName() + " failed checksum verification"));
+		this.inputChannel.checkForNetworkEvents();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void logQueuedEnvelopes() {
+
+		// The queue cannot be traversed by a third thread, so only report its size
+		System.out.println("\t\t" + getChannelName() + ": " + this.queuedEnvelopes.size());
 
 	}
 
@@ -21,17 +21,32 @@ import eu.stratosphere.nephele.io.channels.ChannelID;
 import eu.stratosphere.nephele.io.channels.ChannelType;
 import eu.stratosphere.nephele.jobgraph.JobID;
 import eu.stratosphere.nephele.taskmanager.routing.AbstractOutputChannelContext;
+import eu.stratosphere.nephele.taskmanager.routing.ChannelCreditEvent;
 import eu.stratosphere.nephele.taskmanager.routing.OutputChannelForwardingChain;
 
 public final class RuntimeOutputChannelContext extends AbstractOutputChannelContext {
 
 	private final AbstractOutputChannel<?> byteBufferedOutputChannel;
 
+	/**
+	 * The forwarder which enforces credit based flow control for this channel or <code>null</code> if the channel is
+	 * not subject to flow control.
+	 */
+	private final CreditBasedForwarder creditBasedForwarder;
+
+	/**
+	 * The output gate context this channel context belongs to.
+	 */
+	private final RuntimeOutputGateContext outputGateContext;
+
 	RuntimeOutputChannelContext(final AbstractOutputChannel<?> byteBufferedOutputChannel,
-			final OutputChannelForwardingChain forwardingChain) {
+			final OutputChannelForwardingChain forwardingChain, final CreditBasedForwarder creditBasedForwarder,
+			final RuntimeOutputGateContext outputGateContext) {
 		super(forwardingChain);
 
 		this.byteBufferedOutputChannel = byteBufferedOutputChannel;
+		this.creditBasedForwarder = creditBasedForwarder;
+		this.outputGateContext = outputGateContext;
 	}
 
 	/**
@@ -85,6 +100,19 @@ public final class RuntimeOutputChannelContext extends AbstractOutputChannelCont
 	@Override
 	protected void processEventAsynchronously(final AbstractEvent event) {
 
+		if (event instanceof ChannelCreditEvent) {
+
+			if (this.creditBasedForwarder != null) {
+				// Only record the credits here, the task thread forwards the envelopes waiting for them when it
+				// processes the event or, if it is waiting for a buffer, when it is woken up
+				this.creditBasedForwarder.grantCredits(((ChannelCreditEvent) event).getCredits());
+				processEventSynchronously(event);
+				this.outputGateContext.reportAsynchronousEvent();
+			}
+
+			return;
+		}
+
 		this.byteBufferedOutputChannel.processEvent(event);
 	}
 }
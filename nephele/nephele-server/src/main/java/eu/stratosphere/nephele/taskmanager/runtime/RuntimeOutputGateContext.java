@@ -157,6 +157,7 @@ final class RuntimeOutputGateContext implements BufferProvider, OutputGateContex
 		// Construct the forwarding chain
 		RuntimeOutputChannelBroker outputChannelBroker;
 		AbstractOutputChannelForwarder last;
+		CreditBasedForwarder creditBasedForwarder = null;
 		if (outputChannel.getType() == ChannelType.FILE) {
 
 			// Special case for file channels
@@ -179,7 +180,13 @@ final class RuntimeOutputGateContext implements BufferProvider, OutputGateContex
 			 * runtimeDispatcher);
 			 * final ForwardingBarrier forwardingBarrier = new ForwardingBarrier(channelID, spillingBarrier);
 			 */
-			final ForwardingBarrier forwardingBarrier = new ForwardingBarrier(channelID, runtimeDispatcher);
+			AbstractOutputChannelForwarder dispatcher = runtimeDispatcher;
+			if (outputChannel.getType() == ChannelType.NETWORK && CreditBasedForwarder.isEnabled()) {
+				creditBasedForwarder = new CreditBasedForwarder(runtimeDispatcher);
+				this.taskContext.registerCreditBasedForwarder(creditBasedForwarder);
+				dispatcher = creditBasedForwarder;
+			}
+			final ForwardingBarrier forwardingBarrier = new ForwardingBarrier(channelID, dispatcher);
 			final EphemeralCheckpoint checkpoint = this.taskContext.getEphemeralCheckpoint();
 			if (checkpoint != null) {
 				final EphemeralCheckpointForwarder checkpointForwarder = new EphemeralCheckpointForwarder(checkpoint,
@@ -196,7 +203,7 @@ final class RuntimeOutputGateContext implements BufferProvider, OutputGateContex
 		// Set forwarding chain for broker
 		outputChannelBroker.setForwardingChain(forwardingChain);
 
-		return new RuntimeOutputChannelContext(outputChannel, forwardingChain);
+		return new RuntimeOutputChannelContext(outputChannel, forwardingChain, creditBasedForwarder, this);
 	}
 
 	/**
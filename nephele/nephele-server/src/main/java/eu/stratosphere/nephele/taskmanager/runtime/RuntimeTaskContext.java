@@ -16,6 +16,8 @@
 package eu.stratosphere.nephele.taskmanager.runtime;
 
 import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -55,6 +57,8 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 
 	private final EnvelopeConsumptionLog envelopeConsumptionLog;
 
+	private final Queue<CreditBasedForwarder> creditBasedForwarders = new ConcurrentLinkedQueue<CreditBasedForwarder>();
+
 	private CompressionBufferProvider compressionBufferProvider = null;
 
 	RuntimeTaskContext(final RuntimeTask task, final CheckpointState initialCheckpointState,
@@ -99,6 +103,18 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 		return this.ephemeralCheckpoint;
 	}
 
+	/**
+	 * Registers a credit based forwarder of one of the task's output channels. The forwarder's held back envelopes are
+	 * forwarded whenever the task thread is woken up by an asynchronous event while waiting for a buffer.
+	 * 
+	 * @param creditBasedForwarder
+	 *        the credit based forwarder to register
+	 */
+	void registerCreditBasedForwarder(final CreditBasedForwarder creditBasedForwarder) {
+
+		this.creditBasedForwarders.add(creditBasedForwarder);
+	}
+
 	/**
 	 * Returns (and if necessary previously creates) a compression buffer provider for output gate contexts. This method
 	 * must not be called from input gate contexts since input gate contexts are supposed to have their own compression
@@ -223,6 +239,11 @@ public final class RuntimeTaskContext implements BufferProvider, AsynchronousEve
 
 		// Trigger checkpoint decision here
 		reportExhaustionOfMemoryBuffers();
+
+		// Forward the envelopes released by newly granted credits, they may hold the buffers the task is waiting for
+		for (final CreditBasedForwarder creditBasedForwarder : this.creditBasedForwarders) {
+			creditBasedForwarder.forwardQueuedEnvelopes();
+		}
 	}
 
 	/**
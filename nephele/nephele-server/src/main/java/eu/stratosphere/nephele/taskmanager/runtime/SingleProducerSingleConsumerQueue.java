@@ -0,0 +1,182 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.runtime;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An unbounded, lock-free FIFO queue for exactly one producer thread and one consumer thread. The elements are stored
+ * in a chain of fixed-size ring segments. The producer appends a new segment only if the current one is full, the
+ * consumer moves to the next segment once it has drained the current one. Neither side ever blocks or acquires a
+ * monitor, so adding and polling elements does not cause any contention between the two threads.
+ * <p>
+ * This class is thread-safe as long as at most one thread calls {@link #add(Object)} and at most one (possibly
+ * different) thread calls {@link #peek()} and {@link #poll()} at a time. {@link #size()} may be called by any thread.
+ *
+ * @param <E>
+ *        the type of the elements stored in the queue
+ */
+final class SingleProducerSingleConsumerQueue<E> {
+
+	/**
+	 * The number of elements a single segment can hold.
+	 */
+	private static final int SEGMENT_SIZE = 64;
+
+	/**
+	 * A segment of the queue.
+	 */
+	private static final class Segment {
+
+		/**
+		 * The slots of this segment.
+		 */
+		private final AtomicReferenceArray<Object> slots = new AtomicReferenceArray<Object>(SEGMENT_SIZE);
+
+		/**
+		 * The next segment, <code>null</code> as long as the producer has not yet filled this segment.
+		 */
+		private volatile Segment next = null;
+	}
+
+	/**
+	 * The segment the producer currently writes to, only accessed by the producer.
+	 */
+	private Segment tailSegment;
+
+	/**
+	 * The next slot the producer writes to, only accessed by the producer.
+	 */
+	private int tailIndex = 0;
+
+	/**
+	 * The segment the consumer currently reads from, only accessed by the consumer.
+	 */
+	private Segment headSegment;
+
+	/**
+	 * The next slot the consumer reads from, only accessed by the consumer.
+	 */
+	private int headIndex = 0;
+
+	/**
+	 * The number of elements added to the queue so far.
+	 */
+	private final AtomicLong numberOfAddedElements = new AtomicLong(0L);
+
+	/**
+	 * The number of elements removed from the queue so far.
+	 */
+	private final AtomicLong numberOfRemovedElements = new AtomicLong(0L);
+
+	/**
+	 * Constructs a new, empty queue.
+	 */
+	SingleProducerSingleConsumerQueue() {
+
+		this.tailSegment = new Segment();
+		this.headSegment = this.tailSegment;
+	}
+
+	/**
+	 * Appends the given element to the queue. This method must only be called by the producer thread.
+	 *
+	 * @param element
+	 *        the element to append, must not be <code>null</code>
+	 */
+	void add(final E element) {
+
+		if (element == null) {
+			throw new IllegalArgumentException("Argument element must not be null");
+		}
+
+		if (this.tailIndex == SEGMENT_SIZE) {
+			final Segment segment = new Segment();
+			this.tailSegment.next = segment;
+			this.tailSegment = segment;
+			this.tailIndex = 0;
+		}
+
+		// The ordered write publishes the element to the consumer
+		this.tailSegment.slots.lazySet(this.tailIndex++, element);
+		this.numberOfAddedElements.lazySet(this.numberOfAddedElements.get() + 1L);
+	}
+
+	/**
+	 * Returns the head of the queue without removing it. This method must only be called by the consumer thread.
+	 *
+	 * @return the head of the queue or <code>null</code> if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	E peek() {
+
+		if (this.headIndex == SEGMENT_SIZE) {
+
+			final Segment next = this.headSegment.next;
+			if (next == null) {
+				return null;
+			}
+
+			this.headSegment = next;
+			this.headIndex = 0;
+		}
+
+		return (E) this.headSegment.slots.get(this.headIndex);
+	}
+
+	/**
+	 * Removes and returns the head of the queue. This method must only be called by the consumer thread.
+	 *
+	 * @return the head of the queue or <code>null</code> if the queue is empty
+	 */
+	E poll() {
+
+		final E element = peek();
+		if (element == null) {
+			return null;
+		}
+
+		// Drop the reference, so the element can be garbage collected even if the segment is still in use
+		this.headSegment.slots.lazySet(this.headIndex++, null);
+		this.numberOfRemovedElements.lazySet(this.numberOfRemovedElements.get() + 1L);
+
+		return element;
+	}
+
+	/**
+	 * Checks whether the queue is empty. This method must only be called by the consumer thread.
+	 *
+	 * @return <code>true</code> if the queue is empty, <code>false</code> otherwise
+	 */
+	boolean isEmpty() {
+
+		return (peek() == null);
+	}
+
+	/**
+	 * Returns the number of elements in the queue. The method may be called by any thread, however, the result is only
+	 * a snapshot if the producer or the consumer modify the queue concurrently.
+	 *
+	 * @return the number of elements in the queue
+	 */
+	int size() {
+
+		final long removed = this.numberOfRemovedElements.get();
+
+		return (int) (this.numberOfAddedElements.get() - removed);
+	}
+}
@@ -29,6 +29,22 @@ import eu.stratosphere.nephele.jobgraph.JobID;
 
 public abstract class AbstractDeserializer {
 
+	/**
+	 * Marker in the envelope header indicating that no buffer follows.
+	 */
+	static final byte NO_BUFFER = 0;
+
+	/**
+	 * Marker in the envelope header indicating that the size of the buffer and the buffer data follow.
+	 */
+	static final byte BUFFER = 1;
+
+	/**
+	 * Marker in the envelope header indicating that the size of the buffer, the checksum of the buffer data and the
+	 * buffer data follow.
+	 */
+	static final byte BUFFER_WITH_CHECKSUM = 2;
+
 	private enum DeserializationState {
 		NOTDESERIALIZED,
 		SEQUENCENUMBERDESERIALIZED,
@@ -56,6 +72,10 @@ public abstract class AbstractDeserializer {
 
 	private int sizeOfBuffer = -1;
 
+	private boolean checksumFollows = false;
+
+	private int expectedChecksum = 0;
+
 	private int deserializedSequenceNumber = -1;
 
 	private Buffer buffer = null;
@@ -150,6 +170,7 @@ public abstract class AbstractDeserializer {
 			this.sequenceNumberDeserializationStarted = false;
 			this.transferEnvelope = null;
 			this.sizeOfBuffer = -1;
+			this.checksumFollows = false;
 			this.bufferExistanceDeserialized = false;
 			this.eventListExistanceDeserialized = false;
 			this.tempBuffer.clear();
@@ -262,14 +283,22 @@ public abstract class AbstractDeserializer {
 
 			if (!this.tempBuffer.hasRemaining()) {
 				this.bufferExistanceDeserialized = true;
-				this.tempBuffer.position(0);
-				this.tempBuffer.limit(SIZEOFINT);
-				if (this.tempBuffer.get(0) == 0) {
+				final byte bufferExistance = this.tempBuffer.get(0);
+				if (bufferExistance == NO_BUFFER) {
 					// No buffer will follow, we are done
 					this.transferEnvelope.setBuffer(null);
 					this.deserializationState = DeserializationState.FULLYDESERIALIZED;
 					return false;
 				}
+
+				if (bufferExistance != BUFFER && bufferExistance != BUFFER_WITH_CHECKSUM) {
+					throw new IOException("Deserialization error: Invalid buffer marker " + bufferExistance);
+				}
+
+				// The checksum, if any, directly follows the buffer size
+				this.checksumFollows = (bufferExistance == BUFFER_WITH_CHECKSUM);
+				this.tempBuffer.position(0);
+				this.tempBuffer.limit(this.checksumFollows ? 2 * SIZEOFINT : SIZEOFINT);
 			} else {
 				return true;
 			}
@@ -291,6 +320,10 @@ public abstract class AbstractDeserializer {
 				if (this.sizeOfBuffer <= 0) {
 					throw new IOException("Invalid buffer size: " + this.sizeOfBuffer);
 				}
+
+				if (this.checksumFollows) {
+					this.expectedChecksum = byteBufferToInteger(this.tempBuffer, SIZEOFINT);
+				}
 			} else {
 				return true;
 			}
@@ -300,11 +333,38 @@ public abstract class AbstractDeserializer {
 			return true;
 		}
 
+		if (this.checksumFollows && BufferChecksum.isSupported(this.buffer)) {
+			verifyChecksum();
+		}
+
 		this.transferEnvelope.setBuffer(this.buffer);
 		this.deserializationState = DeserializationState.FULLYDESERIALIZED;
 		return false;
 	}
 
+	/**
+	 * Compares the checksum of the completely read buffer to the checksum transmitted with the envelope's header. In
+	 * case of a mismatch, the buffer is released and the deserializer is prepared to read the next envelope.
+	 * 
+	 * @throws CorruptedEnvelopeException
+	 *         thrown if the checksums do not match
+	 */
+	private void verifyChecksum() throws CorruptedEnvelopeException {
+
+		final int actualChecksum = BufferChecksum.compute(this.buffer);
+		if (actualChecksum == this.expectedChecksum) {
+			return;
+		}
+
+		this.buffer.recycleBuffer();
+		this.buffer = null;
+		this.transferEnvelope = null;
+		this.deserializationState = DeserializationState.NOTDESERIALIZED;
+
+		throw new CorruptedEnvelopeException(this.deserializedJobID, this.deserializedSourceID,
+			this.deserializedSequenceNumber, this.expectedChecksum, actualChecksum);
+	}
+
 	public TransferEnvelope getFullyDeserializedTransferEnvelope() {
 
 		if (this.deserializationState == DeserializationState.FULLYDESERIALIZED) {
@@ -21,35 +21,61 @@ import java.nio.channels.WritableByteChannel;
 import java.util.List;
 
 import eu.stratosphere.nephele.event.task.AbstractEvent;
-import eu.stratosphere.nephele.io.AbstractID;
 import eu.stratosphere.nephele.io.channels.Buffer;
 
+/**
+ * The abstract serializer transforms a {@link TransferEnvelope} into a byte stream. The envelope's header, i.e. the
+ * sequence number, the job ID, the source channel ID, the event list and the size of the attached buffer, is
+ * serialized into a single byte buffer up front, so it can be written to a channel in one call or be combined with the
+ * header and buffer data of other envelopes into a gathering write. The way the buffer data itself is written is up to
+ * the concrete subclass.
+ * <p>
+ * Optionally, the serializer protects the data of memory-backed buffers with a checksum which is transmitted as part
+ * of the header and verified by the {@link AbstractDeserializer} on the receiving side.
+ */
 public abstract class AbstractSerializer {
 
-	private enum SerializationState {
-		NOTSERIALIZED,
-		SEQUENCENUMBERSERIALIZED,
-		JOBIDSERIALIZED,
-		SOURCESERIALIZED,
-		NOTIFICATIONSSERIALIZED,
-		FULLYSERIALIZED
-	};
+	/**
+	 * The initial size of a header buffer in bytes. The header buffer grows in case an envelope's header is larger.
+	 */
+	private static final int INITIAL_HEADER_BUFFER_SIZE = 256;
 
 	private final static int SIZEOFINT = 4;
 
 	private TransferEnvelope transferEnvelope = null;
 
-	private SerializationState serializationState;
-
 	private final ObjectSerializer serializationBuffer = new ObjectSerializer();
 
 	private final ByteBuffer tempBuffer = ByteBuffer.allocate(64); // TODO: Make this configurable
 
-	private boolean serializationStarted = false;
+	private ByteBuffer headerBuffer = ByteBuffer.allocate(INITIAL_HEADER_BUFFER_SIZE);
 
-	private boolean bufferExistanceSerialized = false;
+	private boolean headerSerialized = false;
 
-	private boolean eventListExistanceSerialized = false;
+	private boolean fullySerialized = false;
+
+	/**
+	 * Stores whether checksums shall be computed for the buffers of the serialized envelopes.
+	 */
+	private final boolean computeChecksums;
+
+	/**
+	 * Constructs a new serializer which does not compute checksums.
+	 */
+	protected AbstractSerializer() {
+		this(false);
+	}
+
+	/**
+	 * Constructs a new serializer.
+	 * 
+	 * @param computeChecksums
+	 *        <code>true</code> to compute checksums for the buffers of the serialized envelopes, <code>false</code>
+	 *        otherwise
+	 */
+	protected AbstractSerializer(final boolean computeChecksums) {
+		this.computeChecksums = computeChecksums;
+	}
 
 	public final void setTransferEnvelope(TransferEnvelope transferEnvelope) {
 
@@ -68,180 +94,119 @@ public abstract class AbstractSerializer {
 
 	public final boolean write(WritableByteChannel writableByteChannel) throws IOException {
 
-		while (true) {
-
-			boolean moreDataFollows = false;
-
-			// System.out.println("OUTGOING State: " + this.serializationState);
-
-			switch (serializationState) {
-			case NOTSERIALIZED:
-				moreDataFollows = writeSequenceNumber(writableByteChannel, this.transferEnvelope.getSequenceNumber());
-				break;
-			case SEQUENCENUMBERSERIALIZED:
-				moreDataFollows = writeID(writableByteChannel, this.transferEnvelope.getJobID());
-				break;
-			case JOBIDSERIALIZED:
-				moreDataFollows = writeID(writableByteChannel, this.transferEnvelope.getSource());
-				break;
-			case SOURCESERIALIZED:
-				moreDataFollows = writeNotification(writableByteChannel, this.transferEnvelope.getEventList());
-				break;
-			case NOTIFICATIONSSERIALIZED:
-				moreDataFollows = writeBuffer(writableByteChannel, this.transferEnvelope.getBuffer());
-				break;
-			case FULLYSERIALIZED:
-				return false;
-			}
-
-			if (moreDataFollows) {
-				return true;
-			}
+		if (this.fullySerialized) {
+			return false;
 		}
-	}
-
-	private boolean writeSequenceNumber(WritableByteChannel writableByteChannel, int sequenceNumber) throws IOException {
 
-		if (sequenceNumber < 0) {
-			throw new IOException("Invalid sequence number: " + sequenceNumber);
+		if (!this.headerSerialized) {
+			this.headerBuffer = serializeHeader(this.transferEnvelope, this.headerBuffer);
+			this.headerSerialized = true;
 		}
 
-		if (!this.serializationStarted) {
-			this.tempBuffer.clear();
-			integerToByteBuffer(sequenceNumber, 0, this.tempBuffer);
-			this.serializationStarted = true;
-		}
+		if (this.headerBuffer.hasRemaining()) {
 
-		if (writableByteChannel.write(this.tempBuffer) == -1) {
-			throw new IOException("Unexpected end of stream while serializing the sequence number");
+			if (writableByteChannel.write(this.headerBuffer) == -1) {
+				throw new IOException("Unexpected end of stream while serializing the envelope header");
+			}
+
+			if (this.headerBuffer.hasRemaining()) {
+				return true;
+			}
 		}
 
-		if (!this.tempBuffer.hasRemaining()) {
-			this.serializationState = SerializationState.SEQUENCENUMBERSERIALIZED;
-			this.serializationStarted = false;
+		final Buffer buffer = this.transferEnvelope.getBuffer();
+		if (buffer == null || !writeBufferData(writableByteChannel, buffer)) {
+			this.fullySerialized = true;
 			return false;
 		}
 
 		return true;
 	}
 
-	private boolean writeID(WritableByteChannel writableByteChannel, AbstractID id) throws IOException {
+	/**
+	 * Serializes the header of the given {@link TransferEnvelope}, i.e. everything but the data of the attached buffer,
+	 * into the given byte buffer. If the byte buffer is too small to hold the header, a larger one is allocated. After
+	 * the method has returned, the returned byte buffer is ready to be written to a channel.
+	 * 
+	 * @param transferEnvelope
+	 *        the transfer envelope whose header shall be serialized
+	 * @param target
+	 *        the byte buffer to serialize the header into
+	 * @return the byte buffer containing the serialized header, either <code>target</code> or a larger replacement
+	 * @throws IOException
+	 *         thrown if an error occurs while serializing the header
+	 */
+	public final ByteBuffer serializeHeader(final TransferEnvelope transferEnvelope, ByteBuffer target)
+			throws IOException {
 
-		if (!writeObject(writableByteChannel, id)) {
-			// We're done, all the data has been written to the channel
-			if (this.serializationState == SerializationState.SEQUENCENUMBERSERIALIZED) {
-				// System.out.println("OUTGOING Serialized source: " + channelID);
-				this.serializationState = SerializationState.JOBIDSERIALIZED;
-			} else {
-				// System.out.println("OUTGOING Serialized target: " + channelID);
-				this.serializationState = SerializationState.SOURCESERIALIZED;
-			}
-			return false;
+		final int sequenceNumber = transferEnvelope.getSequenceNumber();
+		if (sequenceNumber < 0) {
+			throw new IOException("Invalid sequence number: " + sequenceNumber);
 		}
 
-		return true;
-	}
+		target.clear();
+		target = ensureCapacity(target, SIZEOFINT);
+		target.putInt(sequenceNumber);
 
-	private boolean writeObject(WritableByteChannel writableByteChannel, Object object) throws IOException {
+		target = putObject(transferEnvelope.getJobID(), target);
+		target = putObject(transferEnvelope.getSource(), target);
 
-		if (!this.serializationStarted) {
-			this.serializationBuffer.clear();
-			this.serializationBuffer.serialize(object);
-			this.serializationStarted = true;
+		final List<AbstractEvent> eventList = transferEnvelope.getEventList();
+		target = ensureCapacity(target, 1);
+		if (eventList == null) {
+			target.put((byte) 0);
+		} else {
+			target.put((byte) 1);
+			target = putObject(eventList, target);
 		}
 
-		if (this.serializationBuffer.dataLeftFromPreviousSerialization()) {
-			this.serializationBuffer.read(writableByteChannel);
+		final Buffer buffer = transferEnvelope.getBuffer();
+		target = ensureCapacity(target, 1 + 2 * SIZEOFINT);
+		if (buffer == null) {
+			target.put(AbstractDeserializer.NO_BUFFER);
+		} else if (this.computeChecksums && BufferChecksum.isSupported(buffer)) {
+			target.put(AbstractDeserializer.BUFFER_WITH_CHECKSUM);
+			target.putInt(buffer.size());
+			target.putInt(BufferChecksum.compute(buffer));
 		} else {
-			this.serializationStarted = false;
-			return false;
+			target.put(AbstractDeserializer.BUFFER);
+			target.putInt(buffer.size());
 		}
 
-		return true;
+		target.flip();
+
+		return target;
 	}
 
-	private boolean writeNotification(WritableByteChannel writableByteChannel, List<AbstractEvent> notificationList)
-			throws IOException {
+	private ByteBuffer putObject(final Object object, ByteBuffer target) throws IOException {
 
-		if (!this.eventListExistanceSerialized) {
-			this.tempBuffer.position(0);
-			if (notificationList == null) {
-				this.tempBuffer.put(0, (byte) 0);
-			} else {
-				this.tempBuffer.put(0, (byte) 1);
-			}
-			this.tempBuffer.limit(1);
+		this.serializationBuffer.clear();
+		this.serializationBuffer.serialize(object);
 
-			writableByteChannel.write(this.tempBuffer);
-			if (this.tempBuffer.hasRemaining()) {
-				return true;
-			}
+		target = ensureCapacity(target, this.serializationBuffer.getSerializedLength());
+		this.serializationBuffer.copyTo(target);
 
-			this.eventListExistanceSerialized = true;
-		}
+		return target;
+	}
 
-		if (notificationList != null) {
-			if (writeObject(writableByteChannel, notificationList)) {
-				return true;
-			}
+	private static ByteBuffer ensureCapacity(final ByteBuffer byteBuffer, final int numberOfBytes) {
+
+		if (byteBuffer.remaining() >= numberOfBytes) {
+			return byteBuffer;
 		}
 
-		this.serializationState = SerializationState.NOTIFICATIONSSERIALIZED;
-		return false;
+		final ByteBuffer newByteBuffer = ByteBuffer.allocate(Math.max(byteBuffer.capacity() * 2,
+			byteBuffer.position() + numberOfBytes));
+		byteBuffer.flip();
+		newByteBuffer.put(byteBuffer);
+
+		return newByteBuffer;
 	}
 
 	public void reset() {
-		this.serializationState = SerializationState.NOTSERIALIZED;
 		this.serializationBuffer.clear();
-		this.serializationStarted = false;
-		this.bufferExistanceSerialized = false;
-		this.eventListExistanceSerialized = false;
-	}
-
-	private boolean writeBuffer(WritableByteChannel writableByteChannel, Buffer buffer) throws IOException {
-
-		while (true) {
-
-			if (!this.bufferExistanceSerialized) {
-
-				if (!this.serializationStarted) {
-					this.tempBuffer.position(0);
-
-					if (buffer == null) {
-						this.tempBuffer.put(0, (byte) 0);
-						this.tempBuffer.limit(1);
-					} else {
-						this.tempBuffer.put(0, (byte) 1);
-						// System.out.println("OUTGOING: Buffer size is " + buffer.size());
-						integerToByteBuffer(buffer.size(), 1, this.tempBuffer);
-					}
-					this.serializationStarted = true;
-				}
-
-				if (this.tempBuffer.hasRemaining()) {
-					if (writableByteChannel.write(tempBuffer) == 0) {
-						return true;
-					}
-				} else {
-					this.bufferExistanceSerialized = true;
-					this.serializationStarted = false;
-					if (buffer == null) {
-						// That's it, we're done. No buffer will follow
-						this.serializationState = SerializationState.FULLYSERIALIZED;
-						return false;
-					}
-				}
-
-			} else {
-
-				if (!writeBufferData(writableByteChannel, buffer)) {
-					this.serializationState = SerializationState.FULLYSERIALIZED;
-					return false;
-				}
-
-				return true;
-			}
-		}
+		this.headerSerialized = false;
+		this.fullySerialized = false;
 	}
 
 	/**
@@ -257,19 +222,4 @@ public abstract class AbstractSerializer {
 	 */
 	protected abstract boolean writeBufferData(WritableByteChannel writableByteChannel, Buffer buffer)
 			throws IOException;
-
-	private void integerToByteBuffer(int integerToSerialize, int offset, ByteBuffer byteBuffer) throws IOException {
-
-		if ((offset + SIZEOFINT) > byteBuffer.capacity()) {
-			throw new IOException("Cannot convert integer to byte buffer, buffer is too small (" + byteBuffer.limit()
-				+ ", required " + (offset + SIZEOFINT) + ")");
-		}
-
-		byteBuffer.limit(offset + SIZEOFINT);
-
-		for (int i = 0; i < SIZEOFINT; ++i) {
-			final int shift = i << 3; // i * 8
-			byteBuffer.put((offset + SIZEOFINT - 1) - i, (byte) ((integerToSerialize & (0xff << shift)) >>> shift));
-		}
-	}
 }
@@ -0,0 +1,118 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.transferenvelope;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
+
+/**
+ * This class computes the checksums which protect the data of a {@link TransferEnvelope}'s buffer during the transfer
+ * over the network. Checksums can only be computed for buffers backed by memory, as only their content is directly
+ * accessible without modifying the buffer's read position.
+ * <p>
+ * This class is thread-safe.
+ */
+final class BufferChecksum {
+
+	/**
+	 * The size of the scratch array used to feed data from direct byte buffers into the checksum in bytes.
+	 */
+	private static final int SCRATCH_SIZE = 8192;
+
+	/**
+	 * The checksum objects, one per thread.
+	 */
+	private static final ThreadLocal<CRC32> CHECKSUM = new ThreadLocal<CRC32>() {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected CRC32 initialValue() {
+			return new CRC32();
+		}
+	};
+
+	/**
+	 * The scratch arrays used to feed data from direct byte buffers into the checksum, one per thread.
+	 */
+	private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected byte[] initialValue() {
+			return new byte[SCRATCH_SIZE];
+		}
+	};
+
+	/**
+	 * Private constructor to prevent instantiation.
+	 */
+	private BufferChecksum() {
+	}
+
+	/**
+	 * Checks whether a checksum can be computed for the given buffer.
+	 * 
+	 * @param buffer
+	 *        the buffer to check
+	 * @return <code>true</code> if a checksum can be computed for the given buffer, <code>false</code> otherwise
+	 */
+	static boolean isSupported(final Buffer buffer) {
+
+		return buffer.isBackedByMemory();
+	}
+
+	/**
+	 * Computes the checksum of the given buffer's content, i.e. of the first {@link Buffer#size()} bytes. The buffer's
+	 * read position is not modified.
+	 * 
+	 * @param buffer
+	 *        the buffer to compute the checksum for, must be backed by memory and in read mode
+	 * @return the checksum of the buffer's content
+	 */
+	static int compute(final Buffer buffer) {
+
+		final ByteBuffer byteBuffer = ((MemoryBuffer) buffer).getByteBuffer();
+		final int size = buffer.size();
+
+		final CRC32 crc = CHECKSUM.get();
+		crc.reset();
+
+		if (byteBuffer.hasArray()) {
+			crc.update(byteBuffer.array(), byteBuffer.arrayOffset(), size);
+		} else {
+
+			final ByteBuffer src = byteBuffer.duplicate();
+			src.position(0);
+			src.limit(size);
+
+			final byte[] scratch = SCRATCH.get();
+			while (src.hasRemaining()) {
+				final int length = Math.min(scratch.length, src.remaining());
+				src.get(scratch, 0, length);
+				crc.update(scratch, 0, length);
+			}
+		}
+
+		return (int) crc.getValue();
+	}
+}
@@ -0,0 +1,102 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.transferenvelope;
+
+import java.io.IOException;
+
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+
+/**
+ * This exception is thrown to indicate that the checksum of a {@link TransferEnvelope}'s buffer did not match the
+ * checksum transmitted with the envelope's header, i.e. the buffer data has been corrupted on its way from the sender
+ * to the receiver. The corrupted buffer has already been released when the exception is thrown, so the deserializer
+ * can continue with the next envelope.
+ */
+public final class CorruptedEnvelopeException extends IOException {
+
+	/**
+	 * Generated serial UID.
+	 */
+	private static final long serialVersionUID = 6392451337720151829L;
+
+	/**
+	 * The ID of the job the corrupted envelope belongs to.
+	 */
+	private final JobID jobID;
+
+	/**
+	 * The ID of the channel the corrupted envelope originates from.
+	 */
+	private final ChannelID sourceID;
+
+	/**
+	 * The sequence number of the corrupted envelope.
+	 */
+	private final int sequenceNumber;
+
+	/**
+	 * Constructs a new exception.
+	 * 
+	 * @param jobID
+	 *        the ID of the job the corrupted envelope belongs to
+	 * @param sourceID
+	 *        the ID of the channel the corrupted envelope originates from
+	 * @param sequenceNumber
+	 *        the sequence number of the corrupted envelope
+	 * @param expectedChecksum
+	 *        the checksum transmitted with the envelope's header
+	 * @param actualChecksum
+	 *        the checksum computed from the received buffer data
+	 */
+	CorruptedEnvelopeException(final JobID jobID, final ChannelID sourceID, final int sequenceNumber,
+			final int expectedChecksum, final int actualChecksum) {
+		super("Envelope " + sequenceNumber + " from source channel " + sourceID + " of job " + jobID
+			+ " is corrupted: expected checksum " + Integer.toHexString(expectedChecksum) + ", but computed "
+			+ Integer.toHexString(actualChecksum));
+
+		this.jobID = jobID;
+		this.sourceID = sourceID;
+		this.sequenceNumber = sequenceNumber;
+	}
+
+	/**
+	 * Returns the ID of the job the corrupted envelope belongs to.
+	 * 
+	 * @return the ID of the job the corrupted envelope belongs to
+	 */
+	public JobID getJobID() {
+		return this.jobID;
+	}
+
+	/**
+	 * Returns the ID of the channel the corrupted envelope originates from.
+	 * 
+	 * @return the ID of the channel the corrupted envelope originates from
+	 */
+	public ChannelID getSourceID() {
+		return this.sourceID;
+	}
+
+	/**
+	 * Returns the sequence number of the corrupted envelope.
+	 * 
+	 * @return the sequence number of the corrupted envelope
+	 */
+	public int getSequenceNumber() {
+		return this.sequenceNumber;
+	}
+}
@@ -28,6 +28,23 @@ import eu.stratosphere.nephele.io.channels.Buffer;
  */
 public class DefaultSerializer extends AbstractSerializer {
 
+	/**
+	 * Constructs a new default serializer which does not compute checksums.
+	 */
+	public DefaultSerializer() {
+	}
+
+	/**
+	 * Constructs a new default serializer.
+	 * 
+	 * @param computeChecksums
+	 *        <code>true</code> to compute checksums for the buffers of the serialized envelopes, <code>false</code>
+	 *        otherwise
+	 */
+	public DefaultSerializer(final boolean computeChecksums) {
+		super(computeChecksums);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -125,6 +125,29 @@ final class ObjectSerializer {
 		this.lengthBuf.flip();
 	}
 
+	/**
+	 * Returns the number of bytes the serialized object occupies in the byte stream, including its length prefix.
+	 * 
+	 * @return the number of bytes the serialized object occupies in the byte stream
+	 */
+	int getSerializedLength() {
+
+		return SIZE_OF_INT + this.output.total();
+	}
+
+	/**
+	 * Copies the length prefix and the data of the serialized object to the given byte buffer. The byte buffer must
+	 * have at least {@link #getSerializedLength()} bytes remaining.
+	 * 
+	 * @param target
+	 *        the byte buffer to copy the serialized object to
+	 */
+	void copyTo(final ByteBuffer target) {
+
+		target.putInt(this.output.total());
+		target.put(this.output.getBuffer(), 0, this.output.total());
+	}
+
 	void clear() {
 		this.kryo.reset();
 		this.bytesReadFromBuffer = 0;
@@ -0,0 +1,288 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.event.task.AbstractEvent;
+import eu.stratosphere.nephele.io.channels.AbstractOutputChannel;
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ByteBufferedOutputChannelBroker;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.io.channels.DefaultRecordSerializerFactory;
+import eu.stratosphere.nephele.io.compression.CompressionLevel;
+import eu.stratosphere.nephele.io.compression.Compressor;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.types.StringRecord;
+import eu.stratosphere.nephele.util.BufferPoolConnector;
+
+/**
+ * This class contains tests for the shipping of expired buffers requested by the flush timer of the
+ * {@link RuntimeOutputGate}.
+ */
+public class OutputGateFlushRequestsTest {
+
+	private static final long BUFFER_TIMEOUT = 20L;
+
+	private static final int BUFFER_SIZE = 4096;
+
+	private static final long MAXIMUM_WAIT_TIME = 10000L;
+
+	private final JobID jobID = JobID.generate();
+
+	private final OutputGateFlushRequests flushRequests = new OutputGateFlushRequests();
+
+	/**
+	 * Checks that an expired buffer is shipped exactly once, no matter whether the task thread processes the flush
+	 * request at its next emit or a flush thread ships the buffer first.
+	 */
+	@Test
+	public void testExpiredBufferIsShippedOnce() throws Exception {
+
+		final RecordingBroker broker = new RecordingBroker();
+		final RuntimeOutputGate<StringRecord> outputGate = createOutputGate(broker);
+
+		try {
+			outputGate.writeRecord(new StringRecord("first"));
+
+			// Wait until the buffer has expired and the timer has requested it to be shipped
+			Thread.sleep(BUFFER_TIMEOUT);
+			final long deadline = System.currentTimeMillis() + MAXIMUM_WAIT_TIME;
+			while (!this.flushRequests.hasPendingRequests() && broker.getNumberOfReleasedBuffers() == 0) {
+				assertTrue("Flush timer did not request a flush", System.currentTimeMillis() < deadline);
+				Thread.sleep(1L);
+			}
+
+			outputGate.writeRecord(new StringRecord("second"));
+
+			assertEquals(1, broker.getNumberOfReleasedBuffers());
+		} finally {
+			outputGate.releaseAllChannelResources();
+		}
+	}
+
+	/**
+	 * Checks that the expired buffer of a source which emits a single record and then sleeps in user code is shipped
+	 * by a flush thread within the buffer timeout.
+	 */
+	@Test
+	public void testExpiredBufferIsShippedWhileTaskIsBusy() throws Exception {
+
+		final RecordingBroker broker = new RecordingBroker();
+		final RuntimeOutputGate<StringRecord> outputGate = createOutputGate(broker);
+
+		final List<Exception> exceptions = new ArrayList<Exception>();
+		final Thread taskThread = new Thread() {
+
+			@Override
+			public void run() {
+				try {
+					outputGate.writeRecord(new StringRecord("record"));
+					Thread.sleep(MAXIMUM_WAIT_TIME);
+				} catch (InterruptedException e) {
+					// The test is done
+				} catch (Exception e) {
+					synchronized (exceptions) {
+						exceptions.add(e);
+					}
+				}
+			}
+		};
+
+		try {
+			final long startTime = System.currentTimeMillis();
+			taskThread.start();
+
+			final long deadline = startTime + MAXIMUM_WAIT_TIME;
+			while (broker.getNumberOfReleasedBuffers() == 0) {
+				assertTrue("Expired buffer has not been shipped", System.currentTimeMillis() < deadline);
+				Thread.sleep(1L);
+			}
+
+			// The task thread is still sleeping, so another thread must have shipped the buffer
+			assertTrue(taskThread.isAlive());
+			assertEquals(1, broker.getNumberOfReleasedBuffers());
+			assertFalse(taskThread.equals(broker.getReleasingThreads().get(0)));
+
+			synchronized (exceptions) {
+				assertTrue(exceptions.toString(), exceptions.isEmpty());
+			}
+		} finally {
+			taskThread.interrupt();
+			taskThread.join(MAXIMUM_WAIT_TIME);
+			outputGate.releaseAllChannelResources();
+		}
+	}
+
+	/**
+	 * Checks that a task thread waiting for input is woken up by the flush timer and ships the expired buffer before
+	 * it continues to wait.
+	 */
+	@Test
+	public void testExpiredBufferIsShippedWhileWaitingForInput() throws Exception {
+
+		final RecordingBroker broker = new RecordingBroker();
+		final RuntimeOutputGate<StringRecord> outputGate = createOutputGate(broker);
+		final RuntimeInputGate<StringRecord> inputGate = new RuntimeInputGate<StringRecord>(this.jobID,
+			GateID.generate(), 0, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, null, this.flushRequests);
+
+		final List<Exception> exceptions = new ArrayList<Exception>();
+		final Thread taskThread = new Thread() {
+
+			@Override
+			public void run() {
+				try {
+					outputGate.writeRecord(new StringRecord("record"));
+					assertEquals(0, inputGate.waitForAnyChannelToBecomeAvailable());
+				} catch (Exception e) {
+					synchronized (exceptions) {
+						exceptions.add(e);
+					}
+				}
+			}
+		};
+
+		try {
+			taskThread.start();
+
+			final long deadline = System.currentTimeMillis() + MAXIMUM_WAIT_TIME;
+			while (broker.getNumberOfReleasedBuffers() == 0) {
+				assertTrue("Expired buffer has not been shipped", System.currentTimeMillis() < deadline);
+				Thread.sleep(BUFFER_TIMEOUT);
+			}
+
+			// The task thread must still be waiting for input after it shipped the buffer
+			assertTrue(taskThread.isAlive());
+			for (final Thread releasingThread : broker.getReleasingThreads()) {
+				assertEquals(taskThread, releasingThread);
+			}
+
+			inputGate.notifyRecordIsAvailable(0);
+			taskThread.join(MAXIMUM_WAIT_TIME);
+			assertFalse(taskThread.isAlive());
+
+			synchronized (exceptions) {
+				assertTrue(exceptions.toString(), exceptions.isEmpty());
+			}
+		} finally {
+			outputGate.releaseAllChannelResources();
+			taskThread.interrupt();
+		}
+	}
+
+	/**
+	 * Checks that a gate without buffer timeout never schedules flushes.
+	 */
+	@Test
+	public void testNoFlushRequestsWithoutBufferTimeout() throws Exception {
+
+		final RecordingBroker broker = new RecordingBroker();
+		final RuntimeOutputGate<StringRecord> outputGate = new RuntimeOutputGate<StringRecord>(this.jobID,
+			GateID.generate(), 0, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, null, true,
+			new DefaultRecordSerializerFactory<StringRecord>(), OutputGateFlushPolicy.DEFAULT, null);
+		addChannel(outputGate, broker);
+
+		outputGate.writeRecord(new StringRecord("record"));
+		Thread.sleep(5L * BUFFER_TIMEOUT);
+
+		outputGate.writeRecord(new StringRecord("record"));
+		assertEquals(0, broker.getNumberOfReleasedBuffers());
+		assertFalse(this.flushRequests.hasPendingRequests());
+
+		outputGate.releaseAllChannelResources();
+	}
+
+	private RuntimeOutputGate<StringRecord> createOutputGate(final RecordingBroker broker) {
+
+		final RuntimeOutputGate<StringRecord> outputGate = new RuntimeOutputGate<StringRecord>(this.jobID,
+			GateID.generate(), 0, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, null, true,
+			new DefaultRecordSerializerFactory<StringRecord>(), new OutputGateFlushPolicy(BUFFER_TIMEOUT, 0, false),
+			this.flushRequests);
+		addChannel(outputGate, broker);
+
+		return outputGate;
+	}
+
+	private static void addChannel(final RuntimeOutputGate<StringRecord> outputGate, final RecordingBroker broker) {
+
+		outputGate.createNetworkOutputChannel(outputGate, ChannelID.generate(), ChannelID.generate(),
+			CompressionLevel.NO_COMPRESSION);
+		final AbstractOutputChannel<StringRecord> outputChannel = outputGate.getOutputChannel(0);
+		outputChannel.setByteBufferedOutputChannelBroker(broker);
+	}
+
+	/**
+	 * Hands out empty buffers and records the threads which release them.
+	 */
+	private static final class RecordingBroker implements ByteBufferedOutputChannelBroker {
+
+		private final List<Thread> releasingThreads = new ArrayList<Thread>();
+
+		@Override
+		public Buffer requestEmptyWriteBuffer() {
+
+			return BufferFactory.createFromMemory(BUFFER_SIZE, ByteBuffer.allocate(BUFFER_SIZE),
+				new BufferPoolConnector(new ArrayDeque<ByteBuffer>()));
+		}
+
+		@Override
+		public synchronized void releaseWriteBuffer(final Buffer buffer) {
+
+			this.releasingThreads.add(Thread.currentThread());
+			buffer.recycleBuffer();
+		}
+
+		@Override
+		public boolean hasDataLeftToTransmit() {
+
+			return false;
+		}
+
+		@Override
+		public void transferEventToInputChannel(final AbstractEvent event) throws IOException {
+
+			throw new IOException("Unexpected event " + event);
+		}
+
+		@Override
+		public Compressor getCompressor() {
+
+			return null;
+		}
+
+		private synchronized int getNumberOfReleasedBuffers() {
+
+			return this.releasingThreads.size();
+		}
+
+		private synchronized List<Thread> getReleasingThreads() {
+
+			return new ArrayList<Thread>(this.releasingThreads);
+		}
+	}
+}
@@ -161,6 +161,44 @@ public class DefaultMemoryManagerTest
 		}
 	}
 	
+	@Test
+	public void allocateOffHeap()
+	{
+		final DefaultMemoryManager offHeapManager = new DefaultMemoryManager(MEMORY_SIZE, PAGE_SIZE, true);
+		
+		try {
+			final AbstractInvokable mockInvoke = new DummyInvokable();
+			
+			List<MemorySegment> segs = offHeapManager.allocatePages(mockInvoke, NUM_PAGES);
+			for (MemorySegment seg : segs) {
+				Assert.assertTrue("The segment is not backed by off-heap memory.", seg.isOffHeap());
+				Assert.assertEquals(PAGE_SIZE, seg.size());
+			}
+			
+			// the pages must not overlap
+			for (int i = 0; i < segs.size(); i++) {
+				segs.get(i).putInt(0, i);
+				segs.get(i).putInt(PAGE_SIZE - 4, i);
+			}
+			for (int i = 0; i < segs.size(); i++) {
+				Assert.assertEquals(i, segs.get(i).getInt(0));
+				Assert.assertEquals(i, segs.get(i).getInt(PAGE_SIZE - 4));
+			}
+			
+			offHeapManager.releaseAll(mockInvoke);
+			
+			Assert.assertTrue("Not all memory segments were freed.", allMemorySegmentsFreed(segs));
+			Assert.assertTrue("Memory manager is not empty.", offHeapManager.verifyEmpty());
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail("Test encountered an exception: " + e.getMessage());
+		}
+		finally {
+			offHeapManager.shutdown();
+		}
+	}
+	
 	private boolean allMemorySegmentsValid(List<MemorySegment> memSegs)
 	{
 		for (MemorySegment seg : memSegs) {
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
 
 import junit.framework.Assert;
@@ -39,11 +40,11 @@ public class MemorySegmentTest {
 
 	public static final int PAGE_SIZE = 1024 * 512;
 
-	private DefaultMemoryManager manager;
+	protected DefaultMemoryManager manager;
 
-	private MemorySegment segment;
+	protected MemorySegment segment;
 
-	private Random random;
+	protected Random random;
 
 	@Before
 	public void setUp() throws Exception{
@@ -330,7 +331,7 @@ public class MemorySegmentTest {
 		}
 	}
 
-	// @Test
+	@Test
 	public void floatAccess() {
 		// test exceptions
 		{
@@ -525,4 +526,134 @@ public class MemorySegmentTest {
 			}
 		}
 	}
+
+	@Test
+	public void littleEndianAndNativeAccess() {
+		// test exceptions
+		{
+			try {
+				segment.putLongLittleEndian(PAGE_SIZE - 7, 0L);
+				fail("IndexOutOfBoundsException expected");
+			} catch (Exception e) {
+				assertTrue(e instanceof IndexOutOfBoundsException);
+			}
+
+			try {
+				segment.getIntNative(-1);
+				fail("IndexOutOfBoundsException expected");
+			} catch (Exception e) {
+				assertTrue(e instanceof IndexOutOfBoundsException);
+			}
+		}
+
+		// test expected correct behavior
+		{
+			segment.putIntLittleEndian(0, 0x01020304);
+			assertEquals((byte) 0x04, segment.get(0));
+			assertEquals((byte) 0x01, segment.get(3));
+			assertEquals(0x01020304, segment.getIntLittleEndian(0));
+			assertEquals(Integer.reverseBytes(0x01020304), segment.getInt(0));
+
+			long seed = random.nextLong();
+
+			random.setSeed(seed);
+			for (int i = 0; i < PAGE_SIZE / 8; i += 8) {
+				segment.putLongNative(i, random.nextLong());
+			}
+
+			random.setSeed(seed);
+			for (int i = 0; i < PAGE_SIZE / 8; i += 8) {
+				assertEquals(random.nextLong(), segment.getLongNative(i));
+			}
+		}
+	}
+
+	@Test
+	public void bulkSegmentOperations() {
+		final MemorySegment other;
+		try {
+			other = this.manager.allocatePages(new DefaultMemoryManagerTest.DummyInvokable(), 1).get(0);
+		} catch (MemoryAllocationException maex) {
+			fail("Could not allocate the second memory segment.");
+			return;
+		}
+
+		try {
+			final byte[] bytes = new byte[PAGE_SIZE / 4];
+			random.nextBytes(bytes);
+			segment.put(0, bytes);
+
+			// copy and compare
+			segment.copyTo(0, other, PAGE_SIZE / 2, bytes.length);
+			assertEquals(0, segment.compare(other, 0, PAGE_SIZE / 2, bytes.length));
+
+			other.put(PAGE_SIZE / 2 + 13, (byte) (bytes[13] + 1));
+			assertEquals(Integer.signum((bytes[13] & 0xff) - ((bytes[13] + 1) & 0xff)),
+				Integer.signum(segment.compare(other, 0, PAGE_SIZE / 2, bytes.length)));
+			assertEquals(0, segment.compare(other, 0, PAGE_SIZE / 2, 13));
+
+			// swap
+			final byte[] otherBytes = new byte[bytes.length];
+			other.get(PAGE_SIZE / 2, otherBytes);
+			segment.swapBytes(new byte[bytes.length], other, 0, PAGE_SIZE / 2, bytes.length);
+
+			final byte[] actual = new byte[bytes.length];
+			segment.get(0, actual);
+			assertArrayEquals(otherBytes, actual);
+			other.get(PAGE_SIZE / 2, actual);
+			assertArrayEquals(bytes, actual);
+
+			// test exceptions
+			try {
+				segment.copyTo(PAGE_SIZE - 8, other, 0, 16);
+				fail("IndexOutOfBoundsException expected");
+			} catch (Exception e) {
+				assertTrue(e instanceof IndexOutOfBoundsException);
+			}
+
+			try {
+				segment.swapBytes(new byte[8], other, 0, 0, 16);
+				fail("IndexOutOfBoundsException expected");
+			} catch (Exception e) {
+				assertTrue(e instanceof IndexOutOfBoundsException);
+			}
+		}
+		finally {
+			this.manager.release(other);
+		}
+	}
+
+	@Test
+	public void copyBetweenHeapAndOffHeapSegments() {
+		final MemorySegment heapSegment = new MemorySegment(new byte[PAGE_SIZE], 0, PAGE_SIZE);
+		final MemorySegment offHeapSegment = new MemorySegment(ByteBuffer.allocateDirect(PAGE_SIZE));
+
+		// odd offsets and lengths, so that the copies do not end on a word boundary
+		final byte[] bytes = new byte[PAGE_SIZE / 4 + 5];
+		random.nextBytes(bytes);
+		segment.put(3, bytes);
+
+		final byte[] actual = new byte[bytes.length];
+		for (MemorySegment other : new MemorySegment[] { heapSegment, offHeapSegment }) {
+			segment.copyTo(3, other, 11, bytes.length);
+			other.get(11, actual);
+			assertArrayEquals(bytes, actual);
+
+			other.copyTo(11, segment, PAGE_SIZE / 2 + 7, bytes.length);
+			segment.get(PAGE_SIZE / 2 + 7, actual);
+			assertArrayEquals(bytes, actual);
+
+			final byte[] otherBytes = new byte[bytes.length];
+			random.nextBytes(otherBytes);
+			other.put(11, otherBytes);
+			segment.swapBytes(new byte[bytes.length], other, 3, 11, bytes.length);
+			segment.get(3, actual);
+			assertArrayEquals(otherBytes, actual);
+			other.get(11, actual);
+			assertArrayEquals(bytes, actual);
+
+			// restore the original bytes for the next round
+			segment.put(3, bytes);
+		}
+	}
 }
@@ -0,0 +1,352 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * This class contains tests for the encoding of blocks into frames by the {@link FrameCompressor} and their decoding by
+ * the {@link FrameReader}.
+ */
+public class FrameCompressorTest {
+
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	private static final long MAXIMUM_WAIT_TIME = 10000L;
+
+	private ExecutorService compressionThreads;
+
+	private FrameCompressor frameCompressor;
+
+	@Before
+	public void setUp() {
+
+		this.compressionThreads = Executors.newSingleThreadExecutor();
+		this.frameCompressor = new FrameCompressor(this.compressionThreads);
+	}
+
+	@After
+	public void tearDown() {
+
+		this.compressionThreads.shutdownNow();
+	}
+
+	/**
+	 * Checks that a compressible block is deflated and restored by the frame reader, even if the frame arrives in
+	 * pieces of a single byte.
+	 */
+	@Test
+	public void testCompressedRoundTripWithPartialReads() throws Exception {
+
+		final byte[] block = createCompressibleBlock(BLOCK_SIZE);
+		final FrameCompressor.Frame frame = createFrame(block);
+		final byte[] encoded = encode(frame);
+
+		assertEquals(FrameCompressor.DEFLATED_FRAME, encoded[0]);
+		assertTrue(encoded.length < block.length);
+
+		final List<byte[]> decoded = decode(encoded, 1);
+		assertEquals(1, decoded.size());
+		assertArrayEquals(block, decoded.get(0));
+	}
+
+	/**
+	 * Checks that a block which does not compress well is transmitted uncompressed and restored by the frame reader.
+	 */
+	@Test
+	public void testIncompressibleBlockIsSentUncompressed() throws Exception {
+
+		final byte[] block = new byte[BLOCK_SIZE];
+		new Random(42L).nextBytes(block);
+
+		final byte[] encoded = encode(createFrame(block));
+		assertEquals(FrameCompressor.UNCOMPRESSED_FRAME, encoded[0]);
+		assertEquals(FrameCompressor.HEADER_SIZE + block.length, encoded.length);
+
+		final List<byte[]> decoded = decode(encoded, 7);
+		assertEquals(1, decoded.size());
+		assertArrayEquals(block, decoded.get(0));
+	}
+
+	/**
+	 * Checks that several frames sent back to back are split correctly, regardless of how the data is fragmented.
+	 */
+	@Test
+	public void testSeveralFrames() throws Exception {
+
+		final Random random = new Random(1L);
+		final List<byte[]> blocks = new ArrayList<byte[]>();
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+		for (int i = 0; i < 10; ++i) {
+			final byte[] block;
+			if (i % 3 == 0) {
+				block = new byte[1 + random.nextInt(1000)];
+				random.nextBytes(block);
+			} else {
+				block = createCompressibleBlock(1 + random.nextInt(BLOCK_SIZE));
+			}
+			blocks.add(block);
+			stream.write(encode(createFrame(block)));
+		}
+
+		for (final int chunkSize : new int[] { 1, 3, FrameCompressor.HEADER_SIZE, 4096, Integer.MAX_VALUE }) {
+
+			final List<byte[]> decoded = decode(stream.toByteArray(), chunkSize);
+			assertEquals(blocks.size(), decoded.size());
+			for (int i = 0; i < blocks.size(); ++i) {
+				assertArrayEquals(blocks.get(i), decoded.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Checks that the compressor stops compressing if the link is faster than the compression and still probes every
+	 * now and then.
+	 */
+	@Test
+	public void testCompressionIsSwitchedOffForFastLinks() throws Exception {
+
+		final byte[] block = createCompressibleBlock(BLOCK_SIZE);
+
+		// Report the transmission of a compressed frame through an infinitely fast link
+		this.frameCompressor.reportTransmission(createFrame(block), 0L);
+
+		int numberOfCompressedFrames = 0;
+		for (int i = 0; i < 128; ++i) {
+			final FrameCompressor.Frame frame = createFrame(block);
+			if (encode(frame)[0] == FrameCompressor.DEFLATED_FRAME) {
+				++numberOfCompressedFrames;
+			}
+			this.frameCompressor.reportTransmission(frame, 0L);
+		}
+
+		assertEquals(2, numberOfCompressedFrames);
+	}
+
+	/**
+	 * Checks that the completion listener is run once a frame has been compressed asynchronously.
+	 */
+	@Test
+	public void testCompletionListenerIsRun() throws Exception {
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		final Future<FrameCompressor.Frame> future = this.frameCompressor.createFrame(
+			ByteBuffer.wrap(createCompressibleBlock(BLOCK_SIZE)), new Runnable() {
+
+				@Override
+				public void run() {
+					latch.countDown();
+				}
+			});
+
+		assertTrue(latch.await(MAXIMUM_WAIT_TIME, TimeUnit.MILLISECONDS));
+		assertTrue(future.isDone());
+		FrameCompressor.getFrame(future);
+	}
+
+	/**
+	 * Checks that a corrupted compressed frame is rejected.
+	 */
+	@Test
+	public void testCorruptedFrameIsRejected() throws Exception {
+
+		final byte[] encoded = encode(createFrame(createCompressibleBlock(BLOCK_SIZE)));
+		encoded[FrameCompressor.HEADER_SIZE + 3] ^= 0x55;
+
+		try {
+			decode(encoded, Integer.MAX_VALUE);
+			fail("Corrupted frame has not been detected");
+		} catch (IOException e) {
+			assertFalse(e instanceof EOFException);
+		}
+	}
+
+	/**
+	 * Checks that the end of the stream is only accepted at a frame boundary.
+	 */
+	@Test
+	public void testEndOfStream() throws Exception {
+
+		final byte[] encoded = encode(createFrame(createCompressibleBlock(100)));
+
+		final FrameReader frameReader = new FrameReader();
+		final ReadableByteChannel channel = new FragmentingChannel(encoded, Integer.MAX_VALUE);
+		assertTrue(frameReader.readFrame(channel));
+		frameReader.read(ByteBuffer.allocate(100));
+		assertFalse(frameReader.hasUnfinishedData());
+
+		try {
+			frameReader.readFrame(channel);
+			fail("End of stream has not been reported");
+		} catch (EOFException e) {
+			// Expected
+		}
+
+		for (final int length : new int[] { 1, FrameCompressor.HEADER_SIZE, encoded.length - 1 }) {
+
+			final byte[] truncated = new byte[length];
+			System.arraycopy(encoded, 0, truncated, 0, length);
+
+			try {
+				decode(truncated, Integer.MAX_VALUE);
+				fail("Truncated frame has not been detected");
+			} catch (EOFException e) {
+				fail("Truncated frame has been reported as regular end of stream");
+			} catch (IOException e) {
+				// Expected
+			}
+		}
+	}
+
+	private FrameCompressor.Frame createFrame(final byte[] block) throws IOException {
+
+		final Future<FrameCompressor.Frame> future = this.frameCompressor.createFrame(ByteBuffer.wrap(block), null);
+
+		final long deadline = System.currentTimeMillis() + MAXIMUM_WAIT_TIME;
+		while (!future.isDone()) {
+			assertTrue("Frame has not been created in time", System.currentTimeMillis() < deadline);
+			Thread.yield();
+		}
+
+		return FrameCompressor.getFrame(future);
+	}
+
+	/**
+	 * Returns the header and the payload of the given frame as one array.
+	 */
+	private static byte[] encode(final FrameCompressor.Frame frame) {
+
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		for (final ByteBuffer byteBuffer : frame.getData()) {
+			final ByteBuffer duplicate = byteBuffer.duplicate();
+			while (duplicate.hasRemaining()) {
+				stream.write(duplicate.get());
+			}
+		}
+
+		return stream.toByteArray();
+	}
+
+	/**
+	 * Decodes all frames contained in the given data, which is handed to the frame reader in pieces of at most the
+	 * given size.
+	 */
+	private static List<byte[]> decode(final byte[] data, final int chunkSize) throws IOException {
+
+		final FrameReader frameReader = new FrameReader();
+		final FragmentingChannel channel = new FragmentingChannel(data, chunkSize);
+		final List<byte[]> blocks = new ArrayList<byte[]>();
+
+		try {
+			while (channel.hasRemaining() || frameReader.hasUnfinishedData()) {
+
+				if (!frameReader.readFrame(channel)) {
+					continue;
+				}
+
+				final ByteArrayOutputStream block = new ByteArrayOutputStream();
+				final ByteBuffer buffer = ByteBuffer.allocate(1000);
+				while (frameReader.hasRemaining()) {
+					frameReader.read(buffer);
+					block.write(buffer.array(), 0, buffer.position());
+					buffer.clear();
+				}
+				blocks.add(block.toByteArray());
+			}
+		} finally {
+			frameReader.close();
+		}
+
+		return blocks;
+	}
+
+	private static byte[] createCompressibleBlock(final int size) {
+
+		final byte[] block = new byte[size];
+		for (int i = 0; i < size; ++i) {
+			block[i] = (byte) ((i / 16) % 7);
+		}
+
+		return block;
+	}
+
+	/**
+	 * A readable byte channel which returns the given data in pieces of at most the given size.
+	 */
+	private static final class FragmentingChannel implements ReadableByteChannel {
+
+		private final ByteBuffer data;
+
+		private final int chunkSize;
+
+		private FragmentingChannel(final byte[] data, final int chunkSize) {
+			this.data = ByteBuffer.wrap(data);
+			this.chunkSize = chunkSize;
+		}
+
+		private boolean hasRemaining() {
+			return this.data.hasRemaining();
+		}
+
+		@Override
+		public int read(final ByteBuffer dst) {
+
+			if (!this.data.hasRemaining()) {
+				return -1;
+			}
+
+			final int length = Math.min(Math.min(dst.remaining(), this.data.remaining()), this.chunkSize);
+			final ByteBuffer slice = this.data.slice();
+			slice.limit(length);
+			dst.put(slice);
+			this.data.position(this.data.position() + length);
+
+			return length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,392 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProviderBroker;
+import eu.stratosphere.nephele.taskmanager.routing.RemoteReceiver;
+import eu.stratosphere.nephele.taskmanager.routing.RoutingService;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.util.BufferPoolConnector;
+
+/**
+ * This class contains tests for the delivery of envelopes by the {@link InJVMTransport}.
+ */
+public class InJVMTransportTest {
+
+	private static final int DATA_PORT = 50123;
+
+	private static final int BUFFER_SIZE = 64;
+
+	private static final int NUMBER_OF_ENVELOPES = 5;
+
+	private static final long MAXIMUM_WAIT_TIME = 10000L;
+
+	private final JobID jobID = JobID.generate();
+
+	private final ChannelID blockedSource = ChannelID.generate();
+
+	private final ChannelID unblockedSource = ChannelID.generate();
+
+	/**
+	 * The byte buffers of the sent envelopes which have been recycled by the transport.
+	 */
+	private final Queue<ByteBuffer> recycledBuffers = new ArrayDeque<ByteBuffer>();
+
+	private final TestRoutingService routingService = new TestRoutingService();
+
+	private InJVMTransport transport;
+
+	private RemoteReceiver remoteReceiver;
+
+	@Before
+	public void setUp() throws IOException {
+
+		final InetAddress address = InetAddress.getByName("localhost");
+		this.transport = new InJVMTransport(this.routingService, this.routingService, address, DATA_PORT);
+		this.remoteReceiver = new RemoteReceiver(new InetSocketAddress(address, DATA_PORT), 0);
+	}
+
+	@After
+	public void tearDown() {
+
+		this.transport.shutDown();
+	}
+
+	/**
+	 * Checks that a receiver without free buffers neither blocks the delivery thread nor the envelopes for other
+	 * receivers, and that its envelopes are delivered in order once buffers become available.
+	 */
+	@Test
+	public void testExhaustedReceiverDoesNotBlockOtherReceivers() throws Exception {
+
+		final TestBufferProvider blockedProvider = this.routingService.addBufferProvider(this.blockedSource, 0);
+		this.routingService.addBufferProvider(this.unblockedSource, Integer.MAX_VALUE);
+
+		for (int i = 0; i < NUMBER_OF_ENVELOPES; ++i) {
+			this.transport.queueEnvelopeForTransfer(this.remoteReceiver, createEnvelope(this.blockedSource, i, true));
+		}
+		for (int i = 0; i < NUMBER_OF_ENVELOPES; ++i) {
+			this.transport.queueEnvelopeForTransfer(this.remoteReceiver, createEnvelope(this.unblockedSource, i, true));
+		}
+
+		this.routingService.waitForEnvelopes(this.unblockedSource, NUMBER_OF_ENVELOPES);
+		assertEquals(0, this.routingService.getNumberOfEnvelopes(this.blockedSource));
+		assertTrue(blockedProvider.hasListener());
+
+		// Release the buffers one by one, every buffer must let exactly one more envelope through
+		for (int i = 1; i <= NUMBER_OF_ENVELOPES; ++i) {
+			blockedProvider.addBuffers(1);
+			this.routingService.waitForEnvelopes(this.blockedSource, i);
+		}
+
+		this.routingService.checkEnvelopes(this.blockedSource, NUMBER_OF_ENVELOPES);
+		this.routingService.checkEnvelopes(this.unblockedSource, NUMBER_OF_ENVELOPES);
+
+		synchronized (this.recycledBuffers) {
+			assertEquals(2 * NUMBER_OF_ENVELOPES, this.recycledBuffers.size());
+		}
+	}
+
+	/**
+	 * Checks that envelopes without a buffer do not overtake held back envelopes of the same source channel.
+	 */
+	@Test
+	public void testEnvelopesWithoutBufferDoNotOvertake() throws Exception {
+
+		final TestBufferProvider blockedProvider = this.routingService.addBufferProvider(this.blockedSource, 0);
+
+		this.transport.queueEnvelopeForTransfer(this.remoteReceiver, createEnvelope(this.blockedSource, 0, true));
+		this.transport.queueEnvelopeForTransfer(this.remoteReceiver, createEnvelope(this.blockedSource, 1, false));
+		this.transport.queueEnvelopeForTransfer(this.remoteReceiver, createEnvelope(this.blockedSource, 2, true));
+
+		// An unrelated envelope without a buffer passes the held back envelopes
+		this.transport.queueEnvelopeForTransfer(this.remoteReceiver, createEnvelope(this.unblockedSource, 0, false));
+		this.routingService.waitForEnvelopes(this.unblockedSource, 1);
+		assertEquals(0, this.routingService.getNumberOfEnvelopes(this.blockedSource));
+
+		blockedProvider.addBuffers(2);
+		this.routingService.waitForEnvelopes(this.blockedSource, 3);
+		this.routingService.checkEnvelopes(this.blockedSource, 3);
+	}
+
+	/**
+	 * Checks that shutting down the transport recycles the buffers of held back envelopes.
+	 */
+	@Test
+	public void testShutDownRecyclesHeldBackEnvelopes() throws Exception {
+
+		final TestBufferProvider blockedProvider = this.routingService.addBufferProvider(this.blockedSource, 0);
+
+		for (int i = 0; i < NUMBER_OF_ENVELOPES; ++i) {
+			this.transport.queueEnvelopeForTransfer(this.remoteReceiver, createEnvelope(this.blockedSource, i, true));
+		}
+
+		final long deadline = System.currentTimeMillis() + MAXIMUM_WAIT_TIME;
+		while (!blockedProvider.hasListener()) {
+			assertTrue("Transport did not try to deliver the envelopes", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+
+		this.transport.shutDown();
+
+		while (true) {
+			synchronized (this.recycledBuffers) {
+				if (this.recycledBuffers.size() == NUMBER_OF_ENVELOPES) {
+					break;
+				}
+			}
+			assertTrue("Held back envelopes have not been recycled", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+
+		assertEquals(0, this.routingService.getNumberOfEnvelopes(this.blockedSource));
+	}
+
+	private TransferEnvelope createEnvelope(final ChannelID source, final int sequenceNumber,
+			final boolean withBuffer) throws IOException {
+
+		final TransferEnvelope transferEnvelope = new TransferEnvelope(sequenceNumber, this.jobID, source);
+		if (withBuffer) {
+			final Buffer buffer = BufferFactory.createFromMemory(BUFFER_SIZE, ByteBuffer.allocate(BUFFER_SIZE),
+				new BufferPoolConnector(this.recycledBuffers));
+			final ByteBuffer content = ByteBuffer.allocate(BUFFER_SIZE);
+			for (int i = 0; i < BUFFER_SIZE; ++i) {
+				content.put((byte) (sequenceNumber + i));
+			}
+			content.flip();
+			buffer.write(content);
+			buffer.finishWritePhase();
+			transferEnvelope.setBuffer(buffer);
+		}
+
+		return transferEnvelope;
+	}
+
+	/**
+	 * Records the envelopes routed by the transport per source channel and hands out the buffers of the receiving
+	 * channels.
+	 */
+	private static final class TestRoutingService implements RoutingService, BufferProviderBroker {
+
+		private final Map<ChannelID, TestBufferProvider> bufferProviders = new HashMap<ChannelID, TestBufferProvider>();
+
+		private final Map<ChannelID, List<TransferEnvelope>> receivedEnvelopes = new HashMap<ChannelID, List<TransferEnvelope>>();
+
+		private synchronized TestBufferProvider addBufferProvider(final ChannelID source, final int numberOfBuffers) {
+
+			final TestBufferProvider bufferProvider = new TestBufferProvider(numberOfBuffers);
+			this.bufferProviders.put(source, bufferProvider);
+
+			return bufferProvider;
+		}
+
+		@Override
+		public synchronized BufferProvider getBufferProvider(final JobID jobID, final ChannelID sourceChannelID) {
+
+			return this.bufferProviders.get(sourceChannelID);
+		}
+
+		@Override
+		public void routeEnvelopeFromOutputChannel(final TransferEnvelope transferEnvelope) {
+
+			throw new IllegalStateException("Transport routed envelope from output channel");
+		}
+
+		@Override
+		public void routeEnvelopeFromInputChannel(final TransferEnvelope transferEnvelope) {
+
+			throw new IllegalStateException("Transport routed envelope from input channel");
+		}
+
+		@Override
+		public synchronized void routeEnvelopeFromNetwork(final TransferEnvelope transferEnvelope,
+				final boolean freeSourceBuffer) {
+
+			List<TransferEnvelope> envelopes = this.receivedEnvelopes.get(transferEnvelope.getSource());
+			if (envelopes == null) {
+				envelopes = new ArrayList<TransferEnvelope>();
+				this.receivedEnvelopes.put(transferEnvelope.getSource(), envelopes);
+			}
+			envelopes.add(transferEnvelope);
+			notifyAll();
+		}
+
+		private synchronized int getNumberOfEnvelopes(final ChannelID source) {
+
+			final List<TransferEnvelope> envelopes = this.receivedEnvelopes.get(source);
+
+			return (envelopes == null) ? 0 : envelopes.size();
+		}
+
+		private synchronized void waitForEnvelopes(final ChannelID source, final int numberOfEnvelopes)
+				throws InterruptedException {
+
+			final long deadline = System.currentTimeMillis() + MAXIMUM_WAIT_TIME;
+			while (getNumberOfEnvelopes(source) < numberOfEnvelopes) {
+				final long now = System.currentTimeMillis();
+				assertTrue("Expected envelopes have not been delivered", now < deadline);
+				wait(deadline - now);
+			}
+
+			assertEquals(numberOfEnvelopes, getNumberOfEnvelopes(source));
+		}
+
+		private synchronized void checkEnvelopes(final ChannelID source, final int numberOfEnvelopes)
+				throws IOException {
+
+			final List<TransferEnvelope> envelopes = this.receivedEnvelopes.get(source);
+			assertEquals(numberOfEnvelopes, envelopes.size());
+
+			for (int i = 0; i < numberOfEnvelopes; ++i) {
+
+				final TransferEnvelope transferEnvelope = envelopes.get(i);
+				assertEquals(i, transferEnvelope.getSequenceNumber());
+
+				final Buffer buffer = transferEnvelope.getBuffer();
+				if (buffer == null) {
+					continue;
+				}
+
+				assertEquals(BUFFER_SIZE, buffer.size());
+				final ByteBuffer content = ByteBuffer.allocate(BUFFER_SIZE);
+				buffer.read(content);
+				content.flip();
+				for (int j = 0; j < BUFFER_SIZE; ++j) {
+					assertEquals((byte) (i + j), content.get());
+				}
+			}
+		}
+	}
+
+	/**
+	 * A buffer provider which hands out a limited number of buffers and notifies its listener when buffers are added.
+	 */
+	private static final class TestBufferProvider implements BufferProvider {
+
+		private int availableBuffers;
+
+		private BufferAvailabilityListener listener = null;
+
+		private boolean listenerRegistered = false;
+
+		private TestBufferProvider(final int availableBuffers) {
+			this.availableBuffers = availableBuffers;
+		}
+
+		/**
+		 * Waits for the transport to register a listener, adds the given number of buffers and notifies the listener.
+		 */
+		private void addBuffers(final int numberOfBuffers) throws InterruptedException {
+
+			final BufferAvailabilityListener listenerToNotify;
+			synchronized (this) {
+
+				final long deadline = System.currentTimeMillis() + MAXIMUM_WAIT_TIME;
+				while (this.listener == null) {
+					final long now = System.currentTimeMillis();
+					assertTrue("Transport did not register a buffer availability listener", now < deadline);
+					wait(deadline - now);
+				}
+
+				this.availableBuffers += numberOfBuffers;
+				listenerToNotify = this.listener;
+				this.listener = null;
+			}
+
+			listenerToNotify.bufferAvailable();
+		}
+
+		private synchronized boolean hasListener() {
+
+			return this.listenerRegistered;
+		}
+
+		@Override
+		public synchronized Buffer requestEmptyBuffer(final int minimumSizeOfBuffer) {
+
+			if (this.availableBuffers == 0) {
+				return null;
+			}
+			--this.availableBuffers;
+
+			return BufferFactory.createFromMemory(minimumSizeOfBuffer, ByteBuffer.allocate(minimumSizeOfBuffer),
+				new BufferPoolConnector(new ArrayDeque<ByteBuffer>()));
+		}
+
+		@Override
+		public Buffer requestEmptyBufferBlocking(final int minimumSizeOfBuffer) {
+
+			throw new IllegalStateException("Transport requested buffer in blocking mode");
+		}
+
+		@Override
+		public int getMaximumBufferSize() {
+
+			return Integer.MAX_VALUE;
+		}
+
+		@Override
+		public boolean isShared() {
+
+			return false;
+		}
+
+		@Override
+		public void reportAsynchronousEvent() {
+		}
+
+		@Override
+		public synchronized boolean registerBufferAvailabilityListener(
+				final BufferAvailabilityListener bufferAvailabilityListener) {
+
+			if (this.availableBuffers > 0) {
+				return false;
+			}
+
+			assertNull("Transport registered more than one listener", this.listener);
+			this.listener = bufferAvailabilityListener;
+			this.listenerRegistered = true;
+			notifyAll();
+
+			return true;
+		}
+	}
+}
@@ -0,0 +1,351 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.instance.InstanceConnectionInfo;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.protocols.ChannelLookupProtocol;
+import eu.stratosphere.nephele.taskmanager.routing.ConnectionInfoLookupResponse;
+import eu.stratosphere.nephele.taskmanager.routing.DefaultRoutingService;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultSerializer;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+
+/**
+ * This class contains tests for the decoding of the data received through an {@link IncomingConnection}.
+ */
+public class IncomingConnectionTest {
+
+	private static final int NUMBER_OF_ENVELOPES = 50;
+
+	private static final int ENVELOPES_PER_FRAME = 7;
+
+	private final JobID jobID = JobID.generate();
+
+	private final RecordingLookupService lookupService = new RecordingLookupService();
+
+	private final List<ChannelID> sourceChannelIDs = new ArrayList<ChannelID>();
+
+	private ExecutorService compressionThreads;
+
+	private DefaultRoutingService routingService;
+
+	@Before
+	public void setUp() throws IOException {
+
+		// The routing service must not open the data port itself
+		final Configuration configuration = new Configuration();
+		configuration.setString(NetworkTransportUtils.TRANSPORT_CLASSNAME_KEY, InJVMTransport.class.getName());
+		GlobalConfiguration.includeConfiguration(configuration);
+
+		final InstanceConnectionInfo connectionInfo = new InstanceConnectionInfo(InetAddress.getByName("localhost"),
+			1, getFreePort());
+		this.routingService = new DefaultRoutingService(this.lookupService, connectionInfo);
+
+		this.compressionThreads = Executors.newSingleThreadExecutor();
+
+		// Every envelope gets its own source channel, so the order of the lookups reveals the order of the envelopes
+		for (int i = 0; i < NUMBER_OF_ENVELOPES; ++i) {
+			this.sourceChannelIDs.add(ChannelID.generate());
+		}
+	}
+
+	@After
+	public void tearDown() {
+
+		this.compressionThreads.shutdownNow();
+		this.routingService.shutdown();
+
+		// Restore the default for the other tests running in this virtual machine
+		final Configuration configuration = new Configuration();
+		configuration.setString(NetworkTransportUtils.TRANSPORT_CLASSNAME_KEY,
+			NetworkTransportUtils.DEFAULT_TRANSPORT_CLASSNAME);
+		GlobalConfiguration.includeConfiguration(configuration);
+	}
+
+	/**
+	 * Checks that a connection which announces compression in its header is decoded frame by frame, even if the data
+	 * arrives in small pieces.
+	 */
+	@Test
+	public void testCompressedConnection() throws Exception {
+
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		writeConnectionHeader(stream, true);
+
+		final FrameCompressor frameCompressor = new FrameCompressor(this.compressionThreads);
+		for (int i = 0; i < NUMBER_OF_ENVELOPES; i += ENVELOPES_PER_FRAME) {
+
+			final BlockChannel block = new BlockChannel();
+			serializeEnvelopes(block, i, Math.min(NUMBER_OF_ENVELOPES, i + ENVELOPES_PER_FRAME));
+
+			final Future<FrameCompressor.Frame> future = frameCompressor.createFrame(block.getBlock(), null);
+			while (!future.isDone()) {
+				Thread.yield();
+			}
+			for (final ByteBuffer byteBuffer : FrameCompressor.getFrame(future).getData()) {
+				stream.write(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(),
+					byteBuffer.remaining());
+			}
+		}
+
+		for (final int chunkSize : new int[] { 1, 13, Integer.MAX_VALUE }) {
+			this.lookupService.clear();
+			receive(stream.toByteArray(), chunkSize);
+			assertEquals(this.sourceChannelIDs, this.lookupService.getSourceChannelIDs());
+		}
+	}
+
+	/**
+	 * Checks that a connection which does not announce compression in its header is decoded envelope by envelope.
+	 */
+	@Test
+	public void testUncompressedConnection() throws Exception {
+
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		writeConnectionHeader(stream, false);
+
+		final BlockChannel block = new BlockChannel();
+		serializeEnvelopes(block, 0, NUMBER_OF_ENVELOPES);
+		final ByteBuffer byteBuffer = block.getBlock();
+		stream.write(byteBuffer.array(), 0, byteBuffer.limit());
+
+		for (final int chunkSize : new int[] { 1, 13, Integer.MAX_VALUE }) {
+			this.lookupService.clear();
+			receive(stream.toByteArray(), chunkSize);
+			assertEquals(this.sourceChannelIDs, this.lookupService.getSourceChannelIDs());
+		}
+	}
+
+	/**
+	 * Checks that a connection without a valid connection header is rejected.
+	 */
+	@Test
+	public void testInvalidConnectionHeaderIsRejected() throws Exception {
+
+		final BlockChannel block = new BlockChannel();
+		serializeEnvelopes(block, 0, 1);
+		final ByteBuffer byteBuffer = block.getBlock();
+		final byte[] data = new byte[byteBuffer.limit()];
+		byteBuffer.get(data);
+
+		try {
+			receive(data, Integer.MAX_VALUE);
+			fail("Connection without header has been accepted");
+		} catch (EOFException e) {
+			fail("Connection without header has been reported as regular end of stream");
+		} catch (IOException e) {
+			// Expected
+		}
+
+		assertTrue(this.lookupService.getSourceChannelIDs().isEmpty());
+	}
+
+	/**
+	 * Checks that closing the connection within the connection header is detected as unexpected.
+	 */
+	@Test
+	public void testCloseWithinConnectionHeader() throws Exception {
+
+		final IncomingConnection emptyConnection = new IncomingConnection(this.routingService,
+			new FragmentingChannel(new byte[0], Integer.MAX_VALUE));
+		try {
+			emptyConnection.read();
+			fail("End of stream has not been reported");
+		} catch (EOFException e) {
+			assertFalse(emptyConnection.isCloseUnexpected());
+		}
+
+		final IncomingConnection truncatedConnection = new IncomingConnection(this.routingService,
+			new FragmentingChannel(new byte[] { 0x4E, 0x45 }, Integer.MAX_VALUE));
+		truncatedConnection.read();
+		assertTrue(truncatedConnection.isCloseUnexpected());
+	}
+
+	/**
+	 * Passes the given data through an incoming connection in pieces of at most the given size until the end of the
+	 * stream is reached.
+	 */
+	private void receive(final byte[] data, final int chunkSize) throws Exception {
+
+		final IncomingConnection incomingConnection = new IncomingConnection(this.routingService,
+			new FragmentingChannel(data, chunkSize));
+
+		try {
+			while (true) {
+				incomingConnection.read();
+			}
+		} catch (EOFException e) {
+			assertFalse(incomingConnection.isCloseUnexpected());
+		} finally {
+			incomingConnection.closeConnection(null);
+		}
+	}
+
+	private void serializeEnvelopes(final WritableByteChannel writableByteChannel, final int from, final int to)
+			throws IOException {
+
+		final DefaultSerializer serializer = new DefaultSerializer();
+		for (int i = from; i < to; ++i) {
+			serializer.setTransferEnvelope(new TransferEnvelope(i, this.jobID, this.sourceChannelIDs.get(i)));
+			while (serializer.write(writableByteChannel)) {
+			}
+		}
+	}
+
+	private static void writeConnectionHeader(final ByteArrayOutputStream stream, final boolean compressed) {
+
+		final ByteBuffer header = ConnectionHeader.create(compressed);
+		stream.write(header.array(), 0, header.limit());
+	}
+
+	private static int getFreePort() throws IOException {
+
+		final ServerSocket serverSocket = new ServerSocket(0);
+		try {
+			return serverSocket.getLocalPort();
+		} finally {
+			serverSocket.close();
+		}
+	}
+
+	/**
+	 * A channel lookup service which never finds a receiver, so the routing service looks up the receivers for every
+	 * received envelope. It records the source channels of the looked up envelopes in order of their first lookup.
+	 */
+	private static final class RecordingLookupService implements ChannelLookupProtocol {
+
+		private final List<ChannelID> sourceChannelIDs = new ArrayList<ChannelID>();
+
+		@Override
+		public synchronized ConnectionInfoLookupResponse lookupConnectionInfo(final InstanceConnectionInfo caller,
+				final JobID jobID, final ChannelID sourceChannelID) {
+
+			if (!this.sourceChannelIDs.contains(sourceChannelID)) {
+				this.sourceChannelIDs.add(sourceChannelID);
+			}
+
+			return ConnectionInfoLookupResponse.createReceiverNotFound();
+		}
+
+		private synchronized void clear() {
+
+			this.sourceChannelIDs.clear();
+		}
+
+		private synchronized List<ChannelID> getSourceChannelIDs() {
+
+			return new ArrayList<ChannelID>(this.sourceChannelIDs);
+		}
+	}
+
+	/**
+	 * A writable byte channel which collects the written data in memory.
+	 */
+	private static final class BlockChannel implements WritableByteChannel {
+
+		private final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+		@Override
+		public int write(final ByteBuffer src) {
+
+			final int length = src.remaining();
+			while (src.hasRemaining()) {
+				this.stream.write(src.get());
+			}
+
+			return length;
+		}
+
+		private ByteBuffer getBlock() {
+			return ByteBuffer.wrap(this.stream.toByteArray());
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * A readable byte channel which returns the given data in pieces of at most the given size.
+	 */
+	private static final class FragmentingChannel implements ReadableByteChannel {
+
+		private final ByteBuffer data;
+
+		private final int chunkSize;
+
+		private FragmentingChannel(final byte[] data, final int chunkSize) {
+			this.data = ByteBuffer.wrap(data);
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		public int read(final ByteBuffer dst) {
+
+			if (!this.data.hasRemaining()) {
+				return -1;
+			}
+
+			final int length = Math.min(Math.min(dst.remaining(), this.data.remaining()), this.chunkSize);
+			final ByteBuffer slice = this.data.slice();
+			slice.limit(length);
+			dst.put(slice);
+			this.data.position(this.data.position() + length);
+
+			return length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
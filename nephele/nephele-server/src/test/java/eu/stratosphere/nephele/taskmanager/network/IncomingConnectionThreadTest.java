@@ -0,0 +1,253 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.instance.InstanceConnectionInfo;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.protocols.ChannelLookupProtocol;
+import eu.stratosphere.nephele.taskmanager.routing.ConnectionInfoLookupResponse;
+import eu.stratosphere.nephele.taskmanager.routing.DefaultRoutingService;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultSerializer;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+
+/**
+ * This class contains tests for the distribution of incoming connections over several
+ * {@link IncomingConnectionThread} objects.
+ */
+public class IncomingConnectionThreadTest {
+
+	private static final int NUMBER_OF_CONNECTIONS = 4;
+
+	private static final int ENVELOPES_PER_CONNECTION = 5;
+
+	private static final long MAXIMUM_WAIT_TIME = 10000L;
+
+	private final JobID jobID = JobID.generate();
+
+	private final RecordingLookupService lookupService = new RecordingLookupService();
+
+	private final List<IncomingConnectionThread> connectionThreads = new ArrayList<IncomingConnectionThread>();
+
+	private DefaultRoutingService routingService;
+
+	@Before
+	public void setUp() throws IOException {
+
+		// The routing service must not open the data port itself
+		final Configuration configuration = new Configuration();
+		configuration.setString(NetworkTransportUtils.TRANSPORT_CLASSNAME_KEY, InJVMTransport.class.getName());
+		GlobalConfiguration.includeConfiguration(configuration);
+
+		final InstanceConnectionInfo connectionInfo = new InstanceConnectionInfo(InetAddress.getByName("localhost"),
+			1, getFreePort());
+		this.routingService = new DefaultRoutingService(this.lookupService, connectionInfo);
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+
+		for (final IncomingConnectionThread connectionThread : this.connectionThreads) {
+			connectionThread.interrupt();
+		}
+		for (final IncomingConnectionThread connectionThread : this.connectionThreads) {
+			connectionThread.join(MAXIMUM_WAIT_TIME);
+		}
+
+		this.routingService.shutdown();
+
+		// Restore the default for the other tests running in this virtual machine
+		final Configuration configuration = new Configuration();
+		configuration.setString(NetworkTransportUtils.TRANSPORT_CLASSNAME_KEY,
+			NetworkTransportUtils.DEFAULT_TRANSPORT_CLASSNAME);
+		GlobalConfiguration.includeConfiguration(configuration);
+	}
+
+	/**
+	 * Checks that the accepted connections are distributed round-robin among the listening thread and the further
+	 * connection thread and that each connection is read by exactly one thread.
+	 */
+	@Test
+	public void testConnectionsAreDistributedAmongThreads() throws Exception {
+
+		final Map<ChannelID, Set<String>> readingThreads = transmit(1);
+
+		final Map<String, Integer> connectionsPerThread = new HashMap<String, Integer>();
+		for (final Set<String> threadNames : readingThreads.values()) {
+			assertEquals("Connection was read by more than one thread", 1, threadNames.size());
+			final String threadName = threadNames.iterator().next();
+			final Integer numberOfConnections = connectionsPerThread.get(threadName);
+			connectionsPerThread.put(threadName, numberOfConnections == null ? 1 : numberOfConnections + 1);
+		}
+
+		assertEquals(2, connectionsPerThread.size());
+		for (final Integer numberOfConnections : connectionsPerThread.values()) {
+			assertEquals(NUMBER_OF_CONNECTIONS / 2, numberOfConnections.intValue());
+		}
+	}
+
+	/**
+	 * Checks that the listening thread reads all connections itself if there are no further connection threads.
+	 */
+	@Test
+	public void testSingleThreadReadsAllConnections() throws Exception {
+
+		final Map<ChannelID, Set<String>> readingThreads = transmit(0);
+
+		final Set<String> threadNames = new HashSet<String>();
+		for (final Set<String> names : readingThreads.values()) {
+			threadNames.addAll(names);
+		}
+
+		assertEquals(1, threadNames.size());
+	}
+
+	/**
+	 * Starts a listening thread with the given number of further connection threads, opens
+	 * {@link #NUMBER_OF_CONNECTIONS} connections one after another and sends envelopes through each of them.
+	 * 
+	 * @param numberOfFurtherThreads
+	 *        the number of connection threads besides the listening thread
+	 * @return the names of the threads which have read the envelopes of each connection, indexed by the source channel
+	 *         of the envelopes
+	 */
+	private Map<ChannelID, Set<String>> transmit(final int numberOfFurtherThreads) throws Exception {
+
+		final List<IncomingConnectionThread> furtherThreads = new ArrayList<IncomingConnectionThread>();
+		for (int i = 1; i <= numberOfFurtherThreads; ++i) {
+			furtherThreads.add(new IncomingConnectionThread(this.routingService, i));
+		}
+
+		final InetSocketAddress listeningAddress = new InetSocketAddress(InetAddress.getByName("localhost"),
+			getFreePort());
+		this.connectionThreads.add(new IncomingConnectionThread(this.routingService, listeningAddress,
+			furtherThreads));
+		this.connectionThreads.addAll(furtherThreads);
+
+		for (final IncomingConnectionThread connectionThread : this.connectionThreads) {
+			connectionThread.start();
+		}
+
+		final List<SocketChannel> connections = new ArrayList<SocketChannel>();
+		try {
+			for (int i = 0; i < NUMBER_OF_CONNECTIONS; ++i) {
+
+				final SocketChannel socketChannel = SocketChannel.open(listeningAddress);
+				connections.add(socketChannel);
+
+				final ByteBuffer connectionHeader = ConnectionHeader.create(false);
+				while (connectionHeader.hasRemaining()) {
+					socketChannel.write(connectionHeader);
+				}
+
+				final ChannelID sourceChannelID = ChannelID.generate();
+				final DefaultSerializer serializer = new DefaultSerializer();
+				for (int j = 0; j < ENVELOPES_PER_CONNECTION; ++j) {
+					serializer.setTransferEnvelope(new TransferEnvelope(j, this.jobID, sourceChannelID));
+					while (serializer.write(socketChannel))
+						;
+				}
+
+				// Make sure the connections are accepted in the order they have been opened
+				this.lookupService.waitForLookups((i + 1) * ENVELOPES_PER_CONNECTION);
+			}
+		} finally {
+			for (final SocketChannel socketChannel : connections) {
+				socketChannel.close();
+			}
+		}
+
+		final Map<ChannelID, Set<String>> readingThreads = this.lookupService.getLookingUpThreads();
+		assertEquals(NUMBER_OF_CONNECTIONS, readingThreads.size());
+
+		return readingThreads;
+	}
+
+	private static int getFreePort() throws IOException {
+
+		final ServerSocket serverSocket = new ServerSocket(0);
+		try {
+			return serverSocket.getLocalPort();
+		} finally {
+			serverSocket.close();
+		}
+	}
+
+	/**
+	 * A channel lookup service which never finds a receiver, so the routing service looks up the receivers for every
+	 * received envelope. It records the threads which have looked up the receivers of each source channel.
+	 */
+	private static final class RecordingLookupService implements ChannelLookupProtocol {
+
+		private final Map<ChannelID, Set<String>> lookingUpThreads = new HashMap<ChannelID, Set<String>>();
+
+		private int numberOfLookups = 0;
+
+		@Override
+		public synchronized ConnectionInfoLookupResponse lookupConnectionInfo(final InstanceConnectionInfo caller,
+				final JobID jobID, final ChannelID sourceChannelID) {
+
+			Set<String> threadNames = this.lookingUpThreads.get(sourceChannelID);
+			if (threadNames == null) {
+				threadNames = new HashSet<String>();
+				this.lookingUpThreads.put(sourceChannelID, threadNames);
+			}
+			threadNames.add(Thread.currentThread().getName());
+
+			++this.numberOfLookups;
+			notifyAll();
+
+			return ConnectionInfoLookupResponse.createReceiverNotFound();
+		}
+
+		private synchronized void waitForLookups(final int numberOfLookups) throws InterruptedException {
+
+			final long deadline = System.currentTimeMillis() + MAXIMUM_WAIT_TIME;
+			while (this.numberOfLookups < numberOfLookups) {
+				final long timeLeft = deadline - System.currentTimeMillis();
+				assertTrue("Envelopes have not been received in time", timeLeft > 0L);
+				wait(timeLeft);
+			}
+		}
+
+		private synchronized Map<ChannelID, Set<String>> getLookingUpThreads() {
+
+			return new HashMap<ChannelID, Set<String>>(this.lookingUpThreads);
+		}
+	}
+}
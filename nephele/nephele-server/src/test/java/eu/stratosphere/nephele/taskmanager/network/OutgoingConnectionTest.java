@@ -0,0 +1,513 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ChannelCloseEvent;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProviderBroker;
+import eu.stratosphere.nephele.taskmanager.routing.RemoteReceiver;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultDeserializer;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.NoBufferAvailableException;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.util.BufferPoolConnector;
+
+/**
+ * This class contains tests for the batched and the compressed transmission of envelopes by the
+ * {@link OutgoingConnection}.
+ */
+public class OutgoingConnectionTest {
+
+	/**
+	 * The number of envelopes transmitted by the tests. It exceeds the maximum number of envelopes in a batch.
+	 */
+	private static final int NUMBER_OF_ENVELOPES = 40;
+
+	private final JobID jobID = JobID.generate();
+
+	private final ChannelID sourceChannelID = ChannelID.generate();
+
+	/**
+	 * The byte buffers of the envelopes which have been recycled by the outgoing connection.
+	 */
+	private final Queue<ByteBuffer> recycledBuffers = new ArrayDeque<ByteBuffer>();
+
+	private Selector selector;
+
+	private Pipe pipe;
+
+	private OutgoingConnection outgoingConnection;
+
+	private ExecutorService compressionThreads = null;
+
+	@Before
+	public void setUp() throws IOException {
+
+		this.selector = Selector.open();
+		this.pipe = Pipe.open();
+		this.pipe.sink().configureBlocking(false);
+		this.pipe.source().configureBlocking(false);
+
+		// The connection thread is never started, connection requests are only queued
+		final OutgoingConnectionThread connectionThread = new OutgoingConnectionThread();
+		final RemoteReceiver remoteReceiver = new RemoteReceiver(new InetSocketAddress("localhost", 1), 0);
+		this.outgoingConnection = new OutgoingConnection(remoteReceiver, connectionThread, 1, null, 0, false);
+		connect(this.outgoingConnection);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+
+		if (this.compressionThreads != null) {
+			this.compressionThreads.shutdownNow();
+		}
+
+		this.pipe.sink().close();
+		this.pipe.source().close();
+		this.selector.close();
+	}
+
+	/**
+	 * Transmits envelopes with buffers larger than the pipe's capacity, so the gathering writes are interrupted in the
+	 * middle of headers and buffers. All envelopes must arrive in order and completely, and every buffer must be
+	 * recycled exactly once.
+	 */
+	@Test
+	public void testBatchedTransmissionWithPartialWrites() throws Exception {
+
+		for (int i = 0; i < NUMBER_OF_ENVELOPES; ++i) {
+
+			final TransferEnvelope transferEnvelope = new TransferEnvelope(i, this.jobID, this.sourceChannelID);
+			if (i % 5 == 0) {
+				transferEnvelope.addEvent(new ChannelCloseEvent());
+			}
+			if (i % 7 != 3) {
+				transferEnvelope.setBuffer(createBuffer(getBufferSize(i), i));
+			}
+			this.outgoingConnection.queueEnvelope(transferEnvelope);
+		}
+
+		final byte[] data = transmit();
+
+		final ReadableByteChannel readableByteChannel = Channels.newChannel(new ByteArrayInputStream(data));
+		assertFalse(readConnectionHeader(readableByteChannel));
+		final DefaultDeserializer deserializer = new DefaultDeserializer(new TestBufferProviderBroker());
+
+		int numberOfBuffers = 0;
+		for (int i = 0; i < NUMBER_OF_ENVELOPES; ++i) {
+
+			final TransferEnvelope transferEnvelope = readEnvelope(deserializer, readableByteChannel);
+			assertEquals(i, transferEnvelope.getSequenceNumber());
+			assertEquals(this.jobID, transferEnvelope.getJobID());
+			assertEquals(this.sourceChannelID, transferEnvelope.getSource());
+
+			if (i % 5 == 0) {
+				assertNotNull(transferEnvelope.getEventList());
+				assertEquals(1, transferEnvelope.getEventList().size());
+				assertTrue(transferEnvelope.getEventList().get(0) instanceof ChannelCloseEvent);
+			} else {
+				assertNull(transferEnvelope.getEventList());
+			}
+
+			final Buffer buffer = transferEnvelope.getBuffer();
+			if (i % 7 != 3) {
+				assertNotNull(buffer);
+				checkBuffer(buffer, getBufferSize(i), i);
+				++numberOfBuffers;
+			} else {
+				assertNull(buffer);
+			}
+		}
+
+		assertEquals(-1, readableByteChannel.read(ByteBuffer.allocate(1)));
+		assertEquals(numberOfBuffers, this.recycledBuffers.size());
+		assertEquals(0, this.outgoingConnection.getNumberOfQueuedWriteBuffers());
+	}
+
+	/**
+	 * Checks that envelopes queued while a batch is transmitted are sent after the batch.
+	 */
+	@Test
+	public void testEnvelopesQueuedDuringTransmission() throws Exception {
+
+		final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+		this.outgoingConnection.queueEnvelope(createEnvelope(0, 100000));
+		this.outgoingConnection.queueEnvelope(createEnvelope(1, 100000));
+
+		// Start the transmission of the first batch
+		assertTrue(this.outgoingConnection.write());
+		drainPipe(received);
+
+		this.outgoingConnection.queueEnvelope(createEnvelope(2, 10));
+
+		while (this.outgoingConnection.write()) {
+			drainPipe(received);
+		}
+		drainPipe(received);
+
+		final ReadableByteChannel readableByteChannel = Channels.newChannel(new ByteArrayInputStream(received
+			.toByteArray()));
+		assertFalse(readConnectionHeader(readableByteChannel));
+		final DefaultDeserializer deserializer = new DefaultDeserializer(new TestBufferProviderBroker());
+		for (int i = 0; i < 3; ++i) {
+			assertEquals(i, readEnvelope(deserializer, readableByteChannel).getSequenceNumber());
+		}
+		assertEquals(-1, readableByteChannel.read(ByteBuffer.allocate(1)));
+		assertEquals(3, this.recycledBuffers.size());
+	}
+
+	/**
+	 * Transmits envelopes through a compressed connection. The envelopes are spread over several frames, which are
+	 * partly compressed asynchronously. All envelopes must arrive in order and completely, and every buffer must be
+	 * recycled exactly once.
+	 */
+	@Test
+	public void testCompressedTransmission() throws Exception {
+
+		this.compressionThreads = Executors.newSingleThreadExecutor();
+		final RemoteReceiver remoteReceiver = new RemoteReceiver(new InetSocketAddress("localhost", 1), 0);
+		this.outgoingConnection = new OutgoingConnection(remoteReceiver, new OutgoingConnectionThread(), 1,
+			new FrameCompressor(this.compressionThreads), 32 * 1024, false);
+		connect(this.outgoingConnection);
+
+		for (int i = 0; i < NUMBER_OF_ENVELOPES; ++i) {
+
+			final TransferEnvelope transferEnvelope = new TransferEnvelope(i, this.jobID, this.sourceChannelID);
+			if (i % 7 != 3) {
+				transferEnvelope.setBuffer(createBuffer(getBufferSize(i), i));
+			}
+			this.outgoingConnection.queueEnvelope(transferEnvelope);
+		}
+
+		final byte[] data = transmit();
+
+		final ReadableByteChannel readableByteChannel = Channels.newChannel(new ByteArrayInputStream(data));
+		assertTrue(readConnectionHeader(readableByteChannel));
+
+		// Decode the frames just like an incoming connection does
+		final FrameReader frameReader = new FrameReader();
+		final DefaultDeserializer deserializer = new DefaultDeserializer(new TestBufferProviderBroker());
+
+		int numberOfBuffers = 0;
+		int numberOfFrames = 0;
+		for (int i = 0; i < NUMBER_OF_ENVELOPES; ++i) {
+
+			TransferEnvelope transferEnvelope = deserializer.getFullyDeserializedTransferEnvelope();
+			while (transferEnvelope == null) {
+				if (!frameReader.hasRemaining()) {
+					while (!frameReader.readFrame(readableByteChannel)) {
+					}
+					++numberOfFrames;
+				}
+				deserializer.read(frameReader);
+				transferEnvelope = deserializer.getFullyDeserializedTransferEnvelope();
+			}
+
+			assertEquals(i, transferEnvelope.getSequenceNumber());
+			final Buffer buffer = transferEnvelope.getBuffer();
+			if (i % 7 != 3) {
+				assertNotNull(buffer);
+				checkBuffer(buffer, getBufferSize(i), i);
+				++numberOfBuffers;
+			} else {
+				assertNull(buffer);
+			}
+		}
+
+		assertFalse(frameReader.hasUnfinishedData());
+		assertEquals(-1, readableByteChannel.read(ByteBuffer.allocate(1)));
+		assertTrue(numberOfFrames > 1);
+		assertEquals(numberOfBuffers, this.recycledBuffers.size());
+		assertEquals(0, this.outgoingConnection.getNumberOfQueuedWriteBuffers());
+	}
+
+	/**
+	 * Checks that the outgoing connection does not wait for a frame which is still compressed, but unsubscribes from the
+	 * write event until the frame is ready.
+	 */
+	@Test
+	public void testOutgoingConnectionDoesNotWaitForCompression() throws Exception {
+
+		// Block the only compression thread
+		final CountDownLatch compressionBlocked = new CountDownLatch(1);
+		this.compressionThreads = Executors.newSingleThreadExecutor();
+		this.compressionThreads.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					compressionBlocked.await();
+				} catch (InterruptedException e) {
+				}
+			}
+		});
+
+		final RemoteReceiver remoteReceiver = new RemoteReceiver(new InetSocketAddress("localhost", 1), 0);
+		this.outgoingConnection = new OutgoingConnection(remoteReceiver, new OutgoingConnectionThread(), 1,
+			new FrameCompressor(this.compressionThreads), 1024, false);
+		final SelectionKey selectionKey = connect(this.outgoingConnection);
+
+		this.outgoingConnection.queueEnvelope(createEnvelope(0, 1000));
+
+		final ByteArrayOutputStream received = new ByteArrayOutputStream();
+		assertTrue(this.outgoingConnection.write());
+		assertTrue(this.outgoingConnection.write());
+		drainPipe(received);
+
+		// Only the connection header has been sent and the connection waits for the frame
+		assertEquals(ConnectionHeader.HEADER_SIZE, received.size());
+		assertEquals(0, selectionKey.interestOps() & SelectionKey.OP_WRITE);
+
+		compressionBlocked.countDown();
+		while (this.outgoingConnection.write()) {
+			drainPipe(received);
+		}
+		drainPipe(received);
+
+		final ReadableByteChannel readableByteChannel = Channels.newChannel(new ByteArrayInputStream(received
+			.toByteArray()));
+		assertTrue(readConnectionHeader(readableByteChannel));
+		final FrameReader frameReader = new FrameReader();
+		while (!frameReader.readFrame(readableByteChannel)) {
+		}
+		final DefaultDeserializer deserializer = new DefaultDeserializer(new TestBufferProviderBroker());
+		final TransferEnvelope transferEnvelope = readEnvelope(deserializer, frameReader);
+		assertFalse(frameReader.hasUnfinishedData());
+		checkBuffer(transferEnvelope.getBuffer(), 1000, 0);
+	}
+
+	/**
+	 * Checks that the connection header is only sent at the beginning of each new TCP connection.
+	 */
+	@Test
+	public void testConnectionHeaderIsSentOnEveryConnection() throws Exception {
+
+		final DefaultDeserializer deserializer = new DefaultDeserializer(new TestBufferProviderBroker());
+
+		this.outgoingConnection.queueEnvelope(createEnvelope(0, 10));
+		ReadableByteChannel readableByteChannel = Channels.newChannel(new ByteArrayInputStream(transmit()));
+		assertFalse(readConnectionHeader(readableByteChannel));
+		assertEquals(0, readEnvelope(deserializer, readableByteChannel).getSequenceNumber());
+
+		this.outgoingConnection.queueEnvelope(createEnvelope(1, 10));
+		readableByteChannel = Channels.newChannel(new ByteArrayInputStream(transmit()));
+		assertEquals(1, readEnvelope(deserializer, readableByteChannel).getSequenceNumber());
+
+		connect(this.outgoingConnection);
+		this.outgoingConnection.queueEnvelope(createEnvelope(2, 10));
+		readableByteChannel = Channels.newChannel(new ByteArrayInputStream(transmit()));
+		assertFalse(readConnectionHeader(readableByteChannel));
+		assertEquals(2, readEnvelope(deserializer, readableByteChannel).getSequenceNumber());
+	}
+
+	/**
+	 * Attaches the given outgoing connection to the pipe as if a new TCP connection had been established.
+	 */
+	private SelectionKey connect(final OutgoingConnection connection) throws IOException {
+
+		final SelectionKey selectionKey = this.pipe.sink().register(this.selector, SelectionKey.OP_WRITE);
+		connection.setSelectionKey(selectionKey);
+		connection.reportConnectionEstablished();
+
+		return selectionKey;
+	}
+
+	/**
+	 * Reads the connection header from the given channel.
+	 * 
+	 * @return <code>true</code> if the header announces a compressed connection, <code>false</code> otherwise
+	 */
+	private static boolean readConnectionHeader(final ReadableByteChannel readableByteChannel) throws IOException {
+
+		final ByteBuffer header = ByteBuffer.allocate(ConnectionHeader.HEADER_SIZE);
+		while (header.hasRemaining()) {
+			assertTrue(readableByteChannel.read(header) >= 0);
+		}
+
+		return ConnectionHeader.isCompressed(header);
+	}
+
+	/**
+	 * Lets the outgoing connection write to the pipe until all queued envelopes have been transmitted and collects the
+	 * transmitted data.
+	 *
+	 * @return the transmitted data
+	 * @throws IOException
+	 *         thrown if an error occurs while transmitting the data
+	 */
+	private byte[] transmit() throws IOException {
+
+		final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+		while (this.outgoingConnection.write()) {
+			drainPipe(received);
+		}
+		drainPipe(received);
+
+		assertFalse(this.outgoingConnection.write());
+
+		return received.toByteArray();
+	}
+
+	/**
+	 * Reads all data currently available from the pipe.
+	 *
+	 * @param received
+	 *        the stream to append the data to
+	 * @throws IOException
+	 *         thrown if an error occurs while reading from the pipe
+	 */
+	private void drainPipe(final ByteArrayOutputStream received) throws IOException {
+
+		final ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+		while (this.pipe.source().read(readBuffer) > 0) {
+			received.write(readBuffer.array(), 0, readBuffer.position());
+			readBuffer.clear();
+		}
+	}
+
+	private static TransferEnvelope readEnvelope(final DefaultDeserializer deserializer,
+			final ReadableByteChannel readableByteChannel) throws IOException, NoBufferAvailableException {
+
+		TransferEnvelope transferEnvelope = deserializer.getFullyDeserializedTransferEnvelope();
+		while (transferEnvelope == null) {
+			deserializer.read(readableByteChannel);
+			transferEnvelope = deserializer.getFullyDeserializedTransferEnvelope();
+		}
+
+		return transferEnvelope;
+	}
+
+	private TransferEnvelope createEnvelope(final int sequenceNumber, final int bufferSize) throws IOException {
+
+		final TransferEnvelope transferEnvelope = new TransferEnvelope(sequenceNumber, this.jobID,
+			this.sourceChannelID);
+		transferEnvelope.setBuffer(createBuffer(bufferSize, sequenceNumber));
+
+		return transferEnvelope;
+	}
+
+	private static int getBufferSize(final int index) {
+
+		return 1 + index * 3001;
+	}
+
+	private Buffer createBuffer(final int size, final int seed) throws IOException {
+
+		final Buffer buffer = BufferFactory.createFromMemory(size, ByteBuffer.allocate(size), new BufferPoolConnector(
+			this.recycledBuffers));
+
+		final ByteBuffer content = ByteBuffer.allocate(size);
+		for (int i = 0; i < size; ++i) {
+			content.put((byte) (seed + i));
+		}
+		content.flip();
+		buffer.write(content);
+		buffer.finishWritePhase();
+
+		return buffer;
+	}
+
+	private static void checkBuffer(final Buffer buffer, final int size, final int seed) throws IOException {
+
+		assertEquals(size, buffer.size());
+
+		final ByteBuffer content = ByteBuffer.allocate(size);
+		buffer.read(content);
+		content.flip();
+		for (int i = 0; i < size; ++i) {
+			assertEquals((byte) (seed + i), content.get());
+		}
+	}
+
+	/**
+	 * A buffer provider broker which hands out buffers of the requested size.
+	 */
+	private static final class TestBufferProviderBroker implements BufferProviderBroker, BufferProvider {
+
+		@Override
+		public BufferProvider getBufferProvider(final JobID jobID, final ChannelID sourceChannelID) {
+
+			return this;
+		}
+
+		@Override
+		public Buffer requestEmptyBuffer(final int minimumSizeOfBuffer) {
+
+			return BufferFactory.createFromMemory(minimumSizeOfBuffer, ByteBuffer.allocate(minimumSizeOfBuffer),
+				new BufferPoolConnector(new ArrayDeque<ByteBuffer>()));
+		}
+
+		@Override
+		public Buffer requestEmptyBufferBlocking(final int minimumSizeOfBuffer) {
+
+			return requestEmptyBuffer(minimumSizeOfBuffer);
+		}
+
+		@Override
+		public int getMaximumBufferSize() {
+
+			return Integer.MAX_VALUE;
+		}
+
+		@Override
+		public boolean isShared() {
+
+			return false;
+		}
+
+		@Override
+		public void reportAsynchronousEvent() {
+		}
+
+		@Override
+		public boolean registerBufferAvailabilityListener(final BufferAvailabilityListener bufferAvailabilityListener) {
+
+			return false;
+		}
+	}
+}
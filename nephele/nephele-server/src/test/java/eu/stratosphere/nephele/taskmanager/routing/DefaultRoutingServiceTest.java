@@ -0,0 +1,372 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.instance.InstanceConnectionInfo;
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.protocols.ChannelLookupProtocol;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
+import eu.stratosphere.nephele.taskmanager.network.InJVMTransport;
+import eu.stratosphere.nephele.taskmanager.network.NetworkTransportUtils;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.util.BufferPoolConnector;
+
+/**
+ * This class contains tests for the short-circuiting of network channels whose ends are both registered with the same
+ * {@link DefaultRoutingService}.
+ */
+public class DefaultRoutingServiceTest {
+
+	private static final int BUFFER_SIZE = 128;
+
+	/**
+	 * The data port of the next routing service. Every routing service needs its own port, because the in-JVM
+	 * transports are looked up by address.
+	 */
+	private static int nextDataPort = 21000;
+
+	private final JobID jobID = JobID.generate();
+
+	private final ChannelID outputChannelID = ChannelID.generate();
+
+	private final ChannelID inputChannelID = ChannelID.generate();
+
+	private final Queue<ByteBuffer> recycledBuffers = new ArrayDeque<ByteBuffer>();
+
+	private final CountingLookupService lookupService = new CountingLookupService();
+
+	private DefaultRoutingService routingService = null;
+
+	@After
+	public void tearDown() {
+
+		if (this.routingService != null) {
+			this.routingService.shutdown();
+		}
+
+		// Restore the defaults for the other tests running in this virtual machine
+		final Configuration configuration = new Configuration();
+		configuration.setString(NetworkTransportUtils.TRANSPORT_CLASSNAME_KEY,
+			NetworkTransportUtils.DEFAULT_TRANSPORT_CLASSNAME);
+		configuration.setBoolean("channel.network.shortCircuitLocalChannels", true);
+		GlobalConfiguration.includeConfiguration(configuration);
+	}
+
+	/**
+	 * Registers the output channel before the input channel and checks that a memory buffer is handed over to the
+	 * receiver without a channel lookup.
+	 */
+	@Test
+	public void testShortCircuitWhenReceiverRegisteredLast() throws Exception {
+
+		createRoutingService(true);
+
+		final TestChannelContext outputContext = new TestChannelContext(this.outputChannelID, this.inputChannelID,
+			false);
+		final TestChannelContext inputContext = new TestChannelContext(this.inputChannelID, this.outputChannelID, true);
+		this.routingService.registerChannelContext(outputContext);
+		this.routingService.registerChannelContext(inputContext);
+
+		checkDirectHandover(inputContext);
+	}
+
+	/**
+	 * Registers the input channel before the output channel and checks that a memory buffer is handed over to the
+	 * receiver without a channel lookup.
+	 */
+	@Test
+	public void testShortCircuitWhenSenderRegisteredLast() throws Exception {
+
+		createRoutingService(true);
+
+		final TestChannelContext outputContext = new TestChannelContext(this.outputChannelID, this.inputChannelID,
+			false);
+		final TestChannelContext inputContext = new TestChannelContext(this.inputChannelID, this.outputChannelID, true);
+		this.routingService.registerChannelContext(inputContext);
+		this.routingService.registerChannelContext(outputContext);
+
+		checkDirectHandover(inputContext);
+	}
+
+	/**
+	 * Checks that events sent by the receiver of a short-circuited channel reach the sender without a channel lookup.
+	 */
+	@Test
+	public void testEventsTravelBackWithoutLookup() throws Exception {
+
+		createRoutingService(true);
+
+		final TestChannelContext outputContext = new TestChannelContext(this.outputChannelID, this.inputChannelID,
+			false);
+		final TestChannelContext inputContext = new TestChannelContext(this.inputChannelID, this.outputChannelID, true);
+		this.routingService.registerChannelContext(outputContext);
+		this.routingService.registerChannelContext(inputContext);
+
+		final TransferEnvelope transferEnvelope = new TransferEnvelope(0, this.jobID, this.inputChannelID);
+		this.routingService.routeEnvelopeFromInputChannel(transferEnvelope);
+
+		assertEquals(1, outputContext.getQueuedEnvelopes().size());
+		assertSame(transferEnvelope, outputContext.getQueuedEnvelopes().get(0));
+		assertEquals(0, this.lookupService.getNumberOfLookups());
+	}
+
+	/**
+	 * Checks that the sender of a short-circuited channel looks up the receiver again once the receiver has been
+	 * unregistered.
+	 */
+	@Test
+	public void testUnregisteringReceiverDropsShortCircuit() throws Exception {
+
+		createRoutingService(true);
+
+		final TestChannelContext outputContext = new TestChannelContext(this.outputChannelID, this.inputChannelID,
+			false);
+		final TestChannelContext inputContext = new TestChannelContext(this.inputChannelID, this.outputChannelID, true);
+		this.routingService.registerChannelContext(outputContext);
+		this.routingService.registerChannelContext(inputContext);
+		this.routingService.unregisterChannelContext(this.inputChannelID);
+
+		assertTrue(inputContext.isDestroyed());
+
+		this.routingService.routeEnvelopeFromOutputChannel(createEnvelope(0));
+
+		assertEquals(1, this.lookupService.getNumberOfLookups());
+		assertEquals(0, inputContext.getQueuedEnvelopes().size());
+		assertEquals(1, this.recycledBuffers.size());
+	}
+
+	/**
+	 * Checks that network channels are not short-circuited if the feature is disabled.
+	 */
+	@Test
+	public void testNoShortCircuitIfDisabled() throws Exception {
+
+		createRoutingService(false);
+
+		final TestChannelContext outputContext = new TestChannelContext(this.outputChannelID, this.inputChannelID,
+			false);
+		final TestChannelContext inputContext = new TestChannelContext(this.inputChannelID, this.outputChannelID, true);
+		this.routingService.registerChannelContext(outputContext);
+		this.routingService.registerChannelContext(inputContext);
+
+		this.routingService.routeEnvelopeFromOutputChannel(createEnvelope(0));
+
+		assertEquals(1, this.lookupService.getNumberOfLookups());
+		assertEquals(0, inputContext.getQueuedEnvelopes().size());
+	}
+
+	private void checkDirectHandover(final TestChannelContext inputContext) throws Exception {
+
+		for (int i = 0; i < 3; ++i) {
+
+			final TransferEnvelope transferEnvelope = createEnvelope(i);
+			final Buffer buffer = transferEnvelope.getBuffer();
+			this.routingService.routeEnvelopeFromOutputChannel(transferEnvelope);
+
+			assertEquals(i + 1, inputContext.getQueuedEnvelopes().size());
+			final TransferEnvelope received = inputContext.getQueuedEnvelopes().get(i);
+			assertEquals(i, received.getSequenceNumber());
+			// The buffer must not have been copied
+			assertSame(buffer, received.getBuffer());
+		}
+
+		assertEquals(0, this.lookupService.getNumberOfLookups());
+		assertEquals(0, this.recycledBuffers.size());
+	}
+
+	private void createRoutingService(final boolean shortCircuitLocalChannels) throws IOException {
+
+		final Configuration configuration = new Configuration();
+		configuration.setString(NetworkTransportUtils.TRANSPORT_CLASSNAME_KEY, InJVMTransport.class.getName());
+		configuration.setBoolean("channel.network.shortCircuitLocalChannels", shortCircuitLocalChannels);
+		GlobalConfiguration.includeConfiguration(configuration);
+
+		final InstanceConnectionInfo connectionInfo = new InstanceConnectionInfo(InetAddress.getByName("localhost"), 1,
+			nextDataPort++);
+		this.routingService = new DefaultRoutingService(this.lookupService, connectionInfo);
+	}
+
+	private TransferEnvelope createEnvelope(final int sequenceNumber) {
+
+		final TransferEnvelope transferEnvelope = new TransferEnvelope(sequenceNumber, this.jobID,
+			this.outputChannelID);
+		transferEnvelope.setBuffer(BufferFactory.createFromMemory(BUFFER_SIZE, ByteBuffer.allocate(BUFFER_SIZE),
+			new BufferPoolConnector(this.recycledBuffers)));
+
+		return transferEnvelope;
+	}
+
+	/**
+	 * A channel lookup service which counts the lookups and never finds a receiver.
+	 */
+	private static final class CountingLookupService implements ChannelLookupProtocol {
+
+		private int numberOfLookups = 0;
+
+		@Override
+		public synchronized ConnectionInfoLookupResponse lookupConnectionInfo(final InstanceConnectionInfo caller,
+				final JobID jobID, final ChannelID sourceChannelID) {
+
+			++this.numberOfLookups;
+
+			return ConnectionInfoLookupResponse.createReceiverNotFound();
+		}
+
+		private synchronized int getNumberOfLookups() {
+
+			return this.numberOfLookups;
+		}
+	}
+
+	/**
+	 * A network channel context which records the envelopes queued with it.
+	 */
+	private static final class TestChannelContext implements OutputChannelContext, InputChannelContext {
+
+		private final ChannelID channelID;
+
+		private final ChannelID connectedChannelID;
+
+		private final boolean isInputChannel;
+
+		private final List<TransferEnvelope> queuedEnvelopes = new ArrayList<TransferEnvelope>();
+
+		private boolean isDestroyed = false;
+
+		private TestChannelContext(final ChannelID channelID, final ChannelID connectedChannelID,
+				final boolean isInputChannel) {
+
+			this.channelID = channelID;
+			this.connectedChannelID = connectedChannelID;
+			this.isInputChannel = isInputChannel;
+		}
+
+		@Override
+		public boolean isInputChannel() {
+
+			return this.isInputChannel;
+		}
+
+		@Override
+		public JobID getJobID() {
+
+			return null;
+		}
+
+		@Override
+		public ChannelID getChannelID() {
+
+			return this.channelID;
+		}
+
+		@Override
+		public ChannelID getConnectedChannelID() {
+
+			return this.connectedChannelID;
+		}
+
+		@Override
+		public ChannelType getType() {
+
+			return ChannelType.NETWORK;
+		}
+
+		@Override
+		public synchronized void queueTransferEnvelope(final TransferEnvelope transferEnvelope) {
+
+			this.queuedEnvelopes.add(transferEnvelope);
+		}
+
+		@Override
+		public synchronized void destroy() {
+
+			this.isDestroyed = true;
+		}
+
+		@Override
+		public void logQueuedEnvelopes() {
+		}
+
+		@Override
+		public void reportCorruptedEnvelope(final int sequenceNumber) {
+		}
+
+		@Override
+		public Buffer requestEmptyBuffer(final int minimumSizeOfBuffer) {
+
+			throw new IllegalStateException("Buffers of short-circuited channels must not be copied");
+		}
+
+		@Override
+		public Buffer requestEmptyBufferBlocking(final int minimumSizeOfBuffer) {
+
+			throw new IllegalStateException("Buffers of short-circuited channels must not be copied");
+		}
+
+		@Override
+		public int getMaximumBufferSize() {
+
+			return BUFFER_SIZE;
+		}
+
+		@Override
+		public boolean isShared() {
+
+			return false;
+		}
+
+		@Override
+		public void reportAsynchronousEvent() {
+		}
+
+		@Override
+		public boolean registerBufferAvailabilityListener(final BufferAvailabilityListener bufferAvailabilityListener) {
+
+			return false;
+		}
+
+		private synchronized List<TransferEnvelope> getQueuedEnvelopes() {
+
+			return new ArrayList<TransferEnvelope>(this.queuedEnvelopes);
+		}
+
+		private synchronized boolean isDestroyed() {
+
+			return this.isDestroyed;
+		}
+	}
+}
@@ -0,0 +1,355 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.routing.AbstractOutputChannelForwarder;
+import eu.stratosphere.nephele.taskmanager.routing.ChannelCreditEvent;
+import eu.stratosphere.nephele.taskmanager.routing.ReceiverNotFoundEvent;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+import eu.stratosphere.nephele.util.BufferPoolConnector;
+
+/**
+ * This class contains tests for the credit accounting of the {@link CreditBasedForwarder}.
+ */
+public class CreditBasedForwarderTest {
+
+	private static final int BUFFER_SIZE = 128;
+
+	private static final int INITIAL_CREDITS = 2;
+
+	private final JobID jobID = JobID.generate();
+
+	private final ChannelID channelID = ChannelID.generate();
+
+	private final Queue<ByteBuffer> recycledBuffers = new ArrayDeque<ByteBuffer>();
+
+	private int sequenceNumber = 0;
+
+	/**
+	 * Checks that every envelope with a buffer consumes one credit and envelopes without credit are held back.
+	 */
+	@Test
+	public void testCreditConsumption() throws Exception {
+
+		final RecordingForwarder next = new RecordingForwarder();
+		final CreditBasedForwarder forwarder = new CreditBasedForwarder(next, INITIAL_CREDITS);
+
+		for (int i = 0; i < INITIAL_CREDITS + 2; ++i) {
+			forwarder.push(createEnvelope(true));
+		}
+
+		assertEquals(INITIAL_CREDITS, next.getNumberOfReceivedEnvelopes());
+		assertEquals(2, forwarder.getNumberOfQueuedEnvelopes());
+		assertEquals(0, forwarder.getAvailableCredits());
+		assertTrue(forwarder.hasDataLeft());
+
+		receiveCredits(forwarder, 1);
+		assertEquals(INITIAL_CREDITS + 1, next.getNumberOfReceivedEnvelopes());
+		assertEquals(1, forwarder.getNumberOfQueuedEnvelopes());
+
+		receiveCredits(forwarder, 3);
+		assertEquals(INITIAL_CREDITS + 2, next.getNumberOfReceivedEnvelopes());
+		assertEquals(0, forwarder.getNumberOfQueuedEnvelopes());
+		assertEquals(2, forwarder.getAvailableCredits());
+		assertFalse(forwarder.hasDataLeft());
+
+		next.checkSequenceNumbers();
+	}
+
+	/**
+	 * Checks that envelopes without a buffer do not consume credits, but never overtake envelopes waiting for credits.
+	 */
+	@Test
+	public void testEnvelopesWithoutBufferDoNotOvertake() throws Exception {
+
+		final RecordingForwarder next = new RecordingForwarder();
+		final CreditBasedForwarder forwarder = new CreditBasedForwarder(next, 1);
+
+		forwarder.push(createEnvelope(true));
+		forwarder.push(createEnvelope(false));
+		assertEquals(2, next.getNumberOfReceivedEnvelopes());
+		assertEquals(0, forwarder.getAvailableCredits());
+
+		forwarder.push(createEnvelope(true));
+		forwarder.push(createEnvelope(false));
+		assertEquals(2, next.getNumberOfReceivedEnvelopes());
+		assertEquals(2, forwarder.getNumberOfQueuedEnvelopes());
+
+		receiveCredits(forwarder, 1);
+		assertEquals(4, next.getNumberOfReceivedEnvelopes());
+		assertEquals(0, forwarder.getAvailableCredits());
+
+		next.checkSequenceNumbers();
+	}
+
+	/**
+	 * Checks that a thread granting credits only records them and the held back envelopes are forwarded by the task
+	 * thread when it processes the credit event.
+	 */
+	@Test
+	public void testCreditsAreRecordedOnGrantingThread() throws Exception {
+
+		final RecordingForwarder next = new RecordingForwarder();
+		final CreditBasedForwarder forwarder = new CreditBasedForwarder(next, 0);
+
+		forwarder.push(createEnvelope(true));
+		forwarder.push(createEnvelope(true));
+		assertEquals(0, next.getNumberOfReceivedEnvelopes());
+
+		final Thread grantingThread = new Thread() {
+
+			@Override
+			public void run() {
+				forwarder.grantCredits(2);
+			}
+		};
+		grantingThread.start();
+		grantingThread.join();
+
+		assertEquals(0, next.getNumberOfReceivedEnvelopes());
+		assertEquals(2, forwarder.getAvailableCredits());
+
+		forwarder.processEvent(new ChannelCreditEvent(2));
+		assertEquals(2, next.getNumberOfReceivedEnvelopes());
+		for (final Thread forwardingThread : next.getForwardingThreads()) {
+			assertEquals(Thread.currentThread(), forwardingThread);
+		}
+
+		next.checkSequenceNumbers();
+	}
+
+	/**
+	 * Checks that the held back envelopes are forwarded at the next push if the credit event has not been processed.
+	 */
+	@Test
+	public void testCreditsAreUsedAtNextPush() throws Exception {
+
+		final RecordingForwarder next = new RecordingForwarder();
+		final CreditBasedForwarder forwarder = new CreditBasedForwarder(next, 0);
+
+		forwarder.push(createEnvelope(true));
+		forwarder.grantCredits(2);
+		assertEquals(0, next.getNumberOfReceivedEnvelopes());
+
+		forwarder.push(createEnvelope(true));
+		assertEquals(2, next.getNumberOfReceivedEnvelopes());
+		assertEquals(0, forwarder.getNumberOfQueuedEnvelopes());
+
+		next.checkSequenceNumbers();
+	}
+
+	/**
+	 * Checks that the number of held back envelopes is bounded and a pushing thread is blocked until credits arrive.
+	 */
+	@Test
+	public void testQueueIsBounded() throws Exception {
+
+		final RecordingForwarder next = new RecordingForwarder();
+		final CreditBasedForwarder forwarder = new CreditBasedForwarder(next, 0);
+
+		for (int i = 0; i < CreditBasedForwarder.MAX_QUEUED_ENVELOPES; ++i) {
+			forwarder.push(createEnvelope(true));
+		}
+
+		final TransferEnvelope lastEnvelope = createEnvelope(true);
+		final Thread pushingThread = new Thread() {
+
+			@Override
+			public void run() {
+				try {
+					forwarder.push(lastEnvelope);
+				} catch (Exception e) {
+					fail(e.getMessage());
+				}
+			}
+		};
+		pushingThread.start();
+
+		// Wait for the pushing thread to block
+		while (pushingThread.getState() != Thread.State.WAITING) {
+			if (!pushingThread.isAlive()) {
+				fail("Push of envelope exceeding the bound returned without credits");
+			}
+			Thread.sleep(10);
+		}
+		assertEquals(CreditBasedForwarder.MAX_QUEUED_ENVELOPES, forwarder.getNumberOfQueuedEnvelopes());
+
+		forwarder.grantCredits(1);
+		pushingThread.join(10000L);
+		assertFalse(pushingThread.isAlive());
+
+		assertEquals(1, next.getNumberOfReceivedEnvelopes());
+		assertEquals(CreditBasedForwarder.MAX_QUEUED_ENVELOPES, forwarder.getNumberOfQueuedEnvelopes());
+
+		receiveCredits(forwarder, CreditBasedForwarder.MAX_QUEUED_ENVELOPES);
+		assertEquals(CreditBasedForwarder.MAX_QUEUED_ENVELOPES + 1, next.getNumberOfReceivedEnvelopes());
+
+		next.checkSequenceNumbers();
+	}
+
+	/**
+	 * Checks that a dropped envelope returns its credit to the sender.
+	 */
+	@Test
+	public void testReceiverNotFoundReturnsCredit() throws Exception {
+
+		final RecordingForwarder next = new RecordingForwarder();
+		final CreditBasedForwarder forwarder = new CreditBasedForwarder(next, 1);
+
+		forwarder.push(createEnvelope(true));
+		forwarder.push(createEnvelope(true));
+		assertEquals(1, next.getNumberOfReceivedEnvelopes());
+
+		forwarder.processEvent(new ReceiverNotFoundEvent(this.channelID, 0));
+		assertEquals(2, next.getNumberOfReceivedEnvelopes());
+		assertEquals(0, forwarder.getAvailableCredits());
+	}
+
+	/**
+	 * Checks that destroying the forwarder recycles the buffers of the held back envelopes.
+	 */
+	@Test
+	public void testDestroyRecyclesHeldBackEnvelopes() throws Exception {
+
+		final RecordingForwarder next = new RecordingForwarder();
+		final CreditBasedForwarder forwarder = new CreditBasedForwarder(next, 0);
+
+		forwarder.push(createEnvelope(true));
+		forwarder.push(createEnvelope(true));
+		forwarder.push(createEnvelope(false));
+
+		forwarder.destroy();
+
+		assertEquals(0, forwarder.getNumberOfQueuedEnvelopes());
+		assertEquals(2, this.recycledBuffers.size());
+
+		// Envelopes pushed after destruction are recycled as well
+		forwarder.push(createEnvelope(true));
+		assertEquals(3, this.recycledBuffers.size());
+		assertEquals(0, next.getNumberOfReceivedEnvelopes());
+	}
+
+	/**
+	 * Checks that an error which occurs while forwarding envelopes during the processing of a credit event is reported
+	 * the next time the task thread pushes an envelope.
+	 */
+	@Test
+	public void testDeferredExceptionIsReported() throws Exception {
+
+		final RecordingForwarder next = new RecordingForwarder();
+		final CreditBasedForwarder forwarder = new CreditBasedForwarder(next, 0);
+
+		forwarder.push(createEnvelope(true));
+		next.failOnNextPush();
+		receiveCredits(forwarder, 1);
+
+		try {
+			forwarder.push(createEnvelope(true));
+			fail("Expected IOException has not been thrown");
+		} catch (IOException ioe) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Delivers credits the way the output channel context does: the receiving thread grants them and the task thread
+	 * later processes the queued credit event.
+	 */
+	private static void receiveCredits(final CreditBasedForwarder forwarder, final int credits) {
+
+		forwarder.grantCredits(credits);
+		forwarder.processEvent(new ChannelCreditEvent(credits));
+	}
+
+	private TransferEnvelope createEnvelope(final boolean withBuffer) {
+
+		final TransferEnvelope transferEnvelope = new TransferEnvelope(this.sequenceNumber++, this.jobID,
+			this.channelID);
+
+		if (withBuffer) {
+			final Buffer buffer = BufferFactory.createFromMemory(BUFFER_SIZE, ByteBuffer.allocate(BUFFER_SIZE),
+				new BufferPoolConnector(this.recycledBuffers));
+			transferEnvelope.setBuffer(buffer);
+		}
+
+		return transferEnvelope;
+	}
+
+	/**
+	 * Records the envelopes pushed by the forwarder under test together with the threads which pushed them.
+	 */
+	private static final class RecordingForwarder extends AbstractOutputChannelForwarder {
+
+		private final List<TransferEnvelope> receivedEnvelopes = new ArrayList<TransferEnvelope>();
+
+		private final List<Thread> forwardingThreads = new ArrayList<Thread>();
+
+		private boolean failOnNextPush = false;
+
+		private RecordingForwarder() {
+			super(null);
+		}
+
+		@Override
+		public synchronized void push(final TransferEnvelope transferEnvelope) throws IOException {
+
+			if (this.failOnNextPush) {
+				this.failOnNextPush = false;
+				throw new IOException("Test exception");
+			}
+
+			this.receivedEnvelopes.add(transferEnvelope);
+			this.forwardingThreads.add(Thread.currentThread());
+		}
+
+		private synchronized void failOnNextPush() {
+			this.failOnNextPush = true;
+		}
+
+		private synchronized int getNumberOfReceivedEnvelopes() {
+			return this.receivedEnvelopes.size();
+		}
+
+		private synchronized List<Thread> getForwardingThreads() {
+			return new ArrayList<Thread>(this.forwardingThreads);
+		}
+
+		private synchronized void checkSequenceNumbers() {
+
+			for (int i = 0; i < this.receivedEnvelopes.size(); ++i) {
+				assertEquals(i, this.receivedEnvelopes.get(i).getSequenceNumber());
+			}
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * This class contains tests for the {@link SingleProducerSingleConsumerQueue}.
+ */
+public class SingleProducerSingleConsumerQueueTest {
+
+	/**
+	 * The number of elements passed between the producer and the consumer thread.
+	 */
+	private static final int NUMBER_OF_ELEMENTS = 1000000;
+
+	/**
+	 * Tests the queue's FIFO order within a single thread, including the transition between segments.
+	 */
+	@Test
+	public void testFIFOOrder() {
+
+		final SingleProducerSingleConsumerQueue<Integer> queue = new SingleProducerSingleConsumerQueue<Integer>();
+
+		assertTrue(queue.isEmpty());
+		assertNull(queue.peek());
+		assertNull(queue.poll());
+
+		for (int i = 0; i < 1000; ++i) {
+			queue.add(Integer.valueOf(i));
+		}
+
+		assertEquals(1000, queue.size());
+		assertEquals(Integer.valueOf(0), queue.peek());
+
+		for (int i = 0; i < 1000; ++i) {
+			assertFalse(queue.isEmpty());
+			assertEquals(Integer.valueOf(i), queue.poll());
+		}
+
+		assertTrue(queue.isEmpty());
+		assertEquals(0, queue.size());
+		assertNull(queue.poll());
+	}
+
+	/**
+	 * Tests that elements passed from a producer thread to a consumer thread arrive completely and in order.
+	 */
+	@Test
+	public void testConcurrentProducerAndConsumer() {
+
+		final SingleProducerSingleConsumerQueue<Integer> queue = new SingleProducerSingleConsumerQueue<Integer>();
+
+		final Thread producer = new Thread() {
+
+			@Override
+			public void run() {
+
+				for (int i = 0; i < NUMBER_OF_ELEMENTS; ++i) {
+					queue.add(Integer.valueOf(i));
+				}
+			}
+		};
+
+		producer.start();
+
+		int expected = 0;
+		while (expected < NUMBER_OF_ELEMENTS) {
+
+			final Integer element = queue.poll();
+			if (element == null) {
+				Thread.yield();
+				continue;
+			}
+
+			assertEquals(expected++, element.intValue());
+		}
+
+		try {
+			producer.join();
+		} catch (InterruptedException e) {
+			fail(e.getMessage());
+		}
+
+		assertTrue(queue.isEmpty());
+	}
+}
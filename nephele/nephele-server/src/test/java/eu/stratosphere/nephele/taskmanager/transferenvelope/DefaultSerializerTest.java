@@ -16,14 +16,19 @@
 package eu.stratosphere.nephele.taskmanager.transferenvelope;
 
 import static org.junit.Assert.fail;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayDeque;
 import java.util.Deque;
 
@@ -35,7 +40,9 @@ import com.esotericsoftware.kryo.io.Input;
 import eu.stratosphere.nephele.io.AbstractID;
 import eu.stratosphere.nephele.io.channels.Buffer;
 import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ChannelCloseEvent;
 import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.MemoryBuffer;
 import eu.stratosphere.nephele.jobgraph.JobID;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
 import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultSerializer;
@@ -101,6 +108,120 @@ public class DefaultSerializerTest {
 		}
 	}
 
+	/**
+	 * This test checks that the header produced by {@link AbstractSerializer#serializeHeader(TransferEnvelope, ByteBuffer)}
+	 * followed by the envelope's buffer data matches the byte stream written by the serializer itself.
+	 */
+	@Test
+	public void testSerializeHeader() {
+
+		try {
+
+			final DefaultSerializer serializer = new DefaultSerializer();
+
+			// Envelope with a buffer
+			final TransferEnvelope withBuffer = new TransferEnvelope(3, this.jobID, this.sourceChannelID);
+			withBuffer.setBuffer(createBuffer(100));
+			checkHeader(serializer, withBuffer);
+
+			// Envelope with an event and a buffer
+			final TransferEnvelope withEventAndBuffer = new TransferEnvelope(4, this.jobID, this.sourceChannelID);
+			withEventAndBuffer.addEvent(new ChannelCloseEvent());
+			withEventAndBuffer.setBuffer(createBuffer(17));
+			checkHeader(serializer, withEventAndBuffer);
+
+			// Envelope with an event only
+			final TransferEnvelope withEvent = new TransferEnvelope(5, this.jobID, this.sourceChannelID);
+			withEvent.addEvent(new ChannelCloseEvent());
+			checkHeader(serializer, withEvent);
+
+			// Empty envelope
+			checkHeader(serializer, new TransferEnvelope(6, this.jobID, this.sourceChannelID));
+
+			// A sufficiently large target buffer is reused
+			final ByteBuffer target = ByteBuffer.allocate(BUFFER_SIZE);
+			assertSame(target, serializer.serializeHeader(withEventAndBuffer, target));
+
+		} catch (IOException e) {
+			fail(e.getMessage());
+		}
+	}
+
+	/**
+	 * This test checks that the serialization of a header with an invalid sequence number is rejected.
+	 */
+	@Test
+	public void testSerializeHeaderWithInvalidSequenceNumber() {
+
+		final TransferEnvelope transferEnvelope = new TransferEnvelope(-1, this.jobID, this.sourceChannelID);
+
+		try {
+			new DefaultSerializer().serializeHeader(transferEnvelope, ByteBuffer.allocate(BUFFER_SIZE));
+			fail("Expected IOException has not been thrown");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Serializes the header of the given envelope into a byte buffer which is too small to hold it, appends the
+	 * envelope's buffer data and compares the result to the output of the serializer's write method.
+	 * 
+	 * @param serializer
+	 *        the serializer to use
+	 * @param transferEnvelope
+	 *        the envelope to serialize
+	 * @throws IOException
+	 *         thrown if an error occurs while serializing the envelope
+	 */
+	private static void checkHeader(final DefaultSerializer serializer, final TransferEnvelope transferEnvelope)
+			throws IOException {
+
+		final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		final WritableByteChannel actualChannel = Channels.newChannel(actual);
+		final ByteBuffer header = serializer.serializeHeader(transferEnvelope, ByteBuffer.allocate(SIZE_OF_SEQ_NR));
+		actualChannel.write(header);
+
+		final Buffer buffer = transferEnvelope.getBuffer();
+		if (buffer != null) {
+			// Write a view of the buffer's data, the data is consumed by the serializer afterwards
+			actualChannel.write(((MemoryBuffer) buffer).getByteBuffer().duplicate());
+		}
+
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		final WritableByteChannel expectedChannel = Channels.newChannel(expected);
+		serializer.setTransferEnvelope(transferEnvelope);
+		while (serializer.write(expectedChannel))
+			;
+
+		assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+	}
+
+	/**
+	 * Creates a memory buffer of the given size filled with the test content.
+	 * 
+	 * @param size
+	 *        the size of the buffer
+	 * @return the created buffer
+	 * @throws IOException
+	 *         thrown if an error occurs while filling the buffer
+	 */
+	private static Buffer createBuffer(final int size) throws IOException {
+
+		final Buffer buffer = BufferFactory.createFromMemory(size, ByteBuffer.allocate(size), new BufferPoolConnector(
+			new ArrayDeque<ByteBuffer>()));
+
+		final ByteBuffer content = ByteBuffer.allocate(size);
+		while (content.hasRemaining()) {
+			content.put(BUFFER_CONTENT);
+		}
+		content.flip();
+		buffer.write(content);
+		buffer.finishWritePhase();
+
+		return buffer;
+	}
+
 	/**
 	 * Generates and serializes a series of {@link TransferEnvelope} objects to a random file.
 	 * 
@@ -0,0 +1,431 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.taskmanager.transferenvelope;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import org.junit.Test;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProviderBroker;
+import eu.stratosphere.nephele.util.BufferPoolConnector;
+
+/**
+ * This class contains tests for the checksums which protect the buffers of transfer envelopes. It checks that a
+ * corrupted envelope is detected by the deserializer and that envelopes without checksums are still accepted.
+ */
+public class TransferEnvelopeChecksumTest {
+
+	/**
+	 * The size of the buffers attached to the envelopes in bytes.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The number of buffers the test buffer provider has available.
+	 */
+	private static final int NUMBER_OF_BUFFERS = 4;
+
+	/**
+	 * The offset of the bit flipped in the buffer data from the end of the first envelope.
+	 */
+	private static final int CORRUPTED_BYTE_OFFSET = 1;
+
+	/**
+	 * The job ID to be used during the tests.
+	 */
+	private static final JobID JOB_ID = JobID.generate();
+
+	/**
+	 * The channel ID to be used during the tests.
+	 */
+	private static final ChannelID CHANNEL_ID = ChannelID.generate();
+
+	/**
+	 * A byte channel which appends all written data to a byte buffer.
+	 * <p>
+	 * This class is not thread-safe.
+	 */
+	private static final class SinkChannel implements WritableByteChannel {
+
+		private final ByteBuffer target;
+
+		private SinkChannel(final ByteBuffer target) {
+			this.target = target;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int write(final ByteBuffer src) throws IOException {
+
+			final int length = src.remaining();
+			this.target.put(src);
+
+			return length;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isOpen() {
+
+			return true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() throws IOException {
+		}
+	}
+
+	/**
+	 * A byte channel which reads its data from a byte buffer.
+	 * <p>
+	 * This class is not thread-safe.
+	 */
+	private static final class SourceChannel implements ReadableByteChannel {
+
+		private final ByteBuffer source;
+
+		private SourceChannel(final ByteBuffer source) {
+			this.source = source;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int read(final ByteBuffer dst) throws IOException {
+
+			if (!this.source.hasRemaining()) {
+				return -1;
+			}
+
+			final int length = Math.min(dst.remaining(), this.source.remaining());
+			final ByteBuffer src = this.source.duplicate();
+			src.limit(src.position() + length);
+			dst.put(src);
+			this.source.position(this.source.position() + length);
+
+			return length;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isOpen() {
+
+			return true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() throws IOException {
+		}
+	}
+
+	/**
+	 * A buffer provider and broker which hands out direct memory buffers from a small pool.
+	 * <p>
+	 * This class is not thread-safe.
+	 */
+	private static final class TestBufferProvider implements BufferProvider, BufferProviderBroker {
+
+		private final Queue<ByteBuffer> bufferPool = new ArrayDeque<ByteBuffer>();
+
+		private TestBufferProvider() {
+
+			for (int i = 0; i < NUMBER_OF_BUFFERS; ++i) {
+				this.bufferPool.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public BufferProvider getBufferProvider(final JobID jobID, final ChannelID sourceChannelID) {
+
+			return this;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Buffer requestEmptyBuffer(final int minimumSizeOfBuffer) throws IOException {
+
+			if (this.bufferPool.isEmpty()) {
+				return null;
+			}
+
+			return BufferFactory.createFromMemory(minimumSizeOfBuffer, this.bufferPool.poll(),
+				new BufferPoolConnector(this.bufferPool));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Buffer requestEmptyBufferBlocking(final int minimumSizeOfBuffer) throws IOException {
+
+			throw new IllegalStateException("requestEmptyBufferBlocking called");
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int getMaximumBufferSize() {
+
+			return BUFFER_SIZE;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isShared() {
+
+			return false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void reportAsynchronousEvent() {
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean registerBufferAvailabilityListener(final BufferAvailabilityListener bufferAvailabilityListener) {
+
+			return false;
+		}
+
+		private int getNumberOfAvailableBuffers() {
+
+			return this.bufferPool.size();
+		}
+	}
+
+	/**
+	 * Checks that a single flipped bit in the buffer of an envelope with a checksum is detected, that the buffer is
+	 * released and that the deserializer continues with the next envelope afterwards.
+	 */
+	@Test
+	public void testCorruptedEnvelopeIsDetected() throws Exception {
+
+		final TestBufferProvider bufferProvider = new TestBufferProvider();
+		final ReadableByteChannel source = new SourceChannel(createCorruptedStream(true));
+		final DefaultDeserializer deserializer = new DefaultDeserializer(bufferProvider);
+
+		try {
+			deserialize(deserializer, source);
+			fail("Corrupted envelope has not been detected");
+		} catch (CorruptedEnvelopeException e) {
+			assertEquals(JOB_ID, e.getJobID());
+			assertEquals(CHANNEL_ID, e.getSourceID());
+			assertEquals(0, e.getSequenceNumber());
+		}
+
+		assertEquals(NUMBER_OF_BUFFERS, bufferProvider.getNumberOfAvailableBuffers());
+
+		final TransferEnvelope te = deserialize(deserializer, source);
+		assertNotNull(te);
+		assertEquals(1, te.getSequenceNumber());
+		checkBufferContent(te.getBuffer(), false);
+		te.getBuffer().recycleBuffer();
+
+		assertEquals(NUMBER_OF_BUFFERS, bufferProvider.getNumberOfAvailableBuffers());
+	}
+
+	/**
+	 * Checks that envelopes with a checksum and an intact buffer pass the verification unchanged.
+	 */
+	@Test
+	public void testIntactEnvelopeWithChecksumPasses() throws Exception {
+
+		final Buffer buffer = createSourceBuffer();
+		final ByteBuffer stream = ByteBuffer.allocate(2 * (BUFFER_SIZE + 256));
+		final DefaultSerializer serializer = new DefaultSerializer(true);
+		serialize(serializer, buffer, 0, stream);
+		serialize(serializer, buffer, 1, stream);
+		buffer.recycleBuffer();
+		stream.flip();
+
+		final DefaultDeserializer deserializer = new DefaultDeserializer(new TestBufferProvider());
+		final ReadableByteChannel source = new SourceChannel(stream);
+
+		for (int i = 0; i < 2; ++i) {
+			final TransferEnvelope te = deserialize(deserializer, source);
+			assertEquals(i, te.getSequenceNumber());
+			checkBufferContent(te.getBuffer(), false);
+			te.getBuffer().recycleBuffer();
+		}
+	}
+
+	/**
+	 * Checks that envelopes serialized without a checksum are accepted by the deserializer. As nothing protects their
+	 * buffers, a flipped bit is passed on to the receiver unnoticed.
+	 */
+	@Test
+	public void testEnvelopeWithoutChecksumPasses() throws Exception {
+
+		final TestBufferProvider bufferProvider = new TestBufferProvider();
+		final DefaultDeserializer deserializer = new DefaultDeserializer(bufferProvider);
+		final ReadableByteChannel source = new SourceChannel(createCorruptedStream(false));
+
+		final TransferEnvelope first = deserialize(deserializer, source);
+		assertEquals(0, first.getSequenceNumber());
+		checkBufferContent(first.getBuffer(), true);
+		first.getBuffer().recycleBuffer();
+
+		final TransferEnvelope second = deserialize(deserializer, source);
+		assertEquals(1, second.getSequenceNumber());
+		checkBufferContent(second.getBuffer(), false);
+		second.getBuffer().recycleBuffer();
+
+		assertEquals(NUMBER_OF_BUFFERS, bufferProvider.getNumberOfAvailableBuffers());
+	}
+
+	/**
+	 * Serializes two envelopes and flips a single bit in the buffer data of the first one.
+	 * 
+	 * @param computeChecksums
+	 *        <code>true</code> to protect the envelopes with checksums, <code>false</code> otherwise
+	 * @return the serialized envelopes ready to be read
+	 */
+	private static ByteBuffer createCorruptedStream(final boolean computeChecksums) throws IOException,
+			InterruptedException {
+
+		final Buffer buffer = createSourceBuffer();
+		final ByteBuffer stream = ByteBuffer.allocate(2 * (BUFFER_SIZE + 256));
+		final DefaultSerializer serializer = new DefaultSerializer(computeChecksums);
+
+		serialize(serializer, buffer, 0, stream);
+		final int corruptedByte = stream.position() - CORRUPTED_BYTE_OFFSET;
+		serialize(serializer, buffer, 1, stream);
+		buffer.recycleBuffer();
+		stream.flip();
+
+		stream.put(corruptedByte, (byte) (stream.get(corruptedByte) ^ 0x10));
+
+		return stream;
+	}
+
+	/**
+	 * Checks that the given buffer contains the test data, optionally with the bit flipped by
+	 * {@link #createCorruptedStream(boolean)}.
+	 */
+	private static void checkBufferContent(final Buffer buffer, final boolean corrupted) throws IOException {
+
+		assertEquals(BUFFER_SIZE, buffer.size());
+
+		final ByteBuffer content = ByteBuffer.allocate(BUFFER_SIZE);
+		while (content.hasRemaining()) {
+			assertTrue(buffer.read(content) > 0);
+		}
+
+		for (int i = 0; i < BUFFER_SIZE; ++i) {
+			byte expected = (byte) (i * 31);
+			if (corrupted && i == BUFFER_SIZE - CORRUPTED_BYTE_OFFSET) {
+				expected ^= 0x10;
+			}
+			assertEquals(expected, content.get(i));
+		}
+	}
+
+	/**
+	 * Creates a buffer in read mode filled with test data.
+	 * 
+	 * @return the buffer filled with test data
+	 */
+	private static Buffer createSourceBuffer() throws IOException {
+
+		final Queue<ByteBuffer> bufferPool = new ArrayDeque<ByteBuffer>();
+		final ByteBuffer bb = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		final Buffer buffer = BufferFactory.createFromMemory(BUFFER_SIZE, bb, new BufferPoolConnector(bufferPool));
+
+		final ByteBuffer srcBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+		for (int i = 0; i < BUFFER_SIZE; ++i) {
+			srcBuffer.put((byte) (i * 31));
+		}
+		srcBuffer.flip();
+		buffer.write(srcBuffer);
+		buffer.finishWritePhase();
+
+		return buffer;
+	}
+
+	/**
+	 * Serializes an envelope carrying a duplicate of the given buffer.
+	 * 
+	 * @param target
+	 *        the byte buffer to append the serialized envelope to
+	 */
+	private static void serialize(final DefaultSerializer serializer, final Buffer buffer, final int sequenceNumber,
+			final ByteBuffer target) throws IOException, InterruptedException {
+
+		final TransferEnvelope te = new TransferEnvelope(sequenceNumber, JOB_ID, CHANNEL_ID);
+		te.setBuffer(buffer.duplicate());
+
+		final SinkChannel sink = new SinkChannel(target);
+		serializer.setTransferEnvelope(te);
+		while (serializer.write(sink))
+			;
+
+		te.getBuffer().recycleBuffer();
+	}
+
+	private static TransferEnvelope deserialize(final DefaultDeserializer deserializer,
+			final ReadableByteChannel source) throws IOException, NoBufferAvailableException {
+
+		TransferEnvelope te = deserializer.getFullyDeserializedTransferEnvelope();
+		while (te == null) {
+			deserializer.read(source);
+			te = deserializer.getFullyDeserializedTransferEnvelope();
+		}
+
+		return te;
+	}
+}
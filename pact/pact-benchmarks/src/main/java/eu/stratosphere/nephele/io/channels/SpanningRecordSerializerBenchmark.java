@@ -0,0 +1,195 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.nephele.io.channels;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.stratosphere.nephele.io.RecordFactory;
+import eu.stratosphere.pact.benchmarks.util.PactRecordGenerator;
+import eu.stratosphere.pact.benchmarks.util.PactRecordGenerator.KeyDistribution;
+import eu.stratosphere.pact.common.type.PactRecord;
+
+/**
+ * Benchmarks the {@link SpanningRecordSerializer} and the {@link SpanningRecordDeserializer}, which move
+ * {@link PactRecord}s into and out of the network and file buffers. The benchmark lives in the package of
+ * the serializers, because the serializer interface is package private. The reported time is per record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SpanningRecordSerializerBenchmark
+{
+	/**
+	 * The number of records (de)serialized per benchmark invocation.
+	 */
+	private static final int NUM_RECORDS = 100000;
+	
+	@Param({"16", "256", "4096"})
+	private int payloadLength;
+	
+	@Param({"32768"})
+	private int bufferSize;
+	
+	@Param({"false", "true"})
+	private boolean directBuffer;
+	
+	private RecordSerializer<PactRecord> serializer;
+	
+	private RecordDeserializer<PactRecord> deserializer;
+	
+	private ByteBuffer byteBuffer;
+	
+	private MemoryBufferPoolConnector bufferPoolConnector;
+	
+	private PactRecord[] records;
+	
+	private final PactRecord target = new PactRecord();
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		this.serializer = new SpanningRecordSerializerFactory<PactRecord>().createSerializer();
+		this.deserializer = new SpanningRecordDeserializerFactory<PactRecord>(new RecordFactory<PactRecord>() {
+			@Override
+			public PactRecord createRecord() {
+				return new PactRecord();
+			}
+		}).createDeserializer();
+		
+		this.byteBuffer = this.directBuffer ? ByteBuffer.allocateDirect(this.bufferSize) :
+			ByteBuffer.allocate(this.bufferSize);
+		this.bufferPoolConnector = new MemoryBufferPoolConnector() {
+			@Override
+			public void recycle(ByteBuffer byteBuffer) {}
+		};
+		
+		final PactRecordGenerator generator = new PactRecordGenerator(NUM_RECORDS, NUM_RECORDS, this.payloadLength,
+			KeyDistribution.UNIFORM);
+		final PactRecord record = new PactRecord();
+		
+		this.records = new PactRecord[NUM_RECORDS];
+		for (int i = 0; generator.next(record); i++) {
+			this.records[i] = record.createCopy();
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Serializes the records into buffers and discards each buffer once it is full.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(NUM_RECORDS)
+	public int serialize() throws Exception
+	{
+		final RecordSerializer<PactRecord> serializer = this.serializer;
+		final PactRecord[] records = this.records;
+		
+		Buffer buffer = newBuffer();
+		int numBuffers = 1;
+		
+		for (int i = 0; i < records.length; i++) {
+			serializer.serialize(records[i]);
+			
+			while (true) {
+				serializer.read(buffer);
+				if (serializer.dataLeftFromPreviousSerialization()) {
+					buffer = newBuffer();
+					numBuffers++;
+				} else {
+					break;
+				}
+			}
+		}
+		serializer.clear();
+		return numBuffers;
+	}
+	
+	/**
+	 * Serializes the records into buffers and deserializes them again whenever a buffer is full, as it happens
+	 * between the output and input channels.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(NUM_RECORDS)
+	public int serializeAndDeserialize() throws Exception
+	{
+		final RecordSerializer<PactRecord> serializer = this.serializer;
+		final PactRecord[] records = this.records;
+		
+		Buffer buffer = newBuffer();
+		int numDeserialized = 0;
+		
+		for (int i = 0; i < records.length; i++) {
+			serializer.serialize(records[i]);
+			
+			while (true) {
+				serializer.read(buffer);
+				if (serializer.dataLeftFromPreviousSerialization()) {
+					buffer.finishWritePhase();
+					numDeserialized += drain(buffer);
+					buffer = newBuffer();
+				} else {
+					break;
+				}
+			}
+		}
+		
+		buffer.finishWritePhase();
+		numDeserialized += drain(buffer);
+		
+		if (numDeserialized != records.length) {
+			throw new RuntimeException("Deserialized " + numDeserialized + " records instead of " + records.length);
+		}
+		return numDeserialized;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private int drain(Buffer buffer) throws Exception
+	{
+		int num = 0;
+		while (this.deserializer.readData(this.target, buffer) != null) {
+			num++;
+		}
+		return num;
+	}
+	
+	private Buffer newBuffer()
+	{
+		this.byteBuffer.clear();
+		return BufferFactory.createFromMemory(this.bufferSize, this.byteBuffer, this.bufferPoolConnector);
+	}
+}
@@ -0,0 +1,98 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.benchmarks;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar. It accepts the regular JMH command line options (for example a regular
+ * expression selecting the benchmarks, or <code>-p numRecords=100000</code> to override a parameter), but
+ * unless a result file is explicitly given, it writes the results to a time-stamped file in the directory
+ * <code>benchmark-results</code>, in JSON format unless another format is chosen. Those files can be compared
+ * across commits to spot regressions.
+ * <p>
+ * The benchmark module is not part of the default build. The jar is built with <code>mvn -Pbenchmarks package</code>.
+ */
+public class BenchmarkRunner
+{
+	/**
+	 * The directory into which the results are written, if no result file is specified.
+	 */
+	public static final String DEFAULT_RESULT_DIRECTORY = "benchmark-results";
+	
+	/**
+	 * The package containing all benchmarks. Used as the default selection.
+	 */
+	private static final String DEFAULT_INCLUDE = "eu\\.stratosphere\\..*Benchmark";
+	
+	// --------------------------------------------------------------------------------------------
+	
+	public static void main(String[] args) throws Exception
+	{
+		final CommandLineOptions cmdOptions;
+		try {
+			cmdOptions = new CommandLineOptions(args);
+		}
+		catch (CommandLineOptionException e) {
+			System.err.println("Error parsing the command line: " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+		
+		if (cmdOptions.shouldHelp()) {
+			cmdOptions.showHelp();
+			return;
+		}
+		if (cmdOptions.shouldList()) {
+			new Runner(cmdOptions).list();
+			return;
+		}
+		
+		final ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions);
+		
+		if (cmdOptions.getIncludes().isEmpty()) {
+			options.include(DEFAULT_INCLUDE);
+		}
+		final ResultFormatType format;
+		if (cmdOptions.getResultFormat().hasValue()) {
+			format = cmdOptions.getResultFormat().get();
+		} else {
+			format = ResultFormatType.JSON;
+			options.resultFormat(format);
+		}
+		if (!cmdOptions.getResult().hasValue()) {
+			final File dir = new File(DEFAULT_RESULT_DIRECTORY);
+			if (!dir.exists() && !dir.mkdirs()) {
+				System.err.println("Could not create the result directory '" + dir.getAbsolutePath() + "'.");
+				System.exit(1);
+				return;
+			}
+			final String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+			options.result(new File(dir, "pact-benchmarks-" + timestamp + "." + format.name().toLowerCase()).getPath());
+		}
+		
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,164 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.benchmarks.hash;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.pact.benchmarks.util.BenchmarkInvokable;
+import eu.stratosphere.pact.benchmarks.util.PactRecordGenerator;
+import eu.stratosphere.pact.benchmarks.util.PactRecordGenerator.KeyDistribution;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.runtime.hash.MutableHashTable;
+import eu.stratosphere.pact.runtime.hash.MutableHashTable.HashBucketIterator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordPairComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordSerializer;
+
+/**
+ * Benchmarks the build and probe phases of the {@link MutableHashTable}. With the small memory setting,
+ * the build side does not fit into memory and partitions are spilled and re-processed recursively.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MutableHashTableBenchmark
+{
+	private static final long PROBE_SIDE_SEED = 0x5deece66dL;
+	
+	@Param({"1000000"})
+	private int numBuildRecords;
+	
+	@Param({"4000000"})
+	private int numProbeRecords;
+	
+	@Param({"1000000"})
+	private int numKeys;
+	
+	@Param({"16"})
+	private int payloadLength;
+	
+	@Param({"UNIFORM", "SKEWED"})
+	private KeyDistribution probeDistribution;
+	
+	@Param({"16", "128"})
+	private int joinMemoryMegabytes;
+	
+	private DefaultMemoryManager memoryManager;
+	
+	private IOManager ioManager;
+	
+	private BenchmarkInvokable owner;
+	
+	private PactRecordComparator buildComparator;
+	
+	private PactRecordComparator probeComparator;
+	
+	private PactRecordPairComparator pairComparator;
+	
+	private PactRecordGenerator buildSide;
+	
+	private PactRecordGenerator probeSide;
+	
+	private final PactRecord record = new PactRecord();
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setUp()
+	{
+		this.memoryManager = new DefaultMemoryManager(this.joinMemoryMegabytes * 1024L * 1024L);
+		this.ioManager = new IOManager();
+		this.owner = new BenchmarkInvokable();
+		
+		this.buildComparator = new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+		this.probeComparator = new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+		this.pairComparator = new PactRecordPairComparator(new int[] {0}, new int[] {0},
+			new Class[] {PactInteger.class});
+		
+		this.buildSide = new PactRecordGenerator(this.numBuildRecords, this.numKeys, this.payloadLength,
+			KeyDistribution.UNIFORM);
+		this.probeSide = new PactRecordGenerator(this.numProbeRecords, this.numKeys, this.payloadLength,
+			this.probeDistribution, PROBE_SIDE_SEED);
+	}
+	
+	@Setup(Level.Invocation)
+	public void resetInputs()
+	{
+		this.buildSide.reset();
+		this.probeSide.reset();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		this.ioManager.shutdown();
+		this.memoryManager.shutdown();
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Benchmark
+	public long buildAndProbe() throws Exception
+	{
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(this.owner,
+			this.joinMemoryMegabytes * 1024L * 1024L);
+		
+		final MutableHashTable<PactRecord, PactRecord> table = new MutableHashTable<PactRecord, PactRecord>(
+			PactRecordSerializer.get(), PactRecordSerializer.get(), this.buildComparator, this.probeComparator,
+			this.pairComparator, memory, this.ioManager);
+		
+		final PactRecord record = this.record;
+		long numMatches = 0;
+		
+		try {
+			table.open(this.buildSide, this.probeSide);
+			while (table.nextRecord()) {
+				final HashBucketIterator<PactRecord, PactRecord> matches = table.getBuildSideIterator();
+				while (matches.next(record)) {
+					numMatches++;
+				}
+			}
+		}
+		finally {
+			table.close();
+			this.memoryManager.release(memory);
+		}
+		return numMatches;
+	}
+}
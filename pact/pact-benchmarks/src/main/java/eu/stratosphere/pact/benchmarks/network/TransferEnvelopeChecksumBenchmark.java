@@ -0,0 +1,328 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.benchmarks.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.stratosphere.nephele.io.channels.Buffer;
+import eu.stratosphere.nephele.io.channels.BufferFactory;
+import eu.stratosphere.nephele.io.channels.ChannelID;
+import eu.stratosphere.nephele.io.channels.MemoryBufferPoolConnector;
+import eu.stratosphere.nephele.jobgraph.JobID;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferAvailabilityListener;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProvider;
+import eu.stratosphere.nephele.taskmanager.bufferprovider.BufferProviderBroker;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultDeserializer;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.DefaultSerializer;
+import eu.stratosphere.nephele.taskmanager.transferenvelope.TransferEnvelope;
+
+/**
+ * Benchmarks the overhead of protecting the buffers of transfer envelopes with checksums. The envelopes carry
+ * direct byte buffers, like the ones of the global buffer pool, and are serialized into and deserialized from
+ * memory, such that the measurement is not dominated by the network. The reported time is per envelope.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TransferEnvelopeChecksumBenchmark
+{
+	/**
+	 * The size of the buffers attached to the envelopes in bytes.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	/**
+	 * The number of envelopes (de)serialized per benchmark invocation.
+	 */
+	private static final int NUM_ENVELOPES = 64;
+	
+	/**
+	 * The upper bound of the size of an envelope's header in bytes.
+	 */
+	private static final int MAX_HEADER_SIZE = 256;
+	
+	@Param({"false", "true"})
+	private boolean checksums;
+	
+	private final JobID jobID = JobID.generate();
+	
+	private final ChannelID channelID = ChannelID.generate();
+	
+	private final Queue<ByteBuffer> bufferPool = new ArrayDeque<ByteBuffer>();
+	
+	private Buffer sourceBuffer;
+	
+	private DefaultSerializer serializer;
+	
+	private DefaultDeserializer deserializer;
+	
+	private ByteBuffer stream;
+	
+	private SinkChannel sink;
+	
+	private SourceChannel source;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		final ByteBuffer data = ByteBuffer.allocate(BUFFER_SIZE);
+		for (int i = 0; i < BUFFER_SIZE; i++) {
+			data.put((byte) (i * 31));
+		}
+		data.flip();
+		
+		this.sourceBuffer = BufferFactory.createFromMemory(BUFFER_SIZE, ByteBuffer.allocateDirect(BUFFER_SIZE),
+			new PoolConnector(new ArrayDeque<ByteBuffer>()));
+		this.sourceBuffer.write(data);
+		this.sourceBuffer.finishWritePhase();
+		
+		// the deserializer never holds on to more than one buffer at a time
+		this.bufferPool.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+		
+		this.serializer = new DefaultSerializer(this.checksums);
+		this.deserializer = new DefaultDeserializer(new PoolBufferProvider(this.bufferPool));
+		this.stream = ByteBuffer.allocateDirect(NUM_ENVELOPES * (BUFFER_SIZE + MAX_HEADER_SIZE));
+		this.sink = new SinkChannel(this.stream);
+		this.source = new SourceChannel(this.stream);
+		
+		// write the envelopes once, such that the deserialization benchmark has data to read
+		serialize();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		this.sourceBuffer.recycleBuffer();
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Benchmark
+	@OperationsPerInvocation(NUM_ENVELOPES)
+	public int serialize() throws Exception
+	{
+		final DefaultSerializer serializer = this.serializer;
+		
+		this.stream.clear();
+		for (int i = 0; i < NUM_ENVELOPES; i++) {
+			final TransferEnvelope te = new TransferEnvelope(i, this.jobID, this.channelID);
+			te.setBuffer(this.sourceBuffer.duplicate());
+			
+			serializer.setTransferEnvelope(te);
+			while (serializer.write(this.sink));
+			
+			te.getBuffer().recycleBuffer();
+		}
+		this.stream.flip();
+		
+		return this.stream.limit();
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(NUM_ENVELOPES)
+	public int deserialize() throws Exception
+	{
+		final DefaultDeserializer deserializer = this.deserializer;
+		
+		this.stream.rewind();
+		int bytes = 0;
+		for (int i = 0; i < NUM_ENVELOPES; i++) {
+			TransferEnvelope te = deserializer.getFullyDeserializedTransferEnvelope();
+			while (te == null) {
+				deserializer.read(this.source);
+				te = deserializer.getFullyDeserializedTransferEnvelope();
+			}
+			
+			bytes += te.getBuffer().size();
+			te.getBuffer().recycleBuffer();
+		}
+		return bytes;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * A byte channel which appends all written data to a byte buffer.
+	 */
+	private static final class SinkChannel implements WritableByteChannel
+	{
+		private final ByteBuffer target;
+		
+		private SinkChannel(ByteBuffer target)
+		{
+			this.target = target;
+		}
+		
+		@Override
+		public int write(ByteBuffer src)
+		{
+			final int length = src.remaining();
+			this.target.put(src);
+			return length;
+		}
+		
+		@Override
+		public boolean isOpen()
+		{
+			return true;
+		}
+		
+		@Override
+		public void close()
+		{}
+	}
+	
+	/**
+	 * A byte channel which reads its data from a byte buffer.
+	 */
+	private static final class SourceChannel implements ReadableByteChannel
+	{
+		private final ByteBuffer source;
+		
+		private SourceChannel(ByteBuffer source)
+		{
+			this.source = source;
+		}
+		
+		@Override
+		public int read(ByteBuffer dst)
+		{
+			if (!this.source.hasRemaining()) {
+				return -1;
+			}
+			
+			final int length = Math.min(dst.remaining(), this.source.remaining());
+			final ByteBuffer src = this.source.duplicate();
+			src.limit(src.position() + length);
+			dst.put(src);
+			this.source.position(this.source.position() + length);
+			return length;
+		}
+		
+		@Override
+		public boolean isOpen()
+		{
+			return true;
+		}
+		
+		@Override
+		public void close()
+		{}
+	}
+	
+	/**
+	 * Returns recycled byte buffers to the pool they were taken from.
+	 */
+	private static final class PoolConnector implements MemoryBufferPoolConnector
+	{
+		private final Queue<ByteBuffer> pool;
+		
+		private PoolConnector(Queue<ByteBuffer> pool)
+		{
+			this.pool = pool;
+		}
+		
+		@Override
+		public void recycle(ByteBuffer byteBuffer)
+		{
+			this.pool.add(byteBuffer);
+		}
+	}
+	
+	/**
+	 * A buffer provider and broker which hands out the direct byte buffers of a fixed pool.
+	 */
+	private static final class PoolBufferProvider implements BufferProvider, BufferProviderBroker
+	{
+		private final Queue<ByteBuffer> pool;
+		
+		private PoolBufferProvider(Queue<ByteBuffer> pool)
+		{
+			this.pool = pool;
+		}
+		
+		@Override
+		public BufferProvider getBufferProvider(JobID jobID, ChannelID sourceChannelID)
+		{
+			return this;
+		}
+		
+		@Override
+		public Buffer requestEmptyBuffer(int minimumSizeOfBuffer)
+		{
+			final ByteBuffer byteBuffer = this.pool.poll();
+			if (byteBuffer == null) {
+				return null;
+			}
+			
+			return BufferFactory.createFromMemory(minimumSizeOfBuffer, byteBuffer, new PoolConnector(this.pool));
+		}
+		
+		@Override
+		public Buffer requestEmptyBufferBlocking(int minimumSizeOfBuffer) throws IOException
+		{
+			throw new IOException("The benchmark pool has run out of buffers.");
+		}
+		
+		@Override
+		public int getMaximumBufferSize()
+		{
+			return BUFFER_SIZE;
+		}
+		
+		@Override
+		public boolean isShared()
+		{
+			return false;
+		}
+		
+		@Override
+		public void reportAsynchronousEvent()
+		{}
+		
+		@Override
+		public boolean registerBufferAvailabilityListener(BufferAvailabilityListener bufferAvailabilityListener)
+		{
+			return false;
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.benchmarks.serialization;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.pact.benchmarks.util.BenchmarkInvokable;
+import eu.stratosphere.pact.benchmarks.util.PactRecordGenerator;
+import eu.stratosphere.pact.benchmarks.util.PactRecordGenerator.KeyDistribution;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.runtime.io.RandomAccessInputView;
+import eu.stratosphere.pact.runtime.io.RandomAccessOutputView;
+import eu.stratosphere.pact.runtime.plugable.PactRecordSerializer;
+
+/**
+ * Benchmarks the serialization of {@link PactRecord}s into paged memory and their deserialization from it,
+ * as it happens in the sort buffers, the hash tables and the spilling channels. The reported time is per record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PactRecordSerializationBenchmark
+{
+	/**
+	 * The number of records (de)serialized per benchmark invocation.
+	 */
+	private static final int NUM_RECORDS = 100000;
+	
+	@Param({"0", "16", "256"})
+	private int payloadLength;
+	
+	@Param({"false", "true"})
+	private boolean offHeap;
+	
+	private DefaultMemoryManager memoryManager;
+	
+	private ArrayList<MemorySegment> memory;
+	
+	private RandomAccessOutputView outView;
+	
+	private RandomAccessInputView inView;
+	
+	private PactRecord[] records;
+	
+	private final PactRecord target = new PactRecord();
+	
+	private final PactRecordSerializer serializer = PactRecordSerializer.get();
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Setup(Level.Trial)
+	public void setUp() throws Exception
+	{
+		final int pageSize = DefaultMemoryManager.DEFAULT_PAGE_SIZE;
+		final long memorySize = ((long) NUM_RECORDS) * (this.payloadLength * 2 + 64) + pageSize;
+		
+		this.memoryManager = new DefaultMemoryManager(memorySize, pageSize, this.offHeap);
+		this.memory = new ArrayList<MemorySegment>(
+			this.memoryManager.allocatePages(new BenchmarkInvokable(), memorySize));
+		this.outView = new RandomAccessOutputView(this.memory.toArray(new MemorySegment[this.memory.size()]), pageSize);
+		this.inView = new RandomAccessInputView(this.memory, pageSize);
+		
+		final PactRecordGenerator generator = new PactRecordGenerator(NUM_RECORDS, NUM_RECORDS, this.payloadLength,
+			KeyDistribution.UNIFORM);
+		final PactRecord record = new PactRecord();
+		
+		this.records = new PactRecord[NUM_RECORDS];
+		for (int i = 0; generator.next(record); i++) {
+			this.records[i] = record.createCopy();
+		}
+		
+		// write the records once, such that the deserialization benchmark has data to read
+		serialize();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		this.memoryManager.release(this.memory);
+		this.memoryManager.shutdown();
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Benchmark
+	@OperationsPerInvocation(NUM_RECORDS)
+	public long serialize() throws Exception
+	{
+		final RandomAccessOutputView out = this.outView;
+		final PactRecordSerializer serializer = this.serializer;
+		final PactRecord[] records = this.records;
+		
+		out.setWritePosition(0);
+		long bytes = 0;
+		for (int i = 0; i < records.length; i++) {
+			bytes += serializer.serialize(records[i], out);
+		}
+		return bytes;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(NUM_RECORDS)
+	public int deserialize() throws Exception
+	{
+		final RandomAccessInputView in = this.inView;
+		final PactRecordSerializer serializer = this.serializer;
+		final PactRecord target = this.target;
+		
+		in.setReadPosition(0);
+		int fields = 0;
+		for (int i = 0; i < NUM_RECORDS; i++) {
+			serializer.deserialize(target, in);
+			fields += target.getNumFields();
+		}
+		return fields;
+	}
+}
@@ -0,0 +1,148 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.benchmarks.shipping;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.stratosphere.pact.benchmarks.util.PactRecordGenerator;
+import eu.stratosphere.pact.benchmarks.util.PactRecordGenerator.KeyDistribution;
+import eu.stratosphere.pact.common.contract.DataDistribution;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.shipping.PactRecordOutputEmitter;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
+
+/**
+ * Benchmarks the channel selection of the {@link PactRecordOutputEmitter} for the different ship strategies.
+ * The reported time is per record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PactRecordOutputEmitterBenchmark
+{
+	/**
+	 * The number of records routed per benchmark invocation.
+	 */
+	private static final int NUM_RECORDS = 100000;
+	
+	private static final int NUM_KEYS = 1000000;
+	
+	@Param({"FORWARD", "PARTITION_HASH", "PARTITION_RANGE", "BROADCAST"})
+	private ShipStrategyType strategy;
+	
+	@Param({"4", "64"})
+	private int numberOfChannels;
+	
+	@Param({"UNIFORM", "SKEWED"})
+	private KeyDistribution distribution;
+	
+	private PactRecordOutputEmitter emitter;
+	
+	private PactRecord[] records;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setUp()
+	{
+		final PactRecordComparator comparator = new PactRecordComparator(new int[] {0},
+			new Class[] {PactInteger.class});
+		this.emitter = new PactRecordOutputEmitter(this.strategy, comparator, new UniformIntDistribution(0, NUM_KEYS));
+		
+		final PactRecordGenerator generator = new PactRecordGenerator(NUM_RECORDS, NUM_KEYS, 8, this.distribution);
+		final PactRecord record = new PactRecord();
+		
+		this.records = new PactRecord[NUM_RECORDS];
+		for (int i = 0; generator.next(record); i++) {
+			this.records[i] = record.createCopy();
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Benchmark
+	@OperationsPerInvocation(NUM_RECORDS)
+	public int selectChannels()
+	{
+		final PactRecordOutputEmitter emitter = this.emitter;
+		final PactRecord[] records = this.records;
+		final int numberOfChannels = this.numberOfChannels;
+		
+		int sum = 0;
+		for (int i = 0; i < records.length; i++) {
+			final int[] channels = emitter.selectChannels(records[i], numberOfChannels);
+			sum += channels[0];
+		}
+		return sum;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * A distribution that splits an integer key range into equally wide buckets.
+	 */
+	private static final class UniformIntDistribution implements DataDistribution
+	{
+		private final int min;
+		
+		private final int max;
+		
+		UniformIntDistribution(int min, int max)
+		{
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		public PactRecord getBucketBoundary(int bucketNum, int totalNumBuckets)
+		{
+			final int range = this.max - this.min + 1;
+			final float bucketWidth = ((float) range) / totalNumBuckets;
+			final int upperBoundary = this.min + (int) ((bucketNum + 1) * bucketWidth);
+			return new PactRecord(new PactInteger(upperBoundary));
+		}
+
+		@Override
+		public void write(DataOutput out)
+		{}
+
+		@Override
+		public void read(DataInput in)
+		{}
+	}
+}
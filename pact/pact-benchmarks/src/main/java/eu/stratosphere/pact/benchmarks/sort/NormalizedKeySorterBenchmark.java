@@ -0,0 +1,143 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.benchmarks.sort;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.pact.benchmarks.util.BenchmarkInvokable;
+import eu.stratosphere.pact.benchmarks.util.PactRecordGenerator;
+import eu.stratosphere.pact.benchmarks.util.PactRecordGenerator.KeyDistribution;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.sort.NormalizedKeySorter;
+import eu.stratosphere.pact.runtime.sort.QuickSort;
+
+/**
+ * Benchmarks the in-memory sort path: filling the {@link NormalizedKeySorter} with records and sorting it
+ * with the {@link QuickSort}. The time of the sort alone is the difference between the two benchmarks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class NormalizedKeySorterBenchmark
+{
+	private static final int BYTES_PER_RECORD_OVERHEAD = 64;
+	
+	@Param({"1000000"})
+	private int numRecords;
+	
+	@Param({"100000"})
+	private int numKeys;
+	
+	@Param({"8", "64"})
+	private int payloadLength;
+	
+	@Param({"UNIFORM", "SORTED", "SKEWED"})
+	private KeyDistribution distribution;
+	
+	@Param({"false", "true"})
+	private boolean offHeap;
+	
+	private DefaultMemoryManager memoryManager;
+	
+	private BenchmarkInvokable owner;
+	
+	private NormalizedKeySorter<PactRecord> sorter;
+	
+	private PactRecordGenerator generator;
+	
+	private final PactRecord record = new PactRecord();
+	
+	private final QuickSort quickSort = new QuickSort();
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setUp() throws Exception
+	{
+		final long memorySize = ((long) this.numRecords) * (this.payloadLength + BYTES_PER_RECORD_OVERHEAD);
+		
+		this.memoryManager = new DefaultMemoryManager(memorySize, DefaultMemoryManager.DEFAULT_PAGE_SIZE, this.offHeap);
+		this.owner = new BenchmarkInvokable();
+		
+		final List<MemorySegment> memory = this.memoryManager.allocatePages(this.owner, memorySize);
+		final PactRecordComparator comparator = new PactRecordComparator(new int[] {0},
+			new Class[] {PactInteger.class});
+		
+		this.sorter = new NormalizedKeySorter<PactRecord>(PactRecordSerializer.get(), comparator, memory);
+		this.generator = new PactRecordGenerator(this.numRecords, this.numKeys, this.payloadLength, this.distribution);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		this.memoryManager.release(this.sorter.dispose());
+		this.memoryManager.shutdown();
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Benchmark
+	public int write() throws Exception
+	{
+		fill();
+		return this.sorter.size();
+	}
+	
+	@Benchmark
+	public int writeAndSort() throws Exception
+	{
+		fill();
+		this.quickSort.sort(this.sorter);
+		return this.sorter.size();
+	}
+	
+	private void fill() throws Exception
+	{
+		this.sorter.reset();
+		this.generator.reset();
+		
+		final PactRecord record = this.record;
+		while (this.generator.next(record)) {
+			if (!this.sorter.write(record)) {
+				throw new RuntimeException("The sort buffer is too small for the benchmark data.");
+			}
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.benchmarks.sort;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.pact.benchmarks.util.BenchmarkInvokable;
+import eu.stratosphere.pact.benchmarks.util.PactRecordGenerator;
+import eu.stratosphere.pact.benchmarks.util.PactRecordGenerator.KeyDistribution;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.sort.UnilateralSortMerger;
+
+/**
+ * Benchmarks the external sort of the {@link UnilateralSortMerger}. The amount of sort memory is chosen
+ * small relative to the data, such that the sorter spills runs to disk and merges them, possibly in
+ * several rounds, depending on the number of file handles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class UnilateralSortMergerBenchmark
+{
+	@Param({"2000000"})
+	private int numRecords;
+	
+	@Param({"1000000"})
+	private int numKeys;
+	
+	@Param({"32"})
+	private int payloadLength;
+	
+	@Param({"UNIFORM", "SKEWED"})
+	private KeyDistribution distribution;
+	
+	@Param({"16", "64"})
+	private int sortMemoryMegabytes;
+	
+	@Param({"4", "128"})
+	private int maxNumFileHandles;
+	
+	private DefaultMemoryManager memoryManager;
+	
+	private IOManager ioManager;
+	
+	private BenchmarkInvokable owner;
+	
+	private PactRecordComparator comparator;
+	
+	private PactRecordGenerator generator;
+	
+	private final PactRecord record = new PactRecord();
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setUp()
+	{
+		this.memoryManager = new DefaultMemoryManager(this.sortMemoryMegabytes * 1024L * 1024L);
+		this.ioManager = new IOManager();
+		this.owner = new BenchmarkInvokable();
+		this.comparator = new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+		this.generator = new PactRecordGenerator(this.numRecords, this.numKeys, this.payloadLength, this.distribution);
+	}
+	
+	@Setup(Level.Invocation)
+	public void resetInput()
+	{
+		this.generator.reset();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		this.ioManager.shutdown();
+		this.memoryManager.shutdown();
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	@Benchmark
+	public int sortWithSpilling() throws Exception
+	{
+		final UnilateralSortMerger<PactRecord> merger = new UnilateralSortMerger<PactRecord>(
+			this.memoryManager, this.ioManager, this.generator, this.owner, PactRecordSerializer.get(),
+			this.comparator, this.sortMemoryMegabytes * 1024L * 1024L, this.maxNumFileHandles, 0.7f);
+		
+		try {
+			final MutableObjectIterator<PactRecord> sorted = merger.getIterator();
+			final PactRecord record = this.record;
+			
+			int count = 0;
+			while (sorted.next(record)) {
+				count++;
+			}
+			if (count != this.numRecords) {
+				throw new RuntimeException("The sorter returned " + count + " records instead of " + this.numRecords);
+			}
+			return count;
+		}
+		finally {
+			merger.close();
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.benchmarks.util;
+
+import java.util.Random;
+
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.type.base.PactString;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+
+/**
+ * A deterministic, parameterizable generator for benchmark input. Each generated record has an integer key in
+ * field 0 and a string payload of a fixed length in field 1. The keys are drawn from the range
+ * <code>[0, numKeys)</code> according to a {@link KeyDistribution}. Since the generator is seeded, two runs with the
+ * same parameters produce exactly the same data, which makes results comparable across commits.
+ */
+public class PactRecordGenerator implements MutableObjectIterator<PactRecord>
+{
+	/**
+	 * The distribution from which the generator draws the keys.
+	 */
+	public static enum KeyDistribution
+	{
+		/**
+		 * Keys drawn uniformly at random.
+		 */
+		UNIFORM,
+		
+		/**
+		 * Keys in ascending order.
+		 */
+		SORTED,
+		
+		/**
+		 * Keys in descending order.
+		 */
+		REVERSE_SORTED,
+		
+		/**
+		 * Keys following an approximate Zipf distribution (exponent 1), where few keys are very frequent.
+		 */
+		SKEWED
+	}
+	
+	/**
+	 * The seed used when no explicit seed is given.
+	 */
+	public static final long DEFAULT_SEED = 0x2f6a1d3c5b7e9081L;
+	
+	private static final char[] PAYLOAD_CHARS =
+		"abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private final PactInteger key = new PactInteger();
+	
+	private final PactString payload;
+	
+	private final KeyDistribution distribution;
+	
+	private final long seed;
+	
+	private final int numRecords;
+	
+	private final int numKeys;
+	
+	private final double logNumKeys;
+	
+	private Random random;
+	
+	private int count;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Creates a generator using the default seed.
+	 * 
+	 * @param numRecords The number of records to produce.
+	 * @param numKeys The number of distinct keys.
+	 * @param payloadLength The length of the string payload, in characters.
+	 * @param distribution The distribution of the keys.
+	 */
+	public PactRecordGenerator(int numRecords, int numKeys, int payloadLength, KeyDistribution distribution)
+	{
+		this(numRecords, numKeys, payloadLength, distribution, DEFAULT_SEED);
+	}
+	
+	/**
+	 * Creates a generator.
+	 * 
+	 * @param numRecords The number of records to produce.
+	 * @param numKeys The number of distinct keys.
+	 * @param payloadLength The length of the string payload, in characters.
+	 * @param distribution The distribution of the keys.
+	 * @param seed The seed for the random number generator.
+	 */
+	public PactRecordGenerator(int numRecords, int numKeys, int payloadLength, KeyDistribution distribution, long seed)
+	{
+		if (numRecords < 0 || numKeys <= 0 || payloadLength < 0) {
+			throw new IllegalArgumentException("Number of records and payload length must be non-negative, " +
+					"number of keys must be positive.");
+		}
+		if (distribution == null) {
+			throw new NullPointerException();
+		}
+		
+		this.numRecords = numRecords;
+		this.numKeys = numKeys;
+		this.distribution = distribution;
+		this.seed = seed;
+		this.logNumKeys = Math.log(numKeys + 1);
+		
+		final Random rnd = new Random(seed);
+		final char[] chars = new char[payloadLength];
+		for (int i = 0; i < payloadLength; i++) {
+			chars[i] = PAYLOAD_CHARS[rnd.nextInt(PAYLOAD_CHARS.length)];
+		}
+		this.payload = new PactString(new String(chars));
+		
+		reset();
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Resets the generator, such that it produces the same sequence of records again.
+	 */
+	public void reset()
+	{
+		this.random = new Random(this.seed);
+		this.count = 0;
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.util.MutableObjectIterator#next(java.lang.Object)
+	 */
+	@Override
+	public boolean next(PactRecord target)
+	{
+		if (this.count >= this.numRecords) {
+			return false;
+		}
+		
+		this.key.setValue(nextKey());
+		this.count++;
+		
+		target.setField(0, this.key);
+		target.setField(1, this.payload);
+		target.updateBinaryRepresenation();
+		return true;
+	}
+	
+	/**
+	 * Draws the next key according to the generator's distribution.
+	 * 
+	 * @return The next key.
+	 */
+	private int nextKey()
+	{
+		switch (this.distribution) {
+		case UNIFORM:
+			return this.random.nextInt(this.numKeys);
+		case SORTED:
+			return (int) (((long) this.count) * this.numKeys / this.numRecords);
+		case REVERSE_SORTED:
+			return this.numKeys - 1 - (int) (((long) this.count) * this.numKeys / this.numRecords);
+		case SKEWED:
+			// inverse of the continuous approximation of the Zipf CDF: F(x) = ln(x + 1) / ln(n + 1)
+			final int k = (int) Math.exp(this.random.nextDouble() * this.logNumKeys) - 1;
+			return k < this.numKeys ? k : this.numKeys - 1;
+		default:
+			throw new RuntimeException("Unknown key distribution: " + this.distribution);
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Gets the number of records that this generator produces.
+	 * 
+	 * @return The number of records.
+	 */
+	public int getNumRecords()
+	{
+		return this.numRecords;
+	}
+	
+	/**
+	 * Gets the number of distinct keys.
+	 * 
+	 * @return The number of distinct keys.
+	 */
+	public int getNumKeys()
+	{
+		return this.numKeys;
+	}
+}
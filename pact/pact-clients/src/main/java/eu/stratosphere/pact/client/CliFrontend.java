@@ -281,8 +281,9 @@ public class CliFrontend {
 			handleError(e);
 		}
 
+		// each invocation compiles a single program, so there is nothing to reuse from a plan cache
 		Configuration configuration = getConfiguration();
-		Client client = new Client(configuration);
+		Client client = new Client(configuration, false);
 		try {
 			client.run(program, wait);
 		} catch (ProgramInvocationException e) {
@@ -391,7 +392,7 @@ public class CliFrontend {
 			String jsonPlan = null;
 			
 			Configuration configuration = getConfiguration();
-			Client client = new Client(configuration);
+			Client client = new Client(configuration, false);
 			try {
 				jsonPlan = client.getJSONPlan(program);
 			} catch (ProgramInvocationException e) {
@@ -42,6 +42,8 @@ import eu.stratosphere.nephele.jobmanager.JobManager;
 import eu.stratosphere.nephele.jobmanager.scheduler.local.LocalScheduler;
 import eu.stratosphere.nephele.protocols.ExtendedManagementProtocol;
 import eu.stratosphere.nephele.rpc.ManagementTypeUtils;
+import eu.stratosphere.nephele.taskmanager.network.InJVMTransport;
+import eu.stratosphere.nephele.taskmanager.network.NetworkTransportUtils;
 
 /**
  * @author Erik Nijkamp
@@ -142,6 +144,10 @@ public class NepheleMiniCluster {
 					"        <value>0</value>",
 					"    </property>",
 					"    <property>",
+					"        <key>" + NetworkTransportUtils.TRANSPORT_CLASSNAME_KEY + "</key>",
+					"        <value>" + InJVMTransport.class.getName() + "</value>",
+					"    </property>",
+					"    <property>",
 					"        <key>taskmanager.setup.usediscovery</key>",
 					"        <value>false</value>",
 					"    </property>",
@@ -28,6 +28,8 @@ import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.fs.Path;
 import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
 import eu.stratosphere.pact.compiler.CompilerException;
 import eu.stratosphere.pact.compiler.DataStatistics;
 import eu.stratosphere.pact.compiler.PactCompiler;
@@ -47,6 +49,10 @@ public class Client {
 	private final Configuration nepheleConfig;	// the configuration describing the job manager address
 	
 	private final PactCompiler compiler;		// the compiler to compile the jobs
+	
+	private final DataStatistics statistics;	// the statistics used by the compiler
+	
+	private final CompiledPlanCache planCache;	// the cache for optimized plans, or null, if disabled
 
 	// ------------------------------------------------------------------------
 	//                            Construction
@@ -63,7 +69,9 @@ public class Client {
 		nepheleConfig.setString(ConfigConstants.JOB_MANAGER_IPC_ADDRESS_KEY, jobManagerAddress.getAddress().getHostAddress());
 		nepheleConfig.setInteger(ConfigConstants.JOB_MANAGER_IPC_PORT_KEY, jobManagerAddress.getPort());
 		
-		this.compiler = new PactCompiler(new DataStatistics(), new FixedSizeClusterCostEstimator(), jobManagerAddress);
+		this.statistics = new DataStatistics();
+		this.compiler = new PactCompiler(this.statistics, new FixedSizeClusterCostEstimator(), jobManagerAddress);
+		this.planCache = createPlanCache();
 	}
 
 	/**
@@ -73,6 +81,18 @@ public class Client {
 	 * @param nepheleConfig The config used to obtain the job-manager's address.
 	 */
 	public Client(Configuration nepheleConfig) {
+		this(nepheleConfig, true);
+	}
+
+	/**
+	 * Creates a instance that submits the pact programs to the job-manager defined in the
+	 * configuration. The cache for optimized plans pays off only for clients that compile several
+	 * programs, and it may be disabled for clients that compile a single program.
+	 * 
+	 * @param nepheleConfig The config used to obtain the job-manager's address.
+	 * @param cachePlans Flag indicating whether optimized plans are cached, if the configuration enables the cache.
+	 */
+	public Client(Configuration nepheleConfig, boolean cachePlans) {
 		this.nepheleConfig = nepheleConfig;
 		
 		// instantiate the address to the job manager
@@ -82,7 +102,22 @@ public class Client {
 			ConfigConstants.DEFAULT_JOB_MANAGER_IPC_PORT);
 
 		final InetSocketAddress jobManagerAddress = new InetSocketAddress(address, port);
-		this.compiler = new PactCompiler(new DataStatistics(), new FixedSizeClusterCostEstimator(), jobManagerAddress);
+		this.statistics = new DataStatistics();
+		this.compiler = new PactCompiler(this.statistics, new FixedSizeClusterCostEstimator(), jobManagerAddress);
+		this.planCache = cachePlans ? createPlanCache() : null;
+	}
+	
+	/**
+	 * Creates the cache for optimized plans, as configured in the global configuration.
+	 * 
+	 * @return The cache for optimized plans, or null, if caching is disabled.
+	 */
+	private static CompiledPlanCache createPlanCache() {
+		final int size = GlobalConfiguration.getInteger(PactConfigConstants.CLIENT_PLAN_CACHE_SIZE_KEY,
+			PactConfigConstants.DEFAULT_CLIENT_PLAN_CACHE_SIZE);
+		final long maxAge = GlobalConfiguration.getInteger(PactConfigConstants.CLIENT_PLAN_CACHE_MAX_AGE_KEY,
+			PactConfigConstants.DEFAULT_CLIENT_PLAN_CACHE_MAX_AGE) * 1000L;
+		return size > 0 ? new CompiledPlanCache(size, maxAge) : null;
 	}
 
 	
@@ -91,17 +126,38 @@ public class Client {
 	// ------------------------------------------------------------------------
 	
 	/**
-	 * Creates the optimized plan for a given pact program, using this client's compiler.
+	 * Creates the optimized plan for a given pact program, using this client's compiler. If a plan has been
+	 * compiled before for a program with the same {@link PlanFingerprint}, that plan is reused, bound to the
+	 * file paths of the given program. A reused plan is valid until its job graph has been created.
 	 *  
 	 * @param prog The program to be compiled.
-	 * @return The compiled and optimized plan, as returned by the compiler.
+	 * @return The compiled and optimized plan, as returned by the compiler or the plan cache.
 	 * @throws CompilerException Thrown, if the compiler encounters an illegal situation.
 	 * @throws ProgramInvocationException Thrown, if the pact program could not be instantiated from its jar file.
 	 * @throws ErrorInPlanAssemblerException Thrown, if the plan assembler function causes an exception.
 	 */
 	public OptimizedPlan getOptimizedPlan(PactProgram prog) throws CompilerException, ProgramInvocationException, ErrorInPlanAssemblerException {
 		prog.checkPlan();
-		return compiler.compile(prog.getPlan());
+		final Plan plan = prog.getPlan();
+		if (this.planCache == null) {
+			return this.compiler.compile(plan);
+		}
+		
+		final PlanFingerprint fingerprint;
+		try {
+			fingerprint = PlanFingerprint.compute(prog.getJarFile(), plan, this.statistics);
+		}
+		catch (IOException ioex) {
+			throw new ProgramInvocationException("The jar file could not be read to identify the program: " +
+				ioex.getMessage(), ioex);
+		}
+		
+		OptimizedPlan optPlan = this.planCache.acquire(fingerprint, plan);
+		if (optPlan == null) {
+			optPlan = this.compiler.compile(plan);
+			this.planCache.register(fingerprint, optPlan);
+		}
+		return optPlan;
 	}
 	
 	/**
@@ -115,7 +171,13 @@ public class Client {
 	 */
 	public String getJSONPlan(PactProgram prog) throws CompilerException, ProgramInvocationException, ErrorInPlanAssemblerException {
 		JSONGenerator jsonGen = new JSONGenerator();
-		return jsonGen.compilePlanToJSON(this.getOptimizedPlan(prog));
+		final OptimizedPlan optPlan = this.getOptimizedPlan(prog);
+		try {
+			return jsonGen.compilePlanToJSON(optPlan);
+		}
+		finally {
+			releasePlan(optPlan);
+		}
 	}
 	
 	/**
@@ -128,7 +190,13 @@ public class Client {
 	 */
 	public JobGraph getJobGraph(PactProgram prog, OptimizedPlan optPlan) throws ProgramInvocationException {
 		JobGraphGenerator gen = new JobGraphGenerator();
-		JobGraph job = gen.compileJobGraph(optPlan);
+		JobGraph job;
+		try {
+			job = gen.compileJobGraph(optPlan);
+		}
+		finally {
+			releasePlan(optPlan);
+		}
 		job.addJar(new Path(prog.getJarFile().getAbsolutePath()));
 		
 		try {
@@ -146,6 +214,17 @@ public class Client {
 		return job;
 	}
 	
+	/**
+	 * Returns the given optimized plan to the plan cache, if it was handed out by the cache.
+	 * 
+	 * @param optPlan The optimized plan that is no longer used.
+	 */
+	private void releasePlan(OptimizedPlan optPlan) {
+		if (this.planCache != null) {
+			this.planCache.release(optPlan);
+		}
+	}
+	
 	
 	/**
 	 * Runs a pact program on the nephele system whose job-manager is configured in this client's configuration.
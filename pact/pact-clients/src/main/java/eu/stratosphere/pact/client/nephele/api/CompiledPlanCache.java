@@ -0,0 +1,169 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.client.nephele.api;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import eu.stratosphere.pact.common.contract.Contract;
+import eu.stratosphere.pact.common.io.FileInputFormat;
+import eu.stratosphere.pact.common.io.FileOutputFormat;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+
+/**
+ * A cache for optimized plans, keyed by the {@link PlanFingerprint} of the programs they were compiled from.
+ * <p>
+ * An optimized plan refers to the contracts of the program it was compiled from. When a cached plan is reused for
+ * another program with the same fingerprint, the file paths of that program's contracts are transferred into the
+ * contracts referenced by the cached plan. To prevent two programs from seeing each other's paths, a plan is taken
+ * out of the cache while it is in use and only returned once its job graph has been created.
+ * <p>
+ * This class is thread safe.
+ */
+public class CompiledPlanCache {
+	
+	private final Map<String, Entry> entries;				// the idle plans, in order of their last use
+	
+	private final Map<OptimizedPlan, Entry> plansInUse;		// the plans handed out, weak to drop abandoned plans
+	
+	private final int capacity;								// the maximal number of idle plans
+	
+	private final long maxAge;								// the time in milliseconds after which a plan expires
+
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Creates a new cache holding at most the given number of plans.
+	 * 
+	 * @param capacity The maximal number of cached plans.
+	 * @param maxAge The time in milliseconds after which a cached plan is discarded.
+	 */
+	public CompiledPlanCache(int capacity, long maxAge) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The capacity of the plan cache must be positive.");
+		}
+		
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+		this.plansInUse = new WeakHashMap<OptimizedPlan, Entry>();
+		this.capacity = capacity;
+		this.maxAge = maxAge;
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Takes the plan compiled for the given fingerprint out of the cache and binds it to the given plan's file
+	 * paths. The plan must be returned via {@link #release(OptimizedPlan)} once its job graph has been created.
+	 * 
+	 * @param fingerprint The fingerprint of the program to get the optimized plan for.
+	 * @param plan The plan of the program to get the optimized plan for.
+	 * @return The cached optimized plan, or null, if no plan is cached for the fingerprint.
+	 */
+	public synchronized OptimizedPlan acquire(PlanFingerprint fingerprint, Plan plan) {
+		final Entry entry = this.entries.remove(fingerprint.getDigest());
+		if (entry == null) {
+			return null;
+		}
+		if (System.currentTimeMillis() - entry.creationTime > this.maxAge) {
+			return null;
+		}
+		
+		// transfer the paths into the contracts referenced by the optimized plan
+		final List<Contract> target = entry.fingerprint.getContracts();
+		final List<Contract> source = fingerprint.getContracts();
+		for (int i = 0; i < target.size(); i++) {
+			copyParameter(source.get(i), target.get(i), FileInputFormat.FILE_PARAMETER_KEY);
+			copyParameter(source.get(i), target.get(i), FileOutputFormat.FILE_PARAMETER_KEY);
+		}
+		entry.optimizedPlan.setPlanConfiguration(plan.getPlanConfiguration());
+		
+		this.plansInUse.put(entry.optimizedPlan, entry);
+		return entry.optimizedPlan;
+	}
+	
+	/**
+	 * Registers a plan that was freshly compiled for the given fingerprint. The plan is in use until it is returned
+	 * via {@link #release(OptimizedPlan)}.
+	 * 
+	 * @param fingerprint The fingerprint of the program the plan was compiled from.
+	 * @param optimizedPlan The optimized plan.
+	 */
+	public synchronized void register(PlanFingerprint fingerprint, OptimizedPlan optimizedPlan) {
+		this.plansInUse.put(optimizedPlan, new Entry(fingerprint, optimizedPlan));
+	}
+	
+	/**
+	 * Returns the given plan to the cache, such that it can be reused for later submissions. Plans that were not
+	 * handed out by this cache are ignored.
+	 * 
+	 * @param optimizedPlan The plan to return to the cache.
+	 */
+	public synchronized void release(OptimizedPlan optimizedPlan) {
+		final Entry entry = this.plansInUse.remove(optimizedPlan);
+		if (entry == null) {
+			return;
+		}
+		
+		this.entries.put(entry.fingerprint.getDigest(), entry);
+		
+		// evict the least recently used plans
+		final Iterator<Entry> iter = this.entries.values().iterator();
+		while (this.entries.size() > this.capacity && iter.hasNext()) {
+			iter.next();
+			iter.remove();
+		}
+	}
+	
+	/**
+	 * Gets the number of plans that are currently cached and not in use.
+	 * 
+	 * @return The number of idle cached plans.
+	 */
+	public synchronized int size() {
+		return this.entries.size();
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	private static void copyParameter(Contract source, Contract target, String key) {
+		final String value = source.getParameters().getString(key, null);
+		if (value != null) {
+			target.getParameters().setString(key, value);
+		}
+	}
+	
+	/**
+	 * A cached plan, together with the fingerprint of the program it was compiled from.
+	 */
+	private static final class Entry {
+		
+		private final PlanFingerprint fingerprint;
+		
+		private final OptimizedPlan optimizedPlan;
+		
+		private final long creationTime;
+		
+		private Entry(PlanFingerprint fingerprint, OptimizedPlan optimizedPlan) {
+			this.fingerprint = fingerprint;
+			this.optimizedPlan = optimizedPlan;
+			this.creationTime = System.currentTimeMillis();
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.client.nephele.api;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.pact.common.contract.AbstractPact;
+import eu.stratosphere.pact.common.contract.CoGroupContract;
+import eu.stratosphere.pact.common.contract.CompilerHints;
+import eu.stratosphere.pact.common.contract.Contract;
+import eu.stratosphere.pact.common.contract.GenericDataSink;
+import eu.stratosphere.pact.common.contract.GenericDataSource;
+import eu.stratosphere.pact.common.contract.ReduceContract;
+import eu.stratosphere.pact.common.generic.io.InputFormat;
+import eu.stratosphere.pact.common.io.FileInputFormat;
+import eu.stratosphere.pact.common.io.FileOutputFormat;
+import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.plan.Visitor;
+import eu.stratosphere.pact.compiler.DataStatistics;
+import eu.stratosphere.pact.runtime.statistics.TaskStatistics;
+
+/**
+ * A structural fingerprint of a pact program. Two programs have the same fingerprint, if they are assembled from
+ * jar files with the same contents into the same graph of contracts with the same stub classes, parameters and compiler hints,
+ * and if the sizes of their inputs and the statistics recorded for their contracts fall into the same buckets.
+ * The paths of the input and output files are not part of the fingerprint, such that a program that is
+ * resubmitted for new input files has the same fingerprint as before.
+ * <p>
+ * The statistics are bucketed by powers of two. A change of the input size or of the recorded number of records
+ * within a bucket is too small to alter the costs of the plan alternatives substantially, a change beyond a bucket
+ * changes the fingerprint.
+ */
+public final class PlanFingerprint {
+	
+	private final String digest;				// the hash over the structural description of the program
+	
+	private final List<Contract> contracts;		// the contracts, in the order of the traversal
+
+	// ------------------------------------------------------------------------
+	
+	private PlanFingerprint(String digest, List<Contract> contracts) {
+		this.digest = digest;
+		this.contracts = contracts;
+	}
+	
+	/**
+	 * Gets the hash over the structural description of the program.
+	 * 
+	 * @return The digest of this fingerprint.
+	 */
+	public String getDigest() {
+		return this.digest;
+	}
+	
+	/**
+	 * Gets the contracts of the fingerprinted plan, in the order in which they were traversed. Plans with the
+	 * same fingerprint list their corresponding contracts at the same positions.
+	 * 
+	 * @return The contracts of the fingerprinted plan.
+	 */
+	List<Contract> getContracts() {
+		return this.contracts;
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Computes the fingerprint of the given plan, which has been assembled by a program from the given jar file.
+	 * 
+	 * @param jarFile The jar file of the program that assembled the plan.
+	 * @param plan The plan to compute the fingerprint for.
+	 * @param statistics The statistics used to determine the input sizes and the recorded statistics,
+	 *                   or null, if the fingerprint should not contain statistics.
+	 * @return The fingerprint of the plan.
+	 * @throws IOException Thrown, if the jar file could not be read.
+	 */
+	public static PlanFingerprint compute(File jarFile, Plan plan, final DataStatistics statistics) throws IOException {
+		final StringBuilder bld = new StringBuilder();
+		
+		// the contents of the jar file identify the version of the stub classes, including their output contracts.
+		// the path is irrelevant, and a rebuilt jar may keep its size and modification time
+		bld.append(hashContents(jarFile));
+		bld.append('|').append(plan.getJobName()).append('|').append(plan.getMaxNumberMachines());
+		bld.append('|').append(plan.getDefaultParallelism());
+		if (plan.getPlanConfiguration() != null) {
+			appendParameters(bld, plan.getPlanConfiguration());
+		}
+		
+		final List<Contract> contracts = new ArrayList<Contract>();
+		final Map<Contract, Integer> ids = new IdentityHashMap<Contract, Integer>();
+		
+		plan.accept(new Visitor<Contract>() {
+			@Override
+			public boolean preVisit(Contract visitable) {
+				// contracts with multiple successors are described once and referenced afterwards
+				final Integer id = ids.get(visitable);
+				if (id != null) {
+					bld.append("[#").append(id).append(']');
+					return false;
+				}
+				ids.put(visitable, Integer.valueOf(contracts.size()));
+				contracts.add(visitable);
+				
+				bld.append('[');
+				appendContract(bld, visitable);
+				if (statistics != null) {
+					appendStatistics(bld, visitable, statistics);
+				}
+				return true;
+			}
+			
+			@Override
+			public void postVisit(Contract visitable) {
+				bld.append(']');
+			}
+		});
+		
+		return new PlanFingerprint(hash(bld.toString()), contracts);
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	private static void appendContract(StringBuilder bld, Contract contract) {
+		bld.append(contract.getClass().getName()).append('|').append(contract.getName());
+		final Class<?> userCodeClass = contract.getUserCodeClass();
+		bld.append('|').append(userCodeClass == null ? "" : userCodeClass.getName());
+		bld.append('|').append(contract.getDegreeOfParallelism());
+		appendParameters(bld, contract.getParameters());
+		
+		final CompilerHints hints = contract.getCompilerHints();
+		bld.append("|hints:").append(hints.getAvgBytesPerRecord()).append(',');
+		bld.append(hints.getAvgRecordsEmittedPerStubCall()).append(',');
+		bld.append(hints.getDistinctCounts()).append(',');
+		bld.append(hints.getAvgNumRecordsPerDistinctFields()).append(',');
+		bld.append(hints.getUniqueFields());
+		
+		if (contract instanceof AbstractPact<?>) {
+			final AbstractPact<?> pact = (AbstractPact<?>) contract;
+			final Class<?>[] keyClasses = pact.getKeyClasses();
+			bld.append("|keys:");
+			for (int i = 0; i < keyClasses.length; i++) {
+				bld.append(keyClasses[i].getName()).append(',');
+			}
+			for (int i = 0; i < pact.getNumberOfInputs(); i++) {
+				final int[] columns = pact.getKeyColumnNumbers(i);
+				for (int k = 0; columns != null && k < columns.length; k++) {
+					bld.append(columns[k]).append(',');
+				}
+				bld.append(';');
+			}
+		}
+		
+		if (contract instanceof ReduceContract) {
+			bld.append("|order:").append(((ReduceContract) contract).getGroupOrder());
+		} else if (contract instanceof CoGroupContract) {
+			final CoGroupContract coGroup = (CoGroupContract) contract;
+			bld.append("|order:").append(coGroup.getGroupOrderForInputOne());
+			bld.append(',').append(coGroup.getGroupOrderForInputTwo());
+		} else if (contract instanceof GenericDataSink) {
+			final GenericDataSink sink = (GenericDataSink) contract;
+			bld.append("|order:").append(sink.getLocalOrder()).append(',').append(sink.getPartitionOrdering());
+			bld.append(',').append(sink.getDataDistribution() == null ? "" : sink.getDataDistribution().getClass().getName());
+		}
+	}
+	
+	private static void appendParameters(StringBuilder bld, Configuration params) {
+		final List<String> keys = new ArrayList<String>(params.keySet());
+		Collections.sort(keys);
+		for (String key : keys) {
+			// the file paths may change between submissions without affecting the plan
+			if (key.equals(FileInputFormat.FILE_PARAMETER_KEY) || key.equals(FileOutputFormat.FILE_PARAMETER_KEY)) {
+				continue;
+			}
+			bld.append('|').append(key).append('=').append(params.getString(key, ""));
+		}
+	}
+	
+	private static void appendStatistics(StringBuilder bld, Contract contract, DataStatistics statistics) {
+		if (contract instanceof GenericDataSource<?>) {
+			long inputSize = BaseStatistics.UNKNOWN;
+			try {
+				final InputFormat<?, ?> format = ((GenericDataSource<?>) contract).getFormatClass().newInstance();
+				format.configure(contract.getParameters());
+				
+				final String statisticsKey = contract.getParameters().getString(InputFormat.STATISTICS_CACHE_KEY, null);
+				final BaseStatistics bs = format.getStatistics(statistics.getBaseStatistics(statisticsKey));
+				if (bs != null) {
+					inputSize = bs.getTotalInputSize();
+				}
+			}
+			catch (Throwable t) {
+				// the compiler reports inputs without statistics, they are simply of unknown size here
+			}
+			bld.append("|size:").append(bucket(inputSize));
+		}
+		
+		final TaskStatistics recorded = statistics.getRecordedStatistics(contract);
+		bld.append("|records:").append(recorded == null ? -1 : bucket(recorded.getNumberOfRecords()));
+	}
+	
+	/**
+	 * Gets the power of two bucket for the given value.
+	 * 
+	 * @param value The value to get the bucket for.
+	 * @return The number of bits needed to represent the value, or -1, if the value is unknown.
+	 */
+	static int bucket(long value) {
+		return value < 0 ? -1 : 64 - Long.numberOfLeadingZeros(value);
+	}
+	
+	private static String hash(String description) {
+		try {
+			return toHex(createDigest().digest(description.getBytes("UTF-8")));
+		}
+		catch (UnsupportedEncodingException ueex) {
+			throw new RuntimeException("The UTF-8 encoding is not available.", ueex);
+		}
+	}
+	
+	private static String hashContents(File file) throws IOException {
+		final MessageDigest digest = createDigest();
+		final InputStream in = new FileInputStream(file);
+		try {
+			final byte[] buffer = new byte[64 * 1024];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		finally {
+			in.close();
+		}
+		return toHex(digest.digest());
+	}
+	
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		}
+		catch (NoSuchAlgorithmException nsaex) {
+			throw new RuntimeException("The MD5 digest algorithm is not available.", nsaex);
+		}
+	}
+	
+	private static String toHex(byte[] bytes) {
+		final StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (int i = 0; i < bytes.length; i++) {
+			hex.append(Character.forDigit((bytes[i] >>> 4) & 0xf, 16));
+			hex.append(Character.forDigit(bytes[i] & 0xf, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -22,9 +22,11 @@ import static org.mockito.MockitoAnnotations.initMocks;
 import static org.powermock.api.mockito.PowerMockito.whenNew;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -64,8 +66,8 @@ public class ClientTest {
 	PactProgram program;
 	@Mock
 	Plan planMock;
-	@Mock 
-	File mockJarFile;
+	
+	File jarFile;
 	
 	@Mock
 	PactCompiler compilerMock;
@@ -91,9 +93,14 @@ public class ClientTest {
 		when(configMock.getInteger(ConfigConstants.JOB_MANAGER_IPC_PORT_KEY, ConfigConstants.DEFAULT_JOB_MANAGER_IPC_PORT)).thenReturn(6123);
 		
 		when(planMock.getJobName()).thenReturn("MockPlan");
-		when(mockJarFile.getAbsolutePath()).thenReturn("mockFilePath");
 		
-		when(program.getJarFile()).thenReturn(mockJarFile);
+		// the plan cache identifies the program by the contents of its jar file
+		this.jarFile = File.createTempFile("program", ".jar");
+		FileOutputStream out = new FileOutputStream(this.jarFile);
+		out.write(new byte[] { 1, 2, 3 });
+		out.close();
+		
+		when(program.getJarFile()).thenReturn(this.jarFile);
 		when(program.getPlan()).thenReturn(planMock);
 		
 		whenNew(PactCompiler.class).withArguments(any(DataStatistics.class), any(CostEstimator.class), any(InetSocketAddress.class)).thenReturn(this.compilerMock);
@@ -107,6 +114,12 @@ public class ClientTest {
 		when(this.jobClientMock.submitJob()).thenReturn(jobSubmissionResultMock);
 	}
 	
+	@After
+	public void tearDown()
+	{
+		this.jarFile.delete();
+	}
+	
 	@Test
 	public void shouldSubmitToJobClient() throws ProgramInvocationException, ErrorInPlanAssemblerException, IOException, InterruptedException
 	{
@@ -120,6 +133,34 @@ public class ClientTest {
 		verify(this.jobClientMock, times(1)).submitJob();
 	}
 	
+	@Test
+	public void shouldReuseCompiledPlan() throws ProgramInvocationException, ErrorInPlanAssemblerException, IOException, InterruptedException
+	{
+		when(jobSubmissionResultMock.getReturnCode()).thenReturn(ReturnCode.SUCCESS);
+		
+		Client out = new Client(configMock);
+		out.run(program);
+		out.run(program);
+		
+		verify(this.compilerMock, times(1)).compile(planMock);
+		verify(this.generatorMock, times(2)).compileJobGraph(optimizedPlanMock);
+		verify(this.jobClientMock, times(2)).submitJob();
+	}
+	
+	@Test
+	public void shouldCompileEachTimeWithoutPlanCache() throws ProgramInvocationException, ErrorInPlanAssemblerException, IOException, InterruptedException
+	{
+		when(jobSubmissionResultMock.getReturnCode()).thenReturn(ReturnCode.SUCCESS);
+		
+		Client out = new Client(configMock, false);
+		out.run(program);
+		out.run(program);
+		
+		verify(this.compilerMock, times(2)).compile(planMock);
+		verify(this.generatorMock, times(2)).compileJobGraph(optimizedPlanMock);
+		verify(this.jobClientMock, times(2)).submitJob();
+	}
+	
 	/**
 	 * @throws Exception
 	 */
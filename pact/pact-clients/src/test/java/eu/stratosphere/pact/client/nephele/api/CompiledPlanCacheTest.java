@@ -0,0 +1,161 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.client.nephele.api;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.instance.HardwareDescription;
+import eu.stratosphere.nephele.instance.HardwareDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeDescription;
+import eu.stratosphere.nephele.instance.InstanceTypeDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.nephele.jobgraph.AbstractJobVertex;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.pact.common.io.FileInputFormat;
+import eu.stratosphere.pact.common.io.FileOutputFormat;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.compiler.DataStatistics;
+import eu.stratosphere.pact.compiler.PactCompiler;
+import eu.stratosphere.pact.compiler.costs.FixedSizeClusterCostEstimator;
+import eu.stratosphere.pact.compiler.jobgen.JobGraphGenerator;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * Tests for the {@link CompiledPlanCache}.
+ */
+public class CompiledPlanCacheTest
+{
+	private static final long MAX_AGE = 60 * 60 * 1000;
+
+	private File jarFile;
+
+	private PactCompiler compiler;
+
+	private InstanceTypeDescription instanceType;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		this.jarFile = PlanFingerprintTest.createJarFile(new byte[] { 1, 2, 3 });
+
+		InetSocketAddress dummyAddress = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+		this.compiler = new PactCompiler(new DataStatistics(), new FixedSizeClusterCostEstimator(), dummyAddress);
+
+		InstanceType iType = InstanceTypeFactory.construct("standard", 6, 2, 4096, 100, 0);
+		HardwareDescription hDesc = HardwareDescriptionFactory.construct(2, 4096 * 1024 * 1024, 2000 * 1024 * 1024);
+		this.instanceType = InstanceTypeDescriptionFactory.construct(iType, hDesc, 16);
+	}
+
+	@After
+	public void tearDown()
+	{
+		this.jarFile.delete();
+	}
+
+	@Test
+	public void testReusedPlanUsesPathsOfNewProgram() throws IOException
+	{
+		final CompiledPlanCache cache = new CompiledPlanCache(4, MAX_AGE);
+
+		// compile and submit the first program
+		final Plan firstPlan = PlanFingerprintTest.createPlan("first");
+		final PlanFingerprint firstFingerprint = PlanFingerprint.compute(this.jarFile, firstPlan, null);
+		final OptimizedPlan optimizedPlan = this.compiler.compile(firstPlan, this.instanceType);
+		cache.register(firstFingerprint, optimizedPlan);
+		checkPaths(createJobGraph(cache, optimizedPlan), "first");
+		Assert.assertEquals(1, cache.size());
+
+		// the second program differs only in its paths and reuses the plan
+		final Plan secondPlan = PlanFingerprintTest.createPlan("second");
+		final PlanFingerprint secondFingerprint = PlanFingerprint.compute(this.jarFile, secondPlan, null);
+		final OptimizedPlan reusedPlan = cache.acquire(secondFingerprint, secondPlan);
+		Assert.assertSame(optimizedPlan, reusedPlan);
+		checkPaths(createJobGraph(cache, reusedPlan), "second");
+	}
+
+	@Test
+	public void testPlanInUseIsNotHandedOutTwice() throws IOException
+	{
+		final CompiledPlanCache cache = new CompiledPlanCache(4, MAX_AGE);
+
+		final Plan plan = PlanFingerprintTest.createPlan("first");
+		final PlanFingerprint fingerprint = PlanFingerprint.compute(this.jarFile, plan, null);
+		final OptimizedPlan optimizedPlan = this.compiler.compile(plan, this.instanceType);
+		cache.register(fingerprint, optimizedPlan);
+		cache.release(optimizedPlan);
+
+		Assert.assertSame(optimizedPlan, cache.acquire(fingerprint, plan));
+		Assert.assertNull("A plan in use has been handed out again.", cache.acquire(fingerprint, plan));
+
+		cache.release(optimizedPlan);
+		Assert.assertSame(optimizedPlan, cache.acquire(fingerprint, plan));
+	}
+
+	@Test
+	public void testExpiredPlanIsNotReused() throws IOException
+	{
+		final CompiledPlanCache cache = new CompiledPlanCache(4, -1);
+
+		final Plan plan = PlanFingerprintTest.createPlan("first");
+		final PlanFingerprint fingerprint = PlanFingerprint.compute(this.jarFile, plan, null);
+		final OptimizedPlan optimizedPlan = this.compiler.compile(plan, this.instanceType);
+		cache.register(fingerprint, optimizedPlan);
+		cache.release(optimizedPlan);
+
+		Assert.assertNull(cache.acquire(fingerprint, plan));
+		Assert.assertEquals(0, cache.size());
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private static JobGraph createJobGraph(CompiledPlanCache cache, OptimizedPlan optimizedPlan)
+	{
+		try {
+			return new JobGraphGenerator().compileJobGraph(optimizedPlan);
+		}
+		finally {
+			cache.release(optimizedPlan);
+		}
+	}
+
+	private static void checkPaths(JobGraph jobGraph, String name)
+	{
+		Assert.assertEquals("file:///in/" + name,
+			getStubParameter(jobGraph.getInputVertices(), FileInputFormat.FILE_PARAMETER_KEY));
+		Assert.assertEquals("file:///out/" + name,
+			getStubParameter(jobGraph.getOutputVertices(), FileOutputFormat.FILE_PARAMETER_KEY));
+	}
+
+	private static String getStubParameter(Iterator<? extends AbstractJobVertex> vertices, String key)
+	{
+		Assert.assertTrue(vertices.hasNext());
+		final String value = new TaskConfig(vertices.next().getConfiguration()).getStubParameter(key, null);
+		Assert.assertFalse(vertices.hasNext());
+		return value;
+	}
+}
@@ -0,0 +1,174 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.client.nephele.api;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.pact.client.util.CachedStatisticsInputFormat;
+import eu.stratosphere.pact.client.util.IdentityMap;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.MapContract;
+import eu.stratosphere.pact.common.generic.io.InputFormat;
+import eu.stratosphere.pact.common.io.FileInputFormat.FileBaseStatistics;
+import eu.stratosphere.pact.common.io.SequentialOutputFormat;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.compiler.DataStatistics;
+
+/**
+ * Tests for the {@link PlanFingerprint}.
+ */
+public class PlanFingerprintTest
+{
+	private static final String STATISTICS_KEY = "input";
+
+	private File jarFile;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		this.jarFile = createJarFile(new byte[] { 1, 2, 3 });
+	}
+
+	@After
+	public void tearDown()
+	{
+		this.jarFile.delete();
+	}
+
+	@Test
+	public void testFilePathsAreExcluded() throws IOException
+	{
+		final PlanFingerprint first = PlanFingerprint.compute(this.jarFile, createPlan("a"), null);
+		final PlanFingerprint second = PlanFingerprint.compute(this.jarFile, createPlan("b"), null);
+
+		Assert.assertEquals(first.getDigest(), second.getDigest());
+		Assert.assertEquals(3, second.getContracts().size());
+	}
+
+	@Test
+	public void testParametersAreIncluded() throws IOException
+	{
+		final Plan plan = createPlan("a");
+		final PlanFingerprint before = PlanFingerprint.compute(this.jarFile, plan, null);
+
+		getMapper(plan).setParameter("threshold", 42);
+		final PlanFingerprint after = PlanFingerprint.compute(this.jarFile, plan, null);
+
+		Assert.assertFalse(before.getDigest().equals(after.getDigest()));
+	}
+
+	@Test
+	public void testCompilerHintsAreIncluded() throws IOException
+	{
+		final Plan plan = createPlan("a");
+		final PlanFingerprint before = PlanFingerprint.compute(this.jarFile, plan, null);
+
+		getMapper(plan).getCompilerHints().setAvgRecordsEmittedPerStubCall(10.0f);
+		final PlanFingerprint after = PlanFingerprint.compute(this.jarFile, plan, null);
+
+		Assert.assertFalse(before.getDigest().equals(after.getDigest()));
+	}
+
+	@Test
+	public void testJarContentsAreIncluded() throws IOException
+	{
+		final File sameContents = createJarFile(new byte[] { 1, 2, 3 });
+		final File otherContents = createJarFile(new byte[] { 1, 2, 4 });
+		try {
+			final String digest = PlanFingerprint.compute(this.jarFile, createPlan("a"), null).getDigest();
+
+			// the location of the jar file does not matter, only its contents
+			Assert.assertEquals(digest, PlanFingerprint.compute(sameContents, createPlan("a"), null).getDigest());
+			Assert.assertFalse(digest.equals(
+				PlanFingerprint.compute(otherContents, createPlan("a"), null).getDigest()));
+		}
+		finally {
+			sameContents.delete();
+			otherContents.delete();
+		}
+	}
+
+	@Test
+	public void testInputSizesAreBucketed() throws IOException
+	{
+		final String digest = computeWithInputSize(1000);
+
+		// 1000 and 1020 bytes are in the same power of two bucket, 3000 bytes are not
+		Assert.assertEquals(digest, computeWithInputSize(1020));
+		Assert.assertFalse(digest.equals(computeWithInputSize(3000)));
+	}
+
+	@Test
+	public void testBucket()
+	{
+		Assert.assertEquals(-1, PlanFingerprint.bucket(-1));
+		Assert.assertEquals(0, PlanFingerprint.bucket(0));
+		Assert.assertEquals(1, PlanFingerprint.bucket(1));
+		Assert.assertEquals(10, PlanFingerprint.bucket(1023));
+		Assert.assertEquals(11, PlanFingerprint.bucket(1024));
+		Assert.assertEquals(63, PlanFingerprint.bucket(Long.MAX_VALUE));
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private String computeWithInputSize(long inputSize) throws IOException
+	{
+		final DataStatistics statistics = new DataStatistics();
+		statistics.cacheBaseStatistics(new FileBaseStatistics(0, inputSize, 10), STATISTICS_KEY);
+		return PlanFingerprint.compute(this.jarFile, createPlan("a"), statistics).getDigest();
+	}
+
+	private static MapContract getMapper(Plan plan)
+	{
+		final FileDataSink sink = (FileDataSink) plan.getDataSinks().iterator().next();
+		return (MapContract) sink.getInputs().get(0);
+	}
+
+	/**
+	 * Creates a plan that reads the input and writes the output with the given name.
+	 */
+	static Plan createPlan(String name)
+	{
+		final FileDataSource source = new FileDataSource(CachedStatisticsInputFormat.class, "file:///in/" + name,
+			"Source");
+		source.setParameter(InputFormat.STATISTICS_CACHE_KEY, STATISTICS_KEY);
+		final MapContract mapper = MapContract.builder(IdentityMap.class).input(source).name("Mapper").build();
+		final FileDataSink sink = new FileDataSink(SequentialOutputFormat.class, "file:///out/" + name, mapper, "Sink");
+		return new Plan(sink, "Fingerprinted Plan");
+	}
+
+	static File createJarFile(byte[] contents) throws IOException
+	{
+		final File file = File.createTempFile("program", ".jar");
+		final FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(contents);
+		}
+		finally {
+			out.close();
+		}
+		return file;
+	}
+}
@@ -0,0 +1,33 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.client.util;
+
+import eu.stratosphere.pact.common.io.SequentialInputFormat;
+import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
+
+/**
+ * An input format that reports the cached statistics as its statistics, without accessing its input.
+ */
+public final class CachedStatisticsInputFormat extends SequentialInputFormat
+{
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.io.BinaryInputFormat#getStatistics(eu.stratosphere.pact.common.io.statistics.BaseStatistics)
+	 */
+	@Override
+	public BaseStatistics getStatistics(BaseStatistics cachedStatistics) {
+		return cachedStatistics;
+	}
+}
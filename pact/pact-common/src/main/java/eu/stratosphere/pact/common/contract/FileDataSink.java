@@ -113,13 +113,14 @@ public class FileDataSink extends GenericDataSink
 	// --------------------------------------------------------------------------------------------
 
 	/**
-	 * Returns the configured file path where the output is written to.
+	 * Returns the configured file path where the output is written to. That is the path given in the file
+	 * parameter, which may have been changed after the construction of the contract.
 	 * 
 	 * @return The path to which the output shall be written.
 	 */
 	public String getFilePath()
 	{
-		return this.filePath;
+		return this.parameters.getString(FileOutputFormat.FILE_PARAMETER_KEY, this.filePath);
 	}
 	
 	/* (non-Javadoc)
@@ -127,7 +128,7 @@ public class FileDataSink extends GenericDataSink
 	 */
 	@Override
 	public String toString() {
-		return this.filePath;
+		return this.parameters.getString(FileOutputFormat.FILE_PARAMETER_KEY, this.filePath);
 	}
 	
 }
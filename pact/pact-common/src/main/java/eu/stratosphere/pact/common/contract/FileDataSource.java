@@ -56,13 +56,14 @@ public class FileDataSource extends GenericDataSource<FileInputFormat>
 	// --------------------------------------------------------------------------------------------
 
 	/**
-	 * Returns the file path from which the input is read.
+	 * Returns the file path from which the input is read. That is the path given in the file parameter,
+	 * which may have been changed after the construction of the contract.
 	 * 
 	 * @return The path from which the input shall be read.
 	 */
 	public String getFilePath()
 	{
-		return this.filePath;
+		return this.parameters.getString(FileInputFormat.FILE_PARAMETER_KEY, this.filePath);
 	}
 	
 	// --------------------------------------------------------------------------------------------
@@ -72,6 +73,6 @@ public class FileDataSource extends GenericDataSource<FileInputFormat>
 	 */
 	public String toString()
 	{
-		return this.filePath;
+		return this.parameters.getString(FileInputFormat.FILE_PARAMETER_KEY, this.filePath);
 	}
 }
@@ -224,13 +224,13 @@ public class GenericDataSink extends Contract
 	
 	/**
 	 * Sets the sink to partition the records into ranges over the given ordering.
+	 * The bucket boundaries are determined from a sample of the data before it is partitioned.
 	 * 
 	 * @param partitionOrdering The record ordering over which to partition in ranges.
 	 */
 	public void setRangePartitioned(Ordering partitionOrdering)
 	{
-		throw new UnsupportedOperationException(
-			"Range partitioning is currently only supported with a user supplied data distribution.");
+		setRangePartitioned(partitionOrdering, null);
 	}
 	
 	/**
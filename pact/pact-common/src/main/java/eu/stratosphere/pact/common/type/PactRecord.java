@@ -23,6 +23,9 @@ import java.io.UTFDataFormatException;
 
 import eu.stratosphere.nephele.services.memorymanager.DataInputView;
 import eu.stratosphere.nephele.services.memorymanager.DataOutputView;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.type.base.PactLong;
 import eu.stratosphere.pact.common.util.InstantiationUtil;
 
 
@@ -37,6 +40,10 @@ import eu.stratosphere.pact.common.util.InstantiationUtil;
  * incorporated into the binary representation upon the next serialization or any explicit call to the
  * {@link #updateBinaryRepresenation()} method.
  * <p>
+ * Integer, long and double fields can be accessed through the fixed-width accessors (such as
+ * {@link #getIntField(int)} and {@link #setIntField(int, int)}), which read and update the binary
+ * representation in place, without deserializing the field or re-serializing the record.
+ * <p>
  * IMPORTANT NOTE: PactRecords must be used as mutable objects and be reused across user function calls in order
  * to achieve performance. The record is a heavy-weight object, designed to minimize calls to the individual fields'
  * serialization and deserialization methods. It holds quite a bit of state consumes a comparably large amount of
@@ -67,6 +74,8 @@ public final class PactRecord implements Value
 	
 	private byte[] switchBuffer;		// the buffer containing the binary representation
 	
+	private byte[] fieldBuffer;			// the buffer to copy individual modified fields through
+	
 	private int[] offsets;				// the offsets to the binary representations of the fields
 	
 	private int[] lengths;				// the lengths of the fields
@@ -312,15 +321,19 @@ public final class PactRecord implements Value
 		}
 		
 		// get offset and check for null
-		int offset = this.offsets[fieldNum];
+		final int offset = this.offsets[fieldNum];
 		if (offset == NULL_INDICATOR_OFFSET) {
 			return false;
 		}
 		else if (offset == MODIFIED_INDICATOR_OFFSET) {
-			// value that has been set is new or modified
-			// bring the binary in sync so that the deserialization gives the correct result
-			updateBinaryRepresenation();
-			offset = this.offsets[fieldNum];
+			// value that has been set is new or modified. instead of bringing the whole binary
+			// representation in sync, we copy only this field. the record is serialized the latest
+			// when it crosses a serialization boundary (channel, sorter, hash table)
+			final Value field = this.writeFields[fieldNum];
+			if (field != target) {
+				copyField(field, target, fieldNum);
+			}
+			return true;
 		}
 		
 		final int limit = offset + this.lengths[fieldNum];
@@ -355,6 +368,223 @@ public final class PactRecord implements Value
 		}
 	}
 	
+	// --------------------------------------------------------------------------------------------
+	//                             Fixed-Width Field Accessors
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Gets the value of the {@link PactInteger} field at the given position. If the field is present in the
+	 * binary representation, the value is read directly from the binary, without deserializing a value object.
+	 * 
+	 * @param fieldNum The position of the field.
+	 * @return The value of the field.
+	 * 
+	 * @throws NullPointerException Thrown, if the field is null.
+	 * @throws IndexOutOfBoundsException Thrown, if the field number is negative or larger or equal to the number of
+	 *                                   fields in this record.
+	 */
+	public int getIntField(int fieldNum)
+	{
+		final int offset = getFixedWidthOffset(fieldNum, 4);
+		if (offset >= 0) {
+			return readInt(this.binaryData, offset);
+		} else {
+			return getNonNullField(fieldNum, PactInteger.class).getValue();
+		}
+	}
+	
+	/**
+	 * Gets the value of the {@link PactLong} field at the given position. If the field is present in the
+	 * binary representation, the value is read directly from the binary, without deserializing a value object.
+	 * 
+	 * @param fieldNum The position of the field.
+	 * @return The value of the field.
+	 * 
+	 * @throws NullPointerException Thrown, if the field is null.
+	 * @throws IndexOutOfBoundsException Thrown, if the field number is negative or larger or equal to the number of
+	 *                                   fields in this record.
+	 */
+	public long getLongField(int fieldNum)
+	{
+		final int offset = getFixedWidthOffset(fieldNum, 8);
+		if (offset >= 0) {
+			return readLong(this.binaryData, offset);
+		} else {
+			return getNonNullField(fieldNum, PactLong.class).getValue();
+		}
+	}
+	
+	/**
+	 * Gets the value of the {@link PactDouble} field at the given position. If the field is present in the
+	 * binary representation, the value is read directly from the binary, without deserializing a value object.
+	 * 
+	 * @param fieldNum The position of the field.
+	 * @return The value of the field.
+	 * 
+	 * @throws NullPointerException Thrown, if the field is null.
+	 * @throws IndexOutOfBoundsException Thrown, if the field number is negative or larger or equal to the number of
+	 *                                   fields in this record.
+	 */
+	public double getDoubleField(int fieldNum)
+	{
+		final int offset = getFixedWidthOffset(fieldNum, 8);
+		if (offset >= 0) {
+			return Double.longBitsToDouble(readLong(this.binaryData, offset));
+		} else {
+			return getNonNullField(fieldNum, PactDouble.class).getValue();
+		}
+	}
+	
+	/**
+	 * Sets the field at the given position to a {@link PactInteger} with the given value. If the field is
+	 * present in the binary representation with the same width, the binary is updated in place and the
+	 * record is not marked as modified. Otherwise, the field is set through a value object that is owned
+	 * by the record, just as through {@link #setField(int, Value)}.
+	 * 
+	 * @param fieldNum The position of the field, starting at zero.
+	 * @param value The new value.
+	 */
+	public void setIntField(int fieldNum, int value)
+	{
+		if (fieldNum < this.numFields) {
+			final int offset = getFixedWidthOffset(fieldNum, 4);
+			if (offset >= 0) {
+				writeInt(this.binaryData, offset, value);
+				return;
+			}
+		}
+		getOwnedFieldHolder(fieldNum, PactInteger.class).setValue(value);
+	}
+	
+	/**
+	 * Sets the field at the given position to a {@link PactLong} with the given value. If the field is
+	 * present in the binary representation with the same width, the binary is updated in place and the
+	 * record is not marked as modified. Otherwise, the field is set through a value object that is owned
+	 * by the record, just as through {@link #setField(int, Value)}.
+	 * 
+	 * @param fieldNum The position of the field, starting at zero.
+	 * @param value The new value.
+	 */
+	public void setLongField(int fieldNum, long value)
+	{
+		if (fieldNum < this.numFields) {
+			final int offset = getFixedWidthOffset(fieldNum, 8);
+			if (offset >= 0) {
+				writeLong(this.binaryData, offset, value);
+				return;
+			}
+		}
+		getOwnedFieldHolder(fieldNum, PactLong.class).setValue(value);
+	}
+	
+	/**
+	 * Sets the field at the given position to a {@link PactDouble} with the given value. If the field is
+	 * present in the binary representation with the same width, the binary is updated in place and the
+	 * record is not marked as modified. Otherwise, the field is set through a value object that is owned
+	 * by the record, just as through {@link #setField(int, Value)}.
+	 * 
+	 * @param fieldNum The position of the field, starting at zero.
+	 * @param value The new value.
+	 */
+	public void setDoubleField(int fieldNum, double value)
+	{
+		if (fieldNum < this.numFields) {
+			final int offset = getFixedWidthOffset(fieldNum, 8);
+			if (offset >= 0) {
+				writeLong(this.binaryData, offset, Double.doubleToLongBits(value));
+				return;
+			}
+		}
+		getOwnedFieldHolder(fieldNum, PactDouble.class).setValue(value);
+	}
+	
+	/**
+	 * Gets the offset of the field's binary representation, if the field is present in the binary
+	 * representation and is exactly as wide as the given width.
+	 * 
+	 * @param fieldNum The position of the field.
+	 * @param width The width of the field in bytes.
+	 * @return The offset of the field in the binary representation, or -1, if the field is null, modified,
+	 *         or has a different width.
+	 */
+	private final int getFixedWidthOffset(int fieldNum, int width)
+	{
+		// range check
+		if (fieldNum < 0 || fieldNum >= this.numFields) {
+			throw new IndexOutOfBoundsException(fieldNum + " for range [0.." + (this.numFields - 1) + "]");
+		}
+		
+		// the null and modified indicators are both negative
+		final int offset = this.offsets[fieldNum];
+		return offset >= 0 && this.lengths[fieldNum] == width ? offset : -1;
+	}
+	
+	private final <T extends Value> T getNonNullField(int fieldNum, Class<T> type)
+	{
+		final T field = getField(fieldNum, type);
+		if (field == null) {
+			throw new NullPointerException("Field " + fieldNum + " is null.");
+		}
+		return field;
+	}
+	
+	/**
+	 * Sets the field at the given position to a value object from the record's own cache and returns that
+	 * object, such that the caller can set its value. The caller's objects are never changed that way.
+	 * 
+	 * @param fieldNum The position of the field.
+	 * @param type The type of the value object.
+	 * @return The value object that is now set as the field.
+	 */
+	@SuppressWarnings("unchecked")
+	private final <T extends Value> T getOwnedFieldHolder(int fieldNum, Class<T> type)
+	{
+		if (fieldNum < 0) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (fieldNum >= this.numFields) {
+			setNumFields(fieldNum + 1);
+		}
+		
+		final Value oldField = this.readFields[fieldNum];
+		final T field;
+		if (oldField != null && oldField.getClass() == type) {
+			field = (T) oldField;
+		} else {
+			field = InstantiationUtil.instantiate(type, Value.class);
+			this.readFields[fieldNum] = field;
+		}
+		internallySetField(fieldNum, field);
+		return field;
+	}
+	
+	private static final int readInt(byte[] data, int offset)
+	{
+		return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16) |
+				((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+	}
+	
+	private static final long readLong(byte[] data, int offset)
+	{
+		return (((long) readInt(data, offset)) << 32) | (readInt(data, offset + 4) & 0xffffffffL);
+	}
+	
+	private static final void writeInt(byte[] data, int offset, int value)
+	{
+		data[offset] = (byte) (value >> 24);
+		data[offset + 1] = (byte) (value >> 16);
+		data[offset + 2] = (byte) (value >> 8);
+		data[offset + 3] = (byte) value;
+	}
+	
+	private static final void writeLong(byte[] data, int offset, long value)
+	{
+		writeInt(data, offset, (int) (value >> 32));
+		writeInt(data, offset + 4, (int) value);
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
 	/**
 	 * Deserializes the given object from the binary string, starting at the given position.
 	 * If the deserialization asks for more that <code>limit - offset</code> bytes, than 
@@ -366,9 +596,23 @@ public final class PactRecord implements Value
 	 * @param limit The limit in the binary string.
 	 */
 	private final <T extends Value> void deserialize(T target, int offset, int limit, int fieldNumber)
+	{
+		deserialize(target, this.binaryData, offset, limit, fieldNumber);
+	}
+	
+	/**
+	 * Deserializes the given object from the given buffer, starting at the given position.
+	 * 
+	 * @param <T> The generic type of the value to be deserialized.
+	 * @param target The object to deserialize the data into.
+	 * @param buffer The buffer holding the binary data.
+	 * @param offset The offset in the buffer.
+	 * @param limit The limit in the buffer.
+	 */
+	private final <T extends Value> void deserialize(T target, byte[] buffer, int offset, int limit, int fieldNumber)
 	{
 		final InternalDeSerializer serializer = this.serializer;
-		serializer.memory = this.binaryData;
+		serializer.memory = buffer;
 		serializer.position = offset;
 		serializer.end = limit;
 		try {
@@ -379,6 +623,31 @@ public final class PactRecord implements Value
 		}
 	}
 	
+	/**
+	 * Copies the contents of the given value into the target value, by serializing the value into the
+	 * record's field buffer and deserializing the target from there.
+	 * 
+	 * @param source The value to copy.
+	 * @param target The value to copy the contents into.
+	 * @param fieldNumber The position of the field, for error messages.
+	 */
+	private final void copyField(Value source, Value target, int fieldNumber)
+	{
+		final InternalDeSerializer serializer = this.serializer;
+		serializer.memory = this.fieldBuffer != null ? this.fieldBuffer : new byte[DEFAULT_FIELD_LEN_ESTIMATE << 2];
+		serializer.position = 0;
+		try {
+			source.write(serializer);
+		}
+		catch (Exception e) {
+			throw new RuntimeException("Error in data type serialization: " + e.getMessage(), e); 
+		}
+		
+		// the buffer may have grown during serialization
+		this.fieldBuffer = serializer.memory;
+		deserialize(target, this.fieldBuffer, 0, serializer.position, fieldNumber);
+	}
+	
 	/**
 	 * Sets the field at the given position to the given value. If the field position is larger or equal than
 	 * the current number of fields in the record, than the record is expanded to host as many columns.
@@ -881,6 +1150,18 @@ public final class PactRecord implements Value
 	
 	// --------------------------------------------------------------------------------------------
 	
+	/**
+	 * Gets the length of the record's binary representation in bytes. If the binary representation is not
+	 * in sync with the fields, it is updated first.
+	 * 
+	 * @return The length of the record's binary representation in bytes.
+	 */
+	public int getBinaryLength()
+	{
+		updateBinaryRepresenation();
+		return this.binaryLen;
+	}
+	
 	/**
 	 * Updates the binary representation of the data, such that it reflects the state of the currently
 	 * stored fields. If the binary representation is already up to date, nothing happens. Otherwise,
@@ -49,6 +49,36 @@ public final class PactConfigConstants {
 	 */
 	public static final String DEFAULT_INSTANCE_TYPE_KEY = "pact.parallelization.default-instance-type";
 	
+	// ------------------------------- Compiler -------------------------------
+	
+	/**
+	 * The key for the config parameter defining the number of candidate plans that the compiler considers at most
+	 * when enumerating alternative plans. Once the number is exceeded, the compiler keeps only the cheapest
+	 * alternative for each of the remaining operators. A value of 0 or less disables the limit.
+	 */
+	public static final String COMPILER_ENUMERATION_MAX_CANDIDATES_KEY = "pact.compiler.enumeration.max-candidates";
+	
+	/**
+	 * The key for the config parameter defining whether the compiler bounds the enumeration of alternatives for plans
+	 * with branches by the costs of a plan that it has found greedily before.
+	 */
+	public static final String COMPILER_ENUMERATION_COST_BOUND_KEY = "pact.compiler.enumeration.cost-bound";
+	
+	// -------------------------------- Client --------------------------------
+	
+	/**
+	 * The key for the config parameter defining the number of optimized plans that a long-running client, such as
+	 * the web frontend, keeps to reuse them for resubmissions of structurally identical programs. The command line
+	 * frontend compiles a single program per invocation and does not cache plans. A value of 0 disables the cache.
+	 */
+	public static final String CLIENT_PLAN_CACHE_SIZE_KEY = "pact.client.plan-cache.size";
+	
+	/**
+	 * The key for the config parameter defining the time in seconds after which a cached optimized plan is
+	 * discarded, such that changes in the cluster are eventually reflected in the plans.
+	 */
+	public static final String CLIENT_PLAN_CACHE_MAX_AGE_KEY = "pact.client.plan-cache.max-age";
+	
 	// ------------------------------- Runtime --------------------------------
 	
 	/**
@@ -57,6 +87,19 @@ public final class PactConfigConstants {
 	 */
 	public static final String FS_STREAM_OPENING_TIMEOUT_KEY = "pact.runtime.fs_timeout";
 	
+	/**
+	 * The key for the config parameter defining the number of threads with which a sorting task sorts each of its
+	 * full sort buffers. A value of 1 sorts the buffers in the sorter's own sorting thread.
+	 */
+	public static final String SORT_PARALLELISM_KEY = "pact.runtime.sort.parallelism";
+	
+	/**
+	 * The key for the config parameter defining the path of the catalog in which the statistics of executed
+	 * tasks are recorded and from which the compiler obtains statistics of past executions. The path must be
+	 * accessible by the compiler and all task managers. If the parameter is not set, no statistics are recorded.
+	 */
+	public static final String STATISTICS_CATALOG_PATH_KEY = "pact.runtime.statistics.catalog-path";
+	
 	// ----------------------------- Web Frontend -----------------------------
 
 	/**
@@ -121,6 +164,30 @@ public final class PactConfigConstants {
 	 */
 	public static final String DEFAULT_INSTANCE_TYPE_DESCRIPTION = "standard,2,1,300,10,0";
 
+	// ------------------------------- Compiler -------------------------------
+	
+	/**
+	 * The default maximal number of candidate plans considered in the enumeration of alternative plans: 100000.
+	 */
+	public static final int DEFAULT_COMPILER_ENUMERATION_MAX_CANDIDATES = 100000;
+
+	/**
+	 * The default setting for bounding the enumeration by the costs of a greedily found plan: true.
+	 */
+	public static final boolean DEFAULT_COMPILER_ENUMERATION_COST_BOUND = true;
+
+	// -------------------------------- Client --------------------------------
+	
+	/**
+	 * The default number of optimized plans cached by a client: 32.
+	 */
+	public static final int DEFAULT_CLIENT_PLAN_CACHE_SIZE = 32;
+	
+	/**
+	 * The default maximum age of a cached optimized plan: one day.
+	 */
+	public static final int DEFAULT_CLIENT_PLAN_CACHE_MAX_AGE = 24 * 60 * 60;
+
 	// ------------------------------- Runtime --------------------------------
 	
 	/**
@@ -128,6 +195,11 @@ public final class PactConfigConstants {
 	 */
 	public static final int DEFAULT_FS_STREAM_OPENING_TIMEOUT = 10000;
 	
+	/**
+	 * The default number of threads that sort a full sort buffer: 1.
+	 */
+	public static final int DEFAULT_SORT_PARALLELISM = 1;
+	
 	// ----------------------------- Web Frontend -----------------------------
 
 	/**
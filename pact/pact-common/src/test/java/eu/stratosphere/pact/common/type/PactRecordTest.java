@@ -457,6 +457,107 @@ public class PactRecordTest {
 		}
 	}
 	
+	@Test
+	public void testFixedWidthFieldAccess()
+	{
+		try {
+			PactRecord record1 = new PactRecord(3);
+			record1.setField(0, new PactInteger(42));
+			record1.setField(1, this.origVal1);
+			record1.setField(2, new PactLong(Long.MAX_VALUE - 7));
+			record1.setDoubleField(4, Math.E);
+			
+			// modified fields are served from the value objects
+			assertEquals(42, record1.getIntField(0));
+			assertEquals(Long.MAX_VALUE - 7, record1.getLongField(2));
+			assertEquals(Math.E, record1.getDoubleField(4), 0.0);
+			assertTrue(record1.isNull(3));
+			
+			record1.write(this.out);
+			PactRecord record2 = new PactRecord();
+			record2.read(this.in);
+			
+			// fields in the binary representation are read and updated in place
+			assertEquals(42, record2.getIntField(0));
+			assertEquals(Long.MAX_VALUE - 7, record2.getLongField(2));
+			assertEquals(Math.E, record2.getDoubleField(4), 0.0);
+			
+			record2.setIntField(0, -17);
+			record2.setLongField(2, Long.MIN_VALUE + 3);
+			record2.setDoubleField(4, -Math.PI);
+			assertEquals(-17, record2.getIntField(0));
+			assertEquals(-17, record2.getField(0, PactInteger.class).getValue());
+			assertEquals(Long.MIN_VALUE + 3, record2.getField(2, PactLong.class).getValue());
+			assertEquals(-Math.PI, record2.getField(4, PactDouble.class).getValue(), 0.0);
+			assertEquals(this.origVal1, record2.getField(1, PactString.class));
+			
+			// null fields and fields beyond the end are set through value objects
+			record2.setIntField(3, 5);
+			record2.setLongField(6, 123456789012L);
+			assertEquals(5, record2.getIntField(3));
+			assertEquals(7, record2.getNumFields());
+			
+			record2.write(this.out);
+			PactRecord record3 = new PactRecord();
+			record3.read(this.in);
+			
+			assertEquals(-17, record3.getIntField(0));
+			assertEquals(this.origVal1, record3.getField(1, PactString.class));
+			assertEquals(Long.MIN_VALUE + 3, record3.getLongField(2));
+			assertEquals(5, record3.getIntField(3));
+			assertEquals(-Math.PI, record3.getDoubleField(4), 0.0);
+			assertTrue(record3.isNull(5));
+			assertEquals(123456789012L, record3.getLongField(6));
+			
+			try {
+				record3.getIntField(5);
+				fail("Null field was read as an int.");
+			} catch (NullPointerException npex) {
+				// expected
+			}
+		} catch (Throwable t) {
+			Assert.fail("Test failed due to an exception: " + t.getMessage());
+		}
+	}
+	
+	@Test
+	public void testGetModifiedFieldInto()
+	{
+		try {
+			PactRecord record = new PactRecord(this.origVal1, this.origVal2);
+			record.write(this.out);
+			record.read(this.in);
+			
+			final PactString modified = new PactString("Modified");
+			record.setField(0, modified);
+			
+			// the modified field is copied into the target
+			final PactString target = new PactString();
+			assertTrue(record.getFieldInto(0, target));
+			assertEquals(modified, target);
+			modified.setValue("Changed after copy");
+			assertEquals("Modified", target.getValue());
+			
+			// a target that is the field itself is left as it is
+			assertTrue(record.getFieldInto(0, modified));
+			assertEquals("Changed after copy", modified.getValue());
+			
+			// the unmodified field still comes from the binary representation
+			final PactDouble doubleTarget = new PactDouble();
+			assertTrue(record.getFieldInto(1, doubleTarget));
+			assertEquals(this.origVal2, doubleTarget);
+			
+			// the modification is contained in the serialized record
+			record.write(this.out);
+			PactRecord record2 = new PactRecord();
+			record2.read(this.in);
+			assertEquals(modified, record2.getField(0, PactString.class));
+			assertEquals(this.origVal2, record2.getField(1, PactDouble.class));
+		} catch (Throwable t) {
+			Assert.fail("Test failed due to an exception: " + t.getMessage());
+		}
+	}
+	
 	@Test
 	public void testClear() throws IOException
 	{
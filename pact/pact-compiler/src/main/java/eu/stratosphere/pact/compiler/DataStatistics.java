@@ -15,15 +15,23 @@
 
 package eu.stratosphere.pact.compiler;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.pact.common.contract.Contract;
 import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
+import eu.stratosphere.pact.runtime.statistics.StatisticsCatalog;
+import eu.stratosphere.pact.runtime.statistics.TaskStatistics;
 
 /**
  * The collection of access methods that can be used to retrieve statistical information about the
- * data processed in a job. Currently this method acts as an entry point only for obtaining cached
- * statistics.
+ * data processed in a job. Currently this method acts as an entry point for obtaining cached
+ * statistics and, if a statistics catalog is attached, for the statistics recorded during past
+ * executions of the same tasks.
  * <p>
  * This class is thread safe.
  * 
@@ -31,8 +39,12 @@ import eu.stratosphere.pact.common.io.statistics.BaseStatistics;
  */
 public class DataStatistics
 {
+	private static final Log LOG = LogFactory.getLog(DataStatistics.class);
+	
 	private final Map<String, BaseStatistics> baseStatisticsCache;
 	
+	private volatile StatisticsCatalog catalog;
+	
 	// --------------------------------------------------------------------------------------------
 	
 	/**
@@ -43,6 +55,18 @@ public class DataStatistics
 		this.baseStatisticsCache = new HashMap<String, BaseStatistics>();
 	}
 	
+	/**
+	 * Creates a new statistics object, with an empty cache, that obtains recorded statistics from the
+	 * given catalog.
+	 * 
+	 * @param catalog The catalog holding the statistics of past executions.
+	 */
+	public DataStatistics(StatisticsCatalog catalog)
+	{
+		this();
+		this.catalog = catalog;
+	}
+	
 	// --------------------------------------------------------------------------------------------
 	
 	/**
@@ -70,4 +94,51 @@ public class DataStatistics
 			this.baseStatisticsCache.put(identifyer, statistics);
 		}
 	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Sets the catalog from which the statistics of past executions are obtained.
+	 * 
+	 * @param catalog The catalog holding the statistics of past executions, or null, to not use recorded statistics.
+	 */
+	public void setStatisticsCatalog(StatisticsCatalog catalog)
+	{
+		this.catalog = catalog;
+	}
+	
+	/**
+	 * Gets the catalog from which the statistics of past executions are obtained.
+	 * 
+	 * @return The catalog holding the statistics of past executions, or null, if none is attached.
+	 */
+	public StatisticsCatalog getStatisticsCatalog()
+	{
+		return this.catalog;
+	}
+	
+	/**
+	 * Gets the statistics that were recorded for the given contract during the latest complete past execution.
+	 * The statistics are not cached, such that each compilation sees the latest execution.
+	 * 
+	 * @param contract The contract to get the recorded statistics for.
+	 * @return The recorded statistics, or null, if no statistics were recorded or no catalog is attached.
+	 */
+	public TaskStatistics getRecordedStatistics(Contract contract)
+	{
+		final StatisticsCatalog catalog = this.catalog;
+		if (catalog == null) {
+			return null;
+		}
+		
+		try {
+			return catalog.load(StatisticsCatalog.getContractKey(contract));
+		}
+		catch (IOException ioex) {
+			if (LOG.isWarnEnabled())
+				LOG.warn("Could not load the recorded statistics for '" + contract.getName() + "': " +
+					ioex.getMessage());
+			return null;
+		}
+	}
 }
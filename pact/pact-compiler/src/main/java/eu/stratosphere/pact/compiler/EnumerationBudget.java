@@ -0,0 +1,153 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.util.List;
+
+import eu.stratosphere.pact.compiler.plan.OptimizerNode;
+
+/**
+ * The budget that limits the enumeration of alternative plans. The budget has three parts:
+ * <ul>
+ * <li>A cost bound, which is the cost of a complete plan that has been found before. Because the cumulative
+ * costs of a plan are never lower than the ones of its sub-plans, no sub-plan that is more expensive than
+ * the bound can be part of the optimal plan.</li>
+ * <li>A limit for the number of candidate plans. Once the enumeration has considered more candidates than
+ * the limit, it turns greedy. Counting candidates rather than measuring time keeps the chosen plan independent
+ * of the speed of the machine that compiles it.</li>
+ * <li>A greedy mode, in which each operator keeps only its cheapest alternative, rather than the cheapest
+ * alternative for each set of interesting properties.</li>
+ * </ul>
+ */
+public class EnumerationBudget {
+	
+	private static final Costs ZERO_COSTS = new Costs(0, 0);
+	
+	private Costs costBound; // the costs of the best complete plan known so far
+
+	private long remainingCandidates; // the number of candidates to consider before turning greedy, -1 for no limit
+
+	private boolean greedy; // flag indicating whether only the cheapest alternatives are kept
+
+	/**
+	 * Creates a budget that starts in greedy mode and has no cost bound.
+	 */
+	public EnumerationBudget() {
+		this.greedy = true;
+		this.remainingCandidates = -1;
+	}
+
+	/**
+	 * Starts the exhaustive enumeration. The enumeration turns greedy after the given number of candidate
+	 * plans has been considered.
+	 * 
+	 * @param maxCandidates
+	 *        The maximal number of candidate plans. A value of zero or less means no limit.
+	 */
+	public void startExhaustiveEnumeration(int maxCandidates) {
+		this.greedy = false;
+		this.remainingCandidates = maxCandidates > 0 ? maxCandidates : -1;
+	}
+
+	/**
+	 * Charges the given number of candidate plans to the budget. If the budget is exhausted by them, the
+	 * enumeration turns greedy.
+	 * 
+	 * @param numCandidates
+	 *        The number of candidate plans that an operator considers.
+	 */
+	public void chargeCandidates(int numCandidates) {
+		if (this.greedy || this.remainingCandidates == -1) {
+			return;
+		}
+		
+		this.remainingCandidates -= numCandidates;
+		if (this.remainingCandidates < 0) {
+			this.greedy = true;
+			if (PactCompiler.LOG.isWarnEnabled()) {
+				PactCompiler.LOG.warn("Plan enumeration exceeded its maximal number of candidate plans. " +
+					"Choosing the cheapest alternative for the remaining operators.");
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the enumeration is greedy, either because it was started in greedy mode, or because
+	 * the maximal number of candidate plans has been exceeded.
+	 * 
+	 * @return True, if only the cheapest alternative should be kept, false otherwise.
+	 */
+	public boolean isGreedy() {
+		return this.greedy;
+	}
+
+	/**
+	 * Gets the cost bound, which is the costs of the cheapest complete plan known so far.
+	 * 
+	 * @return The cost bound, or null, if no complete plan is known.
+	 */
+	public Costs getCostBound() {
+		return this.costBound;
+	}
+
+	/**
+	 * Sets the cost bound to the costs of the cheapest of the given complete plans.
+	 * 
+	 * @param completePlans
+	 *        The complete plans.
+	 */
+	public void setCostBound(List<? extends OptimizerNode> completePlans) {
+		for (OptimizerNode plan : completePlans) {
+			final Costs costs = plan.getCumulativeCosts();
+			if (costs != null && (this.costBound == null || this.costBound.compareTo(costs) > 0)) {
+				this.costBound = costs;
+			}
+		}
+	}
+
+	/**
+	 * Removes all plans whose costs are known to be higher than the cost bound. If all plans exceed the bound,
+	 * which happens only if the bound stems from a plan that is not comparable, none of them is removed.
+	 * 
+	 * @param plans
+	 *        The plans to prune.
+	 */
+	public <T extends OptimizerNode> void pruneAboveCostBound(List<T> plans) {
+		if (this.costBound == null) {
+			return;
+		}
+
+		int numBelow = 0;
+		for (int i = 0; i < plans.size(); i++) {
+			if (!isAboveCostBound(plans.get(i))) {
+				numBelow++;
+			}
+		}
+		
+		if (numBelow > 0 && numBelow < plans.size()) {
+			for (int i = plans.size() - 1; i >= 0; i--) {
+				if (isAboveCostBound(plans.get(i))) {
+					plans.remove(i);
+				}
+			}
+		}
+	}
+
+	private boolean isAboveCostBound(OptimizerNode plan) {
+		final Costs costs = plan.getCumulativeCosts();
+		return costs != null && this.costBound.isOtherMoreThanDeltaAbove(costs, ZERO_COSTS);
+	}
+}
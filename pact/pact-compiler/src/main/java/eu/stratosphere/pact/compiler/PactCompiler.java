@@ -64,6 +64,8 @@ import eu.stratosphere.pact.compiler.plan.SingleInputNode;
 import eu.stratosphere.pact.compiler.plan.SinkJoiner;
 import eu.stratosphere.pact.compiler.plan.TwoInputNode;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
+import eu.stratosphere.pact.runtime.statistics.StatisticsCatalog;
+import eu.stratosphere.pact.runtime.statistics.TaskStatistics;
 
 /**
  * The optimizer that takes the user specified pact plan and creates an optimized plan that contains
@@ -127,6 +129,16 @@ public class PactCompiler {
 	 */
 	public static final String HINT_SHIP_STRATEGY_BROADCAST = "SHIP_BROADCAST";
 
+	/**
+	 * Value for the shipping strategy compiler hint that enforces a <b>skew-aware repartition</b> strategy on
+	 * both inputs of a match. The inputs are hash partitioned, but the heavy hitter keys, as determined from a
+	 * sample of both inputs, are spread over all partitions on one input and replicated to all partitions on
+	 * the other input. The hint is only valid for the shipping strategy of both inputs of a match.
+	 * 
+	 * @see #HINT_SHIP_STRATEGY
+	 */
+	public static final String HINT_SHIP_STRATEGY_SKEWED_REPARTITION = "SHIP_SKEWED_REPARTITION";
+
 	/**
 	 * Value for the shipping strategy compiler hint that enforces a <b>Forward</b> strategy on the
 	 * input channel, i.e. no redistribution of any kind.
@@ -163,6 +175,15 @@ public class PactCompiler {
 	 * @see #HINT_LOCAL_STRATEGY
 	 */
 	public static final String HINT_LOCAL_STRATEGY_COMBINING_SORT = "LOCAL_STRATEGY_COMBINING_SORT";
+
+	/**
+	 * Value for the local strategy compiler hint that enforces a <b>hash based</b> aggregation.
+	 * The records are held in a hash table and records with equal keys are merged in place by
+	 * the combine method. Only applicable to <i>Reduce</i> contracts with a combinable stub.
+	 *
+	 * @see #HINT_LOCAL_STRATEGY
+	 */
+	public static final String HINT_LOCAL_STRATEGY_HASH_AGGREGATE = "LOCAL_STRATEGY_HASH_AGGREGATE";
 	
 	/**
 	 * Value for the local strategy compiler hint that enforces a <b>sort merge based</b> local strategy on both
@@ -353,6 +374,16 @@ public class PactCompiler {
 	 */
 	private final int maxIntraNodeParallelism;
 
+	/**
+	 * The number of candidate plans after which the enumeration of alternative plans turns greedy.
+	 */
+	private final int maxEnumerationCandidates;
+
+	/**
+	 * Flag indicating whether the enumeration of plans with branches is bounded by the costs of a greedy plan.
+	 */
+	private final boolean boundEnumerationCosts;
+
 	// ------------------------------------------------------------------------
 	// Constructor & Setup
 	// ------------------------------------------------------------------------
@@ -434,11 +465,22 @@ public class PactCompiler {
 	 *        The address of the job manager that is queried for system characteristics.
 	 */
 	public PactCompiler(DataStatistics stats, CostEstimator estimator, InetSocketAddress jobManagerConnection) {
-		this.statistics = stats;
 		this.costEstimator = estimator;
 
 		Configuration config = GlobalConfiguration.getConfiguration();
 
+		// attach the catalog with the statistics of past executions, if one is configured
+		final String catalogPath = config.getString(PactConfigConstants.STATISTICS_CATALOG_PATH_KEY, null);
+		if (catalogPath != null) {
+			if (stats == null) {
+				stats = new DataStatistics();
+			}
+			if (stats.getStatisticsCatalog() == null) {
+				stats.setStatisticsCatalog(new StatisticsCatalog(catalogPath));
+			}
+		}
+		this.statistics = stats;
+
 		// determine the maximum number of instances to use
 		this.maxMachines = config.getInteger(PactConfigConstants.MAXIMUM_NUMBER_MACHINES_KEY,
 			PactConfigConstants.DEFAULT_MAX_NUMBER_MACHINES);
@@ -457,6 +499,12 @@ public class PactCompiler {
 		}
 		this.maxIntraNodeParallelism = maxInNodePar;
 
+		// determine the limits for the plan enumeration
+		this.maxEnumerationCandidates = config.getInteger(PactConfigConstants.COMPILER_ENUMERATION_MAX_CANDIDATES_KEY,
+			PactConfigConstants.DEFAULT_COMPILER_ENUMERATION_MAX_CANDIDATES);
+		this.boundEnumerationCosts = config.getBoolean(PactConfigConstants.COMPILER_ENUMERATION_COST_BOUND_KEY,
+			PactConfigConstants.DEFAULT_COMPILER_ENUMERATION_COST_BOUND);
+
 		// assign the connection to the job-manager
 		if (jobManagerConnection != null) {
 			this.jobManagerAddress = jobManagerConnection;
@@ -673,7 +721,21 @@ public class PactCompiler {
 			this.costEstimator);
 		rootNode.accept(propsVisitor);
 
-		// the final step is now to generate the actual plan alternatives
+		// the final step is now to generate the actual plan alternatives. the alternatives of plans with branches
+		// multiply at the nodes that join the branches. for those plans, a first, greedy enumeration finds a
+		// complete plan quickly. its costs bound the costs of the sub-plans in the second, exhaustive enumeration.
+		// plans without branches keep at most one alternative per interesting property and are enumerated only once.
+		// the exhaustive enumeration turns greedy as well, if it exceeds its number of candidate plans
+		final EnumerationBudget budget = new EnumerationBudget();
+		final EnumerationPreparer preparer = new EnumerationPreparer(budget);
+		rootNode.accept(preparer);
+		
+		if (this.boundEnumerationCosts && preparer.hasBranches()) {
+			budget.setCostBound(rootNode.getAlternativePlans(this.costEstimator));
+			rootNode.accept(new EnumerationPreparer(budget));
+		}
+		
+		budget.startExhaustiveEnumeration(this.maxEnumerationCandidates);
 		List<? extends OptimizerNode> bestPlan = rootNode.getAlternativePlans(this.costEstimator);
 
 		if (bestPlan.size() != 1) {
@@ -861,6 +923,14 @@ public class PactCompiler {
 			// now compute the output estimates
 			if (this.computeEstimates) {
 				n.computeOutputEstimates(this.statistics);
+				
+				// prefer what was observed when the contract was executed before
+				if (this.statistics != null && !(c instanceof GenericDataSource)) {
+					final TaskStatistics recorded = this.statistics.getRecordedStatistics(c);
+					if (recorded != null) {
+						n.applyRecordedStatistics(recorded);
+					}
+				}
 			}
 		}
 
@@ -925,6 +995,64 @@ public class PactCompiler {
 		}
 	};
 
+	/**
+	 * Utility class that prepares all nodes of a plan for an enumeration of the alternative plans. It assigns
+	 * the enumeration budget to the nodes and drops the alternatives cached by a previous enumeration.
+	 */
+	private static final class EnumerationPreparer implements Visitor<OptimizerNode> {
+		
+		private final Set<OptimizerNode> visitedNodes; // the nodes that have been prepared already
+		
+		private final EnumerationBudget budget; // the budget to assign to the nodes
+		
+		private boolean hasBranches; // flag indicating whether some node has multiple outputs
+
+		/**
+		 * Creates a new visitor that assigns the given budget to all nodes.
+		 * 
+		 * @param budget
+		 *        The enumeration budget.
+		 */
+		private EnumerationPreparer(EnumerationBudget budget) {
+			this.visitedNodes = new HashSet<OptimizerNode>();
+			this.budget = budget;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see
+		 * eu.stratosphere.pact.common.plan.Visitor#preVisit(eu.stratosphere.pact.common.plan.Visitable)
+		 */
+		@Override
+		public boolean preVisit(OptimizerNode node) {
+			if (!this.visitedNodes.add(node)) {
+				return false;
+			}
+			node.setEnumerationBudget(this.budget);
+			node.clearCachedPlans();
+			this.hasBranches |= node.isBranching();
+			return true;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see
+		 * eu.stratosphere.pact.common.plan.Visitor#postVisit(eu.stratosphere.pact.common.plan.Visitable)
+		 */
+		@Override
+		public void postVisit(OptimizerNode node) {
+		}
+
+		/**
+		 * Checks whether the visited plan has branches, i.e. nodes with multiple outputs.
+		 * 
+		 * @return True, if some visited node has multiple outputs, false otherwise.
+		 */
+		private boolean hasBranches() {
+			return this.hasBranches;
+		}
+	}
+
 	/**
 	 * Utility class that traverses a plan to connect all nodes.
 	 */
@@ -988,6 +1116,8 @@ public class PactCompiler {
 
 		private final List<DataSinkNode> sinks; // all data sink nodes in the optimizer plan
 
+		private final List<PactConnection> sampledPartitionings; // all connections with a sampled partitioning
+
 		private int memoryConsumers; // a counter of all memory consumers
 		
 		private int memoryPerInstance; // the amount of memory per instance
@@ -999,6 +1129,7 @@ public class PactCompiler {
 			this.allNodes = new HashSet<OptimizerNode>();
 			this.sources = new ArrayList<DataSourceNode>();
 			this.sinks = new ArrayList<DataSinkNode>();
+			this.sampledPartitionings = new ArrayList<PactConnection>();
 		}
 
 		private OptimizedPlan createFinalPlan(List<DataSinkNode> sinks, String jobName, int memoryPerInstance)
@@ -1030,6 +1161,11 @@ public class PactCompiler {
 									node.getPactContract().getName());
 					}
 				}
+				
+				// the partitioning tasks of the sampled partitionings are consumers as well
+				for (PactConnection conn : this.sampledPartitionings) {
+					conn.setSampledPartitionMemory(memoryPerTask);
+				}
 			}
 
 			return new OptimizedPlan(this.sources, this.sinks, this.allNodes, jobName);
@@ -1055,6 +1191,10 @@ public class PactCompiler {
 						// do nothing
 						break;
 					case TEMP_SENDER_SIDE:
+						// the partitioning task of a sampled partitioning materializes the data already
+						if (conn.isSampledPartitioning()) {
+							break;
+						}
 						// reduce available memory
 						this.memoryPerInstance -= PactCompiler.DEFAULT_TEMP_TASK_MEMORY * 
 													conn.getSourcePact().getDegreeOfParallelism();
@@ -1070,15 +1210,11 @@ public class PactCompiler {
 			}
 			
 			for (PactConnection conn : visitable.getOutConns()) {
-				if(conn.getShipStrategy().type() == ShipStrategyType.PARTITION_RANGE) {
-					// One memory consumer for the histogram
+				if (conn.isSampledPartitioning()) {
+					// one memory consumer for the partitioning task, which runs next to this node and
+					// holds the data back until the sample is evaluated
 					this.memoryConsumers += visitable.getInstancesPerMachine();
-					//Reduce available memory because of temp task to avoid spilling
-					this.memoryPerInstance -= PactCompiler.DEFAULT_TEMP_TASK_MEMORY *
-					conn.getSourcePact().getDegreeOfParallelism();
-					//TODO: is this correct reducing memory per INSTANCE by multiplying required
-					//memory * the TOTAL DoP?
-					LOG.debug("Memory reduced to "+this.memoryPerInstance+ " due to TempTask");
+					this.sampledPartitionings.add(conn);
 				}
 			}
 
@@ -1203,6 +1339,7 @@ public class PactCompiler {
 					(
 					conn.getShipStrategy().type() == ShipStrategyType.BROADCAST ||
 					conn.getShipStrategy().type() == ShipStrategyType.PARTITION_HASH || 
+					conn.getShipStrategy().type() == ShipStrategyType.PARTITION_SKEWED_HASH || 
 					conn.getShipStrategy().type() == ShipStrategyType.PARTITION_RANGE || 
 					conn.getShipStrategy().type() == ShipStrategyType.SFR
 					)
@@ -32,6 +32,12 @@ import eu.stratosphere.pact.compiler.plan.PactConnection;
  * @author Stephan Ewen (stephan.ewen@tu-berlin.de)
  */
 public class FixedSizeClusterCostEstimator extends CostEstimator {
+	
+	/**
+	 * The size (in bytes) up to which we assume that the aggregated data of one parallel instance
+	 * fits into the hash table of a hash aggregation.
+	 */
+	public static final long HASH_AGGREGATION_MAX_SIZE_PER_INSTANCE = 32 * 1024 * 1024;
 
 	/**
 	 * Creates a new cost estimator that assumes four nodes, unless
@@ -142,6 +148,34 @@ public class FixedSizeClusterCostEstimator extends CostEstimator {
 		costs.setSecondaryStorageCost(s < 0 ? -1 : 2 * s);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getLocalHashAggregationCost(
+	 * 	eu.stratosphere.pact.compiler.plan.OptimizerNode, 
+	 * 	eu.stratosphere.pact.compiler.plan.PactConnection, 
+	 * 	eu.stratosphere.pact.compiler.Costs)
+	 */
+	@Override
+	public void getLocalHashAggregationCost(OptimizerNode node, PactConnection input, Costs costs) {
+		costs.setNetworkCost(0);
+
+		long s = input.getSourcePact().getEstimatedOutputSize() * input.getReplicationFactor();
+		long aggregated = node.getEstimatedOutputSize();
+		if (s < 0 || aggregated < 0) {
+			costs.setSecondaryStorageCost(-1);
+			return;
+		}
+		
+		int parallelism = node.getDegreeOfParallelism();
+		if (parallelism < 1) {
+			parallelism = 1;
+		}
+		
+		// if the aggregated data fits into the table, no I/O happens. otherwise, the input
+		// is partitioned to disk and read back once, so we assume 2 I/O operations per block
+		costs.setSecondaryStorageCost(aggregated / parallelism <= HASH_AGGREGATION_MAX_SIZE_PER_INSTANCE ? 0 : 2 * s);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see eu.stratosphere.pact.compiler.costs.CostEstimator#getLocalDoubleSortMergeCost(
@@ -231,6 +231,10 @@ public class JSONGenerator implements Visitor<OptimizerNode> {
 						shipStrategy = "Partition on "+((PartitionShipStrategy)conn.getShipStrategy()).getPartitionFields();
 						channelType = "network";
 						break;
+					case PARTITION_SKEWED_HASH:
+						shipStrategy = "Partition (skew-aware) on "+((PartitionShipStrategy)conn.getShipStrategy()).getPartitionFields();
+						channelType = "network";
+						break;
 					case PARTITION_RANGE:
 						shipStrategy = "Partition (range) on "+((PartitionShipStrategy)conn.getShipStrategy()).getPartitionFields();
 						channelType = "network";
@@ -320,6 +324,9 @@ public class JSONGenerator implements Visitor<OptimizerNode> {
 			case COMBININGSORT:
 				locString = "Sort with Combiner";
 				break;
+			case HASH_AGGREGATE:
+				locString = "Hash Aggregation";
+				break;
 			case SORT_SELF_NESTEDLOOP:
 				locString = "Sort Self-Nested-Loops";
 				break;
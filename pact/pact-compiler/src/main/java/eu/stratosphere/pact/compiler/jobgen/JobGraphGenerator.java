@@ -26,6 +26,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
 import eu.stratosphere.nephele.io.DistributionPattern;
 import eu.stratosphere.nephele.io.channels.ChannelType;
 import eu.stratosphere.nephele.io.compression.CompressionLevel;
@@ -51,6 +52,7 @@ import eu.stratosphere.pact.common.contract.ReduceContract;
 import eu.stratosphere.pact.common.plan.Visitor;
 import eu.stratosphere.pact.common.type.Key;
 import eu.stratosphere.pact.common.util.FieldList;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
 import eu.stratosphere.pact.compiler.CompilerException;
 import eu.stratosphere.pact.compiler.PactCompiler;
 import eu.stratosphere.pact.compiler.plan.CoGroupNode;
@@ -62,20 +64,27 @@ import eu.stratosphere.pact.compiler.plan.MatchNode;
 import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
 import eu.stratosphere.pact.compiler.plan.OptimizerNode;
 import eu.stratosphere.pact.compiler.plan.PactConnection;
+import eu.stratosphere.pact.compiler.plan.PactConnection.TempMode;
 import eu.stratosphere.pact.compiler.plan.ReduceNode;
 import eu.stratosphere.pact.compiler.plan.UnionNode;
 import eu.stratosphere.pact.runtime.plugable.PactRecordComparatorFactory;
+import eu.stratosphere.pact.runtime.shipping.SampledDataDistribution;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.PartitionShipStrategy;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
+import eu.stratosphere.pact.runtime.statistics.StatisticsCatalog;
 import eu.stratosphere.pact.runtime.task.CoGroupDriver;
 import eu.stratosphere.pact.runtime.task.CombineDriver;
 import eu.stratosphere.pact.runtime.task.CrossDriver;
 import eu.stratosphere.pact.runtime.task.DataSinkTask;
 import eu.stratosphere.pact.runtime.task.DataSourceTask;
+import eu.stratosphere.pact.runtime.task.HeavyHitterDriver;
+import eu.stratosphere.pact.runtime.task.KeySampleDriver;
 import eu.stratosphere.pact.runtime.task.MapDriver;
 import eu.stratosphere.pact.runtime.task.MatchDriver;
+import eu.stratosphere.pact.runtime.task.RangeBoundaryDriver;
 import eu.stratosphere.pact.runtime.task.ReduceDriver;
 import eu.stratosphere.pact.runtime.task.RegularPactTask;
+import eu.stratosphere.pact.runtime.task.SampledPartitionTask;
 import eu.stratosphere.pact.runtime.task.TempDriver;
 import eu.stratosphere.pact.runtime.task.chaining.ChainedCombineDriver;
 import eu.stratosphere.pact.runtime.task.chaining.ChainedDriver;
@@ -98,6 +107,10 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 	
 	private static final int DEFAULT_MERGE_FACTOR = 64; // the number of streams to merge at once
 	
+	private static final int SAMPLES_PER_PARTITION = 128; // the number of sampled keys per target partition
+	
+	private static final int MIN_SAMPLED_SAMPLE_SIZE = 100; // the minimal number of keys each producer samples
+	
 	// ------------------------------------------------------------------------
 
 	private JobGraph jobGraph; // the job that is currently built
@@ -109,9 +122,15 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 	private List<TaskInChain> chainedTasksInSequence;
 	
 	private List<AbstractJobVertex> auxVertices; // auxiliary vertices which are added during job graph generation
+	
+	private Map<OptimizerNode, JobTaskVertex> heavyHitterVertices; // the heavy hitter vertices of skew-aware matches
 
 	private AbstractJobVertex maxDegreeVertex; // the vertex with the highest degree of parallelism
 	
+	private String statisticsCatalogPath; // the path of the catalog the tasks record their statistics in, if any
+	
+	private int sortParallelism; // the number of threads that sort a full sort buffer
+	
 	// ------------------------------------------------------------------------
 
 	/**
@@ -136,7 +155,15 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		this.chainedTasks = new HashMap<OptimizerNode, TaskInChain>();
 		this.chainedTasksInSequence = new ArrayList<TaskInChain>();
 		this.auxVertices = new ArrayList<AbstractJobVertex>();
+		this.heavyHitterVertices = new HashMap<OptimizerNode, JobTaskVertex>();
 		this.maxDegreeVertex = null;
+		this.statisticsCatalogPath = GlobalConfiguration.getString(PactConfigConstants.STATISTICS_CATALOG_PATH_KEY, null);
+		this.sortParallelism = GlobalConfiguration.getInteger(PactConfigConstants.SORT_PARALLELISM_KEY,
+			PactConfigConstants.DEFAULT_SORT_PARALLELISM);
+		if (this.sortParallelism < 1) {
+			LOG.error("Invalid sort parallelism: " + this.sortParallelism + ". Ignoring parameter.");
+			this.sortParallelism = PactConfigConstants.DEFAULT_SORT_PARALLELISM;
+		}
 		
 		// set Nephele JobGraph config
 		pactPlan.getPlanConfiguration().extractNepheleConfiguration(this.jobGraph.getJobConfiguration());
@@ -182,6 +209,7 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		this.chainedTasks = null;
 		this.chainedTasksInSequence = null;
 		this.auxVertices = null;
+		this.heavyHitterVertices = null;
 		this.jobGraph = null;
 
 		// return job graph
@@ -266,6 +294,16 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 				vertex.setNumberOfSubtasksPerInstance(node.getInstancesPerMachine());
 			}
 	
+			// have the task record its statistics for the compilation of later executions. data sources
+			// are described by the input format statistics, combiners share the contract with their reducer.
+			if (this.statisticsCatalogPath != null && !(node instanceof DataSourceNode) &&
+					!(node instanceof CombinerNode))
+			{
+				final TaskConfig config = new TaskConfig(vertex.getConfiguration());
+				config.setStatisticsKey(StatisticsCatalog.getContractKey(node.getPactContract()));
+				config.setStatisticsCatalogPath(this.statisticsCatalogPath);
+			}
+	
 			// store in the map
 			this.vertices.put(node, vertex);
 		}
@@ -362,6 +400,7 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 						break;
 					case PARTITION_LOCAL_HASH:
 					case PARTITION_HASH:
+					case PARTITION_SKEWED_HASH:
 					case PARTITION_RANGE:
 						connectWithPartitionStrategy(inConn, inputIndex, outputVertex, outputVertexConfig, inputVertex, inputVertexConfig);
 						break;
@@ -479,8 +518,9 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		
 		combineConfig.setStubClass(combineNode.getPactContract().getUserCodeClass());
 
-		// we have currently only one strategy for combiners
-		combineConfig.setLocalStrategy(LocalStrategy.COMBININGSORT);
+		// the combiner follows the local strategy of its reducer
+		combineConfig.setLocalStrategy(combineNode.getLocalStrategy() == LocalStrategy.HASH_AGGREGATE ?
+			LocalStrategy.HASH_AGGREGATE : LocalStrategy.COMBININGSORT);
 		
 		final Ordering secondaryOrder = combineNode.getPactContract().getGroupOrder();
 		if (secondaryOrder == null) {
@@ -539,9 +579,14 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		switch (reduceNode.getLocalStrategy()) {
 		case SORT:
 			reduceConfig.setLocalStrategy(LocalStrategy.SORT);
+			reduceConfig.setSortParallelism(this.sortParallelism);
 			break;
 		case COMBININGSORT:
 			reduceConfig.setLocalStrategy(LocalStrategy.COMBININGSORT);
+			reduceConfig.setSortParallelism(this.sortParallelism);
+			break;
+		case HASH_AGGREGATE:
+			reduceConfig.setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
 			break;
 		case NONE:
 			reduceConfig.setLocalStrategy(LocalStrategy.NONE);
@@ -739,12 +784,15 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		switch (coGroupNode.getLocalStrategy()) {
 		case SORT_BOTH_MERGE:
 			coGroupConfig.setLocalStrategy(LocalStrategy.SORT_BOTH_MERGE);
+			coGroupConfig.setSortParallelism(this.sortParallelism);
 			break;
 		case SORT_FIRST_MERGE:
 			coGroupConfig.setLocalStrategy(LocalStrategy.SORT_FIRST_MERGE);
+			coGroupConfig.setSortParallelism(this.sortParallelism);
 			break;
 		case SORT_SECOND_MERGE:
 			coGroupConfig.setLocalStrategy(LocalStrategy.SORT_SECOND_MERGE);
+			coGroupConfig.setSortParallelism(this.sortParallelism);
 			break;
 		case MERGE:
 			coGroupConfig.setLocalStrategy(LocalStrategy.MERGE);
@@ -827,6 +875,7 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 		
 		if (sNode.getLocalStrategy() == LocalStrategy.SORT) {
 			assignMemory(sinkConfig, sinkNode.getMemoryPerTask());
+			sinkConfig.setSortParallelism(this.sortParallelism);
 			
 			PactRecordComparatorFactory.writeComparatorSetupToConfig(sinkConfig.getConfigForInputParameters(0),
 				sNode.getPactContract().getLocalOrder().getFieldPositions(),
@@ -878,6 +927,117 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 
 		return tempVertex;
 	}
+	
+	/**
+	 * Generates the vertices that partition the output of a vertex by information that is determined from a sample
+	 * of the data. This is the case for a range partitioning for which no data distribution is known and for a
+	 * skew-aware hash partitioning. The output is forwarded both to a sampling vertex and to a partitioning vertex.
+	 * For a range partitioning, the samples of all producers are combined by a single boundary vertex, which
+	 * broadcasts the range boundaries to the partitioning vertex. For a skew-aware hash partitioning, the samples
+	 * of both inputs of the match are combined by a single heavy hitter vertex, which broadcasts the heavy hitters
+	 * to the partitioning vertices of both inputs. The partitioning vertex materializes the data until it has
+	 * received that information.
+	 * 
+	 * @param connection The partitioning connection.
+	 * @param inputNumber The input of the target that the connection leads to, starting at 1.
+	 * @param outputVertex The vertex whose output is partitioned.
+	 * @param outputConfig The configuration of the task producing the output.
+	 * @param keyPositions The positions of the partitioning keys.
+	 * @param keyTypes The types of the partitioning keys.
+	 * @param keyDirections The sort directions of the partitioning keys.
+	 * @return The partitioning vertex, whose first output needs to be connected to the receiver.
+	 * @throws JobGraphDefinitionException
+	 */
+	private JobTaskVertex generateSampledPartitionVertices(PactConnection connection, int inputNumber,
+			final AbstractJobVertex outputVertex, final TaskConfig outputConfig,
+			int[] keyPositions, Class<? extends Key>[] keyTypes, boolean[] keyDirections)
+	throws JobGraphDefinitionException
+	{
+		final int sourceDOP = connection.getSourcePact().getDegreeOfParallelism();
+		final int sourceIPM = connection.getSourcePact().getInstancesPerMachine();
+		final int targetDOP = connection.getTargetPact().getDegreeOfParallelism();
+		final boolean range = connection.getShipStrategy().type() == ShipStrategyType.PARTITION_RANGE;
+		final String name = range ? "Range partition" : "Skewed hash partition";
+		
+		// the partitioning vertex runs next to the producer
+		final JobTaskVertex partitionVertex = new JobTaskVertex(name + " - partitioning", this.jobGraph);
+		final TaskConfig partitionConfig = new TaskConfig(partitionVertex.getConfiguration());
+		partitionVertex.setTaskClass(SampledPartitionTask.class);
+		partitionVertex.setNumberOfSubtasks(sourceDOP);
+		partitionVertex.setNumberOfSubtasksPerInstance(sourceIPM);
+		partitionVertex.setVertexToShareInstancesWith(outputVertex);
+		assignMemory(partitionConfig, connection.getSampledPartitionMemory());
+		if (!range) {
+			partitionConfig.setSkewedPartitionSide(inputNumber - 1);
+		}
+		
+		// the sampling vertex runs next to the producer as well
+		final JobTaskVertex sampleVertex = new JobTaskVertex(name + " - sampling", this.jobGraph);
+		final TaskConfig sampleConfig = new TaskConfig(sampleVertex.getConfiguration());
+		sampleVertex.setTaskClass(RegularPactTask.class);
+		sampleVertex.setNumberOfSubtasks(sourceDOP);
+		sampleVertex.setNumberOfSubtasksPerInstance(sourceIPM);
+		sampleVertex.setVertexToShareInstancesWith(outputVertex);
+		sampleConfig.setDriver(KeySampleDriver.class);
+		sampleConfig.setStubClass(KeySampleDriver.NoOpStub.class);
+		sampleConfig.setPartitionSampleSize(Math.max(MIN_SAMPLED_SAMPLE_SIZE, SAMPLES_PER_PARTITION * targetDOP / sourceDOP));
+		PactRecordComparatorFactory.writeComparatorSetupToConfig(sampleConfig.getConfigForInputParameters(0),
+			keyPositions, keyTypes, keyDirections);
+		
+		// a single vertex combines the samples of all producers, for a match the one of both inputs
+		final JobTaskVertex combineVertex;
+		final TaskConfig combineConfig;
+		if (range) {
+			combineVertex = new JobTaskVertex(name + " - boundaries", this.jobGraph);
+			combineConfig = new TaskConfig(combineVertex.getConfiguration());
+			this.auxVertices.add(combineVertex);
+			combineVertex.setTaskClass(RegularPactTask.class);
+			combineVertex.setNumberOfSubtasks(1);
+			combineConfig.setDriver(RangeBoundaryDriver.class);
+			combineConfig.setStubClass(KeySampleDriver.NoOpStub.class);
+			combineConfig.setNumberOfSampledPartitions(targetDOP);
+		} else {
+			final JobTaskVertex existing = this.heavyHitterVertices.get(connection.getTargetPact());
+			if (existing == null) {
+				combineVertex = new JobTaskVertex(name + " - heavy hitters", this.jobGraph);
+				combineConfig = new TaskConfig(combineVertex.getConfiguration());
+				this.auxVertices.add(combineVertex);
+				this.heavyHitterVertices.put(connection.getTargetPact(), combineVertex);
+				combineVertex.setTaskClass(RegularPactTask.class);
+				combineVertex.setNumberOfSubtasks(1);
+				combineConfig.setDriver(HeavyHitterDriver.class);
+				combineConfig.setStubClass(KeySampleDriver.NoOpStub.class);
+				combineConfig.setNumberOfSampledPartitions(targetDOP);
+			} else {
+				combineVertex = existing;
+				combineConfig = new TaskConfig(combineVertex.getConfiguration());
+			}
+		}
+		PactRecordComparatorFactory.writeComparatorSetupToConfig(
+			combineConfig.getConfigForInputParameters(range ? 0 : inputNumber - 1), keyPositions, keyTypes, keyDirections);
+		
+		// the producer forwards its output to the partitioning vertex (data input) and the sampling vertex
+		outputVertex.connectTo(partitionVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+		outputConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+		partitionConfig.addInputToGroup(1);
+		
+		outputVertex.connectTo(sampleVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+		outputConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+		sampleConfig.addInputToGroup(1);
+		
+		// the first input of the match is connected completely before the second one, so the samples of the
+		// inputs arrive at the heavy hitter vertex through separate groups of gates in the right order
+		sampleVertex.connectTo(combineVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
+		sampleConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+		combineConfig.addInputToGroup(range ? 1 : inputNumber);
+		
+		// the boundaries or heavy hitters are broadcast to all partitioning vertices (second input)
+		combineVertex.connectTo(partitionVertex, ChannelType.NETWORK, CompressionLevel.NO_COMPRESSION, DistributionPattern.BIPARTITE);
+		combineConfig.addOutputShipStrategy(ShipStrategyType.BROADCAST);
+		partitionConfig.addInputToGroup(2);
+		
+		return partitionVertex;
+	}
 
 	// ------------------------------------------------------------------------
 	// Connecting Vertices
@@ -1223,6 +1383,7 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 			break;
 		case PARTITION_RANGE:
 		case PARTITION_HASH:
+		case PARTITION_SKEWED_HASH:
 		case BROADCAST:
 			channelType = ChannelType.NETWORK;
 			distributionPattern = DistributionPattern.BIPARTITE;
@@ -1294,11 +1455,40 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 			keyDirections = null;
 		}
 
+		// a range partitioning without a given data distribution determines the boundaries from a sample,
+		// a skew-aware hash partitioning determines the heavy hitters from a sample
+		final DataDistribution distribution = connection.getDataDistribution();
+		final boolean sampleRanges = connection.getShipStrategy().type() == ShipStrategyType.PARTITION_RANGE &&
+				connection.isSampledPartitioning();
+		final boolean sampleSkew = connection.getShipStrategy().type() == ShipStrategyType.PARTITION_SKEWED_HASH &&
+				connection.isSampledPartitioning();
+		
+		final AbstractJobVertex senderVertex;
+		final TaskConfig senderConfig;
+		TempMode tempMode = connection.getTempMode();
+		
+		if (sampleRanges || sampleSkew) {
+			if (keyPositions == null || keyTypes == null || keyPositions.length == 0) {
+				throw new CompilerException("Sampled partitioning requires the partitioning keys to be known.");
+			}
+			senderVertex = generateSampledPartitionVertices(connection, inputNumber, outputVertex, outputConfig,
+				keyPositions, keyTypes, keyDirections);
+			senderConfig = new TaskConfig(senderVertex.getConfiguration());
+			
+			// the partitioning vertex materializes the data already
+			if (tempMode == TempMode.TEMP_SENDER_SIDE) {
+				tempMode = TempMode.NONE;
+			}
+		} else {
+			senderVertex = outputVertex;
+			senderConfig = outputConfig;
+		}
+
 		final TaskConfig configForOutputShipStrategy;
-		switch (connection.getTempMode()) {
+		switch (tempMode) {
 		case NONE:
-			outputVertex.connectTo(inputVertex, channelType, CompressionLevel.NO_COMPRESSION, distributionPattern);
-			configForOutputShipStrategy = outputConfig;
+			senderVertex.connectTo(inputVertex, channelType, CompressionLevel.NO_COMPRESSION, distributionPattern);
+			configForOutputShipStrategy = senderConfig;
 			inputConfig.addInputToGroup(inputNumber);
 			break;
 		case TEMP_SENDER_SIDE:
@@ -1313,16 +1503,16 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 				degreeOfParallelism, instancesPerMachine);
 
 			// insert tempVertex between outputVertex and inputVertex and connect them
-			outputVertex.connectTo(tempVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
+			senderVertex.connectTo(tempVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
 			tempVertex.connectTo(inputVertex, channelType, CompressionLevel.NO_COMPRESSION, distributionPattern);
 
-			tempVertex.setVertexToShareInstancesWith(outputVertex);
+			tempVertex.setVertexToShareInstancesWith(senderVertex);
 			
 			// get tempVertex config
 			tempConfig = new TaskConfig(tempVertex.getConfiguration());
 
 			// set strategies in task configs
-			outputConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
+			senderConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
 			configForOutputShipStrategy = tempConfig;
 			inputConfig.addInputToGroup(inputNumber);
 			tempConfig.addInputToGroup(1);
@@ -1340,7 +1530,7 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 				degreeOfParallelism, instancesPerMachine);
 
 			// insert tempVertex between outputVertex and inputVertex and connect them
-			outputVertex.connectTo(tempVertex, channelType, CompressionLevel.NO_COMPRESSION, distributionPattern);
+			senderVertex.connectTo(tempVertex, channelType, CompressionLevel.NO_COMPRESSION, distributionPattern);
 			tempVertex.connectTo(inputVertex, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, DistributionPattern.POINTWISE);
 
 			tempVertex.setVertexToShareInstancesWith(inputVertex);
@@ -1350,17 +1540,21 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 
 			// set strategies in task configs
 			tempConfig.addOutputShipStrategy(ShipStrategyType.FORWARD);
-			configForOutputShipStrategy = outputConfig;
+			configForOutputShipStrategy = senderConfig;
 			
 			inputConfig.addInputToGroup(inputNumber);
 			tempConfig.addInputToGroup(1);
 			break;
 		default:
-			throw new CompilerException("Invalid connection temp mode: " + connection.getTempMode());
+			throw new CompilerException("Invalid connection temp mode: " + tempMode);
 		}
 		
-		// set strategies in task configs
-		configForOutputShipStrategy.addOutputShipStrategy(connection.getShipStrategy().type());
+		// set strategies in task configs, a single partition has no heavy hitters to split
+		if (connection.getShipStrategy().type() == ShipStrategyType.PARTITION_SKEWED_HASH && !sampleSkew) {
+			configForOutputShipStrategy.addOutputShipStrategy(ShipStrategyType.PARTITION_HASH);
+		} else {
+			configForOutputShipStrategy.addOutputShipStrategy(connection.getShipStrategy().type());
+		}
 		if (! (keyPositions == null || keyTypes == null || keyPositions.length == 0 || keyTypes.length == 0))
 		{
 			final int outputNum = configForOutputShipStrategy.getNumOutputs() - 1;
@@ -1369,22 +1563,14 @@ public class JobGraphGenerator implements Visitor<OptimizerNode> {
 				keyPositions, keyTypes, keyDirections);
 		}
 		
-		if(connection.getSourcePact().getPactContract() instanceof MapContract) {
-			final MapContract mapContract = (MapContract) connection.getSourcePact().getPactContract();
-			final DataDistribution dataDistribution = mapContract.getDataDistribution();
-			if(dataDistribution != null) {
-				configForOutputShipStrategy.setOutputDataDistribution(dataDistribution);
-			}
-		}
-		
-		if (targetContract instanceof GenericDataSink) {
-			final DataDistribution distri = ((GenericDataSink) targetContract).getDataDistribution();
-			if (distri != null) {
-				configForOutputShipStrategy.setOutputDataDistribution(distri);
-			}
+		if (distribution != null) {
+			configForOutputShipStrategy.setOutputDataDistribution(distribution);
+		} else if (connection.getShipStrategy().type() == ShipStrategyType.PARTITION_RANGE && !sampleRanges) {
+			// a single range needs no boundaries
+			configForOutputShipStrategy.setOutputDataDistribution(new SampledDataDistribution());
 		}
 	}
-
+	
 	// ------------------------------------------------------------------------
 	// Assigning Memory
 	// ------------------------------------------------------------------------
@@ -86,7 +86,8 @@ public class CombinerNode extends OptimizerNode {
 	@Override
 	public int getMemoryConsumerCount() {
 		switch(this.localStrategy) {
-			case COMBININGSORT: return 1;
+			case COMBININGSORT:  return 1;
+			case HASH_AGGREGATE: return 1;
 			default:	        return 0;
 		}
 	}
@@ -43,8 +43,6 @@ import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
  */
 public class DataSourceNode extends OptimizerNode
 {
-	private List<OptimizerNode> cachedPlans; // the cache in case there are multiple outputs;
-	
 	private long inputSize; //the size of the input in bytes
 
 	/**
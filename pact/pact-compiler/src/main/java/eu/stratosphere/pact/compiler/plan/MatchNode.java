@@ -39,6 +39,7 @@ import eu.stratosphere.pact.runtime.shipping.ShipStrategy.BroadcastSS;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ForwardSS;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.PartitionHashSS;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.PartitionRangeSS;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategy.PartitionSkewedHashSS;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
 
@@ -481,6 +482,9 @@ public class MatchNode extends TwoInputNode {
 							ss1 = (partitioningIsOnSameSubkey(gp1.getPartitionedFields(), this.keySet2) && gp1.getPartitioning() == PartitionProperty.HASH_PARTITIONED) ? new ForwardSS()
 								: new PartitionHashSS(this.keySet1);
 							break;
+						case PARTITION_SKEWED_HASH:
+							ss1 = new PartitionSkewedHashSS(this.keySet1);
+							break;
 						case PARTITION_RANGE:
 							ss1 = (partitioningIsOnRightFields(gp1, 0) && gp1.getPartitioning() == PartitionProperty.RANGE_PARTITIONED) ? new ForwardSS()
 								: new PartitionRangeSS(this.keySet1);
@@ -526,6 +530,9 @@ public class MatchNode extends TwoInputNode {
 						ss2 = (partitioningIsOnSameSubkey(this.keySet1, gp2.getPartitionedFields()) && partitioningIsOnRightFields(gp2, 1) && gp2.getPartitioning() == PartitionProperty.HASH_PARTITIONED) ? new ForwardSS()
 							: new PartitionHashSS(this.keySet2);
 						break;
+					case PARTITION_SKEWED_HASH:
+						ss2 = new PartitionSkewedHashSS(this.keySet2);
+						break;
 					case PARTITION_RANGE:
 						ss2 = (partitioningIsOnRightFields(gp2, 1) && gp2.getPartitioning() == PartitionProperty.RANGE_PARTITIONED) ? new ForwardSS()
 							: new PartitionRangeSS(this.keySet2);
@@ -543,6 +550,14 @@ public class MatchNode extends TwoInputNode {
 						|| (ss1.type() != ShipStrategyType.BROADCAST && ss2.type() == ShipStrategyType.BROADCAST)) {
 						// the broadcast / not-broadcast combinations are legal
 						createLocalAlternatives(outputPlans, subPlan1, subPlan2, ss1, ss2, estimator);
+					} else if (ss1.type() == ShipStrategyType.PARTITION_SKEWED_HASH
+						|| ss2.type() == ShipStrategyType.PARTITION_SKEWED_HASH) {
+						// the skew-aware partitioning splits the heavy hitters consistently only if both inputs use it
+						if (ss1.type() == ss2.type()) {
+							createLocalAlternatives(outputPlans, subPlan1, subPlan2, ss1, ss2, estimator);
+						} else {
+							continue;
+						}
 					} else {
 						// they need to have an equal partitioning
 
@@ -42,10 +42,12 @@ import eu.stratosphere.pact.common.util.FieldSet;
 import eu.stratosphere.pact.compiler.CompilerException;
 import eu.stratosphere.pact.compiler.Costs;
 import eu.stratosphere.pact.compiler.DataStatistics;
+import eu.stratosphere.pact.compiler.EnumerationBudget;
 import eu.stratosphere.pact.compiler.GlobalProperties;
 import eu.stratosphere.pact.compiler.LocalProperties;
 import eu.stratosphere.pact.compiler.PartitionProperty;
 import eu.stratosphere.pact.compiler.costs.CostEstimator;
+import eu.stratosphere.pact.runtime.statistics.TaskStatistics;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
 
 /**
@@ -165,6 +167,10 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>
 
 	protected boolean pFlag = false; // flag for the internal pruning algorithm
 
+	protected List<OptimizerNode> cachedPlans; // a cache for the computed alternative plans
+
+	protected EnumerationBudget budget; // the budget that limits the enumeration of alternatives, may be null
+
 	// ------------------------------------------------------------------------
 	//                      Constructor / Setup
 	// ------------------------------------------------------------------------
@@ -512,6 +518,25 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>
 		this.localStrategy = strategy;
 	}
 
+	/**
+	 * Sets the budget that limits the enumeration of alternative plans for this node. The budget is only used
+	 * by the template nodes, which enumerate and prune the alternatives, not by the alternatives themselves.
+	 * 
+	 * @param budget
+	 *        The enumeration budget, or null, to enumerate all alternatives.
+	 */
+	public void setEnumerationBudget(EnumerationBudget budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Drops the cached alternative plans of this node, such that the next call to
+	 * {@link #getAlternativePlans(CostEstimator)} enumerates them again.
+	 */
+	public void clearCachedPlans() {
+		this.cachedPlans = null;
+	}
+
 	/**
 	 * Gets the properties that are interesting for this node to produce.
 	 * 
@@ -870,6 +895,48 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>
 	}
 	
 
+	/**
+	 * Overrides the estimates computed by {@link #computeOutputEstimates(DataStatistics)} with the statistics that
+	 * were recorded during a past execution of this node's contract. The recorded number of records and record width
+	 * replace the estimates. The recorded number of key groups is used as the number of distinct values for the
+	 * key fields that are kept constant, unless the compiler hints explicitly state the number of distinct values.
+	 * 
+	 * @param recorded The statistics recorded during a past execution.
+	 */
+	public void applyRecordedStatistics(TaskStatistics recorded) {
+		final long numRecords = recorded.getNumberOfRecords();
+		final float avgWidth = recorded.getAverageRecordWidth();
+		
+		if (avgWidth > 0) {
+			this.estimatedOutputSize = (numRecords * avgWidth >= 1) ? (long) (numRecords * avgWidth) : 1;
+		} else if (this.estimatedOutputSize != -1 && this.estimatedNumRecords > 0) {
+			// no width was sampled, keep the estimated width
+			this.estimatedOutputSize = (long) (((double) this.estimatedOutputSize) / this.estimatedNumRecords * numRecords);
+		}
+		this.estimatedNumRecords = numRecords;
+		
+		final CompilerHints hints = getPactContract().getCompilerHints();
+		final long numKeyGroups = recorded.getNumberOfKeyGroups();
+		if (numKeyGroups != TaskStatistics.UNKNOWN) {
+			for (int input = 0; input < getIncomingConnections().size(); input++) {
+				final int[] keyColumns = getConstantKeySet(input);
+				if (keyColumns != null) {
+					final FieldSet fieldSet = new FieldSet(keyColumns);
+					if (hints.getDistinctCounts().get(fieldSet) == null) {
+						this.estimatedCardinality.put(fieldSet, numKeyGroups);
+					}
+				}
+			}
+		}
+		
+		// check that the key-card is maximally as large as the number of rows
+		for (Entry<FieldSet, Long> cardinality : this.estimatedCardinality.entrySet()) {
+			if (cardinality.getValue() > this.estimatedNumRecords) {
+				cardinality.setValue(this.estimatedNumRecords);
+			}
+		}
+	}
+
 	/**
 	 * Takes the given list of plans that are candidates for this node in the final plan and retains for each distinct
 	 * set of interesting properties only the cheapest plan.
@@ -878,8 +945,15 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>
 	 *        The plans to prune.
 	 */
 	public <T extends OptimizerNode> void prunePlanAlternatives(List<T> plans) {
+		// drop the plans that cannot be part of the optimal plan, because they are more expensive than a
+		// complete plan
+		if (this.budget != null) {
+			this.budget.chargeCandidates(plans.size());
+			this.budget.pruneAboveCostBound(plans);
+		}
+		
 		// shortcut for the case that there is only one plan
-		if (plans.size() == 1) {
+		if (plans.size() <= 1) {
 			return;
 		}
 
@@ -932,6 +1006,19 @@ public abstract class OptimizerNode implements Visitable<OptimizerNode>
 	}
 
 	private final <T extends OptimizerNode> void prunePlansWithCommonBranchAlternatives(List<T> plans) {
+		// when enumerating greedily, keep only the overall cheapest plan
+		if (this.budget != null && this.budget.isGreedy()) {
+			T cheapest = null;
+			for (T candidate : plans) {
+				if (cheapest == null || (cheapest.getCumulativeCosts().compareTo(candidate.getCumulativeCosts()) > 0)) {
+					cheapest = candidate;
+				}
+			}
+			plans.clear();
+			plans.add(cheapest);
+			return;
+		}
+		
 		List<List<T>> toKeep = new ArrayList<List<T>>(this.intProps.size()); // for each interesting property, which plans
 		// are cheapest
 		for (int i = 0; i < this.intProps.size(); i++) {
@@ -20,6 +20,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
+import eu.stratosphere.pact.common.contract.Contract;
+import eu.stratosphere.pact.common.contract.DataDistribution;
+import eu.stratosphere.pact.common.contract.GenericDataSink;
+import eu.stratosphere.pact.common.contract.MapContract;
 import eu.stratosphere.pact.common.util.FieldList;
 import eu.stratosphere.pact.compiler.CompilerException;
 import eu.stratosphere.pact.compiler.GlobalProperties;
@@ -62,6 +66,8 @@ public class PactConnection {
 	
 	private int replicationFactor; // the factor by which the data that is shipped over this connection is replicated
 	
+	private int sampledPartitionMemory; // the memory per task of the sampled partitioning pre-pass, in MiBytes
+	
 	// private int[] scramblePartitionedFields = null; // The fields which are used for partitioning, this is only used if the partitioned fields
 									 // are not the key fields
 
@@ -149,6 +155,7 @@ public class PactConnection {
 		this.shipStrategy = template.shipStrategy;
 		this.replicationFactor = template.replicationFactor;
 		this.tempMode = template.tempMode;
+		this.sampledPartitionMemory = template.sampledPartitionMemory;
 
 		this.interestingProps = template.interestingProps;
 	}
@@ -300,6 +307,70 @@ public class PactConnection {
 		return this.replicationFactor;
 	}
 
+	/**
+	 * Gets the data distribution given for this connection, either by the sink it leads to or by the
+	 * map contract it originates from.
+	 * 
+	 * @return The data distribution, or null, if none is given.
+	 */
+	public DataDistribution getDataDistribution() {
+		final Contract targetContract = this.targetPact.getPactContract();
+		if (targetContract instanceof GenericDataSink) {
+			final DataDistribution distri = ((GenericDataSink) targetContract).getDataDistribution();
+			if (distri != null) {
+				return distri;
+			}
+		}
+		
+		final Contract sourceContract = this.sourcePact.getPactContract();
+		if (sourceContract instanceof MapContract) {
+			return ((MapContract) sourceContract).getDataDistribution();
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether the partitioning of this connection is determined from a sample of the data. That is the
+	 * case for a range partitioning without a given data distribution and for a skew-aware hash partitioning,
+	 * if the data is shipped to more than one partition. Such a connection gets a pre-pass with a partitioning
+	 * task that holds the data back until the sample is evaluated.
+	 * 
+	 * @return True, if the partitioning is determined from a sample, false otherwise.
+	 */
+	public boolean isSampledPartitioning() {
+		if (this.targetPact.getDegreeOfParallelism() <= 1) {
+			return false;
+		}
+		switch (this.shipStrategy.type()) {
+			case PARTITION_RANGE:
+				return getDataDistribution() == null;
+			case PARTITION_SKEWED_HASH:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Gets the memory dedicated to each task that holds back the data of a sampled partitioning.
+	 * 
+	 * @return The memory per partitioning task, in MiBytes.
+	 * @see #isSampledPartitioning()
+	 */
+	public int getSampledPartitionMemory() {
+		return this.sampledPartitionMemory;
+	}
+
+	/**
+	 * Sets the memory dedicated to each task that holds back the data of a sampled partitioning.
+	 * 
+	 * @param sampledPartitionMemory
+	 *        The memory per partitioning task, in MiBytes.
+	 */
+	public void setSampledPartitionMemory(int sampledPartitionMemory) {
+		this.sampledPartitionMemory = sampledPartitionMemory;
+	}
+
 	/**
 	 * Gets the global properties of the data after this connection.
 	 * 
@@ -377,6 +448,11 @@ public class PactConnection {
 			gp.setPartitioning(PartitionProperty.HASH_PARTITIONED, ((PartitionShipStrategy)shipMode).getPartitionFields());
 			gp.setOrdering(null);
 			break;
+		case PARTITION_SKEWED_HASH:
+			// the heavy hitters are spread across or replicated to all partitions, so the data is not
+			// partitioned by its key in a way that other operators could reuse
+			gp.reset();
+			break;
 		case FORWARD:
 			if (source.getDegreeOfParallelism() > target.getDegreeOfParallelism()) {
 				gp.setOrdering(null);
@@ -69,6 +69,11 @@ public class ReduceNode extends SingleInputNode {
 				setLocalStrategy(LocalStrategy.SORT);
 			} else if (PactCompiler.HINT_LOCAL_STRATEGY_COMBINING_SORT.equals(localStrategy)) {
 				setLocalStrategy(LocalStrategy.COMBININGSORT);
+			} else if (PactCompiler.HINT_LOCAL_STRATEGY_HASH_AGGREGATE.equals(localStrategy)) {
+				if (!isHashAggregationApplicable()) {
+					throw new CompilerException("Hash aggregation requires a combinable reduce stub without group order.");
+				}
+				setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
 			} else {
 				throw new CompilerException("Invalid local strategy hint for match contract: " + localStrategy);
 			}
@@ -162,6 +167,7 @@ public class ReduceNode extends SingleInputNode {
 		switch(this.localStrategy) {
 			case SORT:          return 1;
 			case COMBININGSORT: return 1;
+			case HASH_AGGREGATE: return 1;
 			case NONE:          return getPactContract().getGroupOrder() == null ? 0 : 1;
 			default:	        return 0;
 		}
@@ -286,13 +292,15 @@ public class ReduceNode extends SingleInputNode {
 			
 
 			LocalStrategy ls = getLocalStrategy();
+			boolean considerHashAggregation = false;
 
 			// see, whether we need a local strategy
 			if (localStrategyNeeded) {
 			
 				// we need one
 				if (ls != LocalStrategy.NONE) {
-					if (ls != LocalStrategy.COMBININGSORT && ls != LocalStrategy.SORT) {
+					if (ls != LocalStrategy.COMBININGSORT && ls != LocalStrategy.SORT
+							&& ls != LocalStrategy.HASH_AGGREGATE) {
 						// no valid plan possible
 						continue;
 					}
@@ -300,46 +308,95 @@ public class ReduceNode extends SingleInputNode {
 				// local strategy free to choose
 				else {
 					ls = isCombineable() ? LocalStrategy.COMBININGSORT : LocalStrategy.SORT;
+					considerHashAggregation = isHashAggregationApplicable();
 				}
 			}
 
-			// adapt the local properties
-			if (ls == LocalStrategy.COMBININGSORT || ls == LocalStrategy.SORT) {
-				Ordering ordering = new Ordering();
-				for (Integer index :keySet) {
-					ordering.appendOrdering(index, null, Order.ASCENDING);
+			outputPlans.add(createPlanAlternative(subPlan, ss, gp.createCopy(), lp.createCopy(), ls, estimator));
+			
+			if (considerHashAggregation) {
+				// the hash aggregation is only worth it if the aggregated data fits into memory, which means
+				// that it does not cause any I/O. otherwise, the sort based strategy is at least as good,
+				// because it additionally establishes an order
+				ReduceNode hashAlternative = createPlanAlternative(subPlan, ss, gp, lp, LocalStrategy.HASH_AGGREGATE,
+					estimator);
+				Costs hashCosts = new Costs();
+				estimator.getLocalHashAggregationCost(hashAlternative, hashAlternative.inConn, hashCosts);
+				if (hashCosts.getSecondaryStorageCost() == 0) {
+					outputPlans.add(hashAlternative);
 				}
-				lp.setOrdering(ordering);
-				lp.setGrouped(true, keySet);
 			}
+		}
+	}
+	
+	/**
+	 * Creates a costed copy of this node that uses the given strategies.
+	 * 
+	 * @param subPlan The predecessor of the alternative.
+	 * @param ss The ship strategy of the input.
+	 * @param gp The global properties after the connection.
+	 * @param lp The local properties after the connection.
+	 * @param ls The local strategy of the alternative.
+	 * @param estimator The cost estimator.
+	 * @return The costed plan alternative.
+	 */
+	private ReduceNode createPlanAlternative(OptimizerNode subPlan, ShipStrategy ss, GlobalProperties gp,
+			LocalProperties lp, LocalStrategy ls, CostEstimator estimator)
+	{
+		final FieldSet keySet = new FieldSet(this.keyList);
 
-			// ----------------------------------------------------------------
-			// see, if we have a combiner before shipping
-			
-			OptimizerNode reducePred = subPlan;
-			
-			if (isCombineable() && ss.type() != ShipStrategyType.FORWARD) {
-				// this node contains the estimates for the costs of the combiner,
-				// as well as the updated size and cardinality estimates
-
-				OptimizerNode combiner = new CombinerNode(getPactContract(), subPlan, this.combinerReducingFactor);
-				combiner.setDegreeOfParallelism(subPlan.getDegreeOfParallelism());
-				estimator.costOperator(combiner);
-				reducePred = combiner;
+		// adapt the local properties
+		if (ls == LocalStrategy.COMBININGSORT || ls == LocalStrategy.SORT) {
+			Ordering ordering = new Ordering();
+			for (Integer index :keySet) {
+				ordering.appendOrdering(index, null, Order.ASCENDING);
 			}
-			
-			ReduceNode n = new ReduceNode(this, reducePred, this.inConn, gp, lp);
-			n.inConn.setShipStrategy(ss);
-			n.setLocalStrategy(ls);
+			lp.setOrdering(ordering);
+			lp.setGrouped(true, keySet);
+		} else if (ls == LocalStrategy.HASH_AGGREGATE) {
+			// the hash table emits one record per key, but in no particular order
+			lp.setOrdering(null);
+			lp.setGrouped(true, keySet);
+		}
 
-			// compute, which of the properties survive, depending on the output contract
-			n.getGlobalProperties().filterByNodesConstantSet(this, 0);
-			n.getLocalProperties().filterByNodesConstantSet(this, 0);
+		// ----------------------------------------------------------------
+		// see, if we have a combiner before shipping
+		
+		OptimizerNode reducePred = subPlan;
+		
+		if (isCombineable() && ss.type() != ShipStrategyType.FORWARD) {
+			// this node contains the estimates for the costs of the combiner,
+			// as well as the updated size and cardinality estimates
+
+			OptimizerNode combiner = new CombinerNode(getPactContract(), subPlan, this.combinerReducingFactor);
+			combiner.setDegreeOfParallelism(subPlan.getDegreeOfParallelism());
+			if (ls == LocalStrategy.HASH_AGGREGATE) {
+				combiner.setLocalStrategy(LocalStrategy.HASH_AGGREGATE);
+			}
+			estimator.costOperator(combiner);
+			reducePred = combiner;
+		}
+		
+		ReduceNode n = new ReduceNode(this, reducePred, this.inConn, gp, lp);
+		n.inConn.setShipStrategy(ss);
+		n.setLocalStrategy(ls);
 
-			estimator.costOperator(n);
+		// compute, which of the properties survive, depending on the output contract
+		n.getGlobalProperties().filterByNodesConstantSet(this, 0);
+		n.getLocalProperties().filterByNodesConstantSet(this, 0);
 
-			outputPlans.add(n);		
-		}
+		estimator.costOperator(n);
+		return n;
+	}
+	
+	/**
+	 * Checks whether the reduce function may be evaluated through a hash aggregation, which
+	 * requires a combinable stub and no secondary order on the groups.
+	 * 
+	 * @return True, if a hash aggregation may be used, false otherwise.
+	 */
+	public boolean isHashAggregationApplicable() {
+		return isCombineable() && getPactContract().getGroupOrder() == null;
 	}
 	
 	/**
@@ -52,10 +52,6 @@ public abstract class SingleInputNode extends OptimizerNode {
 	
 	protected PactConnection inConn = null; // the input of the node
 	
-	// ------------- Optimizer Cache
-	
-	private List<OptimizerNode> cachedPlans; // a cache for the computed alternative plans
-
 	// ------------- Stub Annotations
 	
 	protected FieldSet constantSet; // set of fields that are left unchanged by the stub
@@ -40,6 +40,7 @@ import eu.stratosphere.pact.compiler.costs.CostEstimator;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.BroadcastSS;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ForwardSS;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.PartitionHashSS;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategy.PartitionSkewedHashSS;
 
 /**
  * A node in the optimizer plan that represents a PACT with a two different inputs, such as MATCH or CROSS.
@@ -49,8 +50,6 @@ import eu.stratosphere.pact.runtime.shipping.ShipStrategy.PartitionHashSS;
  */
 public abstract class TwoInputNode extends OptimizerNode
 {
-	private List<OptimizerNode> cachedPlans; // a cache for the computed alternative plans
-
 	protected PactConnection input1 = null; // The first input edge
 
 	protected PactConnection input2 = null; // The second input edge
@@ -286,6 +285,12 @@ public abstract class TwoInputNode extends OptimizerNode
 			} else if (PactCompiler.HINT_SHIP_STRATEGY_REPARTITION.equals(shipStrategy)) {
 				this.input1.setShipStrategy(new PartitionHashSS(this.keySet1));
 				this.input2.setShipStrategy(new PartitionHashSS(this.keySet2));
+			} else if (PactCompiler.HINT_SHIP_STRATEGY_SKEWED_REPARTITION.equals(shipStrategy)) {
+				if (getPactType() != PactType.Match) {
+					throw new CompilerException("The skew-aware repartitioning is only supported for the inputs of a match.");
+				}
+				this.input1.setShipStrategy(new PartitionSkewedHashSS(this.keySet1));
+				this.input2.setShipStrategy(new PartitionSkewedHashSS(this.keySet2));
 			} else {
 				throw new CompilerException("Unknown hint for shipping strategy: " + shipStrategy);
 			}
@@ -167,6 +167,10 @@ public class UnionNode extends OptimizerNode {
 	@Override
 	public List<? extends OptimizerNode> getAlternativePlans(
 			CostEstimator estimator) {
+		// check if we have a cached version
+		if (this.cachedPlans != null) {
+			return this.cachedPlans;
+		}
 		
 		List<OptimizerNode> alternatives = new LinkedList<OptimizerNode>();
 		Stack<OptimizerNode> newInputs = new Stack<OptimizerNode>();
@@ -184,6 +188,11 @@ public class UnionNode extends OptimizerNode {
 		// prune the plans
 		prunePlanAlternatives(alternatives);
 
+		// cache the result only if we have multiple outputs --> this function gets invoked multiple times
+		if (this.getOutConns() != null && this.getOutConns().size() > 1) {
+			this.cachedPlans = alternatives;
+		}
+
 		return alternatives;
 	}
 	
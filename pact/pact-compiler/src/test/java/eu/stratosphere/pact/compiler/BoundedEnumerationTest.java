@@ -0,0 +1,244 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.instance.HardwareDescription;
+import eu.stratosphere.nephele.instance.HardwareDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeDescription;
+import eu.stratosphere.nephele.instance.InstanceTypeDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.pact.common.contract.CoGroupContract;
+import eu.stratosphere.pact.common.contract.Contract;
+import eu.stratosphere.pact.common.contract.CrossContract;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.GenericDataSink;
+import eu.stratosphere.pact.common.contract.MapContract;
+import eu.stratosphere.pact.common.contract.MatchContract;
+import eu.stratosphere.pact.common.contract.ReduceContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+import eu.stratosphere.pact.compiler.costs.FixedSizeClusterCostEstimator;
+import eu.stratosphere.pact.compiler.jobgen.JobGraphGenerator;
+import eu.stratosphere.pact.compiler.plan.DataSinkNode;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+import eu.stratosphere.pact.compiler.plan.OptimizerNode;
+import eu.stratosphere.pact.compiler.plan.PactConnection;
+import eu.stratosphere.pact.compiler.util.DummyCoGroupStub;
+import eu.stratosphere.pact.compiler.util.DummyCrossStub;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyMatchStub;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.compiler.util.IdentityMap;
+import eu.stratosphere.pact.compiler.util.IdentityReduce;
+
+/**
+ * Tests that bounding the plan enumeration by the costs of a greedy plan does not change the chosen plan, and that
+ * the greedy fallback after the maximal number of candidate plans still produces a valid plan.
+ */
+public class BoundedEnumerationTest {
+
+	private static final String IN_FILE = "file:///test/file";
+
+	private static final String OUT_FILE_1 = "file:///test/output1";
+
+	private static final String OUT_FILE_2 = "file:///test/output2";
+
+	private static final int DEFAULT_PARALLELISM = 8;
+
+	private InstanceTypeDescription instanceType;
+
+	@Before
+	public void setup() {
+		InstanceType iType = InstanceTypeFactory.construct("standard", 6, 2, 4096, 100, 0);
+		HardwareDescription hDesc = HardwareDescriptionFactory.construct(2, 4096 * 1024 * 1024, 2000 * 1024 * 1024);
+		this.instanceType = InstanceTypeDescriptionFactory.construct(iType, hDesc, DEFAULT_PARALLELISM * 2);
+	}
+
+	@After
+	public void tearDown() {
+		// restore the defaults for the other tests running in this virtual machine
+		configureEnumeration(PactConfigConstants.DEFAULT_COMPILER_ENUMERATION_MAX_CANDIDATES,
+			PactConfigConstants.DEFAULT_COMPILER_ENUMERATION_COST_BOUND);
+	}
+
+	@Test
+	public void testCostBoundKeepsOptimalPlanOfBranchingSource() {
+		checkCostBoundKeepsOptimalPlan(createBranchingSourcePlan());
+	}
+
+	@Test
+	public void testCostBoundKeepsOptimalPlanWithMultipleSinks() {
+		checkCostBoundKeepsOptimalPlan(createMultipleSinksPlan());
+	}
+
+	@Test
+	public void testGreedyFallbackProducesValidPlan() {
+		configureEnumeration(0, false);
+		OptimizedPlan optimalPlan = compile(createMultipleSinksPlan());
+
+		// a single candidate exhausts the budget, so the enumeration turns greedy right away
+		configureEnumeration(1, true);
+		OptimizedPlan greedyPlan = compile(createMultipleSinksPlan());
+
+		Assert.assertEquals(optimalPlan.getAllNodes().size(), greedyPlan.getAllNodes().size());
+		Assert.assertTrue("The greedy plan is cheaper than the optimal plan.",
+			getCosts(greedyPlan).compareTo(getCosts(optimalPlan)) >= 0);
+
+		// compile the plan to verify that it is executable
+		new JobGraphGenerator().compileJobGraph(greedyPlan);
+	}
+
+	private void checkCostBoundKeepsOptimalPlan(Plan plan) {
+		configureEnumeration(0, false);
+		OptimizedPlan optimalPlan = compile(plan);
+
+		configureEnumeration(0, true);
+		OptimizedPlan boundedPlan = compile(plan);
+
+		Assert.assertEquals(getCosts(optimalPlan), getCosts(boundedPlan));
+
+		// both plans use the same strategies for all contracts
+		Map<Contract, OptimizerNode> boundedNodes = new HashMap<Contract, OptimizerNode>();
+		for (OptimizerNode node : boundedPlan.getAllNodes()) {
+			boundedNodes.put(node.getPactContract(), node);
+		}
+		Assert.assertEquals(optimalPlan.getAllNodes().size(), boundedPlan.getAllNodes().size());
+
+		for (OptimizerNode optimalNode : optimalPlan.getAllNodes()) {
+			OptimizerNode boundedNode = boundedNodes.get(optimalNode.getPactContract());
+			Assert.assertNotNull(boundedNode);
+			Assert.assertEquals(optimalNode.getLocalStrategy(), boundedNode.getLocalStrategy());
+
+			List<PactConnection> optimalInputs = optimalNode.getIncomingConnections();
+			List<PactConnection> boundedInputs = boundedNode.getIncomingConnections();
+			Assert.assertEquals(optimalInputs.size(), boundedInputs.size());
+			for (int i = 0; i < optimalInputs.size(); i++) {
+				Assert.assertEquals(optimalInputs.get(i).getShipStrategy().type(),
+					boundedInputs.get(i).getShipStrategy().type());
+			}
+		}
+
+		new JobGraphGenerator().compileJobGraph(boundedPlan);
+	}
+
+	private OptimizedPlan compile(Plan plan) {
+		try {
+			InetSocketAddress dummyAddress = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+			PactCompiler compiler = new PactCompiler(new DataStatistics(), new FixedSizeClusterCostEstimator(),
+				dummyAddress);
+			return compiler.compile(plan, this.instanceType);
+		} catch (Exception ex) {
+			ex.printStackTrace();
+			Assert.fail("Compilation failed: " + ex.getMessage());
+			return null;
+		}
+	}
+
+	private static Costs getCosts(OptimizedPlan plan) {
+		Costs costs = new Costs(0, 0);
+		for (DataSinkNode sink : plan.getDataSinks()) {
+			costs.addCosts(sink.getCumulativeCosts());
+		}
+		return costs;
+	}
+
+	private static void configureEnumeration(int maxCandidates, boolean costBound) {
+		Configuration config = new Configuration();
+		config.setInteger(PactConfigConstants.COMPILER_ENUMERATION_MAX_CANDIDATES_KEY, maxCandidates);
+		config.setBoolean(PactConfigConstants.COMPILER_ENUMERATION_COST_BOUND_KEY, costBound);
+		GlobalConfiguration.includeConfiguration(config);
+	}
+
+	// ------------------------------------------------------------------------
+
+	private static Plan createBranchingSourcePlan() {
+		FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE);
+
+		MatchContract mat1 = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.input1(source)
+			.input2(source)
+			.build();
+		MatchContract mat2 = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.input1(source)
+			.input2(mat1)
+			.build();
+		MapContract ma = MapContract.builder(IdentityMap.class).input(source).build();
+		ReduceContract r = new ReduceContract.Builder(IdentityReduce.class, PactInteger.class, 0)
+			.input(ma)
+			.build();
+		MatchContract mat3 = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.input1(ma)
+			.input2(r)
+			.build();
+		CoGroupContract co = CoGroupContract.builder(DummyCoGroupStub.class, PactInteger.class, 0, 0)
+			.input1(mat2)
+			.input2(mat3)
+			.build();
+
+		FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE_1, co);
+		return new Plan(sink, "Branching Source");
+	}
+
+	private static Plan createMultipleSinksPlan() {
+		FileDataSource sourceA = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		FileDataSource sourceB = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		FileDataSource sourceC = new FileDataSource(DummyInputFormat.class, IN_FILE);
+
+		CoGroupContract co = CoGroupContract.builder(DummyCoGroupStub.class, PactInteger.class, 0, 0)
+			.input1(sourceA)
+			.input2(sourceB)
+			.build();
+		MapContract ma = MapContract.builder(IdentityMap.class).input(co).build();
+		MatchContract mat1 = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.input1(sourceB)
+			.input2(sourceC)
+			.build();
+		MatchContract mat2 = MatchContract.builder(DummyMatchStub.class, PactInteger.class, 0, 0)
+			.input1(ma)
+			.input2(mat1)
+			.build();
+		ReduceContract r = new ReduceContract.Builder(IdentityReduce.class, PactInteger.class, 0)
+			.input(ma)
+			.build();
+		CrossContract c = CrossContract.builder(DummyCrossStub.class)
+			.input1(r)
+			.input2(mat2)
+			.build();
+
+		List<GenericDataSink> sinks = new ArrayList<GenericDataSink>();
+		sinks.add(new FileDataSink(DummyOutputFormat.class, OUT_FILE_1, c));
+		sinks.add(new FileDataSink(DummyOutputFormat.class, OUT_FILE_2, mat2));
+		return new Plan(sinks, "Branching Plan With Multiple Sinks");
+	}
+}
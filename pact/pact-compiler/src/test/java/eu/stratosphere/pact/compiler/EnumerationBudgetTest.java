@@ -0,0 +1,135 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.compiler.plan.DataSourceNode;
+import eu.stratosphere.pact.compiler.plan.OptimizerNode;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+
+/**
+ * Tests for the {@link EnumerationBudget}.
+ */
+public class EnumerationBudgetTest {
+
+	private static final String IN_FILE = "file:///test/file";
+
+	@Test
+	public void testStartsGreedyWithoutCostBound() {
+		EnumerationBudget budget = new EnumerationBudget();
+		Assert.assertTrue(budget.isGreedy());
+		Assert.assertNull(budget.getCostBound());
+
+		// without a bound, nothing is pruned
+		List<OptimizerNode> plans = createPlans(30, 10, 20);
+		budget.pruneAboveCostBound(plans);
+		Assert.assertEquals(3, plans.size());
+	}
+
+	@Test
+	public void testTurnsGreedyAfterMaximalNumberOfCandidates() {
+		EnumerationBudget budget = new EnumerationBudget();
+		budget.startExhaustiveEnumeration(10);
+		Assert.assertFalse(budget.isGreedy());
+
+		budget.chargeCandidates(6);
+		budget.chargeCandidates(4);
+		Assert.assertFalse("The budget turned greedy before its limit was exceeded.", budget.isGreedy());
+
+		budget.chargeCandidates(1);
+		Assert.assertTrue("The budget did not turn greedy after its limit was exceeded.", budget.isGreedy());
+	}
+
+	@Test
+	public void testUnlimitedNumberOfCandidates() {
+		EnumerationBudget budget = new EnumerationBudget();
+		budget.startExhaustiveEnumeration(0);
+
+		for (int i = 0; i < 1000; i++) {
+			budget.chargeCandidates(Integer.MAX_VALUE);
+		}
+		Assert.assertFalse(budget.isGreedy());
+	}
+
+	@Test
+	public void testCostBoundIsCheapestCompletePlan() {
+		EnumerationBudget budget = new EnumerationBudget();
+		budget.setCostBound(createPlans(30, 10, 20));
+		Assert.assertEquals(new Costs(10, 10), budget.getCostBound());
+
+		// a later, more expensive plan does not raise the bound
+		budget.setCostBound(createPlans(15));
+		Assert.assertEquals(new Costs(10, 10), budget.getCostBound());
+	}
+
+	@Test
+	public void testPrunesPlansAboveCostBound() {
+		EnumerationBudget budget = new EnumerationBudget();
+		budget.setCostBound(createPlans(20));
+
+		List<OptimizerNode> plans = createPlans(30, 10, 20, 21);
+		final OptimizerNode cheaper = plans.get(1);
+		final OptimizerNode equal = plans.get(2);
+		budget.pruneAboveCostBound(plans);
+
+		Assert.assertEquals(2, plans.size());
+		Assert.assertTrue(plans.contains(cheaper));
+		Assert.assertTrue("A plan as expensive as the bound has been pruned.", plans.contains(equal));
+	}
+
+	@Test
+	public void testKeepsPlansIfAllAreAboveCostBound() {
+		EnumerationBudget budget = new EnumerationBudget();
+		budget.setCostBound(createPlans(10));
+
+		List<OptimizerNode> plans = createPlans(30, 20);
+		budget.pruneAboveCostBound(plans);
+		Assert.assertEquals(2, plans.size());
+	}
+
+	@Test
+	public void testKeepsPlansWithoutCosts() {
+		EnumerationBudget budget = new EnumerationBudget();
+		budget.setCostBound(createPlans(10));
+
+		List<OptimizerNode> plans = createPlans(10, 30);
+		plans.add(new DataSourceNode(new FileDataSource(DummyInputFormat.class, IN_FILE)));
+		budget.pruneAboveCostBound(plans);
+
+		Assert.assertEquals(2, plans.size());
+		Assert.assertNull(plans.get(1).getCumulativeCosts());
+	}
+
+	/**
+	 * Creates one plan per given cost. A plan's network and secondary storage costs are both the given cost.
+	 */
+	private static List<OptimizerNode> createPlans(long... costs) {
+		List<OptimizerNode> plans = new ArrayList<OptimizerNode>();
+		for (long cost : costs) {
+			DataSourceNode plan = new DataSourceNode(new FileDataSource(DummyInputFormat.class, IN_FILE));
+			plan.setCosts(new Costs(cost, cost));
+			plans.add(plan);
+		}
+		return plans;
+	}
+}
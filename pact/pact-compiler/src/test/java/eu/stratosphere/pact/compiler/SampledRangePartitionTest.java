@@ -0,0 +1,325 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.instance.HardwareDescription;
+import eu.stratosphere.nephele.instance.HardwareDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeDescription;
+import eu.stratosphere.nephele.instance.InstanceTypeDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.nephele.io.channels.ChannelType;
+import eu.stratosphere.nephele.io.DistributionPattern;
+import eu.stratosphere.nephele.jobgraph.AbstractJobVertex;
+import eu.stratosphere.nephele.jobgraph.JobEdge;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.pact.common.contract.DataDistribution;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.Order;
+import eu.stratosphere.pact.common.contract.Ordering;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.compiler.costs.FixedSizeClusterCostEstimator;
+import eu.stratosphere.pact.compiler.jobgen.JobGraphGenerator;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.runtime.shipping.SampledDataDistribution;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
+import eu.stratosphere.pact.runtime.task.KeySampleDriver;
+import eu.stratosphere.pact.runtime.task.RangeBoundaryDriver;
+import eu.stratosphere.pact.runtime.task.RegularPactTask;
+import eu.stratosphere.pact.runtime.task.SampledPartitionTask;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * Tests the job graph that is generated for a range partitioned data sink without a given data distribution,
+ * i.e. the pre-pass that samples the data, computes the range boundaries and partitions by them.
+ */
+public class SampledRangePartitionTest
+{
+	private static final String IN_FILE = "file:///test/file";
+
+	private static final String OUT_FILE = "file:///test/output";
+
+	private static final int SOURCE_DOP = 3;
+
+	private static final int SINK_DOP = 4;
+
+	// ------------------------------------------------------------------------
+
+	private PactCompiler compiler;
+
+	private InstanceTypeDescription instanceType;
+
+	// ------------------------------------------------------------------------
+
+	@Before
+	public void setup()
+	{
+		try {
+			InetSocketAddress dummyAddress = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+			this.compiler = new PactCompiler(new DataStatistics(), new FixedSizeClusterCostEstimator(), dummyAddress);
+		}
+		catch (Exception ex) {
+			ex.printStackTrace();
+			Assert.fail("Test setup failed.");
+		}
+
+		InstanceType iType = InstanceTypeFactory.construct("standard", 6, 2, 4096, 100, 0);
+		HardwareDescription hDesc = HardwareDescriptionFactory.construct(2, 4096 * 1024 * 1024, 2000 * 1024 * 1024);
+		this.instanceType = InstanceTypeDescriptionFactory.construct(iType, hDesc, SINK_DOP * 2);
+	}
+
+	@Test
+	public void testGlobalOrderWithoutDistribution()
+	{
+		final FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		final FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, source);
+		sink.setGlobalOrder(new Ordering(0, PactInteger.class, Order.ASCENDING));
+
+		checkSampledPrePass(compile(source, sink, SINK_DOP));
+	}
+
+	@Test
+	public void testRangePartitionedWithoutDistribution()
+	{
+		final FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		final FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, source);
+		sink.setRangePartitioned(new Ordering(0, PactInteger.class, Order.DESCENDING));
+
+		Assert.assertNull(sink.getLocalOrder());
+		checkSampledPrePass(compile(source, sink, SINK_DOP));
+	}
+
+	@Test
+	public void testPartitionerIsMemoryConsumer()
+	{
+		final FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		final FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, source);
+		sink.setGlobalOrder(new Ordering(0, PactInteger.class, Order.ASCENDING));
+
+		// the sorting sink and the partitioning vertex get the same share of the memory
+		final JobGraph jobGraph = compile(source, sink, SINK_DOP);
+		final TaskConfig sinkConfig = new TaskConfig(
+			getSingleVertex(jobGraph, "eu.stratosphere.pact.runtime.task.DataSinkTask", null).getConfiguration());
+		final TaskConfig partitionerConfig = new TaskConfig(
+			getSingleVertex(jobGraph, SampledPartitionTask.class.getName(), null).getConfiguration());
+
+		Assert.assertTrue(sinkConfig.getMemorySize() > PactCompiler.DEFAULT_TEMP_TASK_MEMORY * 1024L * 1024L);
+		Assert.assertEquals(sinkConfig.getMemorySize(), partitionerConfig.getMemorySize());
+	}
+
+	@Test
+	public void testGivenDistributionIsNotSampled()
+	{
+		final FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		final FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, source);
+
+		final List<PactRecord> boundaries = new ArrayList<PactRecord>();
+		for (int i = 1; i < SINK_DOP; i++) {
+			final PactRecord boundary = new PactRecord();
+			boundary.setField(0, new PactInteger(i * 100));
+			boundaries.add(boundary);
+		}
+		sink.setGlobalOrder(new Ordering(0, PactInteger.class, Order.ASCENDING), new SampledDataDistribution(boundaries));
+
+		final JobGraph jobGraph = compile(source, sink, SINK_DOP);
+		checkNoPrePass(jobGraph);
+
+		final DataDistribution distribution = checkSourcePartitionsDirectly(jobGraph);
+		Assert.assertEquals(SINK_DOP, ((SampledDataDistribution) distribution).getNumberOfBuckets());
+	}
+
+	@Test
+	public void testSingleRangeIsNotSampled()
+	{
+		final FileDataSource source = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		final FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, source);
+		sink.setGlobalOrder(new Ordering(0, PactInteger.class, Order.ASCENDING));
+
+		final JobGraph jobGraph = compile(source, sink, 1);
+		checkNoPrePass(jobGraph);
+
+		// a single range needs no boundaries
+		final DataDistribution distribution = checkSourcePartitionsDirectly(jobGraph);
+		Assert.assertEquals(1, ((SampledDataDistribution) distribution).getNumberOfBuckets());
+	}
+
+	// ------------------------------------------------------------------------
+
+	private JobGraph compile(FileDataSource source, FileDataSink sink, int sinkDOP)
+	{
+		source.setDegreeOfParallelism(SOURCE_DOP);
+		sink.setDegreeOfParallelism(sinkDOP);
+
+		final OptimizedPlan oPlan = this.compiler.compile(new Plan(sink, "Sampled Range Partitioning"), this.instanceType);
+		return new JobGraphGenerator().compileJobGraph(oPlan);
+	}
+
+	/**
+	 * Checks that the source forwards its data to a partitioning and a sampling vertex, that the samples are combined
+	 * by a single boundary vertex, and that the boundaries are broadcast to the partitioning vertex, which range
+	 * partitions the data towards the sink.
+	 */
+	private void checkSampledPrePass(JobGraph jobGraph)
+	{
+		final AbstractJobVertex source = getSingleVertex(jobGraph, "eu.stratosphere.pact.runtime.task.DataSourceTask", null);
+		final AbstractJobVertex sink = getSingleVertex(jobGraph, "eu.stratosphere.pact.runtime.task.DataSinkTask", null);
+		final AbstractJobVertex partitioner = getSingleVertex(jobGraph, SampledPartitionTask.class.getName(), null);
+		final AbstractJobVertex sampler = getSingleVertex(jobGraph, RegularPactTask.class.getName(), KeySampleDriver.class);
+		final AbstractJobVertex boundaries = getSingleVertex(jobGraph, RegularPactTask.class.getName(), RangeBoundaryDriver.class);
+
+		// the source forwards its data locally to the partitioning and the sampling vertex
+		final TaskConfig sourceConfig = new TaskConfig(source.getConfiguration());
+		Assert.assertEquals(2, source.getNumberOfForwardConnections());
+		Assert.assertEquals(2, sourceConfig.getNumOutputs());
+		checkEdge(source.getForwardConnection(0), partitioner, 0, ChannelType.INMEMORY, DistributionPattern.POINTWISE);
+		checkEdge(source.getForwardConnection(1), sampler, 0, ChannelType.INMEMORY, DistributionPattern.POINTWISE);
+		Assert.assertEquals(ShipStrategyType.FORWARD, sourceConfig.getOutputShipStrategy(0));
+		Assert.assertEquals(ShipStrategyType.FORWARD, sourceConfig.getOutputShipStrategy(1));
+
+		// the sampling vertex runs next to the source and sends its samples to the boundary vertex
+		final TaskConfig samplerConfig = new TaskConfig(sampler.getConfiguration());
+		Assert.assertEquals(SOURCE_DOP, sampler.getNumberOfSubtasks());
+		Assert.assertSame(source, sampler.getVertexToShareInstancesWith());
+		Assert.assertEquals(1, samplerConfig.getNumInputs());
+		Assert.assertEquals(1, samplerConfig.getGroupSize(1));
+		Assert.assertTrue(samplerConfig.getPartitionSampleSize() > 0);
+		Assert.assertEquals(1, sampler.getNumberOfForwardConnections());
+		checkEdge(sampler.getForwardConnection(0), boundaries, 0, ChannelType.NETWORK, DistributionPattern.BIPARTITE);
+		Assert.assertEquals(ShipStrategyType.FORWARD, samplerConfig.getOutputShipStrategy(0));
+
+		// a single boundary vertex computes the boundaries for the sink's degree of parallelism and broadcasts them
+		final TaskConfig boundariesConfig = new TaskConfig(boundaries.getConfiguration());
+		Assert.assertEquals(1, boundaries.getNumberOfSubtasks());
+		Assert.assertEquals(SINK_DOP, boundariesConfig.getNumberOfSampledPartitions());
+		Assert.assertEquals(1, boundariesConfig.getNumInputs());
+		Assert.assertEquals(1, boundariesConfig.getGroupSize(1));
+		Assert.assertEquals(1, boundaries.getNumberOfForwardConnections());
+		checkEdge(boundaries.getForwardConnection(0), partitioner, 1, ChannelType.NETWORK, DistributionPattern.BIPARTITE);
+		Assert.assertEquals(ShipStrategyType.BROADCAST, boundariesConfig.getOutputShipStrategy(0));
+
+		// the partitioning vertex runs next to the source, reads the data through its first input and the
+		// boundaries through its second one, and range partitions the data towards the sink
+		final TaskConfig partitionerConfig = new TaskConfig(partitioner.getConfiguration());
+		Assert.assertEquals(SOURCE_DOP, partitioner.getNumberOfSubtasks());
+		Assert.assertSame(source, partitioner.getVertexToShareInstancesWith());
+		Assert.assertEquals(2, partitionerConfig.getNumInputs());
+		Assert.assertEquals(1, partitionerConfig.getGroupSize(1));
+		Assert.assertEquals(1, partitionerConfig.getGroupSize(2));
+		Assert.assertTrue(partitionerConfig.getMemorySize() > 0);
+		Assert.assertEquals(1, partitioner.getNumberOfForwardConnections());
+		checkEdge(partitioner.getForwardConnection(0), sink, 0, ChannelType.NETWORK, DistributionPattern.BIPARTITE);
+		Assert.assertEquals(1, partitionerConfig.getNumOutputs());
+		Assert.assertEquals(ShipStrategyType.PARTITION_RANGE, partitionerConfig.getOutputShipStrategy(0));
+
+		// the boundaries are only known at runtime
+		try {
+			Assert.assertNull(partitionerConfig.getOutputDataDistribution(getClass().getClassLoader()));
+		} catch (ClassNotFoundException cnfex) {
+			Assert.fail(cnfex.getMessage());
+		}
+
+		Assert.assertEquals(SINK_DOP, sink.getNumberOfSubtasks());
+		Assert.assertEquals(1, sink.getNumberOfBackwardConnections());
+	}
+
+	/**
+	 * Checks that no vertices of the sampling pre-pass have been generated.
+	 */
+	private void checkNoPrePass(JobGraph jobGraph)
+	{
+		Assert.assertTrue(getVertices(jobGraph, SampledPartitionTask.class.getName(), null).isEmpty());
+		Assert.assertTrue(getVertices(jobGraph, RegularPactTask.class.getName(), KeySampleDriver.class).isEmpty());
+		Assert.assertTrue(getVertices(jobGraph, RegularPactTask.class.getName(), RangeBoundaryDriver.class).isEmpty());
+	}
+
+	/**
+	 * Checks that the source range partitions its data directly towards the sink and returns the distribution that
+	 * it partitions by.
+	 */
+	private DataDistribution checkSourcePartitionsDirectly(JobGraph jobGraph)
+	{
+		final AbstractJobVertex source = getSingleVertex(jobGraph, "eu.stratosphere.pact.runtime.task.DataSourceTask", null);
+		final AbstractJobVertex sink = getSingleVertex(jobGraph, "eu.stratosphere.pact.runtime.task.DataSinkTask", null);
+		final TaskConfig sourceConfig = new TaskConfig(source.getConfiguration());
+
+		Assert.assertEquals(1, source.getNumberOfForwardConnections());
+		Assert.assertSame(sink, source.getForwardConnection(0).getConnectedVertex());
+		Assert.assertEquals(1, sourceConfig.getNumOutputs());
+		Assert.assertEquals(ShipStrategyType.PARTITION_RANGE, sourceConfig.getOutputShipStrategy(0));
+
+		try {
+			final DataDistribution distribution = sourceConfig.getOutputDataDistribution(getClass().getClassLoader());
+			Assert.assertNotNull(distribution);
+			return distribution;
+		} catch (ClassNotFoundException cnfex) {
+			Assert.fail(cnfex.getMessage());
+			return null;
+		}
+	}
+
+	private static void checkEdge(JobEdge edge, AbstractJobVertex target, int inputGate, ChannelType channelType,
+			DistributionPattern pattern)
+	{
+		Assert.assertSame(target, edge.getConnectedVertex());
+		Assert.assertEquals(inputGate, edge.getIndexOfInputGate());
+		Assert.assertEquals(channelType, edge.getChannelType());
+		Assert.assertEquals(pattern, edge.getDistributionPattern());
+	}
+
+	private static AbstractJobVertex getSingleVertex(JobGraph jobGraph, String invokableClassName,
+			@SuppressWarnings("rawtypes") Class driver)
+	{
+		final List<AbstractJobVertex> vertices = getVertices(jobGraph, invokableClassName, driver);
+		Assert.assertEquals("Unexpected number of vertices running " + invokableClassName +
+			(driver == null ? "" : " with " + driver.getSimpleName()), 1, vertices.size());
+		return vertices.get(0);
+	}
+
+	private static List<AbstractJobVertex> getVertices(JobGraph jobGraph, String invokableClassName,
+			@SuppressWarnings("rawtypes") Class driver)
+	{
+		final List<AbstractJobVertex> vertices = new ArrayList<AbstractJobVertex>();
+		Collections.addAll(vertices, jobGraph.getAllJobVertices());
+
+		final List<AbstractJobVertex> result = new ArrayList<AbstractJobVertex>();
+		for (AbstractJobVertex vertex : vertices) {
+			if (!invokableClassName.equals(vertex.getInvokableClassName())) {
+				continue;
+			}
+			if (driver != null && driver != new TaskConfig(vertex.getConfiguration()).getDriver()) {
+				continue;
+			}
+			result.add(vertex);
+		}
+		return result;
+	}
+}
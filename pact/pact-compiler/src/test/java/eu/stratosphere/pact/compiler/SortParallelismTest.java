@@ -0,0 +1,181 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.compiler;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.configuration.GlobalConfiguration;
+import eu.stratosphere.nephele.instance.HardwareDescription;
+import eu.stratosphere.nephele.instance.HardwareDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceType;
+import eu.stratosphere.nephele.instance.InstanceTypeDescription;
+import eu.stratosphere.nephele.instance.InstanceTypeDescriptionFactory;
+import eu.stratosphere.nephele.instance.InstanceTypeFactory;
+import eu.stratosphere.nephele.jobgraph.AbstractJobVertex;
+import eu.stratosphere.nephele.jobgraph.JobGraph;
+import eu.stratosphere.pact.common.contract.CoGroupContract;
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.contract.Order;
+import eu.stratosphere.pact.common.contract.Ordering;
+import eu.stratosphere.pact.common.contract.ReduceContract;
+import eu.stratosphere.pact.common.plan.Plan;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.PactConfigConstants;
+import eu.stratosphere.pact.compiler.costs.FixedSizeClusterCostEstimator;
+import eu.stratosphere.pact.compiler.jobgen.JobGraphGenerator;
+import eu.stratosphere.pact.compiler.plan.OptimizedPlan;
+import eu.stratosphere.pact.compiler.util.DummyCoGroupStub;
+import eu.stratosphere.pact.compiler.util.DummyInputFormat;
+import eu.stratosphere.pact.compiler.util.DummyOutputFormat;
+import eu.stratosphere.pact.compiler.util.IdentityReduce;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * Tests that the job graph generator passes the configured sort parallelism to the tasks that sort their input.
+ */
+public class SortParallelismTest
+{
+	private static final String IN_FILE = "file:///test/file";
+
+	private static final String OUT_FILE = "file:///test/output";
+
+	private static final int DEFAULT_PARALLELISM = 4;
+
+	// ------------------------------------------------------------------------
+
+	private PactCompiler compiler;
+
+	private InstanceTypeDescription instanceType;
+
+	// ------------------------------------------------------------------------
+
+	@Before
+	public void setup() throws Exception
+	{
+		InetSocketAddress dummyAddress = new InetSocketAddress(InetAddress.getLocalHost(), 12345);
+		this.compiler = new PactCompiler(new DataStatistics(), new FixedSizeClusterCostEstimator(), dummyAddress);
+
+		InstanceType iType = InstanceTypeFactory.construct("standard", 6, 2, 4096, 100, 0);
+		HardwareDescription hDesc = HardwareDescriptionFactory.construct(2, 4096 * 1024 * 1024, 2000 * 1024 * 1024);
+		this.instanceType = InstanceTypeDescriptionFactory.construct(iType, hDesc, DEFAULT_PARALLELISM * 2);
+	}
+
+	@After
+	public void tearDown()
+	{
+		// restore the default for the other tests running in this virtual machine
+		configureSortParallelism(PactConfigConstants.DEFAULT_SORT_PARALLELISM);
+	}
+
+	@Test
+	public void testSortingTasksUseConfiguredParallelism()
+	{
+		configureSortParallelism(3);
+		Assert.assertEquals(3, checkSortingTasks(compile(createPlan())));
+	}
+
+	@Test
+	public void testSortingTasksUseDefaultParallelism()
+	{
+		Assert.assertEquals(PactConfigConstants.DEFAULT_SORT_PARALLELISM, checkSortingTasks(compile(createPlan())));
+	}
+
+	@Test
+	public void testInvalidParallelismIsIgnored()
+	{
+		configureSortParallelism(0);
+		Assert.assertEquals(PactConfigConstants.DEFAULT_SORT_PARALLELISM, checkSortingTasks(compile(createPlan())));
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates a plan with a sorting reducer, a sort-merge co-group and a sink that sorts its input locally.
+	 */
+	private static Plan createPlan()
+	{
+		final FileDataSource source1 = new FileDataSource(DummyInputFormat.class, IN_FILE);
+		final FileDataSource source2 = new FileDataSource(DummyInputFormat.class, IN_FILE);
+
+		final ReduceContract reducer = new ReduceContract.Builder(IdentityReduce.class, PactInteger.class, 0)
+			.input(source1)
+			.build();
+		final CoGroupContract coGroup = CoGroupContract.builder(DummyCoGroupStub.class, PactInteger.class, 0, 0)
+			.input1(reducer)
+			.input2(source2)
+			.build();
+
+		final FileDataSink sink = new FileDataSink(DummyOutputFormat.class, OUT_FILE, coGroup);
+		sink.setLocalOrder(new Ordering(1, PactInteger.class, Order.ASCENDING));
+
+		final Plan plan = new Plan(sink, "Sort Parallelism");
+		plan.setDefaultParallelism(DEFAULT_PARALLELISM);
+		return plan;
+	}
+
+	private JobGraph compile(Plan plan)
+	{
+		final OptimizedPlan oPlan = this.compiler.compile(plan, this.instanceType);
+		return new JobGraphGenerator().compileJobGraph(oPlan);
+	}
+
+	/**
+	 * Checks that the reducer, the co-group and the sink sort their input with the same parallelism and returns it.
+	 */
+	private static int checkSortingTasks(JobGraph jobGraph)
+	{
+		final Set<Integer> parallelisms = new HashSet<Integer>();
+		int numSortingVertices = 0;
+
+		for (AbstractJobVertex vertex : jobGraph.getAllJobVertices()) {
+			final TaskConfig config = new TaskConfig(vertex.getConfiguration());
+			switch (config.getLocalStrategy()) {
+			case SORT:
+			case COMBININGSORT:
+			case SORT_BOTH_MERGE:
+			case SORT_FIRST_MERGE:
+			case SORT_SECOND_MERGE:
+				numSortingVertices++;
+				parallelisms.add(config.getSortParallelism());
+				break;
+			default:
+				break;
+			}
+		}
+
+		Assert.assertEquals("Unexpected number of sorting vertices.", 3, numSortingVertices);
+		Assert.assertEquals("The sorting vertices use different parallelisms.", 1, parallelisms.size());
+		return parallelisms.iterator().next();
+	}
+
+	private static void configureSortParallelism(int parallelism)
+	{
+		Configuration config = new Configuration();
+		config.setInteger(PactConfigConstants.SORT_PARALLELISM_KEY, parallelism);
+		GlobalConfiguration.includeConfiguration(config);
+	}
+}
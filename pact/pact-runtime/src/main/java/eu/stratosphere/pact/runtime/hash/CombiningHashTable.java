@@ -0,0 +1,656 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import eu.stratosphere.nephele.services.memorymanager.AbstractPagedOutputView;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.pact.common.generic.GenericReducer;
+import eu.stratosphere.pact.common.generic.types.TypeComparator;
+import eu.stratosphere.pact.common.generic.types.TypeSerializer;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.io.RandomAccessInputView;
+import eu.stratosphere.pact.runtime.util.MathUtils;
+
+
+/**
+ * A hash table that aggregates records with equal keys, using the <code>combine()</code> method of a
+ * combinable reducer. The table holds one partially aggregated record per distinct key. Each inserted record
+ * is combined with the record stored for its key, and the result replaces the stored record. If the
+ * result is not larger than the stored record, it overwrites it in place. Otherwise, it is appended to the
+ * record area and the space of the old record is not reused until the table is reset.
+ * <p>
+ * The table does not spill. When its memory is exhausted, {@link #insertOrCombine(Object)} returns false
+ * and leaves the table and the inserted record unchanged. The caller then decides to emit or spill the contents,
+ * to reset the table and to insert the record again.
+ * <p>
+ * The combiner must emit exactly one record per call, with the same key as its input.
+ *
+ * <hr>
+ *
+ * The table consists of an array of buckets and a record area. A bucket is a pointer to the first entry
+ * of a chain of entries. An entry in the record area has the following layout:
+ *
+ * <pre>
+ * +-----------------------------+------------------+-------------------+-----------------------------
+ * | pointer to next entry (8 b) | hash code (4 b)  | slot length (4 b) | serialized record ...
+ * +-----------------------------+------------------+-------------------+-----------------------------
+ * </pre>
+ *
+ * The entry header never crosses a memory segment boundary, the serialized record may.
+ */
+public class CombiningHashTable<T>
+{
+	/**
+	 * The pointer value that marks the end of a chain, or an empty bucket.
+	 */
+	private static final long NULL_POINTER = -1L;
+
+	/**
+	 * The length of a bucket, which holds the pointer to the first entry in its chain.
+	 */
+	private static final int BUCKET_SIZE = 8;
+
+	/**
+	 * The number of memory segments per segment used for the buckets.
+	 */
+	private static final int SEGMENTS_PER_BUCKET_SEGMENT = 8;
+
+	/**
+	 * The length of the header in front of each record.
+	 */
+	private static final int ENTRY_HEADER_LENGTH = 16;
+
+	/**
+	 * Offset of the pointer to the next entry in the chain.
+	 */
+	private static final int ENTRY_NEXT_POINTER_OFFSET = 0;
+
+	/**
+	 * Offset of the hash code of the entry's record.
+	 */
+	private static final int ENTRY_HASH_CODE_OFFSET = 8;
+
+	/**
+	 * Offset of the number of bytes reserved for the entry's record.
+	 */
+	private static final int ENTRY_SLOT_LENGTH_OFFSET = 12;
+
+	// ------------------------------------------------------------------------
+
+	private final TypeSerializer<T> serializer;
+
+	private final TypeComparator<T> comparator;
+
+	private final GenericReducer<T, ?> combiner;
+
+	private final MemorySegment[] buckets;
+
+	private final ArrayList<MemorySegment> recordSegments;
+
+	private final ArrayList<MemorySegment> freeSegments;
+
+	private final List<MemorySegment> freedMemory;
+
+	private final RecordAreaOutputView outView;
+
+	private final RandomAccessInputView inView;
+
+	private final CombineValueIterator<T> combineValues;
+
+	private final CombineResultCollector<T> combineResult;
+
+	private final T candidate;
+
+	private final T combineInput;
+
+	private final int numBuckets;
+
+	private final int bucketsPerSegmentBits;
+
+	private final int bucketsPerSegmentMask;
+
+	private final int segmentSize;
+
+	private final int segmentSizeBits;
+
+	private final int segmentSizeMask;
+
+	private final int recursionLevel;
+
+	private final boolean fixedLengthRecords;
+
+	private int numEntries;
+
+	private boolean closed;
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates a new table that aggregates records at recursion level zero.
+	 *
+	 * @param serializer The serializer for the records.
+	 * @param comparator The comparator that defines the key of the records.
+	 * @param combiner The reducer whose <code>combine()</code> method aggregates two records with equal keys.
+	 * @param memory The memory for the table. It must contain at least two segments of the same size.
+	 */
+	public CombiningHashTable(TypeSerializer<T> serializer, TypeComparator<T> comparator,
+			GenericReducer<T, ?> combiner, List<MemorySegment> memory)
+	{
+		this(serializer, comparator, combiner, memory, 0);
+	}
+
+	/**
+	 * Creates a new table that aggregates records. The recursion level selects the function that
+	 * re-hashes the hash codes of the records, such that records that collided in one table are
+	 * distributed differently in a table of the next level.
+	 *
+	 * @param serializer The serializer for the records.
+	 * @param comparator The comparator that defines the key of the records.
+	 * @param combiner The reducer whose <code>combine()</code> method aggregates two records with equal keys.
+	 * @param memory The memory for the table. It must contain at least two segments of the same size.
+	 * @param recursionLevel The recursion level, which selects the hash function.
+	 */
+	public CombiningHashTable(TypeSerializer<T> serializer, TypeComparator<T> comparator,
+			GenericReducer<T, ?> combiner, List<MemorySegment> memory, int recursionLevel)
+	{
+		if (serializer == null || comparator == null || combiner == null || memory == null) {
+			throw new NullPointerException();
+		}
+		if (memory.size() < 2) {
+			throw new IllegalArgumentException("The combining hash table requires at least two memory segments.");
+		}
+
+		this.serializer = serializer;
+		this.comparator = comparator;
+		this.combiner = combiner;
+		this.recursionLevel = recursionLevel;
+		this.fixedLengthRecords = serializer.getLength() > 0;
+
+		this.segmentSize = memory.get(0).size();
+		this.segmentSizeBits = MathUtils.log2strict(this.segmentSize);
+		this.segmentSizeMask = this.segmentSize - 1;
+
+		// set up the buckets
+		final int numBucketSegments = Math.max(1, memory.size() / SEGMENTS_PER_BUCKET_SEGMENT);
+		final int bucketsPerSegment = this.segmentSize / BUCKET_SIZE;
+		this.bucketsPerSegmentBits = MathUtils.log2strict(bucketsPerSegment);
+		this.bucketsPerSegmentMask = bucketsPerSegment - 1;
+		this.numBuckets = numBucketSegments * bucketsPerSegment;
+
+		this.buckets = new MemorySegment[numBucketSegments];
+		for (int i = 0; i < numBucketSegments; i++) {
+			this.buckets[i] = memory.get(i);
+		}
+
+		// the remaining segments are for the records
+		this.freeSegments = new ArrayList<MemorySegment>(memory.size() - numBucketSegments);
+		for (int i = memory.size() - 1; i >= numBucketSegments; i--) {
+			this.freeSegments.add(memory.get(i));
+		}
+		this.recordSegments = new ArrayList<MemorySegment>(this.freeSegments.size());
+		this.recordSegments.add(this.freeSegments.remove(this.freeSegments.size() - 1));
+
+		this.freedMemory = new ArrayList<MemorySegment>(memory.size());
+		this.outView = new RecordAreaOutputView(this.recordSegments.get(0), this.segmentSize);
+		this.inView = new RandomAccessInputView(this.recordSegments, this.segmentSize);
+
+		this.combineValues = new CombineValueIterator<T>();
+		this.combineResult = new CombineResultCollector<T>();
+		this.candidate = serializer.createInstance();
+		this.combineInput = serializer.createInstance();
+
+		initBuckets();
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Inserts the record into the table. If the table contains a record with the same key, both records
+	 * are combined and the result replaces the stored record.
+	 *
+	 * @param record The record to insert.
+	 * @return True, if the record was inserted or combined, false, if the table had not enough memory left.
+	 *         In the latter case, neither the table nor the record is changed.
+	 * @throws IOException Thrown, if the combiner fails or does not emit exactly one record.
+	 */
+	public boolean insertOrCombine(T record) throws IOException
+	{
+		if (this.closed) {
+			throw new IllegalStateException("The table has been closed.");
+		}
+
+		final int hashCode = MutableHashTable.hash(this.comparator.hash(record), this.recursionLevel);
+		final int posHashCode = hashCode % this.numBuckets;
+		final MemorySegment bucket = this.buckets[posHashCode >>> this.bucketsPerSegmentBits];
+		final int bucketOffset = (posHashCode & this.bucketsPerSegmentMask) * BUCKET_SIZE;
+
+		// walk the chain to look for an entry with the same key
+		this.comparator.setReference(record);
+
+		final long firstPointer = bucket.getLongNative(bucketOffset);
+		long previousPointer = NULL_POINTER;
+		long pointer = firstPointer;
+
+		while (pointer != NULL_POINTER) {
+			final MemorySegment seg = this.recordSegments.get((int) (pointer >>> this.segmentSizeBits));
+			final int offset = (int) (pointer & this.segmentSizeMask);
+
+			if (seg.getIntNative(offset + ENTRY_HASH_CODE_OFFSET) == hashCode) {
+				this.inView.setReadPosition(pointer + ENTRY_HEADER_LENGTH);
+				this.serializer.deserialize(this.candidate, this.inView);
+				if (this.comparator.equalToReference(this.candidate)) {
+					return combineWithEntry(record, bucket, bucketOffset, previousPointer, pointer, hashCode);
+				}
+			}
+
+			previousPointer = pointer;
+			pointer = seg.getLongNative(offset + ENTRY_NEXT_POINTER_OFFSET);
+		}
+
+		// no entry with the same key, so we add a new one to the front of the chain
+		final long newPointer = appendEntry(record, hashCode, firstPointer);
+		if (newPointer == NULL_POINTER) {
+			return false;
+		}
+		bucket.putLongNative(bucketOffset, newPointer);
+		this.numEntries++;
+		return true;
+	}
+
+	/**
+	 * Gets an iterator over all records in the table. The iterator is invalidated by any modification
+	 * of the table.
+	 *
+	 * @return An iterator over the records in the table.
+	 */
+	public EntryIterator getEntryIterator()
+	{
+		return new EntryIterator();
+	}
+
+	/**
+	 * Emits all records in the table to the given collector and resets the table afterwards.
+	 *
+	 * @param output The collector to emit the records to.
+	 * @throws IOException Thrown, if the records could not be read from the table.
+	 */
+	public void flush(Collector<T> output) throws IOException
+	{
+		final EntryIterator entries = getEntryIterator();
+		final T record = this.serializer.createInstance();
+		while (entries.next(record)) {
+			output.collect(record);
+		}
+		reset();
+	}
+
+	/**
+	 * Removes all records from the table.
+	 */
+	public void reset()
+	{
+		for (int i = this.recordSegments.size() - 1; i > 0; i--) {
+			this.freeSegments.add(this.recordSegments.remove(i));
+		}
+		this.outView.setWritePosition(0, 0);
+		this.numEntries = 0;
+		initBuckets();
+	}
+
+	/**
+	 * Gets the number of distinct keys in the table.
+	 *
+	 * @return The number of records in the table.
+	 */
+	public int size()
+	{
+		return this.numEntries;
+	}
+
+	/**
+	 * Closes the table. All memory is made available through {@link #getFreedMemory()}.
+	 */
+	public void close()
+	{
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+
+		for (int i = 0; i < this.buckets.length; i++) {
+			this.freedMemory.add(this.buckets[i]);
+		}
+		this.freedMemory.addAll(this.recordSegments);
+		this.freedMemory.addAll(this.freeSegments);
+		this.recordSegments.clear();
+		this.freeSegments.clear();
+	}
+
+	/**
+	 * Gets the memory of the table after it has been closed.
+	 *
+	 * @return The memory segments that were given to the table.
+	 */
+	public List<MemorySegment> getFreedMemory()
+	{
+		if (!this.closed) {
+			throw new IllegalStateException("Cannot return memory while the table is open.");
+		}
+		return this.freedMemory;
+	}
+
+	// ------------------------------------------------------------------------
+
+	private final void initBuckets()
+	{
+		for (int i = 0; i < this.buckets.length; i++) {
+			final MemorySegment seg = this.buckets[i];
+			for (int k = 0; k < this.segmentSize; k += BUCKET_SIZE) {
+				seg.putLongNative(k, NULL_POINTER);
+			}
+		}
+	}
+
+	/**
+	 * Combines the given record with the record of the entry at the given pointer, which has been
+	 * deserialized into the candidate. Combiners typically emit one of their input records after
+	 * modifying it, so the combiner gets a copy of the given record. Otherwise, the record would already
+	 * be aggregated if the result does not fit into the table, and inserting it again after a flush
+	 * would count it twice.
+	 */
+	private final boolean combineWithEntry(T record, MemorySegment bucket, int bucketOffset,
+			long previousPointer, long pointer, int hashCode)
+	throws IOException
+	{
+		this.serializer.copyTo(record, this.combineInput);
+		this.combineValues.set(this.candidate, this.combineInput);
+		this.combineResult.reset();
+		try {
+			this.combiner.combine(this.combineValues, this.combineResult);
+		}
+		catch (Exception ex) {
+			throw new IOException("An error occurred in the combiner user code.", ex);
+		}
+
+		if (this.combineResult.count != 1) {
+			throw new IOException("The combiner emitted " + this.combineResult.count +
+				" records for one key. Hash aggregation requires exactly one.");
+		}
+		final T result = this.combineResult.result;
+
+		final MemorySegment seg = this.recordSegments.get((int) (pointer >>> this.segmentSizeBits));
+		final int offset = (int) (pointer & this.segmentSizeMask);
+		final int slotLength = seg.getIntNative(offset + ENTRY_SLOT_LENGTH_OFFSET);
+
+		final int endSegment = this.outView.currentSegmentIndex;
+		final int endOffset = this.outView.getCurrentPositionInSegment();
+
+		if (this.fixedLengthRecords) {
+			// the result fits into the slot, so overwrite the record in place
+			this.outView.setWritePosition(pointer + ENTRY_HEADER_LENGTH);
+			this.serializer.serialize(result, this.outView);
+			this.outView.setWritePosition(endSegment, endOffset);
+			return true;
+		}
+
+		// serialize the result behind the last entry to find out its length
+		final long resultLength;
+		try {
+			resultLength = this.serializer.serialize(result, this.outView);
+		}
+		catch (EOFException eofex) {
+			this.outView.setWritePosition(endSegment, endOffset);
+			return false;
+		}
+
+		if (resultLength <= slotLength) {
+			// copy the result into the slot of the old record
+			this.inView.setReadPosition((((long) endSegment) << this.segmentSizeBits) + endOffset);
+			this.outView.setWritePosition(pointer + ENTRY_HEADER_LENGTH);
+			this.outView.write(this.inView, (int) resultLength);
+			this.outView.setWritePosition(endSegment, endOffset);
+			return true;
+		}
+
+		// the result is larger than the slot, so we replace the entry by a new one
+		this.outView.setWritePosition(endSegment, endOffset);
+		final long newPointer = appendEntry(result, hashCode, seg.getLongNative(offset + ENTRY_NEXT_POINTER_OFFSET));
+		if (newPointer == NULL_POINTER) {
+			return false;
+		}
+
+		if (previousPointer == NULL_POINTER) {
+			bucket.putLongNative(bucketOffset, newPointer);
+		} else {
+			final MemorySegment previousSeg = this.recordSegments.get((int) (previousPointer >>> this.segmentSizeBits));
+			previousSeg.putLongNative((int) (previousPointer & this.segmentSizeMask) + ENTRY_NEXT_POINTER_OFFSET, newPointer);
+		}
+		return true;
+	}
+
+	/**
+	 * Appends an entry for the record to the record area.
+	 *
+	 * @return The pointer to the new entry, or <code>NULL_POINTER</code>, if the memory was not sufficient.
+	 */
+	private final long appendEntry(T record, int hashCode, long nextPointer) throws IOException
+	{
+		final RecordAreaOutputView out = this.outView;
+		final int startSegment = out.currentSegmentIndex;
+		final int startOffset = out.getCurrentPositionInSegment();
+
+		try {
+			// make sure the header does not cross a segment boundary
+			if (this.segmentSize - out.getCurrentPositionInSegment() < ENTRY_HEADER_LENGTH) {
+				out.advance();
+			}
+
+			final MemorySegment seg = out.getCurrentSegment();
+			final int offset = out.getCurrentPositionInSegment();
+			final long pointer = (((long) out.currentSegmentIndex) << this.segmentSizeBits) | offset;
+
+			seg.putLongNative(offset + ENTRY_NEXT_POINTER_OFFSET, nextPointer);
+			seg.putIntNative(offset + ENTRY_HASH_CODE_OFFSET, hashCode);
+			out.skipBytesToWrite(ENTRY_HEADER_LENGTH);
+
+			final long length = this.serializer.serialize(record, out);
+			seg.putIntNative(offset + ENTRY_SLOT_LENGTH_OFFSET, (int) length);
+			return pointer;
+		}
+		catch (EOFException eofex) {
+			out.setWritePosition(startSegment, startOffset);
+			return NULL_POINTER;
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * An iterator over the records in the table, in the order of their buckets.
+	 */
+	public final class EntryIterator implements MutableObjectIterator<T>
+	{
+		private int bucket;
+
+		private long pointer = NULL_POINTER;
+
+		private int currentHashCode;
+
+		private EntryIterator() {}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.util.MutableObjectIterator#next(java.lang.Object)
+		 */
+		@Override
+		public boolean next(T target) throws IOException
+		{
+			final CombiningHashTable<T> table = CombiningHashTable.this;
+
+			while (this.pointer == NULL_POINTER) {
+				if (this.bucket >= table.numBuckets) {
+					return false;
+				}
+				final MemorySegment seg = table.buckets[this.bucket >>> table.bucketsPerSegmentBits];
+				this.pointer = seg.getLongNative((this.bucket & table.bucketsPerSegmentMask) * BUCKET_SIZE);
+				this.bucket++;
+			}
+
+			final MemorySegment seg = table.recordSegments.get((int) (this.pointer >>> table.segmentSizeBits));
+			final int offset = (int) (this.pointer & table.segmentSizeMask);
+			this.currentHashCode = seg.getIntNative(offset + ENTRY_HASH_CODE_OFFSET);
+
+			table.inView.setReadPosition(this.pointer + ENTRY_HEADER_LENGTH);
+			table.serializer.deserialize(target, table.inView);
+
+			this.pointer = seg.getLongNative(offset + ENTRY_NEXT_POINTER_OFFSET);
+			return true;
+		}
+
+		/**
+		 * Gets the hash code of the record last returned by this iterator, as computed by the table.
+		 *
+		 * @return The hash code of the current record.
+		 */
+		public int getCurrentHashCode()
+		{
+			return this.currentHashCode;
+		}
+	}
+
+	/**
+	 * The output view that writes the record area. It takes new segments from the free segments of
+	 * the table and reuses segments that are already part of the record area.
+	 */
+	private final class RecordAreaOutputView extends AbstractPagedOutputView
+	{
+		private int currentSegmentIndex;
+
+		private RecordAreaOutputView(MemorySegment initialSegment, int segmentSize)
+		{
+			super(initialSegment, segmentSize, 0);
+		}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.nephele.services.memorymanager.AbstractPagedOutputView#nextSegment(eu.stratosphere.nephele.services.memorymanager.MemorySegment, int)
+		 */
+		@Override
+		protected MemorySegment nextSegment(MemorySegment current, int positionInCurrent) throws EOFException
+		{
+			final ArrayList<MemorySegment> segments = CombiningHashTable.this.recordSegments;
+			final ArrayList<MemorySegment> free = CombiningHashTable.this.freeSegments;
+
+			if (this.currentSegmentIndex + 1 < segments.size()) {
+				return segments.get(++this.currentSegmentIndex);
+			} else if (free.size() > 0) {
+				final MemorySegment next = free.remove(free.size() - 1);
+				segments.add(next);
+				this.currentSegmentIndex++;
+				return next;
+			} else {
+				throw new EOFException();
+			}
+		}
+
+		@Override
+		protected void advance() throws IOException
+		{
+			super.advance();
+		}
+
+		private void setWritePosition(long pointer)
+		{
+			setWritePosition((int) (pointer >>> CombiningHashTable.this.segmentSizeBits),
+				(int) (pointer & CombiningHashTable.this.segmentSizeMask));
+		}
+
+		private void setWritePosition(int segmentIndex, int offset)
+		{
+			this.currentSegmentIndex = segmentIndex;
+			seekOutput(CombiningHashTable.this.recordSegments.get(segmentIndex), offset);
+		}
+	}
+
+	/**
+	 * Iterator over the two records that are handed to the combiner.
+	 */
+	private static final class CombineValueIterator<T> implements Iterator<T>
+	{
+		private T first;
+
+		private T second;
+
+		private int position;
+
+		private void set(T first, T second)
+		{
+			this.first = first;
+			this.second = second;
+			this.position = 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.position < 2;
+		}
+
+		@Override
+		public T next() {
+			switch (this.position++) {
+				case 0: return this.first;
+				case 1: return this.second;
+				default: throw new NoSuchElementException();
+			}
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Collector that remembers the record emitted by the combiner.
+	 */
+	private static final class CombineResultCollector<T> implements Collector<T>
+	{
+		private T result;
+
+		private int count;
+
+		private void reset()
+		{
+			this.result = null;
+			this.count = 0;
+		}
+
+		@Override
+		public void collect(T record) {
+			this.result = record;
+			this.count++;
+		}
+
+		@Override
+		public void close() {}
+	}
+}
@@ -82,6 +82,11 @@ import eu.stratosphere.pact.runtime.util.MathUtils;
  * |
  * </pre>
  * 
+ * When a partition is spilled, its buckets no longer hold hash codes and pointers. Instead, the bytes after
+ * the bucket header are used as a bloom filter over the hash codes of the partition's build-side records
+ * that fall into that bucket. Probe-side records that the filter rules out cannot have a join partner
+ * and are dropped, rather than being written to the spilled partition's probe side.
+ * 
  * @author Stephan Ewen (stephan.ewen@tu-berlin.de)
  * 
  * @param <BT> The type of records from the build side that are stored in the hash table.
@@ -186,13 +191,29 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	 */
 	private static final long BUCKET_FORWARD_POINTER_NOT_SET = ~0x0L;
 	
-//	private static final byte BUCKET_STATUS_SPILLED = 1;
-	
 	/**
 	 * Constant for the bucket status, indicating that the bucket is in memory.
 	 */
 	private static final byte BUCKET_STATUS_IN_MEMORY = 0;
 	
+	/**
+	 * Constant for the bucket status, indicating that the bucket's partition is spilled and the bucket
+	 * holds a bloom filter over the hash codes of the partition's records.
+	 */
+	private static final byte BUCKET_STATUS_BLOOM_FILTER = 1;
+	
+	// ------------------------------ Bloom Filters in Buckets ------------------------------
+	
+	/**
+	 * The number of bits in the bloom filter of a bucket of a spilled partition.
+	 */
+	private static final int BLOOM_FILTER_BITS = (HASH_BUCKET_SIZE - BUCKET_HEADER_LENGTH) * 8;
+	
+	/**
+	 * The number of bits that are set in the bloom filter per hash code.
+	 */
+	private static final int BLOOM_FILTER_NUM_HASH_FUNCTIONS = 3;
+	
 	// ------------------------------------------------------------------------
 	//                              Members
 	// ------------------------------------------------------------------------
@@ -469,7 +490,7 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 				this.bucketIterator.set(bucket, p.overflowSegments, p, hash, bucketInSegmentOffset);
 				return true;
 			}
-			else {
+			else if (mayContain(bucket, bucketInSegmentOffset, hash)) {
 				p.insertIntoProbeBuffer(next);
 			}
 		}
@@ -837,6 +858,9 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		if (pointer != -1) {
 			// record was inserted into an in-memory partition. a pointer must be inserted into the buckets
 			insertBucketEntry(p, bucket, bucketInSegmentPos, hashCode, pointer);
+		} else {
+			// the partition is spilled, the bucket's bloom filter must cover the record
+			addToBloomFilter(bucket, bucketInSegmentPos, hashCode);
 		}
 	}
 	
@@ -853,17 +877,17 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 	throws IOException
 	{
 		// find the position to put the hash code and pointer
-		final int count = bucket.getShort(bucketInSegmentPos + HEADER_COUNT_OFFSET);
+		final int count = bucket.getShortNative(bucketInSegmentPos + HEADER_COUNT_OFFSET);
 		if (count < NUM_ENTRIES_PER_BUCKET)
 		{
 			// we are good in our current bucket, put the values
-			bucket.putInt(bucketInSegmentPos + BUCKET_HEADER_LENGTH + (count * HASH_CODE_LEN), hashCode);	// hash code
-			bucket.putLong(bucketInSegmentPos + BUCKET_POINTER_START_OFFSET + (count * POINTER_LEN), pointer); // pointer
-			bucket.putShort(bucketInSegmentPos + HEADER_COUNT_OFFSET, (short) (count + 1)); // update count
+			bucket.putIntNative(bucketInSegmentPos + BUCKET_HEADER_LENGTH + (count * HASH_CODE_LEN), hashCode);	// hash code
+			bucket.putLongNative(bucketInSegmentPos + BUCKET_POINTER_START_OFFSET + (count * POINTER_LEN), pointer); // pointer
+			bucket.putShortNative(bucketInSegmentPos + HEADER_COUNT_OFFSET, (short) (count + 1)); // update count
 		}
 		else {
 			// we need to go to the overflow buckets
-			final long originalForwardPointer = bucket.getLong(bucketInSegmentPos + HEADER_FORWARD_OFFSET);
+			final long originalForwardPointer = bucket.getLongNative(bucketInSegmentPos + HEADER_FORWARD_OFFSET);
 			final long forwardForNewBucket;
 			
 			if (originalForwardPointer != BUCKET_FORWARD_POINTER_NOT_SET) {
@@ -873,14 +897,14 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 				final int segOffset = (int) (originalForwardPointer & 0xffffffff);
 				final MemorySegment seg = p.overflowSegments[overflowSegNum];
 				
-				final short obCount = seg.getShort(segOffset + HEADER_COUNT_OFFSET);
+				final short obCount = seg.getShortNative(segOffset + HEADER_COUNT_OFFSET);
 				
 				// check if there is space in this overflow bucket
 				if (obCount < NUM_ENTRIES_PER_BUCKET) {
 					// space in this bucket and we are done
-					seg.putInt(segOffset + BUCKET_HEADER_LENGTH + (obCount * HASH_CODE_LEN), hashCode);	// hash code
-					seg.putLong(segOffset + BUCKET_POINTER_START_OFFSET + (obCount * POINTER_LEN), pointer); // pointer
-					seg.putShort(segOffset + HEADER_COUNT_OFFSET, (short) (obCount + 1)); // update count
+					seg.putIntNative(segOffset + BUCKET_HEADER_LENGTH + (obCount * HASH_CODE_LEN), hashCode);	// hash code
+					seg.putLongNative(segOffset + BUCKET_POINTER_START_OFFSET + (obCount * POINTER_LEN), pointer); // pointer
+					seg.putShortNative(segOffset + HEADER_COUNT_OFFSET, (short) (obCount + 1)); // update count
 					return;
 				}
 				else {
@@ -908,7 +932,9 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 					// no memory available to create overflow bucket. we need to spill a partition
 					final int spilledPart = spillPartition();
 					if (spilledPart == p.getPartitionNumber()) {
-						// this bucket is no longer in-memory
+						// this bucket is no longer in-memory. the bloom filter was built from the bucket's
+						// entries, which do not contain the current record yet
+						addToBloomFilter(bucket, bucketInSegmentPos, hashCode);
 						return;
 					}
 					overflowSeg = getNextBuffer();
@@ -942,16 +968,16 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			// insert the new overflow bucket in the chain of buckets
 			// 1) set the old forward pointer
 			// 2) let the bucket in the main table point to this one
-			overflowSeg.putLong(overflowBucketOffset + HEADER_FORWARD_OFFSET, forwardForNewBucket);
+			overflowSeg.putLongNative(overflowBucketOffset + HEADER_FORWARD_OFFSET, forwardForNewBucket);
 			final long pointerToNewBucket = (((long) overflowBucketNum) << 32) | ((long) overflowBucketOffset);
-			bucket.putLong(bucketInSegmentPos + HEADER_FORWARD_OFFSET, pointerToNewBucket);
+			bucket.putLongNative(bucketInSegmentPos + HEADER_FORWARD_OFFSET, pointerToNewBucket);
 			
 			// finally, insert the values into the overflow buckets
-			overflowSeg.putInt(overflowBucketOffset + BUCKET_HEADER_LENGTH, hashCode);	// hash code
-			overflowSeg.putLong(overflowBucketOffset + BUCKET_POINTER_START_OFFSET, pointer); // pointer
+			overflowSeg.putIntNative(overflowBucketOffset + BUCKET_HEADER_LENGTH, hashCode);	// hash code
+			overflowSeg.putLongNative(overflowBucketOffset + BUCKET_POINTER_START_OFFSET, pointer); // pointer
 			
 			// set the count to one
-			overflowSeg.putShort(overflowBucketOffset + HEADER_COUNT_OFFSET, (short) 1); 
+			overflowSeg.putShortNative(overflowBucketOffset + HEADER_COUNT_OFFSET, (short) 1); 
 		}
 	}
 	
@@ -1026,8 +1052,8 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 				// initialize the header fields
 				seg.put(bucketOffset + HEADER_PARTITION_OFFSET, partition);
 				seg.put(bucketOffset + HEADER_STATUS_OFFSET, BUCKET_STATUS_IN_MEMORY);
-				seg.putShort(bucketOffset + HEADER_COUNT_OFFSET, (short) 0);
-				seg.putLong(bucketOffset + HEADER_FORWARD_OFFSET, BUCKET_FORWARD_POINTER_NOT_SET);
+				seg.putShortNative(bucketOffset + HEADER_COUNT_OFFSET, (short) 0);
+				seg.putLongNative(bucketOffset + HEADER_FORWARD_OFFSET, BUCKET_FORWARD_POINTER_NOT_SET);
 			}
 			
 			table[i] = seg;
@@ -1078,6 +1104,9 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		}
 		final HashPartition<BT, PT> p = partitions.get(largestPartNum);
 		
+		// turn the partition's buckets into bloom filters, while the overflow buckets are still present
+		buildBloomFiltersForPartition(p);
+		
 		// spill the partition
 		int numBuffersFreed = p.spillPartition(this.availableMemory, this.ioManager, 
 										this.currentEnumerator.next(), this.writeBehindBuffers);
@@ -1190,6 +1219,118 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 		}
 	}
 
+	// --------------------------------------------------------------------------------------------
+	//                                 Bloom Filters for Spilled Partitions
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Replaces the contents of all buckets of the given partition by bloom filters over the hash codes
+	 * of the bucket entries, including the entries in the overflow buckets. The partition must still be
+	 * in memory.
+	 * 
+	 * @param p The partition whose buckets are turned into bloom filters.
+	 */
+	private final void buildBloomFiltersForPartition(final HashPartition<BT, PT> p)
+	{
+		final int partitionNumber = p.getPartitionNumber();
+		final MemorySegment[] overflowSegments = p.overflowSegments;
+		final int bucketsPerSegment = this.bucketsPerSegmentMask + 1;
+		
+		// the hash codes of one bucket chain, collected before the bucket is overwritten
+		int[] hashCodes = new int[NUM_ENTRIES_PER_BUCKET];
+		
+		for (int i = 0, bucketNum = 0; i < this.buckets.length; i++) {
+			final MemorySegment seg = this.buckets[i];
+			for (int k = 0; k < bucketsPerSegment && bucketNum < this.numBuckets; k++, bucketNum++) {
+				final int bucketOffset = k * HASH_BUCKET_SIZE;
+				if (seg.get(bucketOffset + HEADER_PARTITION_OFFSET) != partitionNumber) {
+					continue;
+				}
+				
+				// collect the hash codes of the bucket and its overflow buckets
+				int numCodes = 0;
+				MemorySegment current = seg;
+				int currentOffset = bucketOffset;
+				while (true) {
+					final int count = current.getShortNative(currentOffset + HEADER_COUNT_OFFSET);
+					if (numCodes + count > hashCodes.length) {
+						final int[] larger = new int[Math.max(2 * hashCodes.length, numCodes + count)];
+						System.arraycopy(hashCodes, 0, larger, 0, numCodes);
+						hashCodes = larger;
+					}
+					for (int e = 0; e < count; e++) {
+						hashCodes[numCodes++] = current.getIntNative(currentOffset + BUCKET_HEADER_LENGTH + e * HASH_CODE_LEN);
+					}
+					
+					final long forwardPointer = current.getLongNative(currentOffset + HEADER_FORWARD_OFFSET);
+					if (forwardPointer == BUCKET_FORWARD_POINTER_NOT_SET) {
+						break;
+					}
+					current = overflowSegments[(int) (forwardPointer >>> 32)];
+					currentOffset = (int) (forwardPointer & 0xffffffff);
+				}
+				
+				// clear the bucket and set the bits
+				for (int b = BUCKET_HEADER_LENGTH; b < HASH_BUCKET_SIZE; b++) {
+					seg.put(bucketOffset + b, (byte) 0);
+				}
+				seg.put(bucketOffset + HEADER_STATUS_OFFSET, BUCKET_STATUS_BLOOM_FILTER);
+				seg.putShortNative(bucketOffset + HEADER_COUNT_OFFSET, (short) 0);
+				seg.putLongNative(bucketOffset + HEADER_FORWARD_OFFSET, BUCKET_FORWARD_POINTER_NOT_SET);
+				
+				for (int e = 0; e < numCodes; e++) {
+					addToBloomFilter(seg, bucketOffset, hashCodes[e]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds a hash code to the bloom filter in the given bucket.
+	 * 
+	 * @param bucket The memory segment holding the bucket.
+	 * @param bucketInSegmentPos The offset of the bucket in the memory segment.
+	 * @param hashCode The hash code to add.
+	 */
+	private static final void addToBloomFilter(final MemorySegment bucket, final int bucketInSegmentPos, final int hashCode)
+	{
+		// the second hash is derived by a multiplicative re-hash, because all codes in a bucket share
+		// the bits that selected the bucket
+		final int h1 = hashCode;
+		final int h2 = Integer.rotateLeft(hashCode * 0x9e3779b9, 16);
+		for (int i = 1; i <= BLOOM_FILTER_NUM_HASH_FUNCTIONS; i++) {
+			final int bit = ((h1 + i * h2) & 0x7fffffff) % BLOOM_FILTER_BITS;
+			final int pos = bucketInSegmentPos + BUCKET_HEADER_LENGTH + (bit >>> 3);
+			bucket.put(pos, (byte) (bucket.get(pos) | (1 << (bit & 0x7))));
+		}
+	}
+	
+	/**
+	 * Checks whether the bloom filter in the given bucket may contain the hash code. If the bucket holds
+	 * no bloom filter, this method returns true.
+	 * 
+	 * @param bucket The memory segment holding the bucket.
+	 * @param bucketInSegmentPos The offset of the bucket in the memory segment.
+	 * @param hashCode The hash code to check.
+	 * @return False, if no build-side record in the bucket has the hash code, true if one may have it.
+	 */
+	private static final boolean mayContain(final MemorySegment bucket, final int bucketInSegmentPos, final int hashCode)
+	{
+		if (bucket.get(bucketInSegmentPos + HEADER_STATUS_OFFSET) != BUCKET_STATUS_BLOOM_FILTER) {
+			return true;
+		}
+		
+		final int h1 = hashCode;
+		final int h2 = Integer.rotateLeft(hashCode * 0x9e3779b9, 16);
+		for (int i = 1; i <= BLOOM_FILTER_NUM_HASH_FUNCTIONS; i++) {
+			final int bit = ((h1 + i * h2) & 0x7fffffff) % BLOOM_FILTER_BITS;
+			if ((bucket.get(bucketInSegmentPos + BUCKET_HEADER_LENGTH + (bit >>> 3)) & (1 << (bit & 0x7))) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	// --------------------------------------------------------------------------------------------
 	//                             Utility Computational Functions
 	// --------------------------------------------------------------------------------------------
@@ -1338,7 +1479,7 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			this.originalBucketInSegmentOffset = bucketInSegmentOffset;
 			
 			this.posInSegment = this.bucketInSegmentOffset + BUCKET_HEADER_LENGTH;
-			this.countInSegment = bucket.getShort(bucketInSegmentOffset + HEADER_COUNT_OFFSET);
+			this.countInSegment = bucket.getShortNative(bucketInSegmentOffset + HEADER_COUNT_OFFSET);
 			this.numInSegment = 0;
 		}
 		
@@ -1350,13 +1491,13 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			{
 				while (this.numInSegment < this.countInSegment)
 				{
-					final int thisCode = this.bucket.getInt(this.posInSegment);
+					final int thisCode = this.bucket.getIntNative(this.posInSegment);
 					this.posInSegment += HASH_CODE_LEN;
 						
 					// check if the hash code matches
 					if (thisCode == this.searchHashCode) {
 						// get the pointer to the pair
-						final long pointer = this.bucket.getLong(this.bucketInSegmentOffset + 
+						final long pointer = this.bucket.getLongNative(this.bucketInSegmentOffset + 
 													BUCKET_POINTER_START_OFFSET + (this.numInSegment * POINTER_LEN));
 						this.numInSegment++;
 						
@@ -1380,7 +1521,7 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 				}
 				
 				// this segment is done. check if there is another chained bucket
-				final long forwardPointer = this.bucket.getLong(this.bucketInSegmentOffset + HEADER_FORWARD_OFFSET);
+				final long forwardPointer = this.bucket.getLongNative(this.bucketInSegmentOffset + HEADER_FORWARD_OFFSET);
 				if (forwardPointer == BUCKET_FORWARD_POINTER_NOT_SET) {
 					return false;
 				}
@@ -1388,7 +1529,7 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 				final int overflowSegNum = (int) (forwardPointer >>> 32);
 				this.bucket = this.overflowSegments[overflowSegNum];
 				this.bucketInSegmentOffset = (int) (forwardPointer & 0xffffffff);
-				this.countInSegment = this.bucket.getShort(this.bucketInSegmentOffset + HEADER_COUNT_OFFSET);
+				this.countInSegment = this.bucket.getShortNative(this.bucketInSegmentOffset + HEADER_COUNT_OFFSET);
 				this.posInSegment = this.bucketInSegmentOffset + BUCKET_HEADER_LENGTH;
 				this.numInSegment = 0;
 			}
@@ -1407,7 +1548,7 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			this.bucketInSegmentOffset = this.originalBucketInSegmentOffset;
 			
 			this.posInSegment = this.bucketInSegmentOffset + BUCKET_HEADER_LENGTH;
-			this.countInSegment = bucket.getShort(bucketInSegmentOffset + HEADER_COUNT_OFFSET);
+			this.countInSegment = bucket.getShortNative(bucketInSegmentOffset + HEADER_COUNT_OFFSET);
 			this.numInSegment = 0;
 		}
 
@@ -1455,7 +1596,7 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			this.bucketInSegmentOffset = bucketInSegmentOffset;
 			
 			this.posInSegment = this.bucketInSegmentOffset + BUCKET_HEADER_LENGTH;
-			this.countInSegment = bucket.getShort(bucketInSegmentOffset + HEADER_COUNT_OFFSET);
+			this.countInSegment = bucket.getShortNative(bucketInSegmentOffset + HEADER_COUNT_OFFSET);
 			this.numInSegment = 0;
 		}
 
@@ -1466,13 +1607,13 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 			{
 				while (this.numInSegment < this.countInSegment)
 				{
-					final int thisCode = this.bucket.getInt(this.posInSegment);
+					final int thisCode = this.bucket.getIntNative(this.posInSegment);
 					this.posInSegment += HASH_CODE_LEN;
 						
 					// check if the hash code matches
 					if (thisCode == this.searchHashCode) {
 						// get the pointer to the pair
-						final long pointer = this.bucket.getLong(this.bucketInSegmentOffset + 
+						final long pointer = this.bucket.getLongNative(this.bucketInSegmentOffset + 
 													BUCKET_POINTER_START_OFFSET + (this.numInSegment * POINTER_LEN));
 						this.numInSegment++;
 							
@@ -1489,7 +1630,7 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 				}
 				
 				// this segment is done. check if there is another chained bucket
-				final long forwardPointer = this.bucket.getLong(this.bucketInSegmentOffset + HEADER_FORWARD_OFFSET);
+				final long forwardPointer = this.bucket.getLongNative(this.bucketInSegmentOffset + HEADER_FORWARD_OFFSET);
 				if (forwardPointer == BUCKET_FORWARD_POINTER_NOT_SET) {
 					return false;
 				}
@@ -1497,7 +1638,7 @@ public class MutableHashTable<BT, PT> implements MemorySegmentSource
 				final int overflowSegNum = (int) (forwardPointer >>> 32);
 				this.bucket = this.overflowSegments[overflowSegNum];
 				this.bucketInSegmentOffset = (int) (forwardPointer & 0xffffffff);
-				this.countInSegment = this.bucket.getShort(this.bucketInSegmentOffset + HEADER_COUNT_OFFSET);
+				this.countInSegment = this.bucket.getShortNative(this.bucketInSegmentOffset + HEADER_COUNT_OFFSET);
 				this.posInSegment = this.bucketInSegmentOffset + BUCKET_HEADER_LENGTH;
 				this.numInSegment = 0;
 			}
@@ -0,0 +1,444 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.services.iomanager.BlockChannelReader;
+import eu.stratosphere.nephele.services.iomanager.BlockChannelWriter;
+import eu.stratosphere.nephele.services.iomanager.Channel;
+import eu.stratosphere.nephele.services.iomanager.ChannelReaderInputView;
+import eu.stratosphere.nephele.services.iomanager.ChannelWriterOutputView;
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemoryAllocationException;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.pact.common.generic.GenericReducer;
+import eu.stratosphere.pact.common.generic.types.TypeComparator;
+import eu.stratosphere.pact.common.generic.types.TypeSerializer;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.task.util.CloseableInputProvider;
+
+
+/**
+ * Aggregates its input by key in a {@link CombiningHashTable}, using the <code>combine()</code> method of a
+ * combinable reducer. The iterator returns one fully combined record per distinct key, in no particular order.
+ * <p>
+ * When the table runs out of memory, all partially aggregated records in the table are written to disk,
+ * hash partitioned by their key, and the table is reset. Once the input is consumed, each spilled partition
+ * is aggregated in the same way, with a different hash function, so that partitions that are still too large
+ * are split further. If no partition spills, the input is aggregated completely in memory without any I/O.
+ */
+public class SpillingHashAggregator<T> implements CloseableInputProvider<T>
+{
+	private static final Log LOG = LogFactory.getLog(SpillingHashAggregator.class);
+
+	/**
+	 * The maximum number of partitions into which the table is spilled.
+	 */
+	private static final int MAX_NUM_PARTITIONS = 32;
+
+	/**
+	 * The minimal number of memory segments per partition.
+	 */
+	private static final int MIN_SEGMENTS_PER_PARTITION = 16;
+
+	/**
+	 * The number of memory segments used to read a spilled partition.
+	 */
+	private static final int NUM_READ_BUFFERS = 2;
+
+	/**
+	 * The maximum number of recursive partitionings before the aggregation gives up.
+	 */
+	private static final int MAX_RECURSION_DEPTH = 3;
+
+	// ------------------------------------------------------------------------
+
+	private final GenericReducer<T, ?> combiner;
+
+	private final MemoryManager memoryManager;
+
+	private final IOManager ioManager;
+
+	private final MutableObjectIterator<T> input;
+
+	private final TypeSerializer<T> serializer;
+
+	private final TypeComparator<T> comparator;
+
+	private final List<MemorySegment> memory;
+
+	private final List<MemorySegment> tableMemory;
+
+	private final List<MemorySegment> writeMemory;
+
+	private final List<MemorySegment> readMemory;
+
+	private final List<SpilledPartition> pendingPartitions;
+
+	private final Channel.Enumerator channelEnumerator;
+
+	private final int numPartitions;
+
+	private final int segmentSize;
+
+	private BlockChannelWriter[] partitionChannels;
+
+	private ChannelWriterOutputView[] partitionWriters;
+
+	private CombiningHashTable<T> table;
+
+	private SpilledPartitionIterator currentPartition;
+
+	private AggregatedIterator iterator;
+
+	private volatile boolean closed;
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Creates a new aggregator over the given input.
+	 *
+	 * @param combiner The reducer whose <code>combine()</code> method aggregates records with equal keys.
+	 * @param memoryManager The memory manager to allocate the memory from.
+	 * @param ioManager The I/O manager used to spill partitions.
+	 * @param input The input to aggregate.
+	 * @param parentTask The task that owns the memory.
+	 * @param serializer The serializer for the records.
+	 * @param comparator The comparator that defines the key of the records.
+	 * @param totalMemory The amount of memory to use, in bytes.
+	 * @throws MemoryAllocationException Thrown, if the memory could not be allocated.
+	 */
+	public SpillingHashAggregator(GenericReducer<T, ?> combiner, MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<T> input, AbstractInvokable parentTask,
+			TypeSerializer<T> serializer, TypeComparator<T> comparator, long totalMemory)
+	throws MemoryAllocationException
+	{
+		if (combiner == null || memoryManager == null || ioManager == null || input == null ||
+				serializer == null || comparator == null) {
+			throw new NullPointerException();
+		}
+
+		this.combiner = combiner;
+		this.memoryManager = memoryManager;
+		this.ioManager = ioManager;
+		this.input = input;
+		this.serializer = serializer;
+		this.comparator = comparator;
+		this.segmentSize = memoryManager.getPageSize();
+
+		final int numPages = memoryManager.computeNumberOfPages(totalMemory);
+		this.numPartitions = Math.max(2, Math.min(MAX_NUM_PARTITIONS, numPages / MIN_SEGMENTS_PER_PARTITION));
+		if (numPages < this.numPartitions + NUM_READ_BUFFERS + 2) {
+			throw new IllegalArgumentException("Too little memory provided to hash aggregation: " + numPages +
+				" pages. Required are at least " + (this.numPartitions + NUM_READ_BUFFERS + 2) + " pages.");
+		}
+
+		this.memory = memoryManager.allocatePages(parentTask, numPages);
+		this.writeMemory = new ArrayList<MemorySegment>(this.memory.subList(0, this.numPartitions));
+		this.readMemory = new ArrayList<MemorySegment>(
+			this.memory.subList(this.numPartitions, this.numPartitions + NUM_READ_BUFFERS));
+		this.tableMemory = new ArrayList<MemorySegment>(
+			this.memory.subList(this.numPartitions + NUM_READ_BUFFERS, this.memory.size()));
+
+		this.pendingPartitions = new ArrayList<SpilledPartition>();
+		this.channelEnumerator = ioManager.createChannelEnumerator();
+	}
+
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.util.CloseableInputProvider#getIterator()
+	 */
+	@Override
+	public MutableObjectIterator<T> getIterator()
+	{
+		if (this.iterator == null) {
+			this.iterator = new AggregatedIterator();
+		}
+		return this.iterator;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close()
+	{
+		synchronized (this) {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+		}
+
+		try {
+			if (this.partitionWriters != null) {
+				for (int i = 0; i < this.partitionWriters.length; i++) {
+					try {
+						this.partitionWriters[i].close();
+						this.partitionChannels[i].deleteChannel();
+					} catch (Throwable t) {
+						LOG.error("Error closing a spilled partition: " + t.getMessage(), t);
+					}
+				}
+				this.partitionWriters = null;
+				this.partitionChannels = null;
+			}
+			if (this.currentPartition != null) {
+				try {
+					this.currentPartition.close();
+				} catch (Throwable t) {
+					LOG.error("Error closing a spilled partition: " + t.getMessage(), t);
+				}
+				this.currentPartition = null;
+			}
+			for (int i = 0; i < this.pendingPartitions.size(); i++) {
+				final File f = new File(this.pendingPartitions.get(i).channel.getPath());
+				if (f.exists()) {
+					f.delete();
+				}
+			}
+			this.pendingPartitions.clear();
+		}
+		finally {
+			if (this.table != null) {
+				this.table.close();
+				this.table = null;
+			}
+			this.memoryManager.release(this.memory);
+		}
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * Aggregates the given input into the table. If the table spills, all of its contents are spilled and
+	 * the table is empty afterwards.
+	 *
+	 * @return True, if the aggregated records are in the table, false, if they were spilled.
+	 */
+	private boolean aggregate(MutableObjectIterator<T> in, int recursionLevel) throws IOException
+	{
+		if (this.table != null) {
+			this.table.close();
+			this.tableMemory.clear();
+			this.tableMemory.addAll(this.table.getFreedMemory());
+		}
+		this.table = new CombiningHashTable<T>(this.serializer, this.comparator.duplicate(), this.combiner,
+			this.tableMemory, recursionLevel);
+
+		final CombiningHashTable<T> table = this.table;
+		final T record = this.serializer.createInstance();
+
+		while (!this.closed && in.next(record)) {
+			if (!table.insertOrCombine(record)) {
+				spillTable(recursionLevel);
+				if (!table.insertOrCombine(record)) {
+					throw new IOException("A record is too large to be aggregated in the available memory.");
+				}
+			}
+		}
+
+		if (this.partitionWriters == null) {
+			return true;
+		}
+
+		// the table has spilled, so its remaining contents go to the partitions as well
+		spillTable(recursionLevel);
+
+		for (int i = 0; i < this.numPartitions; i++) {
+			final ChannelWriterOutputView writer = this.partitionWriters[i];
+			final long bytes = writer.getBytesWritten();
+			this.writeMemory.addAll(writer.close());
+
+			if (bytes > 0) {
+				this.pendingPartitions.add(new SpilledPartition(this.partitionChannels[i].getChannelID(),
+					writer.getBlockCount(), recursionLevel + 1));
+			} else {
+				this.partitionChannels[i].deleteChannel();
+			}
+		}
+		this.partitionWriters = null;
+		this.partitionChannels = null;
+		return false;
+	}
+
+	/**
+	 * Writes all records in the table to the partitions and resets the table.
+	 */
+	private void spillTable(int recursionLevel) throws IOException
+	{
+		if (this.partitionWriters == null) {
+			if (recursionLevel >= MAX_RECURSION_DEPTH) {
+				throw new RuntimeException("Hash aggregation exceeded maximum number of recursions, without reducing "
+					+ "partitions enough to be memory resident. Probable cause: Too many distinct keys.");
+			}
+
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Hash aggregation spills at recursion level " + recursionLevel + ".");
+			}
+
+			this.partitionChannels = new BlockChannelWriter[this.numPartitions];
+			this.partitionWriters = new ChannelWriterOutputView[this.numPartitions];
+			for (int i = 0; i < this.numPartitions; i++) {
+				final BlockChannelWriter writer = this.ioManager.createBlockChannelWriter(this.channelEnumerator.next());
+				this.partitionChannels[i] = writer;
+				this.partitionWriters[i] = new ChannelWriterOutputView(writer,
+					Collections.singletonList(this.writeMemory.remove(this.writeMemory.size() - 1)), this.segmentSize);
+			}
+		}
+
+		final CombiningHashTable<T>.EntryIterator entries = this.table.getEntryIterator();
+		final T record = this.serializer.createInstance();
+		while (entries.next(record)) {
+			this.serializer.serialize(record, this.partitionWriters[entries.getCurrentHashCode() % this.numPartitions]);
+		}
+		this.table.reset();
+	}
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The iterator over the aggregated records. It aggregates the input upon the first call and the spilled
+	 * partitions one after another, as the records of the previous ones have been returned.
+	 */
+	private final class AggregatedIterator implements MutableObjectIterator<T>
+	{
+		private MutableObjectIterator<T> currentEntries;
+
+		private boolean inputConsumed;
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.util.MutableObjectIterator#next(java.lang.Object)
+		 */
+		@Override
+		public boolean next(T target) throws IOException
+		{
+			final SpillingHashAggregator<T> aggregator = SpillingHashAggregator.this;
+
+			while (!aggregator.closed) {
+				if (this.currentEntries != null) {
+					if (this.currentEntries.next(target)) {
+						return true;
+					}
+					this.currentEntries = null;
+				}
+
+				if (!this.inputConsumed) {
+					this.inputConsumed = true;
+					if (aggregator.aggregate(aggregator.input, 0)) {
+						this.currentEntries = aggregator.table.getEntryIterator();
+					}
+				}
+				else if (!aggregator.pendingPartitions.isEmpty()) {
+					final SpilledPartition partition = aggregator.pendingPartitions.remove(0);
+					aggregator.currentPartition = new SpilledPartitionIterator(partition);
+					final boolean inMemory = aggregator.aggregate(aggregator.currentPartition, partition.recursionLevel);
+					aggregator.currentPartition.close();
+					aggregator.currentPartition = null;
+					if (inMemory) {
+						this.currentEntries = aggregator.table.getEntryIterator();
+					}
+				}
+				else {
+					return false;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * An iterator over the records of a spilled partition, which deletes the partition once it is consumed.
+	 */
+	private final class SpilledPartitionIterator implements MutableObjectIterator<T>
+	{
+		private final BlockChannelReader reader;
+
+		private final ChannelReaderInputView inView;
+
+		private SpilledPartitionIterator(SpilledPartition partition) throws IOException
+		{
+			final SpillingHashAggregator<T> aggregator = SpillingHashAggregator.this;
+
+			this.reader = aggregator.ioManager.createBlockChannelReader(partition.channel);
+			final List<MemorySegment> segments = new ArrayList<MemorySegment>(aggregator.readMemory);
+			aggregator.readMemory.clear();
+			this.inView = new ChannelReaderInputView(this.reader, segments, partition.numBlocks, false);
+		}
+
+		/* (non-Javadoc)
+		 * @see eu.stratosphere.pact.common.util.MutableObjectIterator#next(java.lang.Object)
+		 */
+		@Override
+		public boolean next(T target) throws IOException
+		{
+			if (this.inView.isClosed()) {
+				return false;
+			}
+
+			try {
+				SpillingHashAggregator.this.serializer.deserialize(target, this.inView);
+				return true;
+			}
+			catch (EOFException eofex) {
+				close();
+				return false;
+			}
+		}
+
+		/**
+		 * Closes the reader, returns its memory, and deletes the partition.
+		 */
+		private void close() throws IOException
+		{
+			if (!this.inView.isClosed()) {
+				SpillingHashAggregator.this.readMemory.addAll(this.inView.close());
+				this.reader.deleteChannel();
+			}
+		}
+	}
+
+	/**
+	 * Describes a partition that has been spilled to disk.
+	 */
+	private static final class SpilledPartition
+	{
+		private final Channel.ID channel;
+
+		private final int numBlocks;
+
+		private final int recursionLevel;
+
+		private SpilledPartition(Channel.ID channel, int numBlocks, int recursionLevel)
+		{
+			this.channel = channel;
+			this.numBlocks = numBlocks;
+			this.recursionLevel = recursionLevel;
+		}
+	}
+}
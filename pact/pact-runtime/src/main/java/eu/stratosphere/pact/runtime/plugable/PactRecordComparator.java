@@ -348,6 +348,11 @@ public final class PactRecordComparator implements TypeComparator<PactRecord>
 		return keyTypes;
 	}
 	
+	public final boolean[] getKeySortDirections()
+	{
+		return this.ascending;
+	}
+	
 	public final Key[] getKeysAsCopy(PactRecord record)
 	{
 		try {
@@ -0,0 +1,121 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.shipping;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+
+/**
+ * The set of heavy hitter keys used by the skew-aware hash partitioning. For each hot key, the set records
+ * whether the partitioning side spreads the records with that key over all channels, or whether it replicates
+ * them to all channels, because the other input spreads them. Keys that are not in the set are partitioned by
+ * their hash value, as in the regular hash partitioning.
+ * <p>
+ * The number of hot keys is bounded by the number of partitions, so the set is a plain list that is searched
+ * by the keys' hash codes before the keys themselves are compared.
+ */
+public class HotKeySet
+{
+	private final List<Key[]> keys = new ArrayList<Key[]>();
+	
+	private final List<Boolean> spread = new ArrayList<Boolean>();
+	
+	private int[] hashes = new int[0];
+	
+	/**
+	 * Adds a hot key to the set.
+	 * 
+	 * @param key The fields of the key, in the order of the partitioning comparator's key fields.
+	 * @param spreadKey True, if records with that key are spread over all channels, false, if they
+	 *                  are replicated to all channels.
+	 */
+	public void add(Key[] key, boolean spreadKey)
+	{
+		final int[] newHashes = new int[this.hashes.length + 1];
+		System.arraycopy(this.hashes, 0, newHashes, 0, this.hashes.length);
+		newHashes[this.hashes.length] = hash(key);
+		
+		this.hashes = newHashes;
+		this.keys.add(key);
+		this.spread.add(Boolean.valueOf(spreadKey));
+	}
+	
+	/**
+	 * Gets the number of hot keys in this set.
+	 * 
+	 * @return The number of hot keys.
+	 */
+	public int size()
+	{
+		return this.hashes.length;
+	}
+	
+	/**
+	 * Searches the set for the key of the given record.
+	 * 
+	 * @param record The record whose key is searched.
+	 * @param hash The hash code of the record's key, as computed by the comparator.
+	 * @param comparator The comparator describing the record's key fields.
+	 * @return The index of the record's key in the set, or -1, if the key is not hot.
+	 */
+	public int find(PactRecord record, int hash, PactRecordComparator comparator)
+	{
+		boolean referenceSet = false;
+		for (int i = 0; i < this.hashes.length; i++) {
+			if (this.hashes[i] == hash) {
+				if (!referenceSet) {
+					comparator.setReference(record);
+					referenceSet = true;
+				}
+				if (comparator.compareAgainstReference(this.keys.get(i)) == 0) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Checks whether the records with the hot key at the given index are spread over all channels.
+	 * 
+	 * @param index The index of the hot key, as returned by {@link #find(PactRecord, int, PactRecordComparator)}.
+	 * @return True, if the records are spread, false, if they are replicated to all channels.
+	 */
+	public boolean isSpread(int index)
+	{
+		return this.spread.get(index).booleanValue();
+	}
+	
+	/**
+	 * Computes the hash code of the given key in the same way as {@link PactRecordComparator#hash(PactRecord)}
+	 * computes it for a record.
+	 * 
+	 * @param key The fields of the key.
+	 * @return The hash code of the key.
+	 */
+	public static int hash(Key[] key)
+	{
+		int code = 0;
+		for (int i = 0; i < key.length; i++) {
+			code ^= key[i].hashCode();
+		}
+		return code;
+	}
+}
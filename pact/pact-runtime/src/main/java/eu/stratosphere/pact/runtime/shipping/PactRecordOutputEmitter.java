@@ -45,6 +45,10 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 	
 	private final DataDistribution distribution;
 	
+	private final HotKeySet hotKeys;				// the heavy hitters for skew-aware hash partitioning
+	
+	private int[] allChannels;						// the reused array for replicating hot keys to all channels
+	
 	private int nextChannelToSendTo;				// counter to go over channels round robin
 
 	// ------------------------------------------------------------------------
@@ -82,6 +86,22 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 	 * @param distr The distribution pattern used in the case of a range partitioning.
 	 */
 	public PactRecordOutputEmitter(ShipStrategyType strategy, PactRecordComparator comparator, DataDistribution distr)
+	{
+		this(strategy, comparator, distr, null);
+	}
+	
+	/**
+	 * Creates a new channel selector that uses the given strategy (broadcasting, partitioning, ...)
+	 * and uses the supplied comparator to hash / compare records for partitioning them deterministically.
+	 * 
+	 * @param strategy The distribution strategy to be used.
+	 * @param comparator The comparator used to hash / compare the records.
+	 * @param distr The distribution pattern used in the case of a range partitioning.
+	 * @param hotKeys The heavy hitters used in the case of a skew-aware hash partitioning. The set may
+	 *                be filled after the emitter has been created, but before the first record is emitted.
+	 */
+	public PactRecordOutputEmitter(ShipStrategyType strategy, PactRecordComparator comparator,
+			DataDistribution distr, HotKeySet hotKeys)
 	{
 		if (strategy == null) { 
 			throw new NullPointerException();
@@ -90,10 +110,12 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 		this.strategy = strategy;
 		this.comparator = comparator;
 		this.distribution = distr;
+		this.hotKeys = hotKeys;
 		
 		switch (strategy) {
 		case FORWARD:
 		case PARTITION_HASH:
+		case PARTITION_SKEWED_HASH:
 		case PARTITION_LOCAL_HASH:
 		case PARTITION_RANGE:
 			this.channels = new int[1];
@@ -106,6 +128,8 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 		
 		if ((strategy == ShipStrategyType.PARTITION_LOCAL_RANGE || strategy == ShipStrategyType.PARTITION_RANGE) && distr == null)
 			throw new NullPointerException("Data distribution must not be null when the ship strategy is range partitioning.");
+		if (strategy == ShipStrategyType.PARTITION_SKEWED_HASH && hotKeys == null)
+			throw new NullPointerException("Hot key set must not be null when the ship strategy is skew-aware hash partitioning.");
 	}
 
 	// ------------------------------------------------------------------------
@@ -125,6 +149,8 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 		case PARTITION_HASH:
 		case PARTITION_LOCAL_HASH:
 			return hashPartitionDefault(record, numberOfChannels);
+		case PARTITION_SKEWED_HASH:
+			return skewedHashPartition(record, numberOfChannels);
 		case PARTITION_RANGE:
 			return rangePartiton(record, numberOfChannels);
 		case BROADCAST:
@@ -158,7 +184,33 @@ public class PactRecordOutputEmitter implements ChannelSelector<PactRecord>
 
 	private final int[] hashPartitionDefault(final PactRecord record, int numberOfChannels)
 	{
-		int hash = this.comparator.hash(record);
+		return hashChannel(this.comparator.hash(record), numberOfChannels);
+	}
+	
+	private final int[] skewedHashPartition(final PactRecord record, int numberOfChannels)
+	{
+		final int hash = this.comparator.hash(record);
+		final int hotKey = this.hotKeys.find(record, hash, this.comparator);
+		
+		if (hotKey < 0) {
+			return hashChannel(hash, numberOfChannels);
+		}
+		else if (this.hotKeys.isSpread(hotKey)) {
+			return robin(numberOfChannels);
+		}
+		else {
+			if (this.allChannels == null || this.allChannels.length != numberOfChannels) {
+				this.allChannels = new int[numberOfChannels];
+				for (int i = 0; i < numberOfChannels; i++) {
+					this.allChannels[i] = i;
+				}
+			}
+			return this.allChannels;
+		}
+	}
+	
+	private final int[] hashChannel(int hash, int numberOfChannels)
+	{
 		for (int i = 0; i < DEFAULT_SALT.length; i++) {
 			hash ^= ((hash << 5) + DEFAULT_SALT[i] + (hash >> 2));
 		}
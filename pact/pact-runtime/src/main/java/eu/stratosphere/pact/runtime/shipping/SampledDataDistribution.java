@@ -0,0 +1,114 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.shipping;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+import eu.stratosphere.pact.common.contract.DataDistribution;
+import eu.stratosphere.pact.common.type.PactRecord;
+
+/**
+ * A data distribution whose bucket boundaries have been determined at runtime from a sample of the data. The
+ * boundaries are computed for a fixed number of buckets, so the distribution can only be queried for exactly
+ * that number of buckets. A distribution without boundaries describes the trivial case of a single bucket.
+ */
+public class SampledDataDistribution implements DataDistribution
+{
+	private PactRecord[] boundaries;
+	
+	/**
+	 * Creates a distribution for a single bucket.
+	 */
+	public SampledDataDistribution()
+	{
+		this.boundaries = new PactRecord[0];
+	}
+	
+	/**
+	 * Creates a distribution with the given bucket boundaries.
+	 * 
+	 * @param boundaries The upper boundaries of all buckets but the last one, in ascending order.
+	 */
+	public SampledDataDistribution(List<PactRecord> boundaries)
+	{
+		this.boundaries = boundaries.toArray(new PactRecord[boundaries.size()]);
+	}
+	
+	/**
+	 * Sets the bucket boundaries. Because output emitters cache the boundaries once they partitioned
+	 * the first record, the boundaries must be set before the distribution is used.
+	 * 
+	 * @param boundaries The upper boundaries of all buckets but the last one, in ascending order.
+	 */
+	public void setBoundaries(List<PactRecord> boundaries)
+	{
+		this.boundaries = boundaries.toArray(new PactRecord[boundaries.size()]);
+	}
+	
+	/**
+	 * Gets the number of buckets that this distribution describes.
+	 * 
+	 * @return The number of buckets.
+	 */
+	public int getNumberOfBuckets()
+	{
+		return this.boundaries.length + 1;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.contract.DataDistribution#getBucketBoundary(int, int)
+	 */
+	@Override
+	public PactRecord getBucketBoundary(int bucketNum, int totalNumBuckets)
+	{
+		if (totalNumBuckets != this.boundaries.length + 1) {
+			throw new IllegalArgumentException("The sampled distribution was computed for " +
+				(this.boundaries.length + 1) + " buckets, but is queried for " + totalNumBuckets + " buckets.");
+		}
+		return this.boundaries[bucketNum];
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.contract.DataDistribution#write(java.io.DataOutput)
+	 */
+	@Override
+	public void write(DataOutput out) throws IOException
+	{
+		out.writeInt(this.boundaries.length);
+		for (int i = 0; i < this.boundaries.length; i++) {
+			this.boundaries[i].write(out);
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.contract.DataDistribution#read(java.io.DataInput)
+	 */
+	@Override
+	public void read(DataInput in) throws IOException
+	{
+		this.boundaries = new PactRecord[in.readInt()];
+		for (int i = 0; i < this.boundaries.length; i++) {
+			this.boundaries[i] = new PactRecord();
+			this.boundaries[i].read(in);
+		}
+	}
+}
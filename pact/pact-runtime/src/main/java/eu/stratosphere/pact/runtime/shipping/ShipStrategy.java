@@ -26,6 +26,7 @@ public abstract class ShipStrategy {
 	public enum ShipStrategyType {
 		FORWARD,
 		PARTITION_HASH,
+		PARTITION_SKEWED_HASH,
 		PARTITION_LOCAL_HASH,
 		PARTITION_RANGE,
 		PARTITION_LOCAL_RANGE,
@@ -93,6 +94,14 @@ public abstract class ShipStrategy {
 		
 	}
 
+	public static class PartitionSkewedHashSS extends PartitionShipStrategy {
+		
+		public PartitionSkewedHashSS(FieldList partitionFields) { 
+			super(ShipStrategyType.PARTITION_SKEWED_HASH, partitionFields);
+		}
+		
+	}
+
 	public static class PartitionLocalHashSS extends PartitionShipStrategy {
 		
 		public PartitionLocalHashSS(FieldList partitionFields) { 
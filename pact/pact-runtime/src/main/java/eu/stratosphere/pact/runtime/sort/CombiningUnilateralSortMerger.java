@@ -146,9 +146,44 @@ public class CombiningUnilateralSortMerger<E> extends UnilateralSortMerger<E>
 			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
 			float startSpillingFraction, boolean combineLastMerge)
 	throws IOException, MemoryAllocationException
+	{
+		this(combineStub, memoryManager, ioManager, input, parentTask, serializer, comparator,
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, combineLastMerge, 1);
+	}
+	
+	/**
+	 * Creates a new sorter that reads the data from a given reader and provides an iterator returning that
+	 * data in a sorted manner. The memory is divided among sort buffers, write buffers and read buffers
+	 * automatically. Full sort buffers are sorted by several threads concurrently.
+	 * 
+	 * @param combineStub The stub used to combine values with the same key.
+	 * @param memoryManager The memory manager from which to allocate the memory.
+	 * @param ioManager The I/O manager, which is used to write temporary files to disk.
+	 * @param input The input that is sorted by this sorter.
+	 * @param parentTask The parent task, which owns all resources used by this sorter.
+	 * @param serializer The type serializer.
+	 * @param comparator The type comparator establishing the order relation.
+	 * @param totalMemory The total amount of memory dedicated to sorting, merging and I/O.
+	 * @param numSortBuffers The number of distinct buffers to use creation of the initial runs.
+	 * @param maxNumFileHandles The maximum number of files to be merged at once.
+	 * @param startSpillingFraction The faction of the buffers that have to be filled before the spilling thread
+	 *                              actually begins spilling data to disk.
+	 * @param combineLastMerge A flag indicating whether the last merge step applies the combiner as well.
+	 * @param sortParallelism The number of threads that sort a full buffer concurrently.
+	 * 
+	 * @throws IOException Thrown, if an error occurs initializing the resources for external sorting.
+	 * @throws MemoryAllocationException Thrown, if not enough memory can be obtained from the memory manager to
+	 *                                   perform the sort.
+	 */
+	public CombiningUnilateralSortMerger(GenericReducer<E, ?> combineStub, MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<E> input, AbstractInvokable parentTask, 
+			TypeSerializer<E> serializer, TypeComparator<E> comparator,
+			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
+			float startSpillingFraction, boolean combineLastMerge, int sortParallelism)
+	throws IOException, MemoryAllocationException
 	{
 		super(memoryManager, ioManager, input, parentTask, serializer, comparator,
-			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, false);
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, false, sortParallelism);
 		
 		this.combineStub = combineStub;
 		this.combineLastMerge = combineLastMerge;
@@ -382,8 +417,8 @@ public class CombiningUnilateralSortMerger<E> extends UnilateralSortMerger<E>
 				channelIDs = mergeChannelList(channelIDs, this.sortReadMemory, this.writeMemory);
 			}
 			
-			// from here on, we won't write again
-			this.memManager.release(this.writeMemory);
+			// from here on, we won't write again. the write buffers are used as additional read-ahead buffers
+			this.sortReadMemory.addAll(this.writeMemory);
 			this.writeMemory.clear();
 			
 			// check if we have spilled some data at all
@@ -398,7 +433,7 @@ public class CombiningUnilateralSortMerger<E> extends UnilateralSortMerger<E>
 				List<List<MemorySegment>> readBuffers = new ArrayList<List<MemorySegment>>(channelIDs.size());
 				
 				// allocate the read memory and register it to be released
-				getSegmentsForReaders(readBuffers, this.sortReadMemory, channelIDs.size());
+				getSegmentsForReaders(readBuffers, this.sortReadMemory, channelIDs);
 				
 				// get the readers and register them to be released
 				final MergeIterator<E> mergeIterator = getMergingIterator(
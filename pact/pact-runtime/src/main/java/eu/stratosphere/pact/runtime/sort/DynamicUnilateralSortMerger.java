@@ -40,8 +40,18 @@ public class DynamicUnilateralSortMerger<E> extends UnilateralSortMerger<E> {
 			final int maxNumFileHandles, final float startSpillingFraction) throws IOException,
 			MemoryAllocationException {
 
+		this(memoryManager, ioManager, input, parentTask, serializer, comparator, initialMemory,
+			maxNumFileHandles, startSpillingFraction, 1);
+	}
+
+	public DynamicUnilateralSortMerger(final MemoryManager memoryManager, final IOManager ioManager,
+			final MutableObjectIterator<E> input, final AbstractInvokable parentTask,
+			final TypeSerializer<E> serializer, final TypeComparator<E> comparator, final long initialMemory,
+			final int maxNumFileHandles, final float startSpillingFraction, final int sortParallelism)
+			throws IOException, MemoryAllocationException {
+
 		super(memoryManager, ioManager, input, parentTask, serializer, comparator, initialMemory, -1,
-			maxNumFileHandles, startSpillingFraction, false);
+			maxNumFileHandles, startSpillingFraction, false, sortParallelism);
 
 		LOG.info("Dynamic unilateral sort merger started with " + initialMemory + " bytes of initial memory");
 
@@ -16,7 +16,6 @@
 package eu.stratosphere.pact.runtime.sort;
 
 import java.io.IOException;
-import java.util.Comparator;
 import java.util.List;
 
 import eu.stratosphere.pact.common.generic.types.TypeComparator;
@@ -26,23 +25,33 @@ import eu.stratosphere.pact.common.util.MutableObjectIterator;
 /**
  * An iterator that returns a sorted merge of the sequences of elements from a
  * set of iterators, assuming those sequences are ordered themselves.
- * The iterators to be merged are kept internally as a heap, making each access
+ * The iterators to be merged are kept internally as a loser tree, making each access
  * to the next smallest element logarithmic in complexity, with respect to the
- * number of streams to be merged.
- * The order among the elements is established using the methods from the
- * {@link TypeSerializer} class, specifically {@link TypeSerializer#setReference(Object)}
- * and {@link TypeSerializer#compareToReference(TypeSerializer)}.
+ * number of streams to be merged. In contrast to a heap, the loser tree needs only one
+ * comparison per level of the tree to replace the smallest element.
+ * <p>
+ * If the comparator supports normalized keys, each stream caches a prefix of the normalized key
+ * of its head element, and the streams are compared by that prefix first. The records themselves
+ * are only compared through {@link TypeComparator#compareToReference(TypeComparator)}, if the
+ * prefixes are equal and do not fully determine the order.
  * 
- * @see TypeSerializer
- * @see TypeSerializer#setReference(Object)
- * @see TypeSerializer#compareToReference(TypeSerializer)
+ * @see TypeComparator
+ * @see TypeComparator#setReference(Object)
+ * @see TypeComparator#compareToReference(TypeComparator)
  * 
  * @author Erik Nijkamp
  * @author Stephan Ewen
  */
 public class MergeIterator<E> implements MutableObjectIterator<E>
 {
-	private final PartialOrderPriorityQueue<HeadStream<E>> heap;	// heap over the head elements of the stream
+	/**
+	 * The maximal number of normalized key bytes that are cached per stream.
+	 */
+	private static final int MAX_NORMALIZED_KEY_LEN = 8;
+	
+	private final HeadStream<E>[] streams;		// the streams, which are the leaves of the loser tree
+	
+	private final int[] tree;					// the loser tree over the streams, the overall winner at position 0
 	
 	private final TypeSerializer<E> serializer;
 	
@@ -52,15 +61,52 @@ public class MergeIterator<E> implements MutableObjectIterator<E>
 	 *                  The accessors will not be used directly, but a duplicate will be used.
 	 * @throws IOException
 	 */
+	@SuppressWarnings("unchecked")
 	public MergeIterator(List<MutableObjectIterator<E>> iterators,
 			TypeSerializer<E> serializer, TypeComparator<E> comparator)
 	throws IOException
 	{
-		this.heap = new PartialOrderPriorityQueue<HeadStream<E>>(new HeadStreamComparator<E>(), iterators.size());
 		this.serializer = serializer;
 		
-		for (MutableObjectIterator<E> iterator : iterators) {
-			this.heap.add(new HeadStream<E>(iterator, serializer, comparator.duplicate()));
+		// determine how much of the normalized key to cache
+		final int numKeyBytes;
+		final boolean keyFullyDetermines;
+		if (comparator.supportsNormalizedKey()) {
+			numKeyBytes = Math.min(comparator.getNormalizeKeyLen(), MAX_NORMALIZED_KEY_LEN);
+			keyFullyDetermines = !comparator.isNormalizedKeyPrefixOnly(numKeyBytes);
+		} else {
+			numKeyBytes = 0;
+			keyFullyDetermines = false;
+		}
+		final boolean invertKey = comparator.invertNormalizedKey();
+		
+		final int numStreams = iterators.size();
+		this.streams = new HeadStream[numStreams];
+		for (int i = 0; i < numStreams; i++) {
+			this.streams[i] = new HeadStream<E>(iterators.get(i), serializer, comparator.duplicate(),
+				numKeyBytes, keyFullyDetermines, invertKey);
+		}
+		
+		// build the tree bottom up. the leaves are at positions [numStreams, 2 * numStreams), the
+		// inner nodes remember the loser of the match between the winners of their two subtrees
+		this.tree = new int[Math.max(numStreams, 1)];
+		if (numStreams > 0) {
+			final int[] winners = new int[2 * numStreams];
+			for (int i = 0; i < numStreams; i++) {
+				winners[numStreams + i] = i;
+			}
+			for (int pos = numStreams - 1; pos > 0; pos--) {
+				final int left = winners[2 * pos];
+				final int right = winners[2 * pos + 1];
+				if (less(right, left)) {
+					winners[pos] = right;
+					this.tree[pos] = left;
+				} else {
+					winners[pos] = left;
+					this.tree[pos] = right;
+				}
+			}
+			this.tree[0] = numStreams == 1 ? 0 : winners[1];
 		}
 	}
 
@@ -78,22 +124,48 @@ public class MergeIterator<E> implements MutableObjectIterator<E>
 	@Override
 	public boolean next(E target) throws IOException
 	{
-		if (this.heap.size() > 0) {
-			// get the smallest element
-			final HeadStream<E> top = this.heap.peek();
-			this.serializer.copyTo(top.getHead(), target);
-			
-			// read an element
-			if (!top.nextHead()) {
-				this.heap.poll();
-			} else {
-				this.heap.adjustTop();
-			}
-			return true;
+		if (this.streams.length == 0) {
+			return false;
 		}
-		else {
+		
+		int winner = this.tree[0];
+		final HeadStream<E> top = this.streams[winner];
+		if (top.exhausted) {
 			return false;
 		}
+		
+		// get the smallest element and read the next element from its stream
+		this.serializer.copyTo(top.getHead(), target);
+		top.nextHead();
+		
+		// replay the matches on the path from the stream's leaf to the root
+		final int[] tree = this.tree;
+		for (int pos = (winner + this.streams.length) >>> 1; pos > 0; pos >>>= 1) {
+			final int contender = tree[pos];
+			if (less(contender, winner)) {
+				tree[pos] = winner;
+				winner = contender;
+			}
+		}
+		tree[0] = winner;
+		return true;
+	}
+	
+	/**
+	 * Checks whether the head of the first stream is smaller than the head of the second stream.
+	 * Exhausted streams are larger than all others. Ties are broken by the stream index.
+	 */
+	private final boolean less(int stream1, int stream2)
+	{
+		final HeadStream<E> s1 = this.streams[stream1];
+		final HeadStream<E> s2 = this.streams[stream2];
+		
+		if (s1.exhausted | s2.exhausted) {
+			return s2.exhausted && (!s1.exhausted || stream1 < stream2);
+		}
+		
+		final int cmp = s1.compareTo(s2);
+		return cmp < 0 || (cmp == 0 && stream1 < stream2);
 	}
 
 	// ============================================================================================
@@ -107,13 +179,27 @@ public class MergeIterator<E> implements MutableObjectIterator<E>
 		private final TypeComparator<E> comparator;
 		
 		private final E head;
+		
+		private final byte[] keyBytes;		// the normalized key bytes of the head, if it has a normalized key
+		
+		private long keyPrefix;				// the normalized key bytes, packed such that signed comparison works
+		
+		private final boolean keyFullyDetermines;
+		
+		private final boolean invertKey;
+		
+		private boolean exhausted;
 
-		public HeadStream(MutableObjectIterator<E> iterator, TypeSerializer<E> serializer, TypeComparator<E> comparator)
+		public HeadStream(MutableObjectIterator<E> iterator, TypeSerializer<E> serializer, TypeComparator<E> comparator,
+				int numKeyBytes, boolean keyFullyDetermines, boolean invertKey)
 		throws IOException
 		{
 			this.iterator = iterator;
 			this.comparator = comparator;
 			this.head = serializer.createInstance();
+			this.keyBytes = numKeyBytes > 0 ? new byte[numKeyBytes] : null;
+			this.keyFullyDetermines = numKeyBytes > 0 && keyFullyDetermines;
+			this.invertKey = invertKey;
 			
 			if (!nextHead())
 				throw new IllegalStateException();
@@ -126,23 +212,39 @@ public class MergeIterator<E> implements MutableObjectIterator<E>
 		public boolean nextHead() throws IOException
 		{
 			if (this.iterator.next(this.head)) {
-				this.comparator.setReference(this.head);
+				final byte[] keyBytes = this.keyBytes;
+				if (keyBytes != null) {
+					this.comparator.putNormalizedKey(this.head, keyBytes, 0, keyBytes.length);
+					long prefix = 0;
+					for (int i = 0; i < MAX_NORMALIZED_KEY_LEN; i++) {
+						prefix = (prefix << 8) | (i < keyBytes.length ? (keyBytes[i] & 0xff) : 0);
+					}
+					this.keyPrefix = prefix ^ Long.MIN_VALUE;
+				}
+				// the reference is only needed if the key prefix may be inconclusive
+				if (!this.keyFullyDetermines) {
+					this.comparator.setReference(this.head);
+				}
 				return true;
 			}
 			else {
+				this.exhausted = true;
 				return false;
 			}
 		}
-	}
-
-	// --------------------------------------------------------------------------------------------
-	
-	private static final class HeadStreamComparator<E> implements Comparator<HeadStream<E>>
-	{		
-		@Override
-		public int compare(HeadStream<E> o1, HeadStream<E> o2)
+		
+		public int compareTo(HeadStream<E> other)
 		{
-			return o2.comparator.compareToReference(o1.comparator);
+			if (this.keyBytes != null) {
+				if (this.keyPrefix != other.keyPrefix) {
+					final int cmp = this.keyPrefix < other.keyPrefix ? -1 : 1;
+					return this.invertKey ? -cmp : cmp;
+				}
+				if (this.keyFullyDetermines) {
+					return 0;
+				}
+			}
+			return other.comparator.compareToReference(this.comparator);
 		}
 	}
 }
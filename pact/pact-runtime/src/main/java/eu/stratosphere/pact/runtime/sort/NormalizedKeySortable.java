@@ -0,0 +1,51 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+/**
+ * An {@link IndexedSortable} whose elements carry a fixed-length binary key prefix (the normalized key) that
+ * can be compared byte-wise as unsigned values. Such sortables can be sorted by the {@link RadixSort}, which
+ * distributes the elements by the individual key bytes instead of comparing them pair-wise.
+ */
+public interface NormalizedKeySortable extends IndexedSortable {
+
+	/**
+	 * Gets the number of bytes in the normalized key of each element.
+	 * 
+	 * @return The length of the normalized key, in bytes.
+	 */
+	int getNormalizedKeyLength();
+
+	/**
+	 * Checks whether the normalized key fully determines the order of the elements. If it does not, elements
+	 * with identical normalized keys must be ordered through {@link #compare(int, int)}.
+	 * 
+	 * @return True, if the normalized key fully determines the order, false, if it is only a prefix.
+	 */
+	boolean isNormalizedKeyFullyDetermining();
+
+	/**
+	 * Gets a byte of the normalized key of the element at the given position as an unsigned value between
+	 * 0 and 255. The values are adjusted for the sort direction, such that an ascending order of the byte values
+	 * corresponds to the order of the elements.
+	 * 
+	 * @param i The position of the element.
+	 * @param byteNum The number of the byte in the normalized key.
+	 * @return The key byte as an unsigned value.
+	 */
+	int getNormalizedKeyByte(int i, int byteNum);
+
+}
@@ -0,0 +1,283 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A sorter that sorts a {@link NormalizedKeySorter} with several threads from a pool that is shared by all sorters
+ * in the JVM. The index of the buffer is first split by quick sort partitioning steps into as many ranges as the
+ * parallelism permits, where the ranges of each step are partitioned concurrently. The resulting ranges are in order
+ * relative to each other, so sorting each of them concurrently with the given sequential sorter sorts the entire
+ * buffer, without requiring a merge of the ranges.
+ * <p>
+ * The calling thread only coordinates the work and waits for the pool threads. Since the pool threads never wait
+ * for each other, the pool cannot deadlock, regardless of how many sorters share it.
+ * <p>
+ * Sortables other than the {@link NormalizedKeySorter}, or small ranges, are sorted by the calling thread with the
+ * sequential sorter.
+ */
+public final class ParallelSort implements IndexedSorter {
+
+	/**
+	 * Ranges with fewer elements than this are not split further.
+	 */
+	private static final int MIN_SPLIT_SIZE = 16 * 1024;
+
+	/**
+	 * The pool shared by all parallel sorters.
+	 */
+	private static ExecutorService sharedPool;
+
+	private final IndexedSorter sequentialSorter;
+
+	private final int parallelism;
+
+	/**
+	 * Creates a new parallel sorter.
+	 * 
+	 * @param sequentialSorter The sorter that sorts the individual ranges.
+	 * @param parallelism The maximal number of ranges that are sorted concurrently.
+	 */
+	public ParallelSort(IndexedSorter sequentialSorter, int parallelism) {
+		if (sequentialSorter == null) {
+			throw new NullPointerException();
+		}
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("The parallelism must be at least one.");
+		}
+		this.sequentialSorter = sequentialSorter;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Gets the maximal number of ranges that are sorted concurrently.
+	 * 
+	 * @return The parallelism of this sorter.
+	 */
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSorter#sort(eu.stratosphere.pact.runtime.sort.IndexedSortable)
+	 */
+	@Override
+	public void sort(IndexedSortable s) {
+		sort(s, 0, s.size());
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSorter#sort(eu.stratosphere.pact.runtime.sort.IndexedSortable, int, int)
+	 */
+	@Override
+	public void sort(IndexedSortable s, int l, int r) {
+		if (this.parallelism == 1 || r - l < 2 * MIN_SPLIT_SIZE || !(s instanceof NormalizedKeySorter<?>)) {
+			this.sequentialSorter.sort(s, l, r);
+			return;
+		}
+
+		final NormalizedKeySorter<?> buffer = (NormalizedKeySorter<?>) s;
+		final ExecutorService pool = getSharedPool();
+		final List<Future<?>> pending = new ArrayList<Future<?>>(this.parallelism);
+
+		try {
+			// split the range until we have enough ranges. all ranges of one round are split concurrently
+			List<int[]> ranges = new ArrayList<int[]>(this.parallelism);
+			ranges.add(new int[] {l, r});
+
+			while (ranges.size() < this.parallelism) {
+				final List<int[]> next = new ArrayList<int[]>(2 * ranges.size());
+				final List<Future<Integer>> splits = new ArrayList<Future<Integer>>(ranges.size());
+				int numRanges = ranges.size();
+
+				for (int[] range : ranges) {
+					if (numRanges < this.parallelism && range[1] - range[0] >= 2 * MIN_SPLIT_SIZE) {
+						final Future<Integer> split = pool.submit(new Partitioner(buffer.createConcurrentSortView(),
+							range[0], range[1]));
+						pending.add(split);
+						splits.add(split);
+						numRanges++;
+					} else {
+						splits.add(null);
+					}
+				}
+				if (numRanges == ranges.size()) {
+					break;
+				}
+
+				for (int i = 0; i < ranges.size(); i++) {
+					final int[] range = ranges.get(i);
+					final Future<Integer> split = splits.get(i);
+					if (split == null) {
+						next.add(range);
+					} else {
+						// the pivot is at its final position and belongs to neither side
+						final int pivot = split.get().intValue();
+						next.add(new int[] {range[0], pivot});
+						next.add(new int[] {pivot + 1, range[1]});
+					}
+				}
+				pending.clear();
+				ranges = next;
+			}
+
+			// sort the ranges concurrently
+			for (int[] range : ranges) {
+				if (range[1] - range[0] > 1) {
+					pending.add(pool.submit(new RangeSorter(this.sequentialSorter, buffer.createConcurrentSortView(),
+						range[0], range[1])));
+				}
+			}
+			for (Future<?> f : pending) {
+				f.get();
+			}
+			pending.clear();
+		}
+		catch (InterruptedException iex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for the parallel sort.", iex);
+		}
+		catch (ExecutionException eex) {
+			final Throwable cause = eex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new RuntimeException("The parallel sort failed: " + cause.getMessage(), cause);
+			}
+		}
+		finally {
+			// in case of an error, make sure no thread keeps working on the buffer
+			for (Future<?> f : pending) {
+				f.cancel(false);
+			}
+		}
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the pool shared by all parallel sorters, creating it if necessary. The pool has as many threads as
+	 * the machine has cores. Its threads are daemon threads, so the pool need not be shut down.
+	 * 
+	 * @return The shared pool.
+	 */
+	private static synchronized ExecutorService getSharedPool() {
+		if (sharedPool == null) {
+			final AtomicInteger threadNum = new AtomicInteger();
+			sharedPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread t = new Thread(r, "SortMerger parallel sorting thread " + threadNum.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return sharedPool;
+	}
+
+	/**
+	 * Partitions a range around the median of its first, middle and last element, such that all elements before
+	 * the pivot are smaller or equal and all elements after it are larger or equal.
+	 * 
+	 * @param s The sortable.
+	 * @param l The start of the range, inclusive.
+	 * @param r The end of the range, exclusive.
+	 * @return The final position of the pivot.
+	 */
+	static int partition(final IndexedSortable s, final int l, final int r) {
+		// move the median of three to the front
+		final int m = (l + r) >>> 1;
+		final int last = r - 1;
+		if (s.compare(m, l) < 0) {
+			s.swap(m, l);
+		}
+		if (s.compare(last, m) < 0) {
+			s.swap(last, m);
+			if (s.compare(m, l) < 0) {
+				s.swap(m, l);
+			}
+		}
+		s.swap(l, m);
+
+		// the scans stop at elements equal to the pivot, which keeps the ranges balanced for duplicate keys
+		int i = l;
+		int j = r;
+		while (true) {
+			while (++i < r && s.compare(i, l) < 0);
+			while (s.compare(--j, l) > 0);
+			if (i >= j) {
+				break;
+			}
+			s.swap(i, j);
+		}
+		s.swap(l, j);
+		return j;
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private static final class Partitioner implements Callable<Integer> {
+
+		private final IndexedSortable view;
+
+		private final int l, r;
+
+		Partitioner(IndexedSortable view, int l, int r) {
+			this.view = view;
+			this.l = l;
+			this.r = r;
+		}
+
+		@Override
+		public Integer call() {
+			return Integer.valueOf(partition(this.view, this.l, this.r));
+		}
+	}
+
+	private static final class RangeSorter implements Callable<Object> {
+
+		private final IndexedSorter sorter;
+
+		private final IndexedSortable view;
+
+		private final int l, r;
+
+		RangeSorter(IndexedSorter sorter, IndexedSortable view, int l, int r) {
+			this.sorter = sorter;
+			this.view = view;
+			this.l = l;
+			this.r = r;
+		}
+
+		@Override
+		public Object call() {
+			this.sorter.sort(this.view, this.l, this.r);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.sort;
+
+import java.util.Arrays;
+
+/**
+ * An in-place MSD radix sort (American flag sort) over the normalized keys of a {@link NormalizedKeySortable}.
+ * The elements are distributed into 256 buckets by one key byte at a time, starting with the most significant
+ * byte, and each bucket is sorted recursively by the next byte. Small buckets are finished by insertion sort.
+ * If the normalized key is only a prefix of the actual key, elements with identical normalized keys are
+ * sorted with the {@link QuickSort}.
+ * <p>
+ * Sortables that do not offer normalized keys are sorted with the {@link QuickSort} altogether.
+ */
+public final class RadixSort implements IndexedSorter {
+
+	/**
+	 * The number of distinct values of a key byte.
+	 */
+	private static final int RADIX = 256;
+
+	/**
+	 * Ranges smaller than this are sorted with insertion sort rather than being distributed further.
+	 */
+	private static final int INSERTION_SORT_THRESHOLD = 32;
+
+	private final IndexedSorter fallback = new QuickSort();
+
+	public RadixSort() {
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSorter#sort(eu.stratosphere.pact.runtime.sort.IndexedSortable, int, int)
+	 */
+	@Override
+	public void sort(IndexedSortable s, int l, int r) {
+		if (s instanceof NormalizedKeySortable) {
+			final NormalizedKeySortable ns = (NormalizedKeySortable) s;
+			final int keyLen = ns.getNormalizedKeyLength();
+			if (keyLen > 0) {
+				// one array of bucket boundaries per key byte, such that the recursion for a
+				// byte does not overwrite the boundaries of the enclosing level
+				final int[][] bucketStarts = new int[keyLen][RADIX + 1];
+				final int[] nextFree = new int[RADIX];
+				sortInternal(ns, l, r, 0, keyLen, ns.isNormalizedKeyFullyDetermining(), bucketStarts, nextFree);
+				return;
+			}
+		}
+		this.fallback.sort(s, l, r);
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.sort.IndexedSorter#sort(eu.stratosphere.pact.runtime.sort.IndexedSortable)
+	 */
+	@Override
+	public void sort(IndexedSortable s) {
+		sort(s, 0, s.size());
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private void sortInternal(final NormalizedKeySortable s, final int l, final int r, int keyByte,
+			final int keyLen, final boolean fullyDetermining, final int[][] bucketStarts, final int[] nextFree)
+	{
+		while (true) {
+			if (r - l < INSERTION_SORT_THRESHOLD) {
+				insertionSort(s, l, r);
+				return;
+			}
+
+			// histogram of the current key byte
+			final int[] starts = bucketStarts[keyByte];
+			Arrays.fill(starts, 0);
+			for (int i = l; i < r; i++) {
+				starts[s.getNormalizedKeyByte(i, keyByte) + 1]++;
+			}
+
+			// if all elements share the byte, there is nothing to distribute. this is frequent for
+			// the leading bytes of small integer keys, so we move to the next byte right away
+			boolean singleBucket = false;
+			for (int b = 1; b <= RADIX; b++) {
+				if (starts[b] != 0) {
+					singleBucket = starts[b] == r - l;
+					break;
+				}
+			}
+			if (!singleBucket) {
+				break;
+			}
+
+			if (++keyByte == keyLen) {
+				if (!fullyDetermining) {
+					this.fallback.sort(s, l, r);
+				}
+				return;
+			}
+		}
+
+		final int[] starts = bucketStarts[keyByte];
+
+		// turn the histogram into the absolute start positions of the buckets
+		starts[0] = l;
+		for (int b = 1; b <= RADIX; b++) {
+			starts[b] += starts[b - 1];
+		}
+
+		// permute the elements in place into their buckets, following the cycles of the permutation
+		System.arraycopy(starts, 0, nextFree, 0, RADIX);
+		for (int b = 0; b < RADIX; b++) {
+			final int end = starts[b + 1];
+			while (nextFree[b] < end) {
+				final int target = s.getNormalizedKeyByte(nextFree[b], keyByte);
+				if (target == b) {
+					nextFree[b]++;
+				} else {
+					s.swap(nextFree[b], nextFree[target]++);
+				}
+			}
+		}
+
+		// sort the buckets by the next key byte
+		final int nextKeyByte = keyByte + 1;
+		for (int b = 0; b < RADIX; b++) {
+			final int bucketStart = starts[b];
+			final int bucketEnd = starts[b + 1];
+			if (bucketEnd - bucketStart > 1) {
+				if (nextKeyByte < keyLen) {
+					sortInternal(s, bucketStart, bucketEnd, nextKeyByte, keyLen, fullyDetermining, bucketStarts, nextFree);
+				} else if (!fullyDetermining) {
+					this.fallback.sort(s, bucketStart, bucketEnd);
+				}
+			}
+		}
+	}
+
+	private static void insertionSort(final IndexedSortable s, final int l, final int r) {
+		for (int i = l; i < r; ++i) {
+			for (int j = i; j > l && s.compare(j - 1, j) > 0; --j) {
+				s.swap(j, j - 1);
+			}
+		}
+	}
+}
@@ -94,6 +94,8 @@ public class SortMergeCoGroupIterator<T1, T2> implements CoGroupTaskIterator<T1,
 	private final int fileHandlesPerChannel;
 	
 	private final float spillingThreshold;
+	
+	private final int sortParallelism;
 
 	// --------------------------------------------------------------------------------------------
 	
@@ -123,6 +125,7 @@ public class SortMergeCoGroupIterator<T1, T2> implements CoGroupTaskIterator<T1,
 		this.localStrategy = localStrategy;
 		this.parentTask = parentTask;
 		this.spillingThreshold = spillingThreshold;
+		this.sortParallelism = 1;
 	}
 	
 	public SortMergeCoGroupIterator(MemoryManager memoryManager, IOManager ioManager,
@@ -132,6 +135,19 @@ public class SortMergeCoGroupIterator<T1, T2> implements CoGroupTaskIterator<T1,
 			TypePairComparator<T1, T2> pairComparator,
 			long memory, int maxNumFileHandles, float spillingThreshold,
 			LocalStrategy localStrategy, AbstractInvokable parentTask)
+	{
+		this(memoryManager, ioManager, reader1, reader2, serializer1, groupingComparator1, sortingComparator1,
+			serializer2, groupingComparator2, sortingComparator2, pairComparator,
+			memory, maxNumFileHandles, spillingThreshold, 1, localStrategy, parentTask);
+	}
+	
+	public SortMergeCoGroupIterator(MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<T1> reader1, MutableObjectIterator<T2> reader2,
+			TypeSerializer<T1> serializer1, TypeComparator<T1> groupingComparator1, TypeComparator<T1> sortingComparator1,
+			TypeSerializer<T2> serializer2, TypeComparator<T2> groupingComparator2, TypeComparator<T2> sortingComparator2,
+			TypePairComparator<T1, T2> pairComparator,
+			long memory, int maxNumFileHandles, float spillingThreshold, int sortParallelism,
+			LocalStrategy localStrategy, AbstractInvokable parentTask)
 	{		
 		this.memoryManager = memoryManager;
 		this.ioManager = ioManager;
@@ -151,6 +167,7 @@ public class SortMergeCoGroupIterator<T1, T2> implements CoGroupTaskIterator<T1,
 		this.localStrategy = localStrategy;
 		this.parentTask = parentTask;
 		this.spillingThreshold = spillingThreshold;
+		this.sortParallelism = sortParallelism;
 	}
 
 	@Override
@@ -172,14 +189,14 @@ public class SortMergeCoGroupIterator<T1, T2> implements CoGroupTaskIterator<T1,
 		{
 			this.sortMerger1 = new UnilateralSortMerger<T1>(this.memoryManager, this.ioManager,
 					this.reader1, this.parentTask, this.serializer1, this.sortingComparator1, 
-					this.memoryPerChannel, this.fileHandlesPerChannel, this.spillingThreshold);
+					this.memoryPerChannel, -1, this.fileHandlesPerChannel, this.spillingThreshold, this.sortParallelism);
 		}
 
 		if (this.localStrategy == LocalStrategy.SORT_BOTH_MERGE || this.localStrategy == LocalStrategy.SORT_SECOND_MERGE)
 		{
 			this.sortMerger2 = new UnilateralSortMerger<T2>(this.memoryManager, this.ioManager,
 				this.reader2, this.parentTask, this.serializer2, this.sortingComparator2, 
-				this.memoryPerChannel, this.fileHandlesPerChannel, this.spillingThreshold);
+				this.memoryPerChannel, -1, this.fileHandlesPerChannel, this.spillingThreshold, this.sortParallelism);
 		}
 		
 		// =============== These calls freeze until the data is actually available ============
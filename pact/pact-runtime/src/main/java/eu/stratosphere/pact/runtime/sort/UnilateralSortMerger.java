@@ -19,6 +19,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -104,6 +106,11 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	 */
 	private final ThreadBase<E> spillThread;
 	
+	/**
+	 * The number of threads that sort a full buffer concurrently.
+	 */
+	protected final int sortParallelism;
+	
 	// ------------------------------------------------------------------------
 	//                                   Memory
 	// ------------------------------------------------------------------------
@@ -226,7 +233,42 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	}
 	
 	/**
-	 * Internal constructor and constructor for subclasses that want to circumvent the spilling.
+	 * Creates a new sorter that reads the data from a given reader and provides an iterator returning that
+	 * data in a sorted manner. The memory is divided among sort buffers, write buffers and read buffers
+	 * automatically. Full sort buffers are sorted by several threads concurrently.
+	 * 
+	 * @param memoryManager The memory manager from which to allocate the memory.
+	 * @param ioManager The I/O manager, which is used to write temporary files to disk.
+	 * @param input The input that is sorted by this sorter.
+	 * @param parentTask The parent task, which owns all resources used by this sorter.
+	 * @param serializer The type serializer.
+	 * @param comparator The type comparator establishing the order relation.
+	 * @param totalMemory The total amount of memory dedicated to sorting, merging and I/O.
+	 * @param numSortBuffers The number of distinct buffers to use creation of the initial runs, or <code>-1</code>,
+	 *                       to determine the number automatically.
+	 * @param maxNumFileHandles The maximum number of files to be merged at once.
+	 * @param startSpillingFraction The faction of the buffers that have to be filled before the spilling thread
+	 *                              actually begins spilling data to disk.
+	 * @param sortParallelism The number of threads that sort a full buffer concurrently.
+	 * 
+	 * @throws IOException Thrown, if an error occurs initializing the resources for external sorting.
+	 * @throws MemoryAllocationException Thrown, if not enough memory can be obtained from the memory manager to
+	 *                                   perform the sort.
+	 */
+	public UnilateralSortMerger(MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<E> input, AbstractInvokable parentTask, 
+			TypeSerializer<E> serializer, TypeComparator<E> comparator,
+			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
+			float startSpillingFraction, int sortParallelism)
+	throws IOException, MemoryAllocationException
+	{
+		this(memoryManager, ioManager, input, parentTask, serializer, comparator,
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, false, sortParallelism);
+	}
+	
+	/**
+	 * Internal constructor for subclasses that want to circumvent the spilling. Full sort buffers are sorted
+	 * by a single thread.
 	 * 
 	 * @param memoryManager The memory manager from which to allocate the memory.
 	 * @param ioManager The I/O manager, which is used to write temporary files to disk.
@@ -252,6 +294,39 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
 			float startSpillingFraction, boolean noSpillingMemory)
 	throws IOException, MemoryAllocationException
+	{
+		this(memoryManager, ioManager, input, parentTask, serializer, comparator,
+			totalMemory, numSortBuffers, maxNumFileHandles, startSpillingFraction, noSpillingMemory, 1);
+	}
+	
+	/**
+	 * Internal constructor and constructor for subclasses that want to circumvent the spilling.
+	 * 
+	 * @param memoryManager The memory manager from which to allocate the memory.
+	 * @param ioManager The I/O manager, which is used to write temporary files to disk.
+	 * @param input The input that is sorted by this sorter.
+	 * @param parentTask The parent task, which owns all resources used by this sorter.
+	 * @param serializer The type serializer.
+	 * @param comparator The type comparator establishing the order relation.
+	 * @param totalMemory The total amount of memory dedicated to sorting, merging and I/O.
+	 * @param numSortBuffers The number of distinct buffers to use creation of the initial runs.
+	 * @param maxNumFileHandles The maximum number of files to be merged at once.
+	 * @param startSpillingFraction The faction of the buffers that have to be filled before the spilling thread
+	 *                              actually begins spilling data to disk.
+	 * @param noSpilling When set to true, no memory will be allocated for writing and no spilling thread
+	 *                   will be spawned.
+	 * @param sortParallelism The number of threads that sort a full buffer concurrently.
+	 * 
+	 * @throws IOException Thrown, if an error occurs initializing the resources for external sorting.
+	 * @throws MemoryAllocationException Thrown, if not enough memory can be obtained from the memory manager to
+	 *                                   perform the sort.
+	 */
+	protected UnilateralSortMerger(MemoryManager memoryManager, IOManager ioManager,
+			MutableObjectIterator<E> input, AbstractInvokable parentTask, 
+			TypeSerializer<E> serializer, TypeComparator<E> comparator,
+			long totalMemory, int numSortBuffers, int maxNumFileHandles, 
+			float startSpillingFraction, boolean noSpillingMemory, int sortParallelism)
+	throws IOException, MemoryAllocationException
 	{
 		// sanity checks
 		if (memoryManager == null | (ioManager == null && !noSpillingMemory) | serializer == null | comparator == null) {
@@ -263,8 +338,12 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		if (maxNumFileHandles < 2) {
 			throw new IllegalArgumentException("Merger cannot work with less than two file handles.");
 		}
+		if (sortParallelism < 1) {
+			throw new IllegalArgumentException("The sort parallelism must be at least one.");
+		}
 		
 		this.memoryManager = memoryManager;
+		this.sortParallelism = sortParallelism;
 		
 		// adjust the memory quotas to the page size
 		totalMemory = memoryManager.roundDownToPageSizeMultiple(totalMemory);
@@ -584,7 +663,7 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	protected ThreadBase<E> getSortingThread(ExceptionHandler<IOException> exceptionHandler, CircularQueues<E> queues,
 			AbstractInvokable parentTask)
 	{
-		return new SortingThread<E>(exceptionHandler, queues, parentTask);
+		return new SortingThread<E>(exceptionHandler, queues, parentTask, this.sortParallelism);
 	}
 
 	/**
@@ -1095,9 +1174,11 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 	protected static class SortingThread<E> extends ThreadBase<E>
 	{		
 		private final IndexedSorter sorter;
+		
+		private final IndexedSorter radixSorter;
 
 		/**
-		 * Creates a new sorting thread.
+		 * Creates a new sorting thread that sorts each buffer by itself.
 		 * 
 		 * @param exceptionHandler The exception handler to call for all exceptions.
 		 * @param queues The queues used to pass buffers between the threads.
@@ -1105,10 +1186,31 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		 */
 		public SortingThread(ExceptionHandler<IOException> exceptionHandler, CircularQueues<E> queues,
 				AbstractInvokable parentTask) {
+			this(exceptionHandler, queues, parentTask, 1);
+		}
+		
+		/**
+		 * Creates a new sorting thread. Buffers whose normalized keys fully determine the order are sorted
+		 * with a radix sort, all others with a quick sort. If the parallelism is larger than one, the buffers
+		 * are split and sorted by threads from a shared pool.
+		 * 
+		 * @param exceptionHandler The exception handler to call for all exceptions.
+		 * @param queues The queues used to pass buffers between the threads.
+		 * @param parentTask The task that started this thread. If non-null, it is used to register this thread.
+		 * @param parallelism The number of threads that sort a buffer concurrently.
+		 */
+		public SortingThread(ExceptionHandler<IOException> exceptionHandler, CircularQueues<E> queues,
+				AbstractInvokable parentTask, int parallelism) {
 			super(exceptionHandler, "SortMerger sorting thread", queues, parentTask);
 
 			// members
-			this.sorter = new QuickSort();
+			if (parallelism > 1) {
+				this.sorter = new ParallelSort(new QuickSort(), parallelism);
+				this.radixSorter = new ParallelSort(new RadixSort(), parallelism);
+			} else {
+				this.sorter = new QuickSort();
+				this.radixSorter = new RadixSort();
+			}
 		}
 
 		/**
@@ -1141,7 +1243,12 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 					if (LOG.isDebugEnabled())
 						LOG.debug("Sorting buffer " + element.id + ".");
 					
-					this.sorter.sort(element.buffer);
+					final NormalizedKeySorter<E> buffer = element.buffer;
+					if (buffer.isNormalizedKeyFullyDetermining() && buffer.getNormalizedKeyLength() > 0) {
+						this.radixSorter.sort(buffer);
+					} else {
+						this.sorter.sort(buffer);
+					}
 					
 					if (LOG.isDebugEnabled())
 						LOG.debug("Sorted buffer " + element.id + ".");
@@ -1349,8 +1456,8 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 				channelIDs = mergeChannelList(channelIDs, this.sortReadMemory, this.writeMemory);
 			}
 			
-			// from here on, we won't write again
-			this.memManager.release(this.writeMemory);
+			// from here on, we won't write again. the write buffers are used as additional read-ahead buffers
+			this.sortReadMemory.addAll(this.writeMemory);
 			this.writeMemory.clear();
 			
 			// check if we have spilled some data at all
@@ -1365,7 +1472,7 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 				List<List<MemorySegment>> readBuffers = new ArrayList<List<MemorySegment>>(channelIDs.size());
 				
 				// allocate the read memory and register it to be released
-				getSegmentsForReaders(readBuffers, this.sortReadMemory, channelIDs.size());
+				getSegmentsForReaders(readBuffers, this.sortReadMemory, channelIDs);
 				
 				// get the readers and register them to be released
 				setResultIterator(getMergingIterator(channelIDs, readBuffers, new ArrayList<BlockChannelAccess<?, ?>>(channelIDs.size())));
@@ -1454,49 +1561,49 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		}
 
 		/**
-		 * Merges the given sorted runs to a smaller number of sorted runs. 
+		 * Merges some of the given sorted runs into a single larger run, such that the number of runs decreases.
+		 * The number of runs merged is chosen such that all following merges can use the full fan-in and the
+		 * final merge reads exactly the maximal number of runs. The smallest runs are merged first, which
+		 * keeps the amount of data that is read and written repeatedly low.
 		 * 
 		 * @param channelIDs The IDs of the sorted runs that need to be merged.
-		 * @param writeBuffers The buffers to be used by the writers.
-		 * @param writeBufferSize The size of the write buffers.
-		 * @param  readMemorySize The amount of memory dedicated to the readers.
-		 * @return A list of the IDs of the merged channels.
+		 * @param allReadBuffers The buffers to be distributed among the readers.
+		 * @param writeBuffers The buffers to be used by the writer.
+		 * @return A list of the IDs of the remaining and the merged channels.
 		 * @throws IOException Thrown, if the readers or writers encountered an I/O problem.
-		 * @throws MemoryAllocationException Thrown, if the specified memory is insufficient to merge the channels
-		 *                                   or if the memory manager could not provide the requested memory.
 		 */
 		protected final List<ChannelWithBlockCount> mergeChannelList(final List<ChannelWithBlockCount> channelIDs,
 					final List<MemorySegment> allReadBuffers, final List<MemorySegment> writeBuffers)
 		throws IOException
 		{
-			final double numMerges = Math.ceil(channelIDs.size() / ((double) this.maxNumFileHandles));
-			final int channelsToMergePerStep = (int) Math.ceil(channelIDs.size() / numMerges);
+			// the first merge takes only as many runs as needed to make the remaining merges use the full fan-in
+			final int numRuns = channelIDs.size();
+			final int remainder = (numRuns - 1) % (this.maxNumFileHandles - 1);
+			final int channelsToMerge = remainder == 0 ? this.maxNumFileHandles : remainder + 1;
+			
+			// merge the smallest runs
+			final List<ChannelWithBlockCount> sorted = new ArrayList<ChannelWithBlockCount>(channelIDs);
+			Collections.sort(sorted, new Comparator<ChannelWithBlockCount>() {
+				@Override
+				public int compare(ChannelWithBlockCount o1, ChannelWithBlockCount o2) {
+					return o1.getBlockCount() < o2.getBlockCount() ? -1 : o1.getBlockCount() > o2.getBlockCount() ? 1 : 0;
+				}
+			});
+			final List<ChannelWithBlockCount> channelsToMergeThisStep = sorted.subList(0, channelsToMerge);
 			
 			// allocate the memory for the merging step
-			final List<List<MemorySegment>> readBuffers = new ArrayList<List<MemorySegment>>(channelsToMergePerStep);
-			getSegmentsForReaders(readBuffers, allReadBuffers, channelsToMergePerStep);
+			final List<List<MemorySegment>> readBuffers = new ArrayList<List<MemorySegment>>(channelsToMerge);
+			getSegmentsForReaders(readBuffers, allReadBuffers, channelsToMergeThisStep);
 			
-			// the list containing the IDs of the merged channels
-			final ArrayList<ChannelWithBlockCount> mergedChannelIDs = new ArrayList<ChannelWithBlockCount>((int) (numMerges + 1));
-
-			final ArrayList<ChannelWithBlockCount> channelsToMergeThisStep = new ArrayList<ChannelWithBlockCount>(channelsToMergePerStep);
-			int channelNum = 0;
-			while (isRunning() && channelNum < channelIDs.size()) {
-				channelsToMergeThisStep.clear();
-
-				for (int i = 0; i < channelsToMergePerStep && channelNum < channelIDs.size(); i++, channelNum++) {
-					channelsToMergeThisStep.add(channelIDs.get(channelNum));
-				}
-				
-				// merge only, if there is more than one channel
-				if (channelsToMergeThisStep.size() < 2)  {
-					mergedChannelIDs.addAll(channelsToMergeThisStep);
-				}
-				else {
-					mergedChannelIDs.add(mergeChannels(channelsToMergeThisStep, readBuffers, writeBuffers));
-				}
-			}
+			if (LOG.isDebugEnabled())
+				LOG.debug("Merging " + channelsToMerge + " of " + numRuns + " sorted runs.");
 			
+			final ChannelWithBlockCount merged = mergeChannels(channelsToMergeThisStep, readBuffers, writeBuffers);
+			
+			// the list containing the IDs of the remaining and the merged channels
+			final ArrayList<ChannelWithBlockCount> mergedChannelIDs = new ArrayList<ChannelWithBlockCount>(numRuns - channelsToMerge + 1);
+			mergedChannelIDs.addAll(sorted.subList(channelsToMerge, numRuns));
+			mergedChannelIDs.add(merged);
 			return mergedChannelIDs;
 		}
 
@@ -1551,38 +1658,50 @@ public class UnilateralSortMerger<E> implements Sorter<E>
 		}
 		
 		/**
-		 * Divides the given collection of memory buffers among {@code numChannels} sublists.
+		 * Divides the given collection of memory buffers among the given channels. The buffers are divided evenly,
+		 * except that no channel gets more buffers than it has blocks. The buffers that a short channel cannot use
+		 * go to the longer channels, where they serve as additional read-ahead buffers.
 		 * 
 		 * @param target The list into which the lists with buffers for the channels are put.
 		 * @param memory A list containing the memory buffers to be distributed. The buffers are not
 		 *               removed from this list.
-		 * @param numChannels The number of channels for which to allocate buffers. Must not be zero.
-		 * @return A list with all memory segments that were allocated.
+		 * @param channelIDs The channels for which to allocate buffers. Must not be empty.
 		 */
 		protected final void getSegmentsForReaders(List<List<MemorySegment>> target,
-			List<MemorySegment> memory, int numChannels)
+			List<MemorySegment> memory, List<ChannelWithBlockCount> channelIDs)
 		{
-			// determine the memory to use per channel and the number of buffers
-			final int numBuffers = memory.size();
-			final int buffersPerChannelLowerBound = numBuffers / numChannels;
-			final int numChannelsWithOneMore = numBuffers % numChannels;
-			
-			final Iterator<MemorySegment> segments = memory.iterator();
+			final int numChannels = channelIDs.size();
+			final int[] numSegments = new int[numChannels];
 			
-			// collect memory for the channels that get one segment more
-			for (int i = 0; i < numChannelsWithOneMore; i++) {
-				final ArrayList<MemorySegment> segs = new ArrayList<MemorySegment>(buffersPerChannelLowerBound + 1);
-				target.add(segs);
-				for (int k = buffersPerChannelLowerBound; k >= 0; k--) {
-					segs.add(segments.next());
+			// fill up the channels evenly, until the memory is used or all channels have a buffer per block
+			int remaining = memory.size();
+			while (remaining > 0) {
+				int unsatisfied = 0;
+				for (int i = 0; i < numChannels; i++) {
+					if (numSegments[i] < Math.max(channelIDs.get(i).getBlockCount(), 1)) {
+						unsatisfied++;
+					}
+				}
+				if (unsatisfied == 0) {
+					break;
+				}
+				
+				final int share = Math.max(remaining / unsatisfied, 1);
+				for (int i = 0; i < numChannels && remaining > 0; i++) {
+					final int missing = Math.max(channelIDs.get(i).getBlockCount(), 1) - numSegments[i];
+					if (missing > 0) {
+						final int add = Math.min(Math.min(share, missing), remaining);
+						numSegments[i] += add;
+						remaining -= add;
+					}
 				}
 			}
 			
-			// collect memory for the remaining channels
-			for (int i = numChannelsWithOneMore; i < numChannels; i++) {
-				final ArrayList<MemorySegment> segs = new ArrayList<MemorySegment>(buffersPerChannelLowerBound);
+			final Iterator<MemorySegment> segments = memory.iterator();
+			for (int i = 0; i < numChannels; i++) {
+				final ArrayList<MemorySegment> segs = new ArrayList<MemorySegment>(numSegments[i]);
 				target.add(segs);
-				for (int k = buffersPerChannelLowerBound; k > 0; k--) {
+				for (int k = numSegments[i]; k > 0; k--) {
 					segs.add(segments.next());
 				}
 			}
@@ -0,0 +1,360 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.configuration.Configuration;
+import eu.stratosphere.nephele.fs.FSDataInputStream;
+import eu.stratosphere.nephele.fs.FSDataOutputStream;
+import eu.stratosphere.nephele.fs.FileStatus;
+import eu.stratosphere.nephele.fs.FileSystem;
+import eu.stratosphere.nephele.fs.Path;
+import eu.stratosphere.pact.common.contract.Contract;
+import eu.stratosphere.pact.common.io.FileInputFormat;
+import eu.stratosphere.pact.common.io.FileOutputFormat;
+import eu.stratosphere.pact.common.plan.Visitor;
+
+/**
+ * A persistent catalog of the statistics recorded during past executions of PACT tasks. The catalog is a directory
+ * in a file system that is accessible by all task managers and the compiler, for example a directory in the
+ * distributed file system. For every recorded task, the catalog holds a sub-directory named after the task's key,
+ * which identifies the task across executions of the same program. Each parallel subtask writes its statistics to
+ * a separate file in that directory, named after the execution (run), the index of the subtask and the number of
+ * subtasks. When the statistics are loaded, the files of the latest complete run are merged. Files of older runs are
+ * removed when a subtask stores its statistics.
+ */
+public final class StatisticsCatalog
+{
+	private static final Log LOG = LogFactory.getLog(StatisticsCatalog.class);
+	
+	private static final int VERSION = 1;
+	
+	private static final String TEMP_SUFFIX = ".tmp";
+	
+	private static final char FIELD_DELIMITER = '_';
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private final Path root;
+	
+	/**
+	 * Creates a new catalog that resides in the directory described by the given path.
+	 * 
+	 * @param rootPath The path of the catalog's root directory.
+	 */
+	public StatisticsCatalog(String rootPath)
+	{
+		if (rootPath == null) {
+			throw new NullPointerException("The path of the statistics catalog must not be null.");
+		}
+		this.root = new Path(rootPath);
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Stores the statistics of a single subtask in the catalog. The file is first written under a temporary
+	 * name and then renamed, such that readers never see a partially written file. Afterwards, the files of
+	 * runs older than the most recent complete run are removed from the catalog.
+	 * 
+	 * @param key The key of the task.
+	 * @param runId The identifier of the execution the statistics belong to.
+	 * @param subtaskIndex The index of the subtask.
+	 * @param numberOfSubtasks The total number of subtasks of the task in the execution.
+	 * @param statistics The statistics to store.
+	 * @throws IOException Thrown, if the statistics could not be written to the catalog.
+	 */
+	public void store(String key, String runId, int subtaskIndex, int numberOfSubtasks, TaskStatistics statistics)
+	throws IOException
+	{
+		final Path dir = new Path(this.root, key);
+		final FileSystem fs = dir.getFileSystem();
+		fs.mkdirs(dir);
+		
+		final String fileName = runId + FIELD_DELIMITER + subtaskIndex + FIELD_DELIMITER + numberOfSubtasks;
+		final Path tempFile = new Path(dir, fileName + TEMP_SUFFIX);
+		final Path file = new Path(dir, fileName);
+		
+		final FSDataOutputStream stream = fs.create(tempFile, true);
+		try {
+			final DataOutputStream out = new DataOutputStream(stream);
+			out.writeInt(VERSION);
+			statistics.write(out);
+			out.flush();
+		}
+		finally {
+			stream.close();
+		}
+		
+		if (!fs.rename(tempFile, file)) {
+			fs.delete(tempFile, false);
+			throw new IOException("Could not move statistics file '" + tempFile + "' to '" + file + "'.");
+		}
+		
+		removeSupersededRuns(fs, dir);
+	}
+	
+	/**
+	 * Loads the statistics of the task with the given key. The statistics of all subtasks of the most recent
+	 * complete run are merged. Runs for which not all subtasks have written their statistics (because they are
+	 * still running or have failed) are ignored. Loading does not modify the catalog.
+	 * 
+	 * @param key The key of the task.
+	 * @return The merged statistics, or null, if the catalog holds no complete run for the task.
+	 * @throws IOException Thrown, if the catalog could not be accessed.
+	 */
+	public TaskStatistics load(String key) throws IOException
+	{
+		final Path dir = new Path(this.root, key);
+		final FileSystem fs = dir.getFileSystem();
+		
+		final Map<String, Run> runs = listRuns(fs, dir);
+		final Run latest = getLatestCompleteRun(runs);
+		if (latest == null) {
+			return null;
+		}
+		
+		// merge the statistics of the subtasks
+		TaskStatistics merged = null;
+		for (FileStatus status : latest.files) {
+			final TaskStatistics stats = read(fs, status.getPath());
+			if (stats == null) {
+				return null;
+			}
+			if (merged == null) {
+				merged = stats;
+			} else {
+				merged.merge(stats);
+			}
+		}
+		
+		return merged;
+	}
+	
+	/**
+	 * Removes the files of all runs that are older than the most recent complete run. Files that cannot be
+	 * removed are left for a later attempt.
+	 */
+	private static void removeSupersededRuns(FileSystem fs, Path dir) throws IOException
+	{
+		final Map<String, Run> runs = listRuns(fs, dir);
+		final Run latest = getLatestCompleteRun(runs);
+		if (latest == null) {
+			return;
+		}
+		
+		for (Run run : runs.values()) {
+			if (run != latest && run.modificationTime < latest.modificationTime) {
+				for (FileStatus status : run.files) {
+					try {
+						fs.delete(status.getPath(), false);
+					}
+					catch (IOException ioex) {
+						if (LOG.isDebugEnabled())
+							LOG.debug("Could not remove outdated statistics file '" + status.getPath() + "'.");
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Groups the statistics files in the given directory by the run that wrote them. Temporary files and files
+	 * that do not follow the naming scheme are skipped.
+	 */
+	private static Map<String, Run> listRuns(FileSystem fs, Path dir) throws IOException
+	{
+		final Map<String, Run> runs = new HashMap<String, Run>();
+		final FileStatus[] files = fs.listStatus(dir);
+		if (files == null) {
+			return runs;
+		}
+		
+		for (int i = 0; i < files.length; i++) {
+			final FileStatus status = files[i];
+			if (status.isDir()) {
+				continue;
+			}
+			
+			final String name = status.getPath().getName();
+			final int second = name.lastIndexOf(FIELD_DELIMITER);
+			final int first = second > 0 ? name.lastIndexOf(FIELD_DELIMITER, second - 1) : -1;
+			if (first <= 0 || name.endsWith(TEMP_SUFFIX)) {
+				continue;
+			}
+			
+			final int numberOfSubtasks;
+			try {
+				numberOfSubtasks = Integer.parseInt(name.substring(second + 1));
+			}
+			catch (NumberFormatException nfex) {
+				continue;
+			}
+			
+			final String runId = name.substring(0, first);
+			Run run = runs.get(runId);
+			if (run == null) {
+				run = new Run(numberOfSubtasks);
+				runs.put(runId, run);
+			}
+			run.add(status);
+		}
+		return runs;
+	}
+	
+	/**
+	 * Gets the most recently modified run for which all subtasks have written their statistics.
+	 * 
+	 * @return The latest complete run, or null, if there is no complete run.
+	 */
+	private static Run getLatestCompleteRun(Map<String, Run> runs)
+	{
+		Run latest = null;
+		for (Run run : runs.values()) {
+			if (run.isComplete() && (latest == null || run.modificationTime > latest.modificationTime)) {
+				latest = run;
+			}
+		}
+		return latest;
+	}
+	
+	/**
+	 * Reads the statistics from the given file.
+	 * 
+	 * @return The statistics, or null, if the file was written in an unknown version.
+	 */
+	private static TaskStatistics read(FileSystem fs, Path file) throws IOException
+	{
+		final FSDataInputStream stream = fs.open(file);
+		try {
+			final DataInputStream in = new DataInputStream(stream);
+			if (in.readInt() != VERSION) {
+				return null;
+			}
+			final TaskStatistics stats = new TaskStatistics();
+			stats.read(in);
+			return stats;
+		}
+		finally {
+			stream.close();
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Computes the key under which the statistics of the given contract are recorded. The key is a hash over the
+	 * names, user code classes and parameters of the contract and all its (transitive) inputs. The paths of
+	 * input and output files are left out, like in the fingerprint of the compiled plan cache. That way, the key
+	 * is identical for recurring executions of the same program, also when they process new files, but changes
+	 * when the program or its other parameters change.
+	 * 
+	 * @param contract The contract to compute the key for.
+	 * @return The key for the contract.
+	 */
+	public static String getContractKey(Contract contract)
+	{
+		final StringBuilder bld = new StringBuilder();
+		contract.accept(new Visitor<Contract>() {
+			@Override
+			public boolean preVisit(Contract visitable)
+			{
+				bld.append('[').append(visitable.getName()).append('|');
+				final Class<?> userCodeClass = visitable.getUserCodeClass();
+				bld.append(userCodeClass == null ? "" : userCodeClass.getName());
+				
+				final Configuration params = visitable.getParameters();
+				final List<String> keys = new ArrayList<String>(params.keySet());
+				Collections.sort(keys);
+				for (String key : keys) {
+					if (key.equals(FileInputFormat.FILE_PARAMETER_KEY) ||
+							key.equals(FileOutputFormat.FILE_PARAMETER_KEY))
+					{
+						continue;
+					}
+					bld.append('|').append(key).append('=').append(params.getString(key, ""));
+				}
+				return true;
+			}
+			
+			@Override
+			public void postVisit(Contract visitable)
+			{
+				bld.append(']');
+			}
+		});
+		
+		try {
+			final byte[] digest = MessageDigest.getInstance("MD5").digest(bld.toString().getBytes("UTF-8"));
+			final StringBuilder hex = new StringBuilder(digest.length * 2);
+			for (int i = 0; i < digest.length; i++) {
+				hex.append(Character.forDigit((digest[i] >>> 4) & 0xf, 16));
+				hex.append(Character.forDigit(digest[i] & 0xf, 16));
+			}
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException nsaex) {
+			throw new RuntimeException("The MD5 digest algorithm is not available.", nsaex);
+		}
+		catch (UnsupportedEncodingException ueex) {
+			throw new RuntimeException("The UTF-8 encoding is not available.", ueex);
+		}
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * The files written by the subtasks of a single run.
+	 */
+	private static final class Run
+	{
+		private final List<FileStatus> files = new ArrayList<FileStatus>();
+		
+		private final int numberOfSubtasks;
+		
+		private long modificationTime;
+		
+		private Run(int numberOfSubtasks)
+		{
+			this.numberOfSubtasks = numberOfSubtasks;
+		}
+		
+		private void add(FileStatus status)
+		{
+			this.files.add(status);
+			this.modificationTime = Math.max(this.modificationTime, status.getModificationTime());
+		}
+		
+		private boolean isComplete()
+		{
+			return this.files.size() == this.numberOfSubtasks;
+		}
+	}
+}
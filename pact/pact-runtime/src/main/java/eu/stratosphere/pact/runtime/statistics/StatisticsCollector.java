@@ -0,0 +1,80 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.type.PactRecord;
+
+/**
+ * A collector that records statistics about the records passed through it, before forwarding them to the
+ * actual collector. Every record is counted, the widths of the records are sampled in fixed intervals, since
+ * determining the width may require the record's binary representation to be updated.
+ */
+public final class StatisticsCollector<T> implements Collector<T>
+{
+	/**
+	 * The interval in which the widths of the records are sampled.
+	 */
+	public static final int SAMPLING_INTERVAL = 64;
+	
+	private final Collector<T> delegate;
+	
+	private final TaskStatistics statistics;
+	
+	private int recordsUntilSample;
+	
+	/**
+	 * Creates a new collector recording statistics about the records forwarded to the given collector.
+	 * 
+	 * @param delegate The collector to forward the records to.
+	 * @param statistics The statistics object to record the statistics in.
+	 */
+	public StatisticsCollector(Collector<T> delegate, TaskStatistics statistics)
+	{
+		this.delegate = delegate;
+		this.statistics = statistics;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.stubs.Collector#collect(java.lang.Object)
+	 */
+	@Override
+	public void collect(T record)
+	{
+		this.statistics.countRecord();
+		
+		// sample before forwarding, because chained tasks may modify the record
+		if (this.recordsUntilSample-- == 0) {
+			this.recordsUntilSample = SAMPLING_INTERVAL - 1;
+			if (record instanceof PactRecord) {
+				this.statistics.sampleRecordWidth(((PactRecord) record).getBinaryLength());
+			}
+		}
+		
+		this.delegate.collect(record);
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.common.stubs.Collector#close()
+	 */
+	@Override
+	public void close()
+	{
+		this.delegate.close();
+	}
+}
@@ -0,0 +1,160 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The statistics recorded about the output of a PACT task during its execution. An instance either describes the
+ * output of a single parallel subtask or, after merging, the output of all subtasks of a task.
+ * <p>
+ * This class is not thread-safe.
+ */
+public final class TaskStatistics
+{
+	/**
+	 * A constant indicating a value is unknown.
+	 */
+	public static final long UNKNOWN = -1;
+	
+	private long numberOfRecords;
+	
+	private long numberOfSampledRecords;
+	
+	private long numberOfSampledBytes;
+	
+	private long numberOfKeyGroups = UNKNOWN;
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Counts one record that was emitted.
+	 */
+	public void countRecord()
+	{
+		this.numberOfRecords++;
+	}
+	
+	/**
+	 * Records the width of a sampled record.
+	 * 
+	 * @param numberOfBytes The width of the sampled record in bytes.
+	 */
+	public void sampleRecordWidth(int numberOfBytes)
+	{
+		this.numberOfSampledRecords++;
+		this.numberOfSampledBytes += numberOfBytes;
+	}
+	
+	/**
+	 * Sets the number of key groups, i.e. the number of distinct keys, the task has processed.
+	 * 
+	 * @param numberOfKeyGroups The number of key groups.
+	 */
+	public void setNumberOfKeyGroups(long numberOfKeyGroups)
+	{
+		this.numberOfKeyGroups = numberOfKeyGroups;
+	}
+	
+	/**
+	 * Gets the number of records emitted by the task.
+	 * 
+	 * @return The number of records emitted by the task.
+	 */
+	public long getNumberOfRecords()
+	{
+		return this.numberOfRecords;
+	}
+	
+	/**
+	 * Gets the average width of the emitted records, as determined from the sampled records.
+	 * 
+	 * @return The average width of a record in bytes, or <code>-1.0</code>, if no record width was sampled.
+	 */
+	public float getAverageRecordWidth()
+	{
+		return this.numberOfSampledRecords > 0 ?
+			((float) this.numberOfSampledBytes) / this.numberOfSampledRecords : -1.0f;
+	}
+	
+	/**
+	 * Gets the number of key groups, i.e. the number of distinct keys, the task has processed. Since the groups
+	 * of a key are never split across subtasks, the numbers of all subtasks add up to the number of distinct keys.
+	 * 
+	 * @return The number of key groups, or {@link #UNKNOWN}, if the task does not group its input.
+	 */
+	public long getNumberOfKeyGroups()
+	{
+		return this.numberOfKeyGroups;
+	}
+	
+	/**
+	 * Adds the statistics of another subtask of the same task to these statistics.
+	 * 
+	 * @param other The statistics to add.
+	 */
+	public void merge(TaskStatistics other)
+	{
+		this.numberOfRecords += other.numberOfRecords;
+		this.numberOfSampledRecords += other.numberOfSampledRecords;
+		this.numberOfSampledBytes += other.numberOfSampledBytes;
+		this.numberOfKeyGroups = (this.numberOfKeyGroups == UNKNOWN || other.numberOfKeyGroups == UNKNOWN) ?
+			UNKNOWN : this.numberOfKeyGroups + other.numberOfKeyGroups;
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Writes the statistics to the given output.
+	 * 
+	 * @param out The output to write the statistics to.
+	 * @throws IOException Thrown, if the output could not be written.
+	 */
+	public void write(DataOutput out) throws IOException
+	{
+		out.writeLong(this.numberOfRecords);
+		out.writeLong(this.numberOfSampledRecords);
+		out.writeLong(this.numberOfSampledBytes);
+		out.writeLong(this.numberOfKeyGroups);
+	}
+	
+	/**
+	 * Reads the statistics from the given input.
+	 * 
+	 * @param in The input to read the statistics from.
+	 * @throws IOException Thrown, if the input could not be read.
+	 */
+	public void read(DataInput in) throws IOException
+	{
+		this.numberOfRecords = in.readLong();
+		this.numberOfSampledRecords = in.readLong();
+		this.numberOfSampledBytes = in.readLong();
+		this.numberOfKeyGroups = in.readLong();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return "Records: " + this.numberOfRecords + ", average width: " + getAverageRecordWidth() +
+			", key groups: " + this.numberOfKeyGroups;
+	}
+}
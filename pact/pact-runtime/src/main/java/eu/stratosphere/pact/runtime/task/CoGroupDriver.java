@@ -29,6 +29,7 @@ import eu.stratosphere.pact.common.util.InstantiationUtil;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
 import eu.stratosphere.pact.runtime.plugable.PactRecordPairComparatorFactory;
 import eu.stratosphere.pact.runtime.sort.SortMergeCoGroupIterator;
+import eu.stratosphere.pact.runtime.statistics.TaskStatistics;
 import eu.stratosphere.pact.runtime.task.util.CoGroupTaskIterator;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
@@ -106,6 +107,7 @@ public class CoGroupDriver<IT1, IT2, OT> implements PactDriver<GenericCoGrouper<
 		final long availableMemory = config.getMemorySize();
 		final int maxFileHandles = config.getNumFilehandles();
 		final float spillThreshold = config.getSortSpillingTreshold();
+		final int sortParallelism = config.getSortParallelism();
 		
 		// test minimum memory requirements
 		final LocalStrategy ls = config.getLocalStrategy();
@@ -184,7 +186,7 @@ public class CoGroupDriver<IT1, IT2, OT> implements PactDriver<GenericCoGrouper<
 			this.coGroupIterator = new SortMergeCoGroupIterator<IT1, IT2>(memoryManager, ioManager, 
 					in1, in2, serializer1, groupComparator1, sortComparator1, serializer2, groupComparator2, sortComparator2,
 					pairComparatorFactory.createComparator12(groupComparator1, groupComparator2),
-					availableMemory, maxFileHandles, spillThreshold, ls, this.taskContext.getOwningNepheleTask());
+					availableMemory, maxFileHandles, spillThreshold, sortParallelism, ls, this.taskContext.getOwningNepheleTask());
 			break;
 			default:
 				throw new Exception("Unsupported local strategy for CoGropuTask: " + ls.name());
@@ -209,8 +211,15 @@ public class CoGroupDriver<IT1, IT2, OT> implements PactDriver<GenericCoGrouper<
 		final Collector<OT> collector = this.taskContext.getOutputCollector();
 		final CoGroupTaskIterator<IT1, IT2> coGroupIterator = this.coGroupIterator;
 		
+		long numberOfKeyGroups = 0;
 		while (this.running && coGroupIterator.next()) {
 			coGroupStub.coGroup(coGroupIterator.getValues1(), coGroupIterator.getValues2(), collector);
+			numberOfKeyGroups++;
+		}
+		
+		final TaskStatistics statistics = this.taskContext.getTaskStatistics();
+		if (statistics != null) {
+			statistics.setNumberOfKeyGroups(numberOfKeyGroups);
 		}
 	}
 
@@ -18,13 +18,17 @@ package eu.stratosphere.pact.runtime.task;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.util.List;
+
 import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
 import eu.stratosphere.pact.common.generic.GenericReducer;
 import eu.stratosphere.pact.common.generic.types.TypeComparator;
 import eu.stratosphere.pact.common.generic.types.TypeSerializer;
 import eu.stratosphere.pact.common.stubs.Collector;
 
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.hash.CombiningHashTable;
 import eu.stratosphere.pact.runtime.sort.AsynchronousPartialSorter;
 import eu.stratosphere.pact.runtime.task.util.CloseableInputProvider;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig;
@@ -59,6 +63,10 @@ public class CombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
 	
 	private CloseableInputProvider<T> input;
 
+	private MutableObjectIterator<T> hashInput;
+
+	private CombiningHashTable<T> table;
+
 	private TypeSerializer<T> serializer;
 
 	private TypeComparator<T> comparator;
@@ -128,6 +136,7 @@ public class CombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
 
 		switch (ls) {
 		case COMBININGSORT:
+		case HASH_AGGREGATE:
 			strategyMinMem = MIN_REQUIRED_MEMORY;
 			break;
 		}
@@ -155,6 +164,15 @@ public class CombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
 			input = new AsynchronousPartialSorter<T>(memoryManager, in, this.taskContext.getOwningNepheleTask(),
 						this.serializer, this.comparator.duplicate(), availableMemory);
 			break;
+		// local strategy is HASH_AGGREGATE
+		// The input is combined in a hash table. Whenever the table is full, its contents are emitted.
+		case HASH_AGGREGATE:
+			final List<MemorySegment> memory = memoryManager.allocatePages(this.taskContext.getOwningNepheleTask(),
+						availableMemory);
+			this.table = new CombiningHashTable<T>(this.serializer, this.comparator.duplicate(),
+						this.taskContext.getStub(), memory);
+			this.hashInput = in;
+			break;
 		// obtain and return a grouped iterator from the combining sort-merger
 		default:
 			throw new RuntimeException("Invalid local strategy provided for CombineTask.");
@@ -170,6 +188,11 @@ public class CombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
 	public void run() throws Exception {
 		if (LOG.isDebugEnabled())
 			LOG.debug(this.taskContext.formatLogString("Preprocessing done, iterator obtained."));
+		
+		if (this.table != null) {
+			runHashAggregation();
+			return;
+		}
 
 		final KeyGroupedIterator<T> iter = new KeyGroupedIterator<T>(this.input.getIterator(),
 				this.serializer, this.comparator);
@@ -195,6 +218,36 @@ public class CombineDriver<T> implements PactDriver<GenericReducer<T, ?>, T>
 			this.input.close();
 			this.input = null;
 		}
+		if (this.table != null) {
+			this.table.close();
+			this.taskContext.getMemoryManager().release(this.table.getFreedMemory());
+			this.table = null;
+		}
+	}
+
+	/**
+	 * Combines the input in the hash table and emits the table contents whenever the table is full,
+	 * as well as after the input is consumed.
+	 */
+	private void runHashAggregation() throws Exception
+	{
+		// cache references on the stack
+		final CombiningHashTable<T> table = this.table;
+		final MutableObjectIterator<T> in = this.hashInput;
+		final Collector<T> output = this.taskContext.getOutputCollector();
+		final T record = this.serializer.createInstance();
+
+		while (this.running && in.next(record)) {
+			if (!table.insertOrCombine(record)) {
+				table.flush(output);
+				if (!table.insertOrCombine(record)) {
+					throw new Exception("A record is too large to be combined in the available memory.");
+				}
+			}
+		}
+		if (this.running) {
+			table.flush(output);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -40,6 +40,9 @@ import eu.stratosphere.pact.runtime.plugable.DeserializationDelegate;
 import eu.stratosphere.pact.runtime.plugable.PactRecordComparatorFactory;
 import eu.stratosphere.pact.runtime.plugable.PactRecordSerializerFactory;
 import eu.stratosphere.pact.runtime.sort.UnilateralSortMerger;
+import eu.stratosphere.pact.runtime.statistics.StatisticsCatalog;
+import eu.stratosphere.pact.runtime.statistics.StatisticsCollector;
+import eu.stratosphere.pact.runtime.statistics.TaskStatistics;
 import eu.stratosphere.pact.runtime.task.util.NepheleReaderIterator;
 import eu.stratosphere.pact.runtime.task.util.PactRecordNepheleReaderIterator;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig;
@@ -79,6 +82,9 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 	// class loader for user code
 	private ClassLoader userCodeClassLoader;
 
+	// statistics about the written records, null, if no statistics are recorded
+	private TaskStatistics statistics;
+
 	// cancel flag
 	private volatile boolean taskCanceled;
 	
@@ -96,6 +102,10 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 		
 		// initialize input reader
 		initInputReader();
+		
+		if (this.config.getStatisticsKey() != null) {
+			this.statistics = new TaskStatistics();
+		}
 
 		if (LOG.isDebugEnabled())
 			LOG.debug(getLogString("Finished registering input and output"));
@@ -140,10 +150,12 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 			final long availableMemory = this.config.getMemorySize();
 			final int maxFileHandles = this.config.getNumFilehandles();
 			final float spillThreshold = this.config.getSortSpillingTreshold();
+			final int sortParallelism = this.config.getSortParallelism();
 			
 			sorter = new UnilateralSortMerger<IT>(getEnvironment().getMemoryManager(),
 					getEnvironment().getIOManager(), this.reader, this, 
-					this.inputTypeSerializer, comparator, availableMemory, maxFileHandles, spillThreshold);
+					this.inputTypeSerializer, comparator, availableMemory, -1, maxFileHandles, spillThreshold,
+					sortParallelism);
 			
 			// replace the reader by the sorted input
 			this.reader = sorter.getIterator();
@@ -176,14 +188,33 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 				final MutableObjectIterator<PactRecord> pi = (MutableObjectIterator<PactRecord>) reader;
 				final PactRecord pr = (PactRecord) record;
 				final FileOutputFormat pf = (FileOutputFormat) format;
-				while (!this.taskCanceled && pi.next(pr))
-				{
-					pf.writeRecord(pr);
-				}				
+				final TaskStatistics statistics = this.statistics;
+				if (statistics == null) {
+					while (!this.taskCanceled && pi.next(pr))
+					{
+						pf.writeRecord(pr);
+					}
+				} else {
+					// the records come from the network, so their binary representation is up to date
+					int recordsUntilSample = 0;
+					while (!this.taskCanceled && pi.next(pr))
+					{
+						statistics.countRecord();
+						if (recordsUntilSample-- == 0) {
+							recordsUntilSample = StatisticsCollector.SAMPLING_INTERVAL - 1;
+							statistics.sampleRecordWidth(pr.getBinaryLength());
+						}
+						pf.writeRecord(pr);
+					}
+				}
 			} else {
+				final TaskStatistics statistics = this.statistics;
 				while (!this.taskCanceled && reader.next(record))
 				{
 					format.writeRecord(record);
+					if (statistics != null) {
+						statistics.countRecord();
+					}
 				}
 			}
 			
@@ -191,6 +222,10 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 			if (!this.taskCanceled) {
 				this.format.close();
 				this.format = null;
+				
+				if (this.statistics != null) {
+					storeStatistics();
+				}
 			}
 		}
 		catch (Exception ex) {
@@ -422,6 +457,24 @@ public class DataSinkTask<IT> extends AbstractOutputTask
 	//                               Utilities
 	// ------------------------------------------------------------------------
 	
+	/**
+	 * Writes the statistics about the written records to the statistics catalog. Failing to do so does not
+	 * fail the task.
+	 */
+	private void storeStatistics()
+	{
+		try {
+			final StatisticsCatalog catalog = new StatisticsCatalog(this.config.getStatisticsCatalogPath());
+			catalog.store(this.config.getStatisticsKey(), getEnvironment().getJobID().toString(),
+				getEnvironment().getIndexInSubtaskGroup(), getEnvironment().getCurrentNumberOfSubtasks(),
+				this.statistics);
+		}
+		catch (Throwable t) {
+			if (LOG.isWarnEnabled())
+				LOG.warn(getLogString("Could not record the task statistics: " + t.getMessage()), t);
+		}
+	}
+	
 	/**
 	 * Utility function that composes a string for logging purposes. The string includes the given message and
 	 * the index of the task in its task group together with the number of tasks in the task group.
@@ -0,0 +1,212 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.Stub;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+
+/**
+ * Heavy hitter task which is inserted by the PACT compiler in front of a match whose inputs are shipped with a
+ * skew-aware hash partitioning. The task runs with a degree of parallelism of one and collects the weighted key
+ * samples that the {@link KeySampleDriver} drew from both inputs of the match. A key is a heavy hitter, if the
+ * estimated number of records with that key in both inputs together exceeds the share of a single partition.
+ * <p>
+ * For each heavy hitter, the input with more records for that key spreads them over all partitions, while the
+ * other input replicates its records with that key to all partitions. The emitted records hold the key fields
+ * at the positions <i>0</i> to <i>k-1</i> and the spreading input (0 or 1) as a {@link PactInteger} at position
+ * <i>k</i>. They are broadcast to the partitioning tasks of both inputs.
+ */
+public class HeavyHitterDriver implements PactDriver<Stub, PactRecord>
+{
+	private PactTaskContext<Stub, PactRecord> taskContext;
+	
+	private volatile boolean running;
+
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#setup(eu.stratosphere.pact.runtime.task.PactTaskContext)
+	 */
+	@Override
+	public void setup(PactTaskContext<Stub, PactRecord> context) {
+		this.taskContext = context;
+		this.running = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getNumberOfInputs()
+	 */
+	@Override
+	public int getNumberOfInputs() {
+		return 2;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getStubType()
+	 */
+	@Override
+	public Class<Stub> getStubType() {
+		return Stub.class;
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#requiresComparatorOnInput()
+	 */
+	@Override
+	public boolean requiresComparatorOnInput() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#prepare()
+	 */
+	@Override
+	public void prepare() throws Exception
+	{
+		final int numPartitions = this.taskContext.getTaskConfig().getNumberOfSampledPartitions();
+		if (numPartitions < 1) {
+			throw new Exception("The heavy hitter task was configured with an invalid number of partitions: " + numPartitions);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#run()
+	 */
+	@Override
+	public void run() throws Exception
+	{
+		final Collector<PactRecord> output = this.taskContext.getOutputCollector();
+		final int numPartitions = this.taskContext.getTaskConfig().getNumberOfSampledPartitions();
+		
+		final Map<List<Key>, double[]> weights = new HashMap<List<Key>, double[]>();
+		final double[] totalWeights = new double[2];
+		
+		// aggregate the weights of the samples of both inputs per key
+		for (int side = 0; side < 2 && this.running; side++) {
+			final MutableObjectIterator<PactRecord> input = this.taskContext.getInput(side);
+			final PactRecordComparator comparator = (PactRecordComparator) this.taskContext.<PactRecord>getInputComparator(side);
+			totalWeights[side] = addSamples(input, comparator, side, weights);
+		}
+		
+		if (!this.running) {
+			return;
+		}
+		
+		final List<PactRecord> heavyHitters = computeHeavyHitters(weights, totalWeights[0] + totalWeights[1], numPartitions);
+		for (int i = 0; i < heavyHitters.size(); i++) {
+			output.collect(heavyHitters.get(i));
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cleanup()
+	 */
+	@Override
+	public void cleanup() throws Exception {
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cancel()
+	 */
+	@Override
+	public void cancel() {
+		this.running = false;
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Adds the weights of the samples of one input to the per-key weights.
+	 * 
+	 * @param samples The weighted samples, as produced by the {@link KeySampleDriver}.
+	 * @param comparator The comparator for the key fields of the samples.
+	 * @param side The input of the match that the samples were drawn from, 0 or 1.
+	 * @param weights The map from the keys to the weights of both inputs, to which the samples are added.
+	 * @return The total weight of the samples.
+	 * @throws IOException Thrown, if the samples could not be read.
+	 */
+	public static double addSamples(MutableObjectIterator<PactRecord> samples, PactRecordComparator comparator, int side,
+			Map<List<Key>, double[]> weights)
+	throws IOException
+	{
+		final int weightField = KeySampleDriver.getWeightFieldPosition(comparator.getKeyPositions());
+		final PactDouble weight = new PactDouble();
+		final PactRecord record = new PactRecord();
+		
+		double totalWeight = 0.0;
+		while (samples.next(record)) {
+			final List<Key> key = Arrays.asList(comparator.getKeysAsCopy(record));
+			double[] keyWeights = weights.get(key);
+			if (keyWeights == null) {
+				keyWeights = new double[2];
+				weights.put(key, keyWeights);
+			}
+			
+			final double w = record.getField(weightField, weight).getValue();
+			keyWeights[side] += w;
+			totalWeight += w;
+		}
+		return totalWeight;
+	}
+	
+	/**
+	 * Determines the heavy hitters from the aggregated weights of the samples. A key is a heavy hitter, if its
+	 * weight in both inputs together is at least the total weight divided by the number of partitions. The input
+	 * with the larger weight for the key spreads its records, ties are resolved in favor of the first input.
+	 * 
+	 * @param weights The map from the keys to their weights in the first and the second input.
+	 * @param totalWeight The total weight of all samples of both inputs.
+	 * @param numPartitions The number of partitions of the match.
+	 * @return The heavy hitter records, with the key fields at the positions <i>0</i> to <i>k-1</i> and the
+	 *         spreading input at position <i>k</i>. The list is empty, if there is only one partition.
+	 */
+	public static List<PactRecord> computeHeavyHitters(Map<List<Key>, double[]> weights, double totalWeight,
+			int numPartitions)
+	{
+		final List<PactRecord> heavyHitters = new ArrayList<PactRecord>();
+		if (numPartitions < 2 || totalWeight <= 0.0) {
+			return heavyHitters;
+		}
+		
+		final double threshold = totalWeight / numPartitions;
+		for (Map.Entry<List<Key>, double[]> entry : weights.entrySet()) {
+			final double[] keyWeights = entry.getValue();
+			if (keyWeights[0] + keyWeights[1] >= threshold) {
+				final List<Key> key = entry.getKey();
+				final PactRecord heavyHitter = new PactRecord(key.size() + 1);
+				for (int i = 0; i < key.size(); i++) {
+					heavyHitter.setField(i, key.get(i));
+				}
+				heavyHitter.setField(key.size(), new PactInteger(keyWeights[0] >= keyWeights[1] ? 0 : 1));
+				heavyHitters.add(heavyHitter);
+			}
+		}
+		return heavyHitters;
+	}
+}
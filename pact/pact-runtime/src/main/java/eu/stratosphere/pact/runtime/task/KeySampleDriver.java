@@ -0,0 +1,177 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.util.Random;
+
+import eu.stratosphere.pact.common.generic.AbstractStub;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.Stub;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+
+/**
+ * Sample task which is inserted by the PACT compiler in front of a range partitioning for which no data
+ * distribution is known, and in front of a skew-aware hash partitioning. The task draws a uniform random sample
+ * of the keys of its input (reservoir sampling) and emits the sampled keys, each weighted with the number of input
+ * records it represents. The weighted samples of all instances are combined by the {@link RangeBoundaryDriver}
+ * into the range boundaries, respectively by the {@link HeavyHitterDriver} into the heavy hitters.
+ * <p>
+ * The emitted records hold the key fields at their original positions and the weight as a {@link PactDouble}
+ * in the field following the last key field.
+ */
+public class KeySampleDriver implements PactDriver<Stub, PactRecord>
+{
+	private PactTaskContext<Stub, PactRecord> taskContext;
+	
+	private volatile boolean running;
+
+	// ------------------------------------------------------------------------
+
+	/**
+	 * The stub of the sampling and the boundary tasks, which run no user code.
+	 */
+	public static final class NoOpStub extends AbstractStub {}
+	
+	/**
+	 * Gets the position of the field that holds the weight in the sample records.
+	 * 
+	 * @param keyPositions The positions of the key fields.
+	 * @return The position of the weight field.
+	 */
+	public static int getWeightFieldPosition(int[] keyPositions)
+	{
+		int max = -1;
+		for (int i = 0; i < keyPositions.length; i++) {
+			max = Math.max(max, keyPositions[i]);
+		}
+		return max + 1;
+	}
+	
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#setup(eu.stratosphere.pact.runtime.task.PactTaskContext)
+	 */
+	@Override
+	public void setup(PactTaskContext<Stub, PactRecord> context) {
+		this.taskContext = context;
+		this.running = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getNumberOfInputs()
+	 */
+	@Override
+	public int getNumberOfInputs() {
+		return 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getStubType()
+	 */
+	@Override
+	public Class<Stub> getStubType() {
+		return Stub.class;
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#requiresComparatorOnInput()
+	 */
+	@Override
+	public boolean requiresComparatorOnInput() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#prepare()
+	 */
+	@Override
+	public void prepare() throws Exception
+	{
+		final int sampleSize = this.taskContext.getTaskConfig().getPartitionSampleSize();
+		if (sampleSize < 1) {
+			throw new Exception("The sample task was configured with an invalid sample size: " + sampleSize);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#run()
+	 */
+	@Override
+	public void run() throws Exception
+	{
+		final MutableObjectIterator<PactRecord> input = this.taskContext.getInput(0);
+		final PactRecordComparator comparator = (PactRecordComparator) this.taskContext.<PactRecord>getInputComparator(0);
+		final Collector<PactRecord> output = this.taskContext.getOutputCollector();
+		
+		final Key[][] reservoir = new Key[this.taskContext.getTaskConfig().getPartitionSampleSize()][];
+		final Random rnd = new Random();
+		final PactRecord record = new PactRecord();
+		
+		// fill the reservoir, then replace its elements with decreasing probability
+		long numRecords = 0;
+		while (this.running && input.next(record)) {
+			if (numRecords < reservoir.length) {
+				reservoir[(int) numRecords] = comparator.getKeysAsCopy(record);
+			} else {
+				final long pos = (long) (rnd.nextDouble() * (numRecords + 1));
+				if (pos < reservoir.length) {
+					reservoir[(int) pos] = comparator.getKeysAsCopy(record);
+				}
+			}
+			numRecords++;
+		}
+		
+		if (!this.running || numRecords == 0) {
+			return;
+		}
+		
+		// emit the sampled keys, weighted with the number of records each of them represents
+		final int numSamples = (int) Math.min(numRecords, reservoir.length);
+		final int[] keyPositions = comparator.getKeyPositions();
+		final PactDouble weight = new PactDouble(((double) numRecords) / numSamples);
+		
+		final PactRecord sample = new PactRecord();
+		sample.setField(getWeightFieldPosition(keyPositions), weight);
+		
+		for (int i = 0; i < numSamples; i++) {
+			final Key[] keys = reservoir[i];
+			for (int k = 0; k < keyPositions.length; k++) {
+				sample.setField(keyPositions[k], keys[k]);
+			}
+			output.collect(sample);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cleanup()
+	 */
+	@Override
+	public void cleanup() throws Exception {
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cancel()
+	 */
+	@Override
+	public void cancel() {
+		this.running = false;
+	}
+}
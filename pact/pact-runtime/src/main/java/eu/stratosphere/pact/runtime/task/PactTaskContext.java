@@ -23,6 +23,7 @@ import eu.stratosphere.pact.common.generic.types.TypeSerializer;
 import eu.stratosphere.pact.common.stubs.Collector;
 import eu.stratosphere.pact.common.stubs.Stub;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.statistics.TaskStatistics;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig;
 
 
@@ -60,6 +61,14 @@ public interface PactTaskContext<S extends Stub, OT>
 	
 	AbstractInvokable getOwningNepheleTask();
 	
+	/**
+	 * Gets the statistics recorded for the task's output. Drivers that know more about their output than the
+	 * number and widths of the records (such as the number of distinct keys) add it to these statistics.
+	 * 
+	 * @return The statistics of the task, or null, if the task records no statistics.
+	 */
+	TaskStatistics getTaskStatistics();
+	
 	String formatLogString(String message);
 	
 }
@@ -0,0 +1,189 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.Stub;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+
+/**
+ * Boundary task which is inserted by the PACT compiler in front of a range partitioning for which no data
+ * distribution is known. The task runs with a degree of parallelism of one and collects the weighted key
+ * samples drawn by all instances of the {@link KeySampleDriver}. It sorts the samples and emits the weighted
+ * quantiles that split the data into the configured number of equally sized ranges. The emitted boundaries
+ * hold the key fields at their original positions and are broadcast to all partitioning tasks.
+ */
+public class RangeBoundaryDriver implements PactDriver<Stub, PactRecord>
+{
+	private PactTaskContext<Stub, PactRecord> taskContext;
+	
+	private volatile boolean running;
+
+	// ------------------------------------------------------------------------
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#setup(eu.stratosphere.pact.runtime.task.PactTaskContext)
+	 */
+	@Override
+	public void setup(PactTaskContext<Stub, PactRecord> context) {
+		this.taskContext = context;
+		this.running = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getNumberOfInputs()
+	 */
+	@Override
+	public int getNumberOfInputs() {
+		return 1;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#getStubType()
+	 */
+	@Override
+	public Class<Stub> getStubType() {
+		return Stub.class;
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#requiresComparatorOnInput()
+	 */
+	@Override
+	public boolean requiresComparatorOnInput() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#prepare()
+	 */
+	@Override
+	public void prepare() throws Exception
+	{
+		final int numPartitions = this.taskContext.getTaskConfig().getNumberOfSampledPartitions();
+		if (numPartitions < 1) {
+			throw new Exception("The boundary task was configured with an invalid number of partitions: " + numPartitions);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#run()
+	 */
+	@Override
+	public void run() throws Exception
+	{
+		final MutableObjectIterator<PactRecord> input = this.taskContext.getInput(0);
+		final PactRecordComparator comparator = (PactRecordComparator) this.taskContext.<PactRecord>getInputComparator(0);
+		final Collector<PactRecord> output = this.taskContext.getOutputCollector();
+		final int numPartitions = this.taskContext.getTaskConfig().getNumberOfSampledPartitions();
+		
+		// collect all samples
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		PactRecord record = new PactRecord();
+		while (this.running && input.next(record)) {
+			samples.add(record);
+			record = new PactRecord();
+		}
+		
+		if (!this.running) {
+			return;
+		}
+		
+		final List<PactRecord> boundaries = computeBoundaries(samples, comparator, numPartitions);
+		for (int i = 0; i < boundaries.size(); i++) {
+			output.collect(boundaries.get(i));
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cleanup()
+	 */
+	@Override
+	public void cleanup() throws Exception {
+	}
+
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactDriver#cancel()
+	 */
+	@Override
+	public void cancel() {
+		this.running = false;
+	}
+	
+	// ------------------------------------------------------------------------
+	
+	/**
+	 * Computes the range boundaries from a set of weighted key samples. The i-th boundary is the smallest sample
+	 * at which the accumulated weight of all samples up to it reaches the fraction <i>(i+1) / numPartitions</i>
+	 * of the total weight. If there are fewer samples than partitions, boundaries are repeated, which leaves
+	 * some partitions empty.
+	 * 
+	 * @param samples The weighted samples, as produced by the {@link KeySampleDriver}. The list is sorted in place.
+	 * @param comparator The comparator for the key fields of the samples.
+	 * @param numPartitions The number of partitions to compute the boundaries for.
+	 * @return The <i>numPartitions - 1</i> boundaries, in ascending order, or an empty list, if there are no samples.
+	 */
+	public static List<PactRecord> computeBoundaries(List<PactRecord> samples, PactRecordComparator comparator,
+			int numPartitions)
+	{
+		final List<PactRecord> boundaries = new ArrayList<PactRecord>(Math.max(numPartitions - 1, 0));
+		if (samples.isEmpty() || numPartitions < 2) {
+			return boundaries;
+		}
+		
+		// sort the samples by their keys
+		final PactRecordComparator first = comparator.duplicate();
+		final PactRecordComparator second = comparator.duplicate();
+		Collections.sort(samples, new Comparator<PactRecord>() {
+			@Override
+			public int compare(PactRecord o1, PactRecord o2) {
+				first.setReference(o1);
+				second.setReference(o2);
+				return second.compareToReference(first);
+			}
+		});
+		
+		// determine the weights
+		final int weightField = KeySampleDriver.getWeightFieldPosition(comparator.getKeyPositions());
+		final double[] weights = new double[samples.size()];
+		final PactDouble weight = new PactDouble();
+		double totalWeight = 0.0;
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = samples.get(i).getField(weightField, weight).getValue();
+			totalWeight += weights[i];
+		}
+		
+		// pick the weighted quantiles
+		double accumulated = 0.0;
+		int pos = 0;
+		for (int i = 1; i < numPartitions; i++) {
+			final double threshold = totalWeight * i / numPartitions;
+			while (pos < weights.length - 1 && accumulated + weights[pos] < threshold) {
+				accumulated += weights[pos++];
+			}
+			boundaries.add(samples.get(pos));
+		}
+		return boundaries;
+	}
+}
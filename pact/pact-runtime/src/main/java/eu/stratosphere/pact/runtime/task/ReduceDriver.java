@@ -19,6 +19,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.DynamicMemoryManager;
 import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
 import eu.stratosphere.pact.common.generic.GenericReducer;
 import eu.stratosphere.pact.common.generic.types.TypeComparator;
@@ -26,8 +27,11 @@ import eu.stratosphere.pact.common.generic.types.TypeSerializer;
 import eu.stratosphere.pact.common.stubs.Collector;
 import eu.stratosphere.pact.common.stubs.ReduceStub;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.hash.SpillingHashAggregator;
 import eu.stratosphere.pact.runtime.sort.CombiningUnilateralSortMerger;
 import eu.stratosphere.pact.runtime.sort.DynamicUnilateralSortMerger;
+import eu.stratosphere.pact.runtime.sort.UnilateralSortMerger;
+import eu.stratosphere.pact.runtime.statistics.TaskStatistics;
 import eu.stratosphere.pact.runtime.task.util.CloseableInputProvider;
 import eu.stratosphere.pact.runtime.task.util.SimpleCloseableInputProvider;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig;
@@ -121,10 +125,13 @@ public class ReduceDriver<IT, OT> implements PactDriver<GenericReducer<IT, OT>,
 		final long availableMemory = config.getMemorySize();
 		final int maxFileHandles = config.getNumFilehandles();
 		final float spillThreshold = config.getSortSpillingTreshold();
+		final int sortParallelism = config.getSortParallelism();
 
 		// test minimum memory requirements
 		final LocalStrategy ls = config.getLocalStrategy();
-		if ((ls == LocalStrategy.SORT || ls == LocalStrategy.COMBININGSORT) && availableMemory < MIN_REQUIRED_MEMORY) {
+		if ((ls == LocalStrategy.SORT || ls == LocalStrategy.COMBININGSORT || ls == LocalStrategy.HASH_AGGREGATE) &&
+				availableMemory < MIN_REQUIRED_MEMORY)
+		{
 			throw new Exception("The Reduce task was initialized with too little memory for local strategy " +
 					config.getLocalStrategy() + " : " + availableMemory + " bytes." +
 					"Required is at least " + MIN_REQUIRED_MEMORY + " bytes.");
@@ -153,17 +160,33 @@ public class ReduceDriver<IT, OT> implements PactDriver<GenericReducer<IT, OT>,
 		// local strategy is SORT
 		// The input is grouped using a sort-merge strategy. An iterator on the sorted pairs is created and returned.
 		case SORT:
-			// instantiate a sort-merger
-			this.input = new DynamicUnilateralSortMerger<IT>(memoryManager, ioManager, in,
+			// instantiate a sort-merger. the dynamic sort-merger can only grow its memory through a dynamic
+			// memory manager, with any other memory manager (e.g. the off-heap one) it sorts in fixed memory
+			if (memoryManager instanceof DynamicMemoryManager) {
+				this.input = new DynamicUnilateralSortMerger<IT>(memoryManager, ioManager, in,
 						this.taskContext.getOwningNepheleTask(), this.serializer, sortComparator,
-						availableMemory, maxFileHandles, spillThreshold);
+						availableMemory, maxFileHandles, spillThreshold, sortParallelism);
+			} else {
+				this.input = new UnilateralSortMerger<IT>(memoryManager, ioManager, in,
+						this.taskContext.getOwningNepheleTask(), this.serializer, sortComparator,
+						availableMemory, -1, maxFileHandles, spillThreshold, sortParallelism);
+			}
 			break;
 
 		case COMBININGSORT:
 			// instantiate a combining sort-merger
 			this.input = new CombiningUnilateralSortMerger<IT>(this.taskContext.getStub(), memoryManager,
 						ioManager, in, this.taskContext.getOwningNepheleTask(), this.serializer,
-						sortComparator, availableMemory, maxFileHandles, spillThreshold, false);
+						sortComparator, availableMemory, -1, maxFileHandles, spillThreshold, false, sortParallelism);
+			break;
+
+		// local strategy is HASH_AGGREGATE
+		// The input is combined in a hash table into one record per key. The iterator returns these records,
+		// so that each group handed to the reduce function consists of a single, fully combined record.
+		case HASH_AGGREGATE:
+			this.input = new SpillingHashAggregator<IT>(this.taskContext.getStub(), memoryManager, ioManager, in,
+						this.taskContext.getOwningNepheleTask(), this.serializer, this.comparator.duplicate(),
+						availableMemory);
 			break;
 		default:
 			throw new Exception("Invalid local strategy provided for ReduceTask: " + ls.name());
@@ -190,8 +213,15 @@ public class ReduceDriver<IT, OT> implements PactDriver<GenericReducer<IT, OT>,
 		final Collector<OT> output = this.taskContext.getOutputCollector();
 
 		// run stub implementation
+		long numberOfKeyGroups = 0;
 		while (this.running && iter.nextKey()) {
 			stub.reduce(iter.getValues(), output);
+			numberOfKeyGroups++;
+		}
+		
+		final TaskStatistics statistics = this.taskContext.getTaskStatistics();
+		if (statistics != null) {
+			statistics.setNumberOfKeyGroups(numberOfKeyGroups);
 		}
 	}
 
@@ -59,6 +59,9 @@ import eu.stratosphere.pact.runtime.shipping.OutputEmitter;
 import eu.stratosphere.pact.runtime.shipping.PactRecordOutputCollector;
 import eu.stratosphere.pact.runtime.shipping.PactRecordOutputEmitter;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
+import eu.stratosphere.pact.runtime.statistics.StatisticsCatalog;
+import eu.stratosphere.pact.runtime.statistics.StatisticsCollector;
+import eu.stratosphere.pact.runtime.statistics.TaskStatistics;
 import eu.stratosphere.pact.runtime.task.chaining.ChainedDriver;
 import eu.stratosphere.pact.runtime.task.chaining.ExceptionInChainedStubException;
 import eu.stratosphere.pact.runtime.task.util.NepheleReaderIterator;
@@ -100,6 +103,8 @@ public class RegularPactTask<S extends Stub, OT> extends AbstractTask implements
 	protected ClassLoader userCodeClassLoader;
 
 	protected ArrayList<ChainedDriver<?, ?>> chainedTasks;
+	
+	protected TaskStatistics statistics;
 
 	protected volatile boolean running = true;
 
@@ -233,6 +238,10 @@ public class RegularPactTask<S extends Stub, OT> extends AbstractTask implements
 
 			// close all chained tasks letting them report failure
 			RegularPactTask.closeChainedTasks(this.chainedTasks, this);
+			
+			if (this.running && this.statistics != null) {
+				storeStatistics();
+			}
 		} catch (Exception ex) {
 			// close the input, but do not report any exceptions, since we already have another root cause
 			if (stubOpen) {
@@ -449,6 +458,30 @@ public class RegularPactTask<S extends Stub, OT> extends AbstractTask implements
 		this.chainedTasks = new ArrayList<ChainedDriver<?, ?>>();
 		this.eventualOutputs = new ArrayList<AbstractRecordWriter<?>>();
 		this.output = initOutputs(this, this.userCodeClassLoader, this.config, this.chainedTasks, this.eventualOutputs);
+		
+		// if the task records statistics, count what the task's own stub emits. the statistics key describes
+		// that stub's contract, so the records produced by chained tasks are not counted
+		if (this.config.getStatisticsKey() != null) {
+			this.statistics = new TaskStatistics();
+			this.output = new StatisticsCollector<OT>(this.output, this.statistics);
+		}
+	}
+	
+	/**
+	 * Writes the statistics recorded during the execution to the statistics catalog. Failing to do so does not
+	 * fail the task, since the statistics are only hints for the compilation of later programs.
+	 */
+	protected void storeStatistics()
+	{
+		try {
+			final StatisticsCatalog catalog = new StatisticsCatalog(this.config.getStatisticsCatalogPath());
+			catalog.store(this.config.getStatisticsKey(), getEnvironment().getJobID().toString(),
+				getEnvironment().getIndexInSubtaskGroup(), getEnvironment().getCurrentNumberOfSubtasks(),
+				this.statistics);
+		} catch (Throwable t) {
+			if (LOG.isWarnEnabled())
+				LOG.warn(formatLogString("Could not record the task statistics: " + t.getMessage()), t);
+		}
 	}
 
 	// --------------------------------------------------------------------------------------------
@@ -518,6 +551,15 @@ public class RegularPactTask<S extends Stub, OT> extends AbstractTask implements
 		return this;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactTaskContext#getTaskStatistics()
+	 */
+	@Override
+	public TaskStatistics getTaskStatistics() {
+		return this.statistics;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see eu.stratosphere.pact.runtime.task.PactTaskContext#formatLogString(java.lang.String)
@@ -0,0 +1,261 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import eu.stratosphere.nephele.execution.librarycache.LibraryCacheManager;
+import eu.stratosphere.nephele.io.MutableRecordReader;
+import eu.stratosphere.nephele.io.RecordWriter;
+import eu.stratosphere.nephele.services.memorymanager.DataInputView;
+import eu.stratosphere.nephele.services.memorymanager.ListMemorySegmentSource;
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.template.AbstractTask;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.InstantiationUtil;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.io.SpillingBuffer;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparatorFactory;
+import eu.stratosphere.pact.runtime.plugable.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.shipping.HotKeySet;
+import eu.stratosphere.pact.runtime.shipping.PactRecordOutputEmitter;
+import eu.stratosphere.pact.runtime.shipping.SampledDataDistribution;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
+import eu.stratosphere.pact.runtime.task.util.PactRecordNepheleReaderIterator;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+
+/**
+ * Partitioning task which is inserted by the PACT compiler for a partitioning that depends on a sample of the
+ * data. The task has two inputs: the first one carries the data, the second one the partitioning information
+ * computed from a sample of that same data. For a range partitioning without a known data distribution, these
+ * are the range boundaries computed by the {@link RangeBoundaryDriver}. For a skew-aware hash partitioning, these
+ * are the heavy hitters computed by the {@link HeavyHitterDriver}. Because that information is only known once
+ * all data has been sampled, the task first materializes its data input, then reads the partitioning information
+ * and finally partitions the materialized data according to it.
+ */
+public class SampledPartitionTask extends AbstractTask
+{
+	private static final Log LOG = LogFactory.getLog(SampledPartitionTask.class);
+	
+	private static final long MIN_REQUIRED_MEMORY = 512 * 1024;		// minimal memory for the task to operate
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private TaskConfig config;
+	
+	private ClassLoader userCodeClassLoader;
+	
+	private MutableObjectIterator<PactRecord> dataInput;
+	
+	private MutableObjectIterator<PactRecord> sampleInfoInput;
+	
+	private RecordWriter<PactRecord> output;
+	
+	private ShipStrategyType strategy;
+	
+	private PactRecordComparator comparator;
+	
+	private SampledDataDistribution distribution;
+	
+	private HotKeySet hotKeys;
+	
+	private volatile boolean running = true;
+	
+	// --------------------------------------------------------------------------------------------
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#registerInputOutput()
+	 */
+	@Override
+	public void registerInputOutput()
+	{
+		if (this.userCodeClassLoader == null) {
+			try {
+				this.userCodeClassLoader = LibraryCacheManager.getClassLoader(getEnvironment().getJobID());
+			} catch (IOException ioe) {
+				throw new RuntimeException(
+					"The ClassLoader for the user code could not be instantiated from the library cache.", ioe);
+			}
+		}
+		this.config = new TaskConfig(getTaskConfiguration());
+		
+		// the data is connected to the first gate, the partitioning information to the second one
+		this.dataInput = new PactRecordNepheleReaderIterator(new MutableRecordReader<PactRecord>(this));
+		this.sampleInfoInput = new PactRecordNepheleReaderIterator(new MutableRecordReader<PactRecord>(this));
+		
+		try {
+			this.comparator = PactRecordComparatorFactory.get().createComparator(
+				this.config.getConfigForOutputParameters(0), this.userCodeClassLoader);
+		} catch (ClassNotFoundException cnfex) {
+			throw new RuntimeException("The comparator for the sampled partitioning could not be created, " +
+				"because it could not load dependent classes.", cnfex);
+		}
+		
+		// the emitter partitions by the distribution or the hot keys, which are filled at runtime
+		this.strategy = this.config.getOutputShipStrategy(0);
+		switch (this.strategy) {
+		case PARTITION_RANGE:
+			this.distribution = new SampledDataDistribution();
+			break;
+		case PARTITION_SKEWED_HASH:
+			if (this.config.getSkewedPartitionSide() < 0) {
+				throw new RuntimeException("The skew-aware hash partitioning task was configured without an input side.");
+			}
+			this.hotKeys = new HotKeySet();
+			break;
+		default:
+			throw new RuntimeException("Invalid ship strategy for the sampled partitioning task: " + this.strategy.name());
+		}
+		this.output = new RecordWriter<PactRecord>(this,
+			new PactRecordOutputEmitter(this.strategy, this.comparator, this.distribution, this.hotKeys));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#invoke()
+	 */
+	@Override
+	public void invoke() throws Exception
+	{
+		if (LOG.isInfoEnabled())
+			LOG.info(RegularPactTask.constructLogString("Start PACT code.", getEnvironment().getTaskName(), this));
+		
+		final long availableMemory = this.config.getMemorySize();
+		if (availableMemory < MIN_REQUIRED_MEMORY) {
+			throw new Exception("The sampled partition task was initialized with too little memory: " + availableMemory +
+				". Required is at least " + MIN_REQUIRED_MEMORY + " bytes.");
+		}
+		
+		final MemoryManager memoryManager = getEnvironment().getMemoryManager();
+		final List<MemorySegment> memory = memoryManager.allocatePages(this, availableMemory);
+		final SpillingBuffer buffer = new SpillingBuffer(getEnvironment().getIOManager(),
+			new ListMemorySegmentSource(memory), memoryManager.getPageSize());
+		
+		try {
+			final PactRecordSerializer serializer = PactRecordSerializer.get();
+			final PactRecord record = new PactRecord();
+			
+			// materialize the data, because the partitioning is only known once all of it has been sampled
+			while (this.running && this.dataInput.next(record)) {
+				serializer.serialize(record, buffer);
+			}
+			
+			// read the boundaries or the hot keys
+			if (this.strategy == ShipStrategyType.PARTITION_RANGE) {
+				readBoundaries();
+			} else {
+				readHotKeys();
+			}
+			
+			// partition the data
+			final DataInputView inView = buffer.flip();
+			try {
+				while (this.running) {
+					serializer.deserialize(record, inView);
+					this.output.emit(record);
+				}
+			} catch (EOFException eofex) {
+				// all good, we are done
+			}
+		} catch (Exception ex) {
+			// drop exception, if the task was canceled
+			if (this.running) {
+				RegularPactTask.logAndThrowException(ex, this);
+			}
+		} finally {
+			memoryManager.release(buffer.close());
+			memoryManager.release(memory);
+		}
+		
+		if (this.running) {
+			if (LOG.isInfoEnabled())
+				LOG.info(RegularPactTask.constructLogString("Finished PACT code.", getEnvironment().getTaskName(), this));
+		} else {
+			if (LOG.isWarnEnabled())
+				LOG.warn(RegularPactTask.constructLogString("PACT code cancelled.", getEnvironment().getTaskName(), this));
+		}
+	}
+
+	private void readBoundaries() throws IOException
+	{
+		final List<PactRecord> boundaries = new ArrayList<PactRecord>();
+		PactRecord boundary = new PactRecord();
+		while (this.running && this.sampleInfoInput.next(boundary)) {
+			boundaries.add(boundary);
+			boundary = new PactRecord();
+		}
+		this.distribution.setBoundaries(boundaries);
+	}
+	
+	private void readHotKeys() throws IOException
+	{
+		// the hot keys hold their key fields at the first positions, followed by the spreading side
+		final Class<? extends Key>[] keyTypes = this.comparator.getKeyTypes();
+		final int[] positions = new int[keyTypes.length];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = i;
+		}
+		final int side = this.config.getSkewedPartitionSide();
+		
+		final PactRecord hotKey = new PactRecord();
+		final PactInteger spreadingSide = new PactInteger();
+		while (this.running && this.sampleInfoInput.next(hotKey)) {
+			final Key[] keys = new Key[keyTypes.length];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = InstantiationUtil.instantiate(keyTypes[i], Key.class);
+			}
+			hotKey.getFieldsInto(positions, keys);
+			this.hotKeys.add(keys, hotKey.getField(keys.length, spreadingSide).getValue() == side);
+		}
+		
+		if (LOG.isDebugEnabled())
+			LOG.debug(RegularPactTask.constructLogString("Partitioning with " + this.hotKeys.size() + " hot keys.",
+				getEnvironment().getTaskName(), this));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see eu.stratosphere.nephele.template.AbstractInvokable#cancel()
+	 */
+	@Override
+	public void cancel() throws Exception
+	{
+		this.running = false;
+		if (LOG.isWarnEnabled())
+			LOG.warn(RegularPactTask.constructLogString("Cancelling PACT code", getEnvironment().getTaskName(), this));
+	}
+	
+	/**
+	 * Sets the class-loader to be used to load the user code.
+	 * 
+	 * @param cl The class-loader to be used to load the user code.
+	 */
+	public void setUserCodeClassLoader(ClassLoader cl)
+	{
+		this.userCodeClassLoader = cl;
+	}
+}
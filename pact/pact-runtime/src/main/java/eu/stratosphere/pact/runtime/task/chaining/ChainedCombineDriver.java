@@ -15,8 +15,12 @@
 
 package eu.stratosphere.pact.runtime.task.chaining;
 
+import java.io.IOException;
+import java.util.List;
+
 import eu.stratosphere.nephele.configuration.Configuration;
 import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
 import eu.stratosphere.nephele.template.AbstractInvokable;
 import eu.stratosphere.pact.common.generic.GenericReducer;
 import eu.stratosphere.pact.common.generic.types.TypeComparator;
@@ -27,6 +31,7 @@ import eu.stratosphere.pact.common.stubs.Collector;
 import eu.stratosphere.pact.common.stubs.Stub;
 import eu.stratosphere.pact.common.util.InstantiationUtil;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.hash.CombiningHashTable;
 import eu.stratosphere.pact.runtime.plugable.PactRecordComparatorFactory;
 import eu.stratosphere.pact.runtime.plugable.PactRecordSerializerFactory;
 import eu.stratosphere.pact.runtime.sort.AsynchronousPartialSorterCollector;
@@ -55,6 +60,10 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 	
 	private AsynchronousPartialSorterCollector<T> sorter;
 	
+	private CombiningHashTable<T> table;
+	
+	private MemoryManager memoryManager;
+	
 	private CombinerThread combinerThread;
 	
 	private AbstractInvokable parent;
@@ -111,6 +120,7 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 		long strategyMinMem = 0;
 		switch (ls) {
 			case COMBININGSORT:
+			case HASH_AGGREGATE:
 				strategyMinMem = MIN_REQUIRED_MEMORY;
 				break;
 		}
@@ -170,6 +180,15 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 						serializer, comparator.duplicate(), availableMemory);
 				this.inputCollector = this.sorter.getInputCollector();
 				break;
+			
+			// local strategy is HASH_AGGREGATE
+			// The records are combined in a hash table as they are collected. Whenever the table is full,
+			// its contents are emitted. No separate thread is needed.
+			case HASH_AGGREGATE:
+				final List<MemorySegment> memory = memoryManager.allocatePages(this.parent, availableMemory);
+				this.memoryManager = memoryManager;
+				this.table = new CombiningHashTable<T>(serializer, comparator.duplicate(), this.combiner, memory);
+				return;
 			default:
 				throw new RuntimeException("Invalid local strategy provided for CombineTask.");
 		}
@@ -189,6 +208,18 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 	@Override
 	public void closeTask() throws Exception
 	{
+		if (this.table != null) {
+			releaseTable();
+			
+			if (this.exception != null) {
+				throw new ExceptionInChainedStubException(this.taskName, this.exception);
+			}
+			if (!this.canceled) {
+				RegularPactTask.closeUserCode(this.combiner);
+			}
+			return;
+		}
+		
 		// wait for the thread that runs the combiner to finish
 		while (!this.canceled && this.combinerThread.isAlive()) {
 			try {
@@ -225,6 +256,11 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 		this.canceled = true;
 		this.exception = new Exception("Task has been canceled");
 		
+		if (this.table != null) {
+			releaseTable();
+			return;
+		}
+		
 		this.combinerThread.cancel();
 		this.inputCollector.close();
 		this.sorter.close();
@@ -268,7 +304,22 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 			throw new RuntimeException("The combiner failed due to an exception.", 
 				this.exception.getCause() == null ? this.exception : this.exception.getCause());
 		
-		this.inputCollector.collect(record);
+		if (this.table != null) {
+			try {
+				if (!this.table.insertOrCombine(record)) {
+					this.table.flush(this.outputCollector);
+					if (!this.table.insertOrCombine(record)) {
+						throw new IOException("A record is too large to be combined in the available memory.");
+					}
+				}
+			}
+			catch (IOException ioex) {
+				this.exception = new Exception("The combiner failed due to an exception.", ioex);
+				throw new RuntimeException("The combiner failed due to an exception.", ioex);
+			}
+		} else {
+			this.inputCollector.collect(record);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -277,13 +328,39 @@ public class ChainedCombineDriver<T> implements ChainedDriver<T, T>
 	@Override
 	public void close()
 	{
-		this.inputCollector.close();
+		if (this.table != null) {
+			if (this.exception == null) {
+				try {
+					this.table.flush(this.outputCollector);
+				}
+				catch (IOException ioex) {
+					this.exception = new Exception("The combiner failed due to an exception.", ioex);
+				}
+			}
+		} else {
+			this.inputCollector.close();
+		}
 		
 		if (this.exception != null)
 			throw new RuntimeException("The combiner failed due to an exception.", 
 				this.exception.getCause() == null ? this.exception : this.exception.getCause());
 	}
 	
+	/**
+	 * Closes the hash table and releases its memory.
+	 */
+	private void releaseTable()
+	{
+		final CombiningHashTable<T> table = this.table;
+		if (table != null) {
+			table.close();
+			if (!table.getFreedMemory().isEmpty()) {
+				this.memoryManager.release(table.getFreedMemory());
+				table.getFreedMemory().clear();
+			}
+		}
+	}
+	
 	// --------------------------------------------------------------------------------------------
 	
 	private final class CombinerThread extends Thread
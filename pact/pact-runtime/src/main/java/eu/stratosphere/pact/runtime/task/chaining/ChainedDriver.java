@@ -23,6 +23,11 @@ import eu.stratosphere.pact.runtime.task.util.TaskConfig;
 
 /**
  * The interface to be implemented by drivers that do not run in an own pact task context, but are chained to other tasks.
+ * <p>
+ * Records are handed to a chained driver by reference: the driver receives the very instance that its predecessor
+ * emitted, without copying or serializing it. The record is serialized only once it reaches a serialization boundary,
+ * such as a channel, a sorter, or a hash table. Consequently, a chained driver must not hold on to a record after
+ * its {@link Collector#collect(Object)} call returned, because the producer may reuse the instance.
  *
  * @author Stephan Ewen
  */
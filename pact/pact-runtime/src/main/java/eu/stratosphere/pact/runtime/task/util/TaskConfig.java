@@ -63,6 +63,8 @@ public class TaskConfig
 		SORT,
 		// the input is sorted, during sorting a combiner is applied
 		COMBININGSORT,
+		// the input is aggregated in a hash table, using the combiner to merge records with equal keys
+		HASH_AGGREGATE,
 		// the first input is build side, the second side is probe side of a hybrid hash table
 		HYBRIDHASH_FIRST,
 		// the second input is build side, the first side is probe side of a hybrid hash table
@@ -143,6 +145,18 @@ public class TaskConfig
 	private static final String NUM_FILEHANDLES = "pact.filehandles.num";
 	
 	private static final String SORT_SPILLING_THRESHOLD = "pact.sort.spillthreshold";
+	
+	private static final String SORT_PARALLELISM = "pact.sort.parallelism";
+	
+	private static final String STATISTICS_KEY = "pact.statistics.key";
+	
+	private static final String STATISTICS_CATALOG_PATH = "pact.statistics.catalog";
+	
+	private static final String SAMPLED_NUM_PARTITIONS = "pact.sampled.partitions";
+	
+	private static final String SAMPLED_SAMPLE_SIZE = "pact.sampled.samplesize";
+	
+	private static final String SKEWED_PARTITION_SIDE = "pact.sampled.skew.side";
 
 	// --------------------------------------------------------------------------------------------
 	
@@ -529,6 +543,20 @@ public class TaskConfig
 		this.config.setFloat(SORT_SPILLING_THRESHOLD, threshold);
 	}
 	
+	/**
+	 * Sets the number of threads that sort a full sort buffer concurrently. A value of one sorts each buffer
+	 * in the sorter's own sorting thread.
+	 * 
+	 * @param parallelism The number of threads that sort a buffer.
+	 */
+	public void setSortParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException();
+		}
+		
+		this.config.setInteger(SORT_PARALLELISM, parallelism);
+	}
+	
 	// --------------------------------------------------------------------------------------------
 
 	/**
@@ -562,6 +590,17 @@ public class TaskConfig
 		return this.config.getFloat(SORT_SPILLING_THRESHOLD, 0.7f);
 	}
 	
+	/**
+	 * Gets the number of threads that sort a full sort buffer concurrently.
+	 * <p>
+	 * If the value is not set, this method returns a default value of <code>1</code>.
+	 * 
+	 * @return The number of threads that sort a buffer.
+	 */
+	public int getSortParallelism() {
+		return this.config.getInteger(SORT_PARALLELISM, 1);
+	}
+	
 	// --------------------------------------------------------------------------------------------
 	//                                    Parameters for Stub Chaining
 	// --------------------------------------------------------------------------------------------
@@ -603,6 +642,117 @@ public class TaskConfig
 		return this.config.getString(CHAINING_TASKNAME_PREFIX + chainPos, null);
 	}
 	
+	// --------------------------------------------------------------------------------------------
+	//                                    Parameters for Statistics
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Sets the key under which the task records its statistics in the statistics catalog.
+	 * 
+	 * @param key The key of the task in the statistics catalog.
+	 */
+	public void setStatisticsKey(String key)
+	{
+		this.config.setString(STATISTICS_KEY, key);
+	}
+	
+	/**
+	 * Gets the key under which the task records its statistics in the statistics catalog.
+	 * 
+	 * @return The key of the task in the statistics catalog, or null, if the task records no statistics.
+	 */
+	public String getStatisticsKey()
+	{
+		return this.config.getString(STATISTICS_KEY, null);
+	}
+	
+	/**
+	 * Sets the path of the statistics catalog to which the task writes its statistics.
+	 * 
+	 * @param path The path of the statistics catalog.
+	 */
+	public void setStatisticsCatalogPath(String path)
+	{
+		this.config.setString(STATISTICS_CATALOG_PATH, path);
+	}
+	
+	/**
+	 * Gets the path of the statistics catalog to which the task writes its statistics.
+	 * 
+	 * @return The path of the statistics catalog, or null, if the task records no statistics.
+	 */
+	public String getStatisticsCatalogPath()
+	{
+		return this.config.getString(STATISTICS_CATALOG_PATH, null);
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	//                               Parameters for Sampled Partitioning
+	// --------------------------------------------------------------------------------------------
+	
+	/**
+	 * Sets the number of partitions into which a sampled range or skew-aware hash partitioning splits the data.
+	 * 
+	 * @param numPartitions The number of partitions.
+	 */
+	public void setNumberOfSampledPartitions(int numPartitions)
+	{
+		this.config.setInteger(SAMPLED_NUM_PARTITIONS, numPartitions);
+	}
+	
+	/**
+	 * Gets the number of partitions into which a sampled range or skew-aware hash partitioning splits the data.
+	 * 
+	 * @return The number of partitions, or -1, if none has been set.
+	 */
+	public int getNumberOfSampledPartitions()
+	{
+		return this.config.getInteger(SAMPLED_NUM_PARTITIONS, -1);
+	}
+	
+	/**
+	 * Sets the number of keys that each instance samples from its input to determine the range boundaries
+	 * or the heavy hitters.
+	 * 
+	 * @param sampleSize The number of sampled keys.
+	 */
+	public void setPartitionSampleSize(int sampleSize)
+	{
+		this.config.setInteger(SAMPLED_SAMPLE_SIZE, sampleSize);
+	}
+	
+	/**
+	 * Gets the number of keys that each instance samples from its input to determine the range boundaries
+	 * or the heavy hitters.
+	 * 
+	 * @return The number of sampled keys, or -1, if none has been set.
+	 */
+	public int getPartitionSampleSize()
+	{
+		return this.config.getInteger(SAMPLED_SAMPLE_SIZE, -1);
+	}
+	
+	/**
+	 * Sets the input of the match, whose records a skew-aware hash partitioning task partitions. The side
+	 * determines whether the task spreads or replicates the records with a heavy hitter key.
+	 * 
+	 * @param side The input of the match, 0 for the first one and 1 for the second one.
+	 */
+	public void setSkewedPartitionSide(int side)
+	{
+		this.config.setInteger(SKEWED_PARTITION_SIDE, side);
+	}
+	
+	/**
+	 * Gets the input of the match, whose records a skew-aware hash partitioning task partitions.
+	 * 
+	 * @return The input of the match, 0 for the first one and 1 for the second one, or -1, if none has been set.
+	 */
+	public int getSkewedPartitionSide()
+	{
+		return this.config.getInteger(SKEWED_PARTITION_SIDE, -1);
+	}
+	
 	// --------------------------------------------------------------------------------------------
 	//                              Utility class for nested Configurations
 	// --------------------------------------------------------------------------------------------
@@ -0,0 +1,216 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.hash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.services.memorymanager.MemoryManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.pact.common.stubs.Collector;
+import eu.stratosphere.pact.common.stubs.ReduceStub;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.type.base.PactString;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.test.util.DummyInvokable;
+
+/**
+ * Tests for the {@link CombiningHashTable}.
+ */
+public class CombiningHashTableTest
+{
+	private static final AbstractInvokable MEM_OWNER = new DummyInvokable();
+
+	private static final int PAGE_SIZE = 8 * 1024;
+
+	private static final int NUM_KEYS = 500;
+
+	private static final int NUM_ROUNDS = 20;
+
+	private MemoryManager memManager;
+
+	private CombiningHashTable<PactRecord> table;
+
+	@Before
+	public void setup() throws Exception
+	{
+		this.memManager = new DefaultMemoryManager(4 * PAGE_SIZE, PAGE_SIZE);
+		final List<MemorySegment> memory = this.memManager.allocatePages(MEM_OWNER, 4);
+
+		@SuppressWarnings("unchecked")
+		final Class<? extends Key>[] keyTypes = (Class<? extends Key>[]) new Class[] { PactInteger.class };
+		this.table = new CombiningHashTable<PactRecord>(PactRecordSerializer.get(),
+			new PactRecordComparator(new int[] {0}, keyTypes), new SummingCombiner(), memory);
+	}
+
+	@After
+	public void tearDown()
+	{
+		this.table.close();
+		this.memManager.release(this.table.getFreedMemory());
+		if (!this.memManager.verifyEmpty()) {
+			fail("Not all memory was properly released to the memory manager --> Memory Leak.");
+		}
+		this.memManager.shutdown();
+	}
+
+	@Test
+	public void testCombineFitsIntoMemory() throws Exception
+	{
+		final PactRecord record = new PactRecord();
+		for (int round = 0; round < 5; round++) {
+			for (int key = 0; key < 10; key++) {
+				setRecord(record, key, key + 1);
+				assertTrue("The table ran out of memory.", this.table.insertOrCombine(record));
+			}
+		}
+		assertEquals(10, this.table.size());
+
+		final SumCollector sums = new SumCollector();
+		this.table.flush(sums);
+		assertEquals(0, this.table.size());
+
+		assertEquals(10, sums.sums.size());
+		for (int key = 0; key < 10; key++) {
+			assertEquals(5 * (key + 1), sums.sums.get(key).intValue());
+		}
+	}
+
+	/**
+	 * Fills the table with records whose combined results grow, such that the table also runs out of memory
+	 * while combining. The records that could not be inserted are inserted again after the table has been
+	 * flushed, exactly as the drivers do. Every value must be counted exactly once.
+	 */
+	@Test
+	public void testFlushWhenFullWhileCombining() throws Exception
+	{
+		final SumCollector sums = new SumCollector();
+		final PactRecord record = new PactRecord();
+		final PactInteger value = new PactInteger();
+		int numFlushes = 0;
+
+		for (int round = 0; round < NUM_ROUNDS; round++) {
+			for (int key = 0; key < NUM_KEYS; key++) {
+				setRecord(record, key, key + 1);
+
+				if (!this.table.insertOrCombine(record)) {
+					// the record must not have been aggregated by the failed call
+					assertEquals(key + 1, record.getField(1, value).getValue());
+
+					this.table.flush(sums);
+					numFlushes++;
+					assertTrue("The record did not fit into the empty table.", this.table.insertOrCombine(record));
+				}
+			}
+		}
+		this.table.flush(sums);
+
+		assertTrue("The test did not exhaust the memory of the table.", numFlushes > 0);
+		assertEquals(NUM_KEYS, sums.sums.size());
+		for (int key = 0; key < NUM_KEYS; key++) {
+			assertEquals("Wrong sum for key " + key, NUM_ROUNDS * (key + 1), sums.sums.get(key).intValue());
+		}
+	}
+
+	private static void setRecord(PactRecord record, int key, int value)
+	{
+		record.clear();
+		record.setField(0, new PactInteger(key));
+		record.setField(1, new PactInteger(value));
+		record.setField(2, new PactString(""));
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * Sums the second field and modifies and emits the last input record, as most combiners do. The third field
+	 * is padded depending on the sum, so that the results change their length.
+	 */
+	private static final class SummingCombiner extends ReduceStub
+	{
+		private final PactInteger theInteger = new PactInteger();
+
+		private final PactString padding = new PactString();
+
+		private final StringBuilder chars = new StringBuilder();
+
+		@Override
+		public void reduce(Iterator<PactRecord> records, Collector<PactRecord> out)
+		{
+			PactRecord element = null;
+			int sum = 0;
+			while (records.hasNext()) {
+				element = records.next();
+				sum += element.getField(1, this.theInteger).getValue();
+			}
+
+			this.chars.setLength(0);
+			for (int i = 0; i < sum % 97; i++) {
+				this.chars.append('x');
+			}
+			this.padding.setValue(this.chars);
+			this.theInteger.setValue(sum);
+			element.setField(1, this.theInteger);
+			element.setField(2, this.padding);
+			out.collect(element);
+		}
+
+		@Override
+		public void combine(Iterator<PactRecord> records, Collector<PactRecord> out)
+		{
+			reduce(records, out);
+		}
+	}
+
+	/**
+	 * Adds up the second field of the collected records per key.
+	 */
+	private static final class SumCollector implements Collector<PactRecord>
+	{
+		private final Map<Integer, Integer> sums = new HashMap<Integer, Integer>();
+
+		private final PactInteger key = new PactInteger();
+
+		private final PactInteger value = new PactInteger();
+
+		@Override
+		public void collect(PactRecord record)
+		{
+			final int key = record.getField(0, this.key).getValue();
+			final int value = record.getField(1, this.value).getValue();
+			final Integer previous = this.sums.get(key);
+			this.sums.put(key, (previous == null ? 0 : previous.intValue()) + value);
+		}
+
+		@Override
+		public void close() {}
+	}
+}
@@ -926,6 +926,111 @@ public class HashTableITCase
 	}
 	
 
+	@Test
+	public void testSpillingHashJoinWithPartiallyMatchingProbeSideIntPair() throws IOException
+	{
+		final int NUM_KEYS = 1000000;
+		final int PROBE_KEY_OFFSET = NUM_KEYS / 2;
+		final int BUILD_VALS_PER_KEY = 3;
+		final int PROBE_VALS_PER_KEY = 10;
+		
+		// create a build input that gives 3 million pairs with 3 values sharing the same key
+		MutableObjectIterator<IntPair> buildInput = new UniformIntPairGenerator(NUM_KEYS, BUILD_VALS_PER_KEY, false);
+
+		// create a probe input that gives 10 million pairs, of which only half have a key contained in the build side
+		final MutableObjectIterator<IntPair> probeGenerator = new UniformIntPairGenerator(NUM_KEYS, PROBE_VALS_PER_KEY, true);
+		MutableObjectIterator<IntPair> probeInput = new MutableObjectIterator<IntPair>() {
+			@Override
+			public boolean next(IntPair target) throws IOException {
+				if (probeGenerator.next(target)) {
+					target.setKey(target.getKey() + PROBE_KEY_OFFSET);
+					return true;
+				} else {
+					return false;
+				}
+			}
+		};
+
+		// allocate the memory for the HashTable
+		List<MemorySegment> memSegments;
+		try {
+			memSegments = this.memManager.allocatePages(MEM_OWNER, 896);
+		}
+		catch (MemoryAllocationException maex) {
+			fail("Memory for the Join could not be provided.");
+			return;
+		}
+		
+		// create the I/O access for spilling
+		IOManager ioManager = new IOManager();
+		
+		// create the map for validating the results
+		HashMap<Integer, Long> map = new HashMap<Integer, Long>(NUM_KEYS);
+		
+		// ----------------------------------------------------------------------------------------
+		
+		final MutableHashTable<IntPair, IntPair> join = new MutableHashTable<IntPair, IntPair>(
+				this.pairBuildSideAccesssor, this.pairProbeSideAccesssor, 
+				this.pairBuildSideComparator, this.pairProbeSideComparator, this.pairComparator,
+				memSegments, ioManager);
+		join.open(buildInput, probeInput);
+	
+		final IntPair record = new IntPair();
+		
+		while (join.nextRecord())
+		{
+			int numBuildValues = 0;
+			
+			int key = 0;
+			
+			HashBucketIterator<IntPair, IntPair> buildSide = join.getBuildSideIterator();
+			if (buildSide.next(record)) {
+				numBuildValues = 1;
+				key = record.getKey();
+			}
+			else {
+				continue;
+			}
+			while (buildSide.next(record)) {
+				numBuildValues++;
+			}
+			
+			if (numBuildValues != 3) {
+				fail("Other than 3 build values!!!");
+			}
+			
+			IntPair pr = join.getCurrentProbeRecord();
+			Assert.assertEquals("Probe-side key was different than build-side key.", key, pr.getKey()); 
+			
+			Long contained = map.get(key);
+			if (contained == null) {
+				contained = new Long(numBuildValues);
+			}
+			else {
+				contained = new Long(contained.longValue() + (numBuildValues));
+			}
+			
+			map.put(key, contained);
+		}
+		
+		join.close();
+		
+		Assert.assertEquals("Wrong number of keys", NUM_KEYS - PROBE_KEY_OFFSET, map.size());
+		for (Map.Entry<Integer, Long> entry : map.entrySet()) {
+			long val = entry.getValue();
+			int key = entry.getKey();
+			
+			Assert.assertTrue("Key " + key + " is not contained in both inputs.", key >= PROBE_KEY_OFFSET && key < NUM_KEYS);
+			Assert.assertEquals("Wrong number of values in per-key cross product for key " + key, 
+				PROBE_VALS_PER_KEY * BUILD_VALS_PER_KEY, val);
+		}
+		
+		
+		// ----------------------------------------------------------------------------------------
+		
+		this.memManager.release(join.getFreedMemory());
+	}
+	
 	@Test
 	public void testSpillingHashJoinWithMassiveCollisionsIntPair() throws IOException
 	{
@@ -0,0 +1,348 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.io;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.stratosphere.nephele.services.iomanager.IOManager;
+import eu.stratosphere.nephele.services.memorymanager.MemorySegment;
+import eu.stratosphere.nephele.services.memorymanager.spi.DefaultMemoryManager;
+import eu.stratosphere.nephele.template.AbstractInvokable;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.hash.MutableHashTable;
+import eu.stratosphere.pact.runtime.hash.MutableHashTable.HashBucketIterator;
+import eu.stratosphere.pact.runtime.sort.NormalizedKeySorter;
+import eu.stratosphere.pact.runtime.sort.QuickSort;
+import eu.stratosphere.pact.runtime.test.util.DummyInvokable;
+import eu.stratosphere.pact.runtime.test.util.UniformIntPairGenerator;
+import eu.stratosphere.pact.runtime.test.util.types.IntPair;
+import eu.stratosphere.pact.runtime.test.util.types.IntPairComparator;
+import eu.stratosphere.pact.runtime.test.util.types.IntPairPairComparator;
+import eu.stratosphere.pact.runtime.test.util.types.IntPairSerializer;
+
+/**
+ * Measures the memory segment accessors in the patterns in which the sort and hash algorithms use them. The
+ * byte-wise variants reproduce the way values used to be composed from individual bytes and serve as the baseline
+ * for the intrinsic accessors, the segment comparison and the segment byte swap.
+ */
+public class MemorySegmentSpeedBenchmark
+{
+	private static final AbstractInvokable MEM_OWNER = new DummyInvokable();
+
+	private static final int MEMORY_SIZE = 1024 * 1024 * 64;
+
+	private static final int PAGE_SIZE = 1024 * 32;
+
+	private static final int NUMBER_OF_ITERATIONS = 64;
+
+	private static final int KEY_LENGTH = 16;
+
+	private static final int NUM_KEYS = 1000000;
+
+	private static final long RANDOM_SEED = 235646234421L;
+
+	private DefaultMemoryManager heapMemoryManager;
+
+	private DefaultMemoryManager offHeapMemoryManager;
+
+	private IOManager ioManager;
+
+	@Before
+	public void setUp() {
+		this.heapMemoryManager = new DefaultMemoryManager(MEMORY_SIZE, PAGE_SIZE, false);
+		this.offHeapMemoryManager = new DefaultMemoryManager(MEMORY_SIZE, PAGE_SIZE, true);
+		this.ioManager = new IOManager();
+	}
+
+	@After
+	public void tearDown() {
+		this.ioManager.shutdown();
+		this.heapMemoryManager.shutdown();
+		this.offHeapMemoryManager.shutdown();
+	}
+
+	// --------------------------------------------------------------------------------------------
+	//                                   Primitive Accessors
+	// --------------------------------------------------------------------------------------------
+
+	@Test
+	public void testByteWiseLongAccess() {
+		final byte[] memory = new byte[PAGE_SIZE];
+		long sum = 0;
+
+		final long start = System.nanoTime();
+		for (int i = 0; i < NUMBER_OF_ITERATIONS * 64; i++) {
+			for (int pos = 0; pos < PAGE_SIZE; pos += 8) {
+				memory[pos + 0] = (byte) (i >> 56);
+				memory[pos + 1] = (byte) (i >> 48);
+				memory[pos + 2] = (byte) (i >> 40);
+				memory[pos + 3] = (byte) (i >> 32);
+				memory[pos + 4] = (byte) (i >> 24);
+				memory[pos + 5] = (byte) (i >> 16);
+				memory[pos + 6] = (byte) (i >> 8);
+				memory[pos + 7] = (byte) i;
+			}
+			for (int pos = 0; pos < PAGE_SIZE; pos += 8) {
+				sum += (((long) memory[pos + 0] & 0xff) << 56)
+					| (((long) memory[pos + 1] & 0xff) << 48)
+					| (((long) memory[pos + 2] & 0xff) << 40)
+					| (((long) memory[pos + 3] & 0xff) << 32)
+					| (((long) memory[pos + 4] & 0xff) << 24)
+					| (((long) memory[pos + 5] & 0xff) << 16)
+					| (((long) memory[pos + 6] & 0xff) << 8)
+					| (((long) memory[pos + 7] & 0xff) << 0);
+			}
+		}
+		report("Byte-wise long access", start, sum);
+	}
+
+	@Test
+	public void testHeapSegmentLongAccess() throws Exception {
+		runLongAccess(this.heapMemoryManager, "Heap segment long access", false);
+	}
+
+	@Test
+	public void testOffHeapSegmentLongAccess() throws Exception {
+		runLongAccess(this.offHeapMemoryManager, "Off-heap segment long access", false);
+	}
+
+	@Test
+	public void testHeapSegmentNativeLongAccess() throws Exception {
+		runLongAccess(this.heapMemoryManager, "Heap segment native long access", true);
+	}
+
+	@Test
+	public void testOffHeapSegmentNativeLongAccess() throws Exception {
+		runLongAccess(this.offHeapMemoryManager, "Off-heap segment native long access", true);
+	}
+
+	private void runLongAccess(DefaultMemoryManager memoryManager, String name, boolean nativeOrder) throws Exception {
+		final MemorySegment segment = memoryManager.allocatePages(MEM_OWNER, 1).get(0);
+		long sum = 0;
+
+		final long start = System.nanoTime();
+		for (int i = 0; i < NUMBER_OF_ITERATIONS * 64; i++) {
+			if (nativeOrder) {
+				for (int pos = 0; pos < PAGE_SIZE; pos += 8) {
+					segment.putLongNative(pos, i);
+				}
+				for (int pos = 0; pos < PAGE_SIZE; pos += 8) {
+					sum += segment.getLongNative(pos);
+				}
+			} else {
+				for (int pos = 0; pos < PAGE_SIZE; pos += 8) {
+					segment.putLong(pos, i);
+				}
+				for (int pos = 0; pos < PAGE_SIZE; pos += 8) {
+					sum += segment.getLong(pos);
+				}
+			}
+		}
+		report(name, start, sum);
+
+		memoryManager.release(segment);
+	}
+
+	// --------------------------------------------------------------------------------------------
+	//                               Key Comparisons and Swaps
+	// --------------------------------------------------------------------------------------------
+
+	@Test
+	public void testByteWiseKeyComparison() throws Exception {
+		final List<MemorySegment> segments = this.heapMemoryManager.allocatePages(MEM_OWNER, 2);
+		fillWithKeys(segments);
+
+		final byte[] b1 = segments.get(0).getBackingArray();
+		final byte[] b2 = segments.get(1).getBackingArray();
+		long sum = 0;
+
+		final long start = System.nanoTime();
+		for (int i = 0; i < NUMBER_OF_ITERATIONS * 16; i++) {
+			for (int pos = 0; pos < PAGE_SIZE; pos += KEY_LENGTH) {
+				int val = 0;
+				for (int k = 0, p1 = segments.get(0).translateOffset(pos), p2 = segments.get(1).translateOffset(pos);
+					k < KEY_LENGTH && (val = (b1[p1] & 0xff) - (b2[p2] & 0xff)) == 0; k++, p1++, p2++);
+				sum += val;
+			}
+		}
+		report("Byte-wise key comparison", start, sum);
+
+		this.heapMemoryManager.release(segments);
+	}
+
+	@Test
+	public void testHeapSegmentKeyComparison() throws Exception {
+		runKeyComparison(this.heapMemoryManager, "Heap segment key comparison");
+	}
+
+	@Test
+	public void testOffHeapSegmentKeyComparison() throws Exception {
+		runKeyComparison(this.offHeapMemoryManager, "Off-heap segment key comparison");
+	}
+
+	private void runKeyComparison(DefaultMemoryManager memoryManager, String name) throws Exception {
+		final List<MemorySegment> segments = memoryManager.allocatePages(MEM_OWNER, 2);
+		fillWithKeys(segments);
+
+		final MemorySegment seg1 = segments.get(0);
+		final MemorySegment seg2 = segments.get(1);
+		long sum = 0;
+
+		final long start = System.nanoTime();
+		for (int i = 0; i < NUMBER_OF_ITERATIONS * 16; i++) {
+			for (int pos = 0; pos < PAGE_SIZE; pos += KEY_LENGTH) {
+				sum += seg1.compare(seg2, pos, pos, KEY_LENGTH);
+			}
+		}
+		report(name, start, sum);
+
+		memoryManager.release(segments);
+	}
+
+	@Test
+	public void testHeapSegmentSwap() throws Exception {
+		runSwap(this.heapMemoryManager, "Heap segment swap");
+	}
+
+	@Test
+	public void testOffHeapSegmentSwap() throws Exception {
+		runSwap(this.offHeapMemoryManager, "Off-heap segment swap");
+	}
+
+	private void runSwap(DefaultMemoryManager memoryManager, String name) throws Exception {
+		final List<MemorySegment> segments = memoryManager.allocatePages(MEM_OWNER, 2);
+		fillWithKeys(segments);
+
+		final MemorySegment seg1 = segments.get(0);
+		final MemorySegment seg2 = segments.get(1);
+		final byte[] swapBuffer = new byte[KEY_LENGTH];
+
+		final long start = System.nanoTime();
+		for (int i = 0; i < NUMBER_OF_ITERATIONS * 16; i++) {
+			for (int pos = 0; pos < PAGE_SIZE; pos += KEY_LENGTH) {
+				seg1.swapBytes(swapBuffer, seg2, pos, pos, KEY_LENGTH);
+			}
+		}
+		report(name, start, seg1.getLong(0));
+
+		memoryManager.release(segments);
+	}
+
+	// --------------------------------------------------------------------------------------------
+	//                                 Sort and Hash Workloads
+	// --------------------------------------------------------------------------------------------
+
+	@Test
+	public void testHeapSort() throws Exception {
+		runSort(this.heapMemoryManager, "Heap memory sort");
+	}
+
+	@Test
+	public void testOffHeapSort() throws Exception {
+		runSort(this.offHeapMemoryManager, "Off-heap memory sort");
+	}
+
+	private void runSort(DefaultMemoryManager memoryManager, String name) throws Exception {
+		final List<MemorySegment> memory = memoryManager.allocatePages(MEM_OWNER, MEMORY_SIZE / PAGE_SIZE);
+		final NormalizedKeySorter<IntPair> sorter = new NormalizedKeySorter<IntPair>(new IntPairSerializer(),
+			new IntPairComparator(), memory);
+
+		final Random rnd = new Random(RANDOM_SEED);
+		final IntPair pair = new IntPair();
+		do {
+			pair.setKey(rnd.nextInt());
+			pair.setValue(rnd.nextInt());
+		}
+		while (sorter.write(pair));
+
+		final long start = System.nanoTime();
+		new QuickSort().sort(sorter);
+		report(name + " (" + sorter.size() + " records)", start, sorter.size());
+
+		// verify the order
+		final MutableObjectIterator<IntPair> iter = sorter.getIterator();
+		final IntPair current = new IntPair();
+		int last = Integer.MIN_VALUE;
+		while (iter.next(current)) {
+			Assert.assertTrue("The records are not sorted.", last <= current.getKey());
+			last = current.getKey();
+		}
+
+		memoryManager.release(sorter.dispose());
+	}
+
+	@Test
+	public void testHeapHashJoin() throws Exception {
+		runHashJoin(this.heapMemoryManager, "Heap memory hash join");
+	}
+
+	@Test
+	public void testOffHeapHashJoin() throws Exception {
+		runHashJoin(this.offHeapMemoryManager, "Off-heap memory hash join");
+	}
+
+	private void runHashJoin(DefaultMemoryManager memoryManager, String name) throws Exception {
+		final List<MemorySegment> memory = memoryManager.allocatePages(MEM_OWNER, MEMORY_SIZE / PAGE_SIZE);
+
+		final MutableHashTable<IntPair, IntPair> join = new MutableHashTable<IntPair, IntPair>(
+			new IntPairSerializer(), new IntPairSerializer(), new IntPairComparator(), new IntPairComparator(),
+			new IntPairPairComparator(), memory, this.ioManager);
+
+		final long start = System.nanoTime();
+		join.open(new UniformIntPairGenerator(NUM_KEYS, 1, false), new UniformIntPairGenerator(NUM_KEYS, 4, true));
+
+		final IntPair record = new IntPair();
+		long numResults = 0;
+		while (join.nextRecord()) {
+			final HashBucketIterator<IntPair, IntPair> buildSide = join.getBuildSideIterator();
+			while (buildSide.next(record)) {
+				numResults++;
+			}
+		}
+		join.close();
+		report(name, start, numResults);
+
+		Assert.assertEquals("Wrong number of join results.", NUM_KEYS * 4L, numResults);
+		memoryManager.release(join.getFreedMemory());
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	private static void fillWithKeys(List<MemorySegment> segments) {
+		final Random rnd = new Random(RANDOM_SEED);
+		final byte[] bytes = new byte[PAGE_SIZE];
+		rnd.nextBytes(bytes);
+
+		// same keys in both segments, except for the last byte of every other key
+		for (MemorySegment seg : segments) {
+			seg.put(0, bytes);
+		}
+		for (int pos = KEY_LENGTH - 1; pos < PAGE_SIZE; pos += 2 * KEY_LENGTH) {
+			segments.get(1).put(pos, (byte) (bytes[pos] + 1));
+		}
+	}
+
+	private static void report(String name, long startNanos, long checksum) {
+		final long millis = (System.nanoTime() - startNanos) / 1000000;
+		System.out.println(name + ": " + millis + " msecs (checksum " + checksum + ")");
+	}
+}
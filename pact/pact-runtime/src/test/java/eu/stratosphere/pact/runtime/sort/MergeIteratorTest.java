@@ -208,4 +208,30 @@ public class MergeIteratorTest
 		
 		Assert.assertTrue("Merge must have returned a wrong result", violationFound);
 	}
+	
+	@Test
+	public void testMergeOfStreamsWithCommonKeyPrefix() throws Exception
+	{
+		// the values share a prefix that is longer than the cached normalized key
+		List<MutableObjectIterator<PactRecord>> iterators = new ArrayList<MutableObjectIterator<PactRecord>>();
+		iterators.add(newIterator(new int[] { 1, 2, 3 }, new String[] { "prefix-prefix-A", "prefix-prefix-D", "prefix-prefix-G" }));
+		iterators.add(newIterator(new int[] { 4, 5, 6 }, new String[] { "prefix-prefix-B", "prefix-prefix-C", "prefix-prefix-H" }));
+		iterators.add(newIterator(new int[] { 7, 8, 9 }, new String[] { "prefix-prefix-E", "prefix-prefix-F", "prefix-prefix-I" }));
+		
+		final String[] expected = new String[] { "prefix-prefix-A", "prefix-prefix-B", "prefix-prefix-C",
+			"prefix-prefix-D", "prefix-prefix-E", "prefix-prefix-F", "prefix-prefix-G", "prefix-prefix-H", "prefix-prefix-I" };
+		
+		@SuppressWarnings("unchecked")
+		final TypeComparator<PactRecord> valueComparator = new PactRecordComparator(new int[] {1}, new Class[] { TestData.Value.class});
+
+		// merge iterator
+		MutableObjectIterator<PactRecord> iterator = new MergeIterator<PactRecord>(iterators, this.serializer, valueComparator);
+
+		PactRecord rec = new PactRecord();
+		int pos = 0;
+		while (iterator.next(rec)) {
+			Assert.assertEquals(expected[pos++], rec.getField(1, TestData.Value.class).getValue());
+		}
+		Assert.assertEquals("Wrong number of elements returned from stream.", expected.length, pos);
+	}
 }
@@ -0,0 +1,163 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.statistics;
+
+import java.io.File;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.contract.FileDataSink;
+import eu.stratosphere.pact.common.contract.FileDataSource;
+import eu.stratosphere.pact.common.io.RecordOutputFormat;
+import eu.stratosphere.pact.common.io.TextInputFormat;
+
+/**
+ * Tests storing and loading statistics in the {@link StatisticsCatalog}.
+ */
+public class StatisticsCatalogTest
+{
+	private final String catalogPath = System.getProperty("java.io.tmpdir") + "/statistics_catalog_test";
+	
+	@After
+	public void cleanUp()
+	{
+		deleteRecursively(new File(this.catalogPath));
+	}
+	
+	@Test
+	public void testMergeCompleteRun()
+	{
+		try {
+			final StatisticsCatalog catalog = new StatisticsCatalog("file://" + this.catalogPath);
+			
+			catalog.store("task", "run1", 0, 2, createStatistics(100, 10, 400, 7));
+			Assert.assertNull("An incomplete run must not be loaded.", catalog.load("task"));
+			
+			catalog.store("task", "run1", 1, 2, createStatistics(300, 10, 800, 13));
+			final TaskStatistics stats = catalog.load("task");
+			
+			Assert.assertNotNull("The complete run was not loaded.", stats);
+			Assert.assertEquals(400, stats.getNumberOfRecords());
+			Assert.assertEquals(60.0f, stats.getAverageRecordWidth(), 0.001f);
+			Assert.assertEquals(20, stats.getNumberOfKeyGroups());
+			
+			Assert.assertNull("Statistics for an unknown key were loaded.", catalog.load("other"));
+		}
+		catch (Exception ex) {
+			ex.printStackTrace();
+			Assert.fail("The test caused an exception: " + ex.getMessage());
+		}
+	}
+	
+	@Test
+	public void testLatestRunSupersedesOlderRuns()
+	{
+		try {
+			final StatisticsCatalog catalog = new StatisticsCatalog("file://" + this.catalogPath);
+			
+			catalog.store("task", "run1", 0, 1, createStatistics(100, 1, 10, TaskStatistics.UNKNOWN));
+			final File oldFile = new File(this.catalogPath + "/task/run1_0_1");
+			oldFile.setLastModified(System.currentTimeMillis() - 60000);
+			
+			catalog.store("task", "run2", 0, 2, createStatistics(500, 1, 20, TaskStatistics.UNKNOWN));
+			Assert.assertTrue("A run was removed before it was superseded by a complete run.", oldFile.exists());
+			
+			catalog.store("task", "run2", 1, 2, createStatistics(500, 1, 20, TaskStatistics.UNKNOWN));
+			Assert.assertFalse("The superseded run was not removed.", oldFile.exists());
+			
+			final TaskStatistics stats = catalog.load("task");
+			Assert.assertEquals(1000, stats.getNumberOfRecords());
+			Assert.assertEquals(TaskStatistics.UNKNOWN, stats.getNumberOfKeyGroups());
+		}
+		catch (Exception ex) {
+			ex.printStackTrace();
+			Assert.fail("The test caused an exception: " + ex.getMessage());
+		}
+	}
+	
+	@Test
+	public void testLoadDoesNotModifyCatalog()
+	{
+		try {
+			final StatisticsCatalog catalog = new StatisticsCatalog("file://" + this.catalogPath);
+			
+			catalog.store("task", "run1", 0, 1, createStatistics(100, 1, 10, TaskStatistics.UNKNOWN));
+			final File oldFile = new File(this.catalogPath + "/task/run1_0_1");
+			oldFile.setLastModified(System.currentTimeMillis() - 60000);
+			
+			// place a newer run next to the old one without storing it through the catalog
+			catalog.store("other", "run2", 0, 1, createStatistics(500, 1, 20, TaskStatistics.UNKNOWN));
+			Assert.assertTrue(new File(this.catalogPath + "/other/run2_0_1").renameTo(
+				new File(this.catalogPath + "/task/run2_0_1")));
+			
+			final TaskStatistics stats = catalog.load("task");
+			Assert.assertEquals(500, stats.getNumberOfRecords());
+			Assert.assertTrue("Loading the statistics modified the catalog.", oldFile.exists());
+		}
+		catch (Exception ex) {
+			ex.printStackTrace();
+			Assert.fail("The test caused an exception: " + ex.getMessage());
+		}
+	}
+	
+	@Test
+	public void testContractKeyIgnoresFilePaths()
+	{
+		final String key = StatisticsCatalog.getContractKey(createContracts("file:///in/first", "file:///out/first"));
+		Assert.assertEquals("The key depends on the file paths.", key,
+			StatisticsCatalog.getContractKey(createContracts("file:///in/second", "file:///out/second")));
+		
+		final FileDataSink other = createContracts("file:///in/first", "file:///out/first");
+		other.setParameter("some.parameter", 42);
+		Assert.assertFalse("The key does not depend on the parameters.",
+			key.equals(StatisticsCatalog.getContractKey(other)));
+	}
+	
+	// --------------------------------------------------------------------------------------------
+	
+	private static FileDataSink createContracts(String inputPath, String outputPath)
+	{
+		final FileDataSource source = new FileDataSource(TextInputFormat.class, inputPath, "Source");
+		return new FileDataSink(RecordOutputFormat.class, outputPath, source, "Sink");
+	}
+	
+	private static TaskStatistics createStatistics(long numRecords, int numSamples, int sampledBytes, long numKeyGroups)
+	{
+		final TaskStatistics stats = new TaskStatistics();
+		for (long i = 0; i < numRecords; i++) {
+			stats.countRecord();
+		}
+		for (int i = 0; i < numSamples; i++) {
+			stats.sampleRecordWidth(sampledBytes / numSamples);
+		}
+		stats.setNumberOfKeyGroups(numKeyGroups);
+		return stats;
+	}
+	
+	private static void deleteRecursively(File file)
+	{
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+}
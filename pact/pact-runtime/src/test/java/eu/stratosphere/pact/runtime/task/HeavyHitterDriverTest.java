@@ -0,0 +1,136 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.shipping.HotKeySet;
+import eu.stratosphere.pact.runtime.shipping.PactRecordOutputEmitter;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
+
+/**
+ * Tests the detection of heavy hitters from weighted key samples and their splitting by the skew-aware
+ * hash partitioning.
+ */
+public class HeavyHitterDriverTest
+{
+	@SuppressWarnings("unchecked")
+	private static final Class<? extends Key>[] KEY_TYPES = new Class[] { PactInteger.class };
+	
+	@Test
+	public void testHeavyHitterDetection()
+	{
+		final Map<List<Key>, double[]> weights = new HashMap<List<Key>, double[]>();
+		for (int i = 0; i < 100; i++) {
+			addWeight(weights, i, 1.0, 1.0);
+		}
+		// key 7 is hot in the first input, key 13 in the second one, key 21 is hot in neither
+		addWeight(weights, 7, 200.0, 10.0);
+		addWeight(weights, 13, 0.0, 150.0);
+		addWeight(weights, 21, 20.0, 20.0);
+		
+		// total weight is 600, so a key is hot from a weight of 150 on
+		final List<PactRecord> heavyHitters = HeavyHitterDriver.computeHeavyHitters(weights, 600.0, 4);
+		assertEquals(2, heavyHitters.size());
+		
+		final Map<Integer, Integer> spreadingSides = new HashMap<Integer, Integer>();
+		for (PactRecord hh : heavyHitters) {
+			spreadingSides.put(hh.getField(0, PactInteger.class).getValue(), hh.getField(1, PactInteger.class).getValue());
+		}
+		assertEquals(Integer.valueOf(0), spreadingSides.get(7));
+		assertEquals(Integer.valueOf(1), spreadingSides.get(13));
+	}
+	
+	@Test
+	public void testSinglePartitionHasNoHeavyHitters()
+	{
+		final Map<List<Key>, double[]> weights = new HashMap<List<Key>, double[]>();
+		addWeight(weights, 1, 100.0, 100.0);
+		assertTrue(HeavyHitterDriver.computeHeavyHitters(weights, 200.0, 1).isEmpty());
+	}
+	
+	@Test
+	public void testSkewedPartitioning()
+	{
+		final int numChannels = 4;
+		final PactRecordComparator comparator = new PactRecordComparator(new int[] {1}, KEY_TYPES);
+		
+		final HotKeySet spreadKeys = new HotKeySet();
+		spreadKeys.add(new Key[] { new PactInteger(7) }, true);
+		final HotKeySet replicatedKeys = new HotKeySet();
+		replicatedKeys.add(new Key[] { new PactInteger(7) }, false);
+		
+		final PactRecordOutputEmitter spreading = new PactRecordOutputEmitter(
+			ShipStrategyType.PARTITION_SKEWED_HASH, comparator.duplicate(), null, spreadKeys);
+		final PactRecordOutputEmitter replicating = new PactRecordOutputEmitter(
+			ShipStrategyType.PARTITION_SKEWED_HASH, comparator.duplicate(), null, replicatedKeys);
+		final PactRecordOutputEmitter hashing = new PactRecordOutputEmitter(
+			ShipStrategyType.PARTITION_HASH, comparator.duplicate());
+		
+		final PactRecord hot = new PactRecord(new PactInteger(0), new PactInteger(7));
+		
+		// the spreading side sends the hot key to all channels in turn
+		final Set<Integer> targets = new HashSet<Integer>();
+		for (int i = 0; i < numChannels; i++) {
+			final int[] channels = spreading.selectChannels(hot, numChannels);
+			assertEquals(1, channels.length);
+			targets.add(channels[0]);
+		}
+		assertEquals(numChannels, targets.size());
+		
+		// the other side replicates the hot key to all channels
+		final int[] all = replicating.selectChannels(hot, numChannels);
+		Arrays.sort(all);
+		assertTrue(Arrays.equals(new int[] {0, 1, 2, 3}, all));
+		
+		// all other keys go where the regular hash partitioning sends them
+		for (int i = 0; i < 100; i++) {
+			if (i == 7) {
+				continue;
+			}
+			final PactRecord cold = new PactRecord(new PactInteger(0), new PactInteger(i));
+			final int expected = hashing.selectChannels(cold, numChannels)[0];
+			assertEquals(expected, spreading.selectChannels(cold, numChannels)[0]);
+			assertEquals(expected, replicating.selectChannels(cold, numChannels)[0]);
+		}
+	}
+	
+	private static void addWeight(Map<List<Key>, double[]> weights, int key, double weight1, double weight2)
+	{
+		final List<Key> k = Arrays.<Key>asList(new PactInteger(key));
+		double[] w = weights.get(k);
+		if (w == null) {
+			w = new double[2];
+			weights.put(k, w);
+		}
+		w[0] += weight1;
+		w[1] += weight2;
+	}
+}
@@ -0,0 +1,106 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactDouble;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+
+/**
+ * Tests the computation of the range boundaries from weighted key samples.
+ */
+public class RangeBoundaryDriverTest
+{
+	@SuppressWarnings("unchecked")
+	private static final Class<? extends Key>[] KEY_TYPES = new Class[] { PactInteger.class };
+	
+	@Test
+	public void testUniformWeights()
+	{
+		final PactRecordComparator comparator = new PactRecordComparator(new int[] {0}, KEY_TYPES);
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		for (int i = 0; i < 1000; i++) {
+			samples.add(createSample(i, 1.0));
+		}
+		Collections.shuffle(samples, new Random(42));
+		
+		final List<PactRecord> boundaries = RangeBoundaryDriver.computeBoundaries(samples, comparator, 4);
+		assertEquals(3, boundaries.size());
+		assertEquals(249, boundaries.get(0).getField(0, PactInteger.class).getValue());
+		assertEquals(499, boundaries.get(1).getField(0, PactInteger.class).getValue());
+		assertEquals(749, boundaries.get(2).getField(0, PactInteger.class).getValue());
+	}
+	
+	@Test
+	public void testSkewedWeights()
+	{
+		final PactRecordComparator comparator = new PactRecordComparator(new int[] {0}, KEY_TYPES);
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		for (int i = 0; i < 100; i++) {
+			samples.add(createSample(i, 1.0));
+			samples.add(createSample(100 + i, 9.0));
+		}
+		Collections.shuffle(samples, new Random(42));
+		
+		// the keys from 100 on represent nine times as many records, so the median moves into them
+		final List<PactRecord> boundaries = RangeBoundaryDriver.computeBoundaries(samples, comparator, 2);
+		assertEquals(1, boundaries.size());
+		assertEquals(144, boundaries.get(0).getField(0, PactInteger.class).getValue());
+	}
+	
+	@Test
+	public void testDescendingOrder()
+	{
+		final PactRecordComparator comparator = new PactRecordComparator(new int[] {0}, KEY_TYPES, new boolean[] {false});
+		final List<PactRecord> samples = new ArrayList<PactRecord>();
+		for (int i = 0; i < 1000; i++) {
+			samples.add(createSample(i, 1.0));
+		}
+		Collections.shuffle(samples, new Random(42));
+		
+		final List<PactRecord> boundaries = RangeBoundaryDriver.computeBoundaries(samples, comparator, 4);
+		assertEquals(3, boundaries.size());
+		assertEquals(750, boundaries.get(0).getField(0, PactInteger.class).getValue());
+		assertEquals(500, boundaries.get(1).getField(0, PactInteger.class).getValue());
+		assertEquals(250, boundaries.get(2).getField(0, PactInteger.class).getValue());
+	}
+	
+	@Test
+	public void testNoSamples()
+	{
+		final PactRecordComparator comparator = new PactRecordComparator(new int[] {0}, KEY_TYPES);
+		assertEquals(0, RangeBoundaryDriver.computeBoundaries(new ArrayList<PactRecord>(), comparator, 4).size());
+	}
+	
+	private static PactRecord createSample(int key, double weight)
+	{
+		final PactRecord sample = new PactRecord();
+		sample.setField(0, new PactInteger(key));
+		sample.setField(KeySampleDriver.getWeightFieldPosition(new int[] {0}), new PactDouble(weight));
+		return sample;
+	}
+}
@@ -0,0 +1,114 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.generic.GenericReducer;
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.task.ReduceTaskExternalITCase.MockCombiningReduceStub;
+import eu.stratosphere.pact.runtime.task.ReduceTaskExternalITCase.MockReduceStub;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig.LocalStrategy;
+import eu.stratosphere.pact.runtime.test.util.DriverTestBase;
+import eu.stratosphere.pact.runtime.test.util.UniformPactRecordGenerator;
+
+/**
+ * Runs the sorting reduce strategies with a memory manager that allocates its pages outside the java heap, as the
+ * task manager does when <tt>taskmanager.memory.offheap</tt> is set.
+ */
+public class ReduceTaskOffHeapITCase extends DriverTestBase<GenericReducer<PactRecord, PactRecord>>
+{
+	private static final Log LOG = LogFactory.getLog(ReduceTaskOffHeapITCase.class);
+
+	private final List<PactRecord> outList = new ArrayList<PactRecord>();
+
+
+	public ReduceTaskOffHeapITCase() {
+		super(3*1024*1024, true);
+	}
+
+
+	@Test
+	public void testMultiLevelMergeReduceTask() {
+
+		int keyCnt = 32768;
+		int valCnt = 8;
+
+		runReduceTask(LocalStrategy.SORT, MockReduceStub.class, keyCnt, valCnt);
+
+		Assert.assertEquals("Wrong result set size.", keyCnt, this.outList.size());
+		for (PactRecord record : this.outList) {
+			Assert.assertEquals("Incorrect result", valCnt - record.getField(0, PactInteger.class).getValue(),
+				record.getField(1, PactInteger.class).getValue());
+		}
+		this.outList.clear();
+	}
+
+	@Test
+	public void testMultiLevelMergeCombiningReduceTask() {
+
+		int keyCnt = 32768;
+		int valCnt = 8;
+
+		runReduceTask(LocalStrategy.COMBININGSORT, MockCombiningReduceStub.class, keyCnt, valCnt);
+
+		int expSum = 0;
+		for (int i = 1; i < valCnt; i++) {
+			expSum += i;
+		}
+
+		Assert.assertEquals("Wrong result set size.", keyCnt, this.outList.size());
+		for (PactRecord record : this.outList) {
+			Assert.assertEquals("Incorrect result", expSum - record.getField(0, PactInteger.class).getValue(),
+				record.getField(1, PactInteger.class).getValue());
+		}
+		this.outList.clear();
+	}
+
+	private void runReduceTask(LocalStrategy strategy,
+			Class<? extends GenericReducer<PactRecord, PactRecord>> stubClass, int keyCnt, int valCnt)
+	{
+		addInput(new UniformPactRecordGenerator(keyCnt, valCnt, false));
+		addOutput(this.outList);
+
+		ReduceDriver<PactRecord, PactRecord> testTask = new ReduceDriver<PactRecord, PactRecord>();
+		super.getTaskConfig().setLocalStrategy(strategy);
+		super.getTaskConfig().setMemorySize(3 * 1024 * 1024);
+		super.getTaskConfig().setNumFilehandles(2);
+
+		final int[] keyPos = new int[]{0};
+		@SuppressWarnings("unchecked")
+		final Class<? extends Key>[] keyClasses = (Class<? extends Key>[]) new Class[]{ PactInteger.class };
+		addInputComparator(new PactRecordComparator(keyPos, keyClasses));
+
+		try {
+			testDriver(testTask, stubClass);
+		} catch (Exception e) {
+			LOG.debug(e);
+			Assert.fail("Invoke method caused exception: " + e.getMessage());
+		}
+	}
+}
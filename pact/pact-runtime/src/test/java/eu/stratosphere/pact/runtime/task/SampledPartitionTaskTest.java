@@ -0,0 +1,171 @@
+/***********************************************************************************************************************
+ *
+ * Copyright (C) 2010-2012 by the Stratosphere project (http://stratosphere.eu)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *
+ **********************************************************************************************************************/
+
+package eu.stratosphere.pact.runtime.task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import eu.stratosphere.pact.common.type.Key;
+import eu.stratosphere.pact.common.type.PactRecord;
+import eu.stratosphere.pact.common.type.base.PactInteger;
+import eu.stratosphere.pact.common.util.MutableObjectIterator;
+import eu.stratosphere.pact.runtime.plugable.PactRecordComparatorFactory;
+import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
+import eu.stratosphere.pact.runtime.task.util.TaskConfig;
+import eu.stratosphere.pact.runtime.test.util.TaskTestBase;
+import eu.stratosphere.pact.runtime.test.util.UniformPactRecordGenerator;
+
+/**
+ * Tests the partitioning task of the sampled range partitioning, whose range boundaries arrive only after all
+ * data has been produced.
+ */
+public class SampledPartitionTaskTest extends TaskTestBase
+{
+	private static final long MEMORY_SIZE = 1024 * 1024;
+
+	private static final int NUM_KEYS = 1000;
+
+	private static final int NUM_VALUES = 4;
+
+	@SuppressWarnings("unchecked")
+	private static final Class<? extends Key>[] KEY_TYPES = new Class[] { PactInteger.class };
+
+	private final List<PactRecord> outList = new ArrayList<PactRecord>();
+
+	@Test
+	public void testBoundariesArriveAfterData() throws Exception
+	{
+		final DataInput data = new DataInput(NUM_KEYS, NUM_VALUES);
+		final BoundaryInput boundaries = new BoundaryInput(data, 250, 500, 750);
+
+		runTask(data, boundaries);
+
+		Assert.assertTrue("The boundaries have not been read.", boundaries.isExhausted());
+		Assert.assertEquals(NUM_KEYS * NUM_VALUES, this.outList.size());
+
+		// every record of the data input has been partitioned exactly once
+		final int[] counts = new int[NUM_KEYS];
+		for (PactRecord record : this.outList) {
+			counts[record.getField(0, PactInteger.class).getValue()]++;
+		}
+		for (int i = 0; i < NUM_KEYS; i++) {
+			Assert.assertEquals("Wrong number of records with key " + i, NUM_VALUES, counts[i]);
+		}
+	}
+
+	@Test
+	public void testEmptyDataInput() throws Exception
+	{
+		final DataInput data = new DataInput(0, 0);
+		final BoundaryInput boundaries = new BoundaryInput(data);
+
+		runTask(data, boundaries);
+
+		Assert.assertTrue("The boundaries have not been read.", boundaries.isExhausted());
+		Assert.assertTrue(this.outList.isEmpty());
+	}
+
+	private void runTask(DataInput data, BoundaryInput boundaries) throws Exception
+	{
+		initEnvironment(MEMORY_SIZE);
+		addInput(data, 1);
+		addInput(boundaries, 2);
+		this.mockEnv.addOutput(this.outList);
+
+		final TaskConfig config = getTaskConfig();
+		config.setMemorySize(MEMORY_SIZE);
+		config.addOutputShipStrategy(ShipStrategyType.PARTITION_RANGE);
+		config.setComparatorFactoryForOutput(PactRecordComparatorFactory.class, 0);
+		PactRecordComparatorFactory.writeComparatorSetupToConfig(config.getConfigForOutputParameters(0),
+			new int[] {0}, KEY_TYPES, new boolean[] {true});
+
+		final SampledPartitionTask task = new SampledPartitionTask();
+		task.setUserCodeClassLoader(getClass().getClassLoader());
+		registerTask(task);
+		task.invoke();
+	}
+
+	// --------------------------------------------------------------------------------------------
+
+	/**
+	 * The data input, which remembers when it has been exhausted.
+	 */
+	private static final class DataInput implements MutableObjectIterator<PactRecord>
+	{
+		private final UniformPactRecordGenerator generator;
+
+		private volatile boolean exhausted;
+
+		private DataInput(int numKeys, int numValues)
+		{
+			this.generator = new UniformPactRecordGenerator(numKeys, numValues, false);
+		}
+
+		@Override
+		public boolean next(PactRecord target)
+		{
+			if (this.generator.next(target)) {
+				return true;
+			}
+			this.exhausted = true;
+			return false;
+		}
+	}
+
+	/**
+	 * The boundary input, which fails if it is read before the data input has been exhausted, because in
+	 * the job the boundaries are computed only after all data has been sampled.
+	 */
+	private static final class BoundaryInput implements MutableObjectIterator<PactRecord>
+	{
+		private final DataInput data;
+
+		private final int[] boundaries;
+
+		private int next;
+
+		private boolean exhausted;
+
+		private BoundaryInput(DataInput data, int... boundaries)
+		{
+			this.data = data;
+			this.boundaries = boundaries;
+		}
+
+		@Override
+		public boolean next(PactRecord target)
+		{
+			Assert.assertTrue("The boundaries were requested before all data had been read.", this.data.exhausted);
+
+			if (this.next < this.boundaries.length) {
+				target.clear();
+				target.setField(0, new PactInteger(this.boundaries[this.next++]));
+				return true;
+			}
+			this.exhausted = true;
+			return false;
+		}
+
+		private boolean isExhausted()
+		{
+			return this.exhausted;
+		}
+	}
+}
@@ -22,6 +22,8 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 import junit.framework.Assert;
@@ -32,6 +34,7 @@ import org.junit.Test;
 import eu.stratosphere.nephele.io.ChannelSelector;
 import eu.stratosphere.pact.common.contract.DataDistribution;
 import eu.stratosphere.pact.common.type.DeserializationException;
+import eu.stratosphere.pact.common.type.Key;
 import eu.stratosphere.pact.common.type.KeyFieldOutOfBoundsException;
 import eu.stratosphere.pact.common.type.NullKeyFieldException;
 import eu.stratosphere.pact.common.type.PactRecord;
@@ -39,13 +42,19 @@ import eu.stratosphere.pact.common.type.base.PactDouble;
 import eu.stratosphere.pact.common.type.base.PactInteger;
 import eu.stratosphere.pact.common.type.base.PactString;
 import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
+import eu.stratosphere.pact.runtime.shipping.HotKeySet;
 import eu.stratosphere.pact.runtime.shipping.PactRecordOutputEmitter;
+import eu.stratosphere.pact.runtime.shipping.SampledDataDistribution;
 import eu.stratosphere.pact.runtime.shipping.ShipStrategy.ShipStrategyType;
 
 public class OutputEmitterTest extends TestCase
 {
 	private static final long SEED = 485213591485399L;
 	
+	private static final int HOT_KEY_FIRST_SPREADS = 7;		// the hot key spread by the first input of a skewed partitioning
+	
+	private static final int HOT_KEY_SECOND_SPREADS = 13;	// the hot key spread by the second input of a skewed partitioning
+	
 	@Test
 	public void testPartitionHash()
 	{
@@ -370,6 +379,165 @@ public class OutputEmitterTest extends TestCase
 		}
 	}
 	
+	@Test
+	public void testPartitionRangeWithSampledDistribution()
+	{
+		// the emitter is created before the boundaries are known, as in the sampled partitioning task
+		final SampledDataDistribution distri = new SampledDataDistribution();
+
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator intComp = new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+		final ChannelSelector<PactRecord> oe = new PactRecordOutputEmitter(ShipStrategyType.PARTITION_RANGE, intComp, distri);
+
+		final List<PactRecord> boundaries = new ArrayList<PactRecord>();
+		boundaries.add(new PactRecord(new PactInteger(100)));
+		boundaries.add(new PactRecord(new PactInteger(200)));
+		boundaries.add(new PactRecord(new PactInteger(300)));
+		distri.setBoundaries(boundaries);
+
+		final PactRecord rec = new PactRecord();
+		for (int i = 0; i <= 400; i++) {
+			rec.setField(0, new PactInteger(i));
+
+			final int[] channels = oe.selectChannels(rec, 4);
+			Assert.assertEquals(1, channels.length);
+			Assert.assertEquals("Wrong bucket for key " + i, i <= 100 ? 0 : i <= 200 ? 1 : i <= 300 ? 2 : 3, channels[0]);
+		}
+	}
+
+	@Test
+	public void testSkewedHashPartitionColdKeys()
+	{
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator intComp = new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+		final ChannelSelector<PactRecord> hashOe = new PactRecordOutputEmitter(ShipStrategyType.PARTITION_HASH, intComp);
+		final ChannelSelector<PactRecord> firstOe = createSkewedEmitter(intComp, true);
+		final ChannelSelector<PactRecord> secondOe = createSkewedEmitter(intComp, false);
+
+		final int numChannels = 17;
+
+		// keys that are not hot go to the same single channel on both sides, just as with the regular hash partitioning
+		for (int i = 0; i < 10000; i++) {
+			if (i == HOT_KEY_FIRST_SPREADS || i == HOT_KEY_SECOND_SPREADS) {
+				continue;
+			}
+			final PactRecord rec = new PactRecord(new PactInteger(i));
+
+			final int[] hashChannels = hashOe.selectChannels(rec, numChannels);
+			final int[] firstChannels = firstOe.selectChannels(rec, numChannels);
+			final int[] secondChannels = secondOe.selectChannels(rec, numChannels);
+
+			assertEquals(1, firstChannels.length);
+			assertEquals(1, secondChannels.length);
+			assertEquals(hashChannels[0], firstChannels[0]);
+			assertEquals(hashChannels[0], secondChannels[0]);
+		}
+	}
+
+	@Test
+	public void testSkewedHashPartitionHotKeys()
+	{
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator intComp = new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+		final ChannelSelector<PactRecord> firstOe = createSkewedEmitter(intComp, true);
+		final ChannelSelector<PactRecord> secondOe = createSkewedEmitter(intComp, false);
+
+		final int numChannels = 17;
+		final int numRecords = numChannels * 100;
+
+		// each side spreads one of the hot keys evenly over all channels ...
+		final int[] firstHits = new int[numChannels];
+		final int[] secondHits = new int[numChannels];
+		for (int i = 0; i < numRecords; i++) {
+			final int[] firstChannels = firstOe.selectChannels(new PactRecord(new PactInteger(HOT_KEY_FIRST_SPREADS)), numChannels);
+			assertEquals(1, firstChannels.length);
+			firstHits[firstChannels[0]]++;
+
+			final int[] secondChannels = secondOe.selectChannels(new PactRecord(new PactInteger(HOT_KEY_SECOND_SPREADS)), numChannels);
+			assertEquals(1, secondChannels.length);
+			secondHits[secondChannels[0]]++;
+		}
+		for (int i = 0; i < numChannels; i++) {
+			assertEquals(numRecords / numChannels, firstHits[i]);
+			assertEquals(numRecords / numChannels, secondHits[i]);
+		}
+
+		// ... and replicates the hot key that the other side spreads to all channels
+		checkAllChannels(firstOe.selectChannels(new PactRecord(new PactInteger(HOT_KEY_SECOND_SPREADS)), numChannels), numChannels);
+		checkAllChannels(secondOe.selectChannels(new PactRecord(new PactInteger(HOT_KEY_FIRST_SPREADS)), numChannels), numChannels);
+	}
+
+	@Test
+	public void testSkewedHashPartitionPairsMeetOnce()
+	{
+		@SuppressWarnings("unchecked")
+		final PactRecordComparator intComp = new PactRecordComparator(new int[] {0}, new Class[] {PactInteger.class});
+		final ChannelSelector<PactRecord> firstOe = createSkewedEmitter(intComp, true);
+		final ChannelSelector<PactRecord> secondOe = createSkewedEmitter(intComp, false);
+
+		final int numChannels = 7;
+		final int numKeys = 50;
+		final int numRecordsPerKey = 20;
+
+		// route the records of both inputs to the channels, remembering the channels per key
+		@SuppressWarnings("unchecked")
+		final List<Integer>[][] firstChannels = new List[numKeys][numRecordsPerKey];
+		@SuppressWarnings("unchecked")
+		final List<Integer>[][] secondChannels = new List[numKeys][numRecordsPerKey];
+		for (int n = 0; n < numRecordsPerKey; n++) {
+			for (int k = 0; k < numKeys; k++) {
+				firstChannels[k][n] = toList(firstOe.selectChannels(new PactRecord(new PactInteger(k)), numChannels));
+				secondChannels[k][n] = toList(secondOe.selectChannels(new PactRecord(new PactInteger(k)), numChannels));
+			}
+		}
+
+		// a local match in each channel joins each pair of records with the same key exactly once
+		for (int k = 0; k < numKeys; k++) {
+			for (int a = 0; a < numRecordsPerKey; a++) {
+				for (int b = 0; b < numRecordsPerKey; b++) {
+					final List<Integer> common = new ArrayList<Integer>(firstChannels[k][a]);
+					common.retainAll(secondChannels[k][b]);
+					assertEquals("Pair (" + a + ", " + b + ") of key " + k + " is joined in " + common + ".", 1, common.size());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates an emitter for one side of a skew-aware hash partitioning with two hot keys, one of which is
+	 * spread by the first side and one by the second side.
+	 */
+	private static ChannelSelector<PactRecord> createSkewedEmitter(PactRecordComparator comp, boolean firstSide)
+	{
+		final HotKeySet hotKeys = new HotKeySet();
+		final PactRecordOutputEmitter oe = new PactRecordOutputEmitter(ShipStrategyType.PARTITION_SKEWED_HASH,
+			comp.duplicate(), null, hotKeys);
+
+		// the hot keys are only known after the emitter has been created
+		hotKeys.add(new Key[] { new PactInteger(HOT_KEY_FIRST_SPREADS) }, firstSide);
+		hotKeys.add(new Key[] { new PactInteger(HOT_KEY_SECOND_SPREADS) }, !firstSide);
+		return oe;
+	}
+
+	private static void checkAllChannels(int[] channels, int numChannels)
+	{
+		assertEquals(numChannels, channels.length);
+		final boolean[] hit = new boolean[numChannels];
+		for (int i = 0; i < channels.length; i++) {
+			assertFalse(hit[channels[i]]);
+			hit[channels[i]] = true;
+		}
+	}
+
+	private static List<Integer> toList(int[] channels)
+	{
+		final List<Integer> list = new ArrayList<Integer>(channels.length);
+		for (int i = 0; i < channels.length; i++) {
+			list.add(Integer.valueOf(channels[i]));
+		}
+		return list;
+	}
+
 	private static final class IntegerUniformDistribution implements DataDistribution
 	{
 		private int min;	
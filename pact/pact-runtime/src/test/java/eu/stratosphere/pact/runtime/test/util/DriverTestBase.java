@@ -35,6 +35,7 @@ import eu.stratosphere.pact.common.type.PactRecord;
 import eu.stratosphere.pact.common.util.MutableObjectIterator;
 import eu.stratosphere.pact.runtime.plugable.PactRecordComparator;
 import eu.stratosphere.pact.runtime.plugable.PactRecordSerializer;
+import eu.stratosphere.pact.runtime.statistics.TaskStatistics;
 import eu.stratosphere.pact.runtime.task.PactDriver;
 import eu.stratosphere.pact.runtime.task.PactTaskContext;
 import eu.stratosphere.pact.runtime.task.util.TaskConfig;
@@ -65,9 +66,15 @@ public class DriverTestBase<S extends Stub> implements PactTaskContext<S, PactRe
 	
 	
 	protected DriverTestBase(long memory)
+	{
+		this(memory, false);
+	}
+	
+	protected DriverTestBase(long memory, boolean offHeapMemory)
 	{
 		this.ioManager = new IOManager();
-		this.memManager = memory > 0 ? new DefaultMemoryManager(memory) : null;
+		this.memManager = memory > 0 ?
+			new DefaultMemoryManager(memory, DefaultMemoryManager.DEFAULT_PAGE_SIZE, offHeapMemory) : null;
 		
 		this.inputs = new ArrayList<MutableObjectIterator<PactRecord>>();
 		this.comparators = new ArrayList<TypeComparator<PactRecord>>();
@@ -260,6 +267,14 @@ public class DriverTestBase<S extends Stub> implements PactTaskContext<S, PactRe
 		return this.owner;
 	}
 
+	/* (non-Javadoc)
+	 * @see eu.stratosphere.pact.runtime.task.PactTaskContext#getTaskStatistics()
+	 */
+	@Override
+	public TaskStatistics getTaskStatistics() {
+		return null;
+	}
+
 	/* (non-Javadoc)
 	 * @see eu.stratosphere.pact.runtime.task.PactTaskContext#formatLogString(java.lang.String)
 	 */
@@ -26,6 +26,7 @@ import eu.stratosphere.nephele.io.ChannelSelector;
 import eu.stratosphere.nephele.io.GateID;
 import eu.stratosphere.nephele.io.InputGate;
 import eu.stratosphere.nephele.io.OutputGate;
+import eu.stratosphere.nephele.io.OutputGateFlushPolicy;
 import eu.stratosphere.nephele.io.RecordFactory;
 import eu.stratosphere.nephele.io.RuntimeInputGate;
 import eu.stratosphere.nephele.io.RuntimeOutputGate;
@@ -119,7 +120,7 @@ public class MockEnvironment implements Environment
 		private MutableObjectIterator<PactRecord> it;
 
 		public MockInputGate(int id, MutableObjectIterator<PactRecord> it) {
-			super(JobID.generate(), GateID.generate(), id, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, null);
+			super(JobID.generate(), GateID.generate(), id, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, null, null);
 			this.it = it;
 		}
 
@@ -139,7 +140,8 @@ public class MockEnvironment implements Environment
 		private List<PactRecord> out;
 
 		public MockOutputGate(int index, List<PactRecord> outList) {
-			super(JobID.generate(), GateID.generate(), index, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, null, false, null);
+			super(JobID.generate(), GateID.generate(), index, ChannelType.INMEMORY, CompressionLevel.NO_COMPRESSION, null, false, null,
+				OutputGateFlushPolicy.DEFAULT, null);
 			this.out = outList;
 		}
 